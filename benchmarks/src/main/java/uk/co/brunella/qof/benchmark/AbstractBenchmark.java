@@ -0,0 +1,159 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+import uk.co.brunella.qof.QueryObjectFactory;
+import uk.co.brunella.qof.dialect.HSQLDbDialect;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the benchmarks. Every benchmark runs against an in-memory
+ * HSQLDB database and against the mock connection of the test tools. The
+ * mock connection isolates the overhead of the generated code from the
+ * work done by the database.
+ * <p>
+ * The <code>item</code> table contains {@link #NUMBER_OF_ITEMS} rows with the
+ * ids 0 to <code>NUMBER_OF_ITEMS - 1</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class AbstractBenchmark {
+
+    public static final String HSQLDB = "hsqldb";
+    public static final String MOCK = "mock";
+
+    protected static final int NUMBER_OF_ITEMS = 1000;
+
+    @Param({HSQLDB, MOCK})
+    public String database;
+
+    protected Connection connection;
+    protected ItemQueries queries;
+
+    private MockConnectionData mockConnectionData;
+    private List<Map<String, Object>> mockResultSetData = Collections.emptyList();
+    private List<Object> mockResultData = Collections.emptyList();
+
+    @Setup(Level.Trial)
+    public void setUpConnection() throws SQLException {
+        if (HSQLDB.equals(database)) {
+            JDBCDataSource ds = new JDBCDataSource();
+            ds.setDatabase("jdbc:hsqldb:mem:benchmark");
+            ds.setUser("sa");
+            ds.setPassword("");
+            connection = ds.getConnection();
+            createDatabase();
+        } else if (MOCK.equals(database)) {
+            connection = MockConnectionFactory.getConnection();
+            mockConnectionData = (MockConnectionData) connection;
+        } else {
+            throw new IllegalArgumentException("Unknown database " + database);
+        }
+        QueryObjectFactory.setSQLDialect(new HSQLDbDialect());
+        queries = QueryObjectFactory.createQueryObject(ItemQueries.class);
+        queries.setConnection(connection);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownConnection() throws SQLException {
+        if (HSQLDB.equals(database)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("shutdown");
+            }
+        }
+        connection.close();
+    }
+
+    private void createDatabase() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table item (id integer primary key, name varchar(40), price double)");
+            statement.execute("create table item_copy (id integer, name varchar(40), price double)");
+            statement.execute("create procedure add_numbers(in a integer, in b integer, out c integer) set c = a + b");
+            for (int id = 0; id < NUMBER_OF_ITEMS; id++) {
+                statement.execute("insert into item values (" + id + ", 'name" + id + "', " + id / 4.0 + ")");
+            }
+        }
+    }
+
+    protected boolean isMock() {
+        return mockConnectionData != null;
+    }
+
+    /**
+     * Defines the rows returned by the mock connection for items with ids
+     * from <code>fromId</code> (inclusive) to <code>toId</code> (exclusive).
+     */
+    protected void setMockItems(int fromId, int toId) {
+        List<Map<String, Object>> rows = new ArrayList<>(toId - fromId);
+        for (int id = fromId; id < toId; id++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", id);
+            row.put("name", "name" + id);
+            row.put("price", id / 4.0);
+            rows.add(row);
+        }
+        mockResultSetData = rows;
+    }
+
+    /**
+     * Defines the out parameter values returned by the mock connection.
+     */
+    protected void setMockResultData(Object... values) {
+        mockResultData = new ArrayList<>(Arrays.asList(values));
+    }
+
+    /**
+     * Must be called at the start of every benchmark method. Rewinds the mock
+     * result set and clears the call log of the mock connection so that it
+     * does not grow during an iteration.
+     */
+    protected void resetMock() {
+        if (mockConnectionData != null) {
+            mockConnectionData.setResultSetData(mockResultSetData);
+            mockConnectionData.setResultData(mockResultData);
+        }
+    }
+
+    protected static Item mapItem(ResultSet rs) throws SQLException {
+        Item item = new Item();
+        item.setId(rs.getInt("id"));
+        item.setName(rs.getString("name"));
+        item.setPrice(rs.getDouble("price"));
+        return item;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts a list of 20 beans with a batch. The target table is emptied
+ * after each invocation outside of the measured time, so every call inserts
+ * into an empty table.
+ */
+public class BatchInsertBenchmark extends AbstractBenchmark {
+
+    private static final int BATCH_SIZE = 20;
+
+    private List<Item> items;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        items = new ArrayList<>(BATCH_SIZE);
+        for (int id = 0; id < BATCH_SIZE; id++) {
+            items.add(new Item(id, "name" + id, id / 4.0));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteItems() throws SQLException {
+        if (!isMock()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("truncate table item_copy");
+            }
+        }
+    }
+
+    @Benchmark
+    public void qof() throws SQLException {
+        resetMock();
+        queries.insertItems(items);
+    }
+
+    @Benchmark
+    public int[] jdbc() throws SQLException {
+        resetMock();
+        try (PreparedStatement ps = connection.prepareStatement("insert into item_copy values (?, ?, ?)")) {
+            for (Item item : items) {
+                ps.setInt(1, item.getId());
+                ps.setString(2, item.getName());
+                ps.setDouble(3, item.getPrice());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.sql.CallableStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Calls a stored procedure with two in parameters and an out parameter.
+ */
+public class CallBenchmark extends AbstractBenchmark {
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        // the out parameter is the third parameter
+        setMockResultData(null, null, 42);
+    }
+
+    @Benchmark
+    public int qof() throws SQLException {
+        resetMock();
+        return queries.addNumbers(20, 22);
+    }
+
+    @Benchmark
+    public int jdbc() throws SQLException {
+        resetMock();
+        try (CallableStatement cs = connection.prepareCall("{ call add_numbers(?, ?, ?) }")) {
+            cs.setInt(1, 20);
+            cs.setInt(2, 22);
+            cs.registerOutParameter(3, Types.INTEGER);
+            cs.execute();
+            return cs.getInt(3);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Call;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Paging;
+import uk.co.brunella.qof.Query;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query definitions for the benchmarks. Each method has a hand-written JDBC
+ * counterpart in the corresponding benchmark class.
+ */
+public interface ItemQueries extends BaseQuery, Paging {
+
+    @Query(sql = "select id {%%.id}, name {%%.name}, price {%%.price} from item where id = {%1}")
+    Item selectItem(int id) throws SQLException;
+
+    @Query(sql = "select id {%%.id}, name {%%.name}, price {%%.price} from item where id >= {%1} and id < {%2}")
+    List<Item> selectItems(int fromId, int toId) throws SQLException;
+
+    @Query(sql = "select id {%%*}, name {%%} from item where id >= {%1} and id < {%2}")
+    Map<Integer, String> selectNames(int fromId, int toId) throws SQLException;
+
+    @Query(sql = "select name {%%} from item where id in ({%1})")
+    List<String> selectNames(int[] ids) throws SQLException;
+
+    @Insert(sql = "insert into item_copy values ({%1.id}, {%1.name}, {%1.price})")
+    void insertItems(List<Item> items) throws SQLException;
+
+    @Call(sql = "{ call add_numbers({%1}, {%2}, {%%}) }")
+    int addNumbers(int a, int b) throws SQLException;
+
+    @Query(sql = "select id {%%.id}, name {%%.name}, price {%%.price} from item order by id")
+    List<Item> selectPage() throws SQLException;
+}
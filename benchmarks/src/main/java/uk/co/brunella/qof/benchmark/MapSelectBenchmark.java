@@ -0,0 +1,65 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Selects 100 rows into a map keyed by id.
+ */
+public class MapSelectBenchmark extends AbstractBenchmark {
+
+    private static final int FROM_ID = 100;
+    private static final int TO_ID = 200;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        setMockItems(FROM_ID, TO_ID);
+    }
+
+    @Benchmark
+    public Map<Integer, String> qof() throws SQLException {
+        resetMock();
+        return queries.selectNames(FROM_ID, TO_ID);
+    }
+
+    @Benchmark
+    public Map<Integer, String> jdbc() throws SQLException {
+        resetMock();
+        try (PreparedStatement ps = connection.prepareStatement("select id, name from item where id >= ? and id < ?")) {
+            ps.setInt(1, FROM_ID);
+            ps.setInt(2, TO_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                Map<Integer, String> names = new HashMap<>();
+                while (rs.next()) {
+                    names.put(rs.getInt("id"), rs.getString("name"));
+                }
+                return names;
+            }
+        }
+    }
+}
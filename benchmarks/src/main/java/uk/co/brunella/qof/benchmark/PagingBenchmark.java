@@ -0,0 +1,66 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects a page of 20 rows using the limit syntax of the HSQLDB dialect.
+ */
+public class PagingBenchmark extends AbstractBenchmark {
+
+    private static final int FIRST_RESULT = 500;
+    private static final int MAX_RESULTS = 20;
+
+    @Setup(Level.Trial)
+    public void setUpData() {
+        setMockItems(FIRST_RESULT, FIRST_RESULT + MAX_RESULTS);
+    }
+
+    @Benchmark
+    public List<Item> qof() throws SQLException {
+        resetMock();
+        queries.setFirstResult(FIRST_RESULT).setMaxResults(MAX_RESULTS);
+        return queries.selectPage();
+    }
+
+    @Benchmark
+    public List<Item> jdbc() throws SQLException {
+        resetMock();
+        try (PreparedStatement ps = connection.prepareStatement("select limit ? ? id, name, price from item order by id")) {
+            ps.setInt(1, FIRST_RESULT);
+            ps.setInt(2, MAX_RESULTS);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Item> items = new ArrayList<>(MAX_RESULTS);
+                while (rs.next()) {
+                    items.add(mapItem(rs));
+                }
+                return items;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.sql.SQLException;
+
+/**
+ * Internal - AsyncQueryInvoker is implemented by generated query objects
+ * that contain query methods with a <code>CompletableFuture</code> return type.
+ *
+ * @see uk.co.brunella.qof.util.AsyncQueryHelper
+ * @since 1.2.1
+ */
+public interface AsyncQueryInvoker {
+
+    /**
+     * Executes the synchronous part of an asynchronous query method.
+     *
+     * @param queryId   the id of the asynchronous query method
+     * @param arguments the arguments of the query method call
+     * @return the result of the query, primitive values are boxed
+     * @throws SQLException thrown if the query fails
+     */
+    Object invokeQuery(int queryId, Object[] arguments) throws SQLException;
+}
@@ -21,6 +21,7 @@ package uk.co.brunella.qof;
 import uk.co.brunella.qof.codegen.QueryObjectGenerator;
 
 import java.sql.Connection;
+import java.util.concurrent.Executor;
 
 /**
  * Defines the basic methods to get and set connections, batch size and fetch size for
@@ -102,4 +103,29 @@ public interface BaseQuery {
      * @see #getBatchSize()
      */
     void setBatchSize(int size);
+
+    /**
+     * Returns the executor used to run query methods with a <code>CompletableFuture</code> return type.
+     *
+     * @return the executor or null if the default executor of QOF is used
+     * @see #setExecutor(Executor)
+     * @since 1.2.1
+     */
+    Executor getExecutor();
+
+    /**
+     * Sets the executor used to run query methods with a <code>CompletableFuture</code> return type.
+     *
+     * <p> The connection is acquired, used and returned with <code>ungetConnection</code> on the
+     * thread of the executor. The initial executor is defined by
+     * <code>Customizer.getExecutor</code>. If no executor is set a bounded pool of daemon threads
+     * owned by QOF is used. Blocking queries are never run in the common fork join pool.
+     *
+     * @param executor the executor
+     * @see #getExecutor()
+     * @see uk.co.brunella.qof.customizer.Customizer#getExecutor(Class)
+     * @see uk.co.brunella.qof.util.AsyncQueryHelper#getDefaultExecutor()
+     * @since 1.2.1
+     */
+    void setExecutor(Executor executor);
 }
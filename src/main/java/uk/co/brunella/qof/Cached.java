@@ -0,0 +1,89 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a query method.
+ * <p>
+ * The result of a cached query method is looked up in a cache by the argument values
+ * before the query is executed. If the cache contains a result for the arguments the
+ * database is not accessed:
+ *
+ * <blockquote><pre>
+ * &#64;Cached(ttl = 10, unit = TimeUnit.MINUTES, maxEntries = 500)
+ * &#64;Query(sql = "select code {%%.code}, rate {%%.rate} from currency where code = {%1}")
+ * Currency getCurrency(String code);
+ * </pre></blockquote>
+ * <p>
+ * Every cached query method has its own cache that is shared by all query objects of
+ * the query definition class in a class loader. Entries are evicted after the time to live
+ * and the least recently used entries are evicted if the cache holds more than the maximum
+ * number of entries or exceeds the maximum weight. The weight of a collection or map
+ * result is the number of its elements plus one, the weight of other results is one.
+ * <p>
+ * The caches are invalidated by successful writes of insert, update and delete methods to
+ * the tables the cached query reads from. The table names are taken from the SQL statement.
+ * Writes by stored procedures or other applications are not detected.
+ * <p>
+ * Cached results are shared by all callers and must not be modified. Arguments are
+ * compared with <code>equals</code>, array arguments by their elements. Only query methods
+ * that return a result can be cached; methods with <code>Stream</code>, <code>Iterator</code>
+ * or row handler results and collection methods of query definitions implementing
+ * <code>Paging</code> cannot be cached. A query listener is not notified if a result is
+ * returned from the cache.
+ *
+ * @see uk.co.brunella.qof.cache.ResultCache
+ * @since 1.2.1
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Cached {
+    /**
+     * The time to live of cache entries. Entries do not expire if the time to live is 0.
+     *
+     * @return the time to live
+     */
+    long ttl() default 0;
+
+    /**
+     * The time unit of the time to live.
+     *
+     * @return the time unit
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * The maximum number of cache entries.
+     *
+     * @return the maximum number of entries
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * The maximum total weight of the cache entries. The weight is not limited if the
+     * maximum weight is 0.
+     *
+     * @return the maximum weight
+     */
+    long maxWeight() default 0;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import uk.co.brunella.qof.exception.UncheckedSQLException;
+
+import java.util.Iterator;
+
+/**
+ * An iterator over the rows of an open result set that must be closed
+ * once it is no longer used.
+ * <p>
+ * Query methods can return a <code>CloseableIterator</code> to map the rows of
+ * a result set lazily. The result set, the statement and the connection are
+ * released when the iterator is closed or when the last row was read.
+ * <p>
+ * <pre>
+ * &#64;Query(sql = "select id {%%.id}, name {%%.name} from person")
+ * CloseableIterator&lt;Person&gt; iteratePersons() throws SQLException;
+ *
+ * try (CloseableIterator&lt;Person&gt; persons = queries.iteratePersons()) {
+ *   for (Person person : persons) {
+ *     ...
+ *   }
+ * }
+ * </pre>
+ * The iterator can only be traversed once, <code>iterator()</code> always
+ * returns the iterator itself.
+ *
+ * @param <T> the type of the mapped rows
+ * @since 1.2.1
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Iterable<T>, AutoCloseable {
+
+    /**
+     * Closes the underlying result set and statement and releases the
+     * connection. Calling this method more than once has no effect.
+     *
+     * @throws UncheckedSQLException if closing the result set or the statement failed
+     */
+    void close();
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A <code>QueryListener</code> that passes all events to a list of listeners.
+ * <p>
+ * Only one query listener can be registered with <code>QueryObjectFactory</code>.
+ * A composite listener is used to register more than one:
+ * <p>
+ * <pre>
+ * QueryObjectFactory.setQueryListener(new CompositeQueryListener(metrics, slowQueryLog));
+ * </pre>
+ * Every listener gets its own context object. The arguments of an invocation are
+ * only passed to the listeners that required them.
+ *
+ * @see QueryListener
+ * @since 1.2.1
+ */
+public final class CompositeQueryListener implements QueryListener {
+
+    private final QueryListener[] listeners;
+
+    /**
+     * Creates a composite listener.
+     *
+     * @param listeners the listeners in the order they are called
+     */
+    public CompositeQueryListener(QueryListener... listeners) {
+        this.listeners = listeners.clone();
+    }
+
+    /**
+     * Returns the listeners.
+     *
+     * @return the listeners
+     */
+    public List<QueryListener> getListeners() {
+        return Arrays.asList(listeners.clone());
+    }
+
+    @Override
+    public Object beforePrepare(QueryMethod method) {
+        Object[] contexts = new Object[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            contexts[i] = listeners[i].beforePrepare(method);
+        }
+        return new Context(contexts);
+    }
+
+    @Override
+    public void prepared(QueryMethod method, Object context, String sql) {
+        Object[] contexts = ((Context) context).contexts;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].prepared(method, contexts[i], sql);
+        }
+    }
+
+    @Override
+    public void afterExecute(QueryMethod method, Object context) {
+        Object[] contexts = ((Context) context).contexts;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].afterExecute(method, contexts[i]);
+        }
+    }
+
+    @Override
+    public void rowsMapped(QueryMethod method, Object context, int rowCount) {
+        Object[] contexts = ((Context) context).contexts;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].rowsMapped(method, contexts[i], rowCount);
+        }
+    }
+
+    @Override
+    public void batchFlushed(QueryMethod method, Object context, int batchSize) {
+        Object[] contexts = ((Context) context).contexts;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].batchFlushed(method, contexts[i], batchSize);
+        }
+    }
+
+    @Override
+    public void failure(QueryMethod method, Object context, Throwable exception) {
+        Object[] contexts = ((Context) context).contexts;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].failure(method, contexts[i], exception);
+        }
+    }
+
+    @Override
+    public boolean isArgumentsRequired(QueryMethod method, Object context) {
+        Context compositeContext = (Context) context;
+        boolean required = false;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].isArgumentsRequired(method, compositeContext.contexts[i])) {
+                if (compositeContext.argumentsRequired == null) {
+                    compositeContext.argumentsRequired = new boolean[listeners.length];
+                }
+                compositeContext.argumentsRequired[i] = true;
+                required = true;
+            }
+        }
+        return required;
+    }
+
+    @Override
+    public void arguments(QueryMethod method, Object context, Object[] arguments) {
+        Context compositeContext = (Context) context;
+        if (compositeContext.argumentsRequired != null) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (compositeContext.argumentsRequired[i]) {
+                    listeners[i].arguments(method, compositeContext.contexts[i], arguments);
+                }
+            }
+        }
+    }
+
+    private static final class Context {
+
+        private final Object[] contexts;
+        private boolean[] argumentsRequired;
+
+        private Context(Object[] contexts) {
+            this.contexts = contexts;
+        }
+    }
+}
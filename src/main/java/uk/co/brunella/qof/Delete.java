@@ -40,6 +40,16 @@ import java.lang.annotation.*;
  * int[] deletePersons(List&lt;Integer&gt; ids);
  * </pre></blockquote>
  *
+ * <p> Ids can be streamed and the total delete count returned:
+ *
+ * <blockquote><pre>
+ * &#64;Delete(sql = "delete from person where id = {%1}")
+ * long deletePersons(Iterator&lt;Integer&gt; ids);
+ * </pre></blockquote>
+ *
+ * <p> The return types <code>long</code> and <code>long[]</code> use the large update counts of
+ * <code>executeLargeUpdate</code> and <code>executeLargeBatch</code> if the driver supports them.
+ *
  * @see SqlParser
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.lang.annotation.*;
+
+/**
+ * Rounds the number of parameters of in-clauses up to a bucket size.
+ * <p>
+ * Array parameters expand the parameter '?' to one parameter for every
+ * element of the array. Without bucketing a method called with arrays of
+ * 1 to 1000 elements creates 1000 different SQL statements. With bucketing
+ * the number of parameters is rounded up to the next bucket size and the
+ * additional parameters are set to the last element of the array, which
+ * does not change the result of an in-clause.
+ *
+ * <blockquote><pre>
+ * &#64;InListBuckets
+ * &#64;Query(sql = "select name {%%} from person where id in ({%1})")
+ * List&lt;String&gt; getNames(int[] ids);
+ *
+ * &#64;InListBuckets({10, 50, 100, 500})
+ * &#64;Query(sql = "select name {%%} from person where id in ({%1})")
+ * List&lt;String&gt; getNames(int[] ids);
+ * </pre></blockquote>
+ * <p>
+ * The annotation can be used on query methods or on the query definition class
+ * to apply to all query methods. Annotations on methods override the annotation
+ * on the class.
+ *
+ * @since 1.2.1
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Documented
+public @interface InListBuckets {
+    /**
+     * The bucket sizes in ascending order. If no sizes are defined the number of
+     * parameters is rounded up to the next power of two. Arrays larger than the
+     * largest bucket size are not padded.
+     *
+     * @return the bucket sizes
+     */
+    int[] value() default {};
+}
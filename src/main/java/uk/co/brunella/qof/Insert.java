@@ -41,6 +41,41 @@ import java.lang.annotation.*;
  * int[] insertPersons(List&lt;Integer&gt; idList, List&lt;String&gt; nameList);
  * </pre></blockquote>
  *
+ * <p> If the return parameter is <code>long</code> or <code>long[]</code> or <code>List&lt;K&gt;</code>
+ * for collections then the statement is prepared with <code>Statement.RETURN_GENERATED_KEYS</code>
+ * and the method returns the values of the first generated key column. <code>K</code> can be
+ * <code>Long</code>, <code>Integer</code> or <code>String</code>:
+ *
+ * <blockquote><pre>
+ * &#64;Insert(sql = "insert into person (name) values ({%1})")
+ * long insertPerson(String name);
+ * </pre></blockquote>
+ *
+ * <p> Result definitions write the generated keys back into the inserted beans. The definitions
+ * are mapped to the generated key columns in the order of their appearance and the beans are
+ * taken from the first parameter that has a setter for the field:
+ *
+ * <blockquote><pre>
+ * &#64;Insert(sql = "insert into person (name) values ({%1.name}) {%%.id}")
+ * void insertPersons(List&lt;Person&gt; persons);
+ * </pre></blockquote>
+ *
+ * <p> Keys are read after every executed statement or batch, so they can be used with batching.
+ *
+ * <p> Instead of collections the parameters can be <code>Iterator</code>, <code>Iterable</code> or
+ * <code>Stream</code>. Rows are bound and executed while the input is consumed, so the input does not
+ * have to be held in memory. A <code>long</code> return type of a method with collection or streaming
+ * parameters returns the sum of the update counts:
+ *
+ * <blockquote><pre>
+ * &#64;Insert(sql = "insert into person (id, name) values ({%1.id}, {%1.name})")
+ * long insertPersons(Stream&lt;Person&gt; persons);
+ * </pre></blockquote>
+ *
+ * <p> Generated keys of streaming parameters must be returned as <code>List&lt;K&gt;</code>.
+ * Unlike update and delete methods, insert methods use <code>long</code> and <code>long[]</code>
+ * for generated keys and not for large update counts.
+ *
  * @see SqlParser
  */
 @Retention(RetentionPolicy.RUNTIME)
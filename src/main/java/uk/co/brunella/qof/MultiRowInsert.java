@@ -0,0 +1,68 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.lang.annotation.*;
+
+/**
+ * Inserts the elements of collection parameters with multi-row insert statements.
+ * <p>
+ * The <code>values</code> clause of the insert statement is repeated for several
+ * elements so that one statement inserts many rows:
+ *
+ * <blockquote><pre>
+ * &#64;MultiRowInsert
+ * &#64;Insert(sql = "insert into person (id, name) values ({%1.id}, {%1.name})")
+ * int[] insertPersons(List&lt;Person&gt; persons);
+ * </pre></blockquote>
+ * <p>
+ * is executed as
+ *
+ * <blockquote><pre>
+ * insert into person (id, name) values (?, ?), (?, ?), (?, ?), (?, ?), ...
+ * </pre></blockquote>
+ * <p>
+ * The number of rows of a statement is a power of two. It is limited by <code>maxRows</code>,
+ * by the maximum number of parameters of a statement defined by the SQL dialect and by the
+ * batch size of the query object if batching is enabled. The statements for all numbers of
+ * rows are created when the query object class is generated. Each statement is executed with
+ * <code>executeUpdate</code>, so the batch size is the number of rows inserted per database
+ * round trip.
+ * <p>
+ * The update count of a row is 1 if the update count of its statement equals the number of rows
+ * of the statement, otherwise it is <code>Statement.SUCCESS_NO_INFO</code>.
+ * <p>
+ * Multi-row inserts are only supported for insert methods with collection parameters and
+ * insert statements with a single <code>values</code> clause that contains all parameters.
+ *
+ * @see uk.co.brunella.qof.dialect.SQLDialect#getMaxParameters()
+ * @since 1.2.1
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface MultiRowInsert {
+    /**
+     * The maximum number of rows inserted with one statement. The value is rounded
+     * down to a power of two.
+     *
+     * @return the maximum number of rows per statement
+     */
+    int maxRows() default 128;
+}
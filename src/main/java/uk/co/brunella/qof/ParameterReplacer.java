@@ -77,4 +77,39 @@ public class ParameterReplacer {
         return sb.toString();
     }
 
+    /**
+     * Returns a SQL statement that replaces the <code>index</code>-th
+     * parameter '?' with a SQL expression.
+     *
+     * @param sql         the SQL statement
+     * @param index       the index of the parameter to replace
+     * @param replacement the SQL expression that replaces the parameter
+     * @return new SQL statement
+     * @since 1.2.1
+     */
+    public static String replaceParameter(String sql, int index, String replacement) {
+        int currentIndex = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+                // skip until end of comment
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    break;
+                }
+                i = end + 2;
+                continue;
+            }
+            if (c == '?') {
+                currentIndex++;
+                if (index == currentIndex) {
+                    return sql.substring(0, i) + replacement + sql.substring(i + 1);
+                }
+            }
+            i++;
+        }
+        return sql;
+    }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of preloading query object classes.
+ *
+ * <p> Times are measured in nanoseconds. The generation time of a query definition
+ * includes the time waiting for another thread that generated the same class and is
+ * close to zero if the class was already cached.</p>
+ *
+ * @see QueryObjectFactory#preload(Class[])
+ * @see QueryObjectFactory#preload(String)
+ * @since 1.2.1
+ */
+public final class PreloadReport {
+
+    private final long totalTime;
+    private final Map<Class<?>, Long> generationTimes;
+
+    PreloadReport(long totalTime, Map<Class<?>, Long> generationTimes) {
+        this.totalTime = totalTime;
+        this.generationTimes = Collections.unmodifiableMap(generationTimes);
+    }
+
+    /**
+     * Returns the elapsed time of the preload in nanoseconds.
+     *
+     * @return elapsed time in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Returns the generation time in nanoseconds for each preloaded query definition.
+     *
+     * @return map of query definition class to generation time in nanoseconds
+     */
+    public Map<Class<?>, Long> getGenerationTimes() {
+        return generationTimes;
+    }
+
+    /**
+     * Returns the number of preloaded query definitions.
+     *
+     * @return number of query definitions
+     */
+    public int getNumberOfClasses() {
+        return generationTimes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Preloaded " + generationTimes.size() + " query definitions in "
+                + TimeUnit.NANOSECONDS.toMillis(totalTime) + " ms";
+    }
+}
@@ -48,6 +48,12 @@ import java.lang.annotation.*;
  * <li> A <code>Set</code> collection with a generic type definition of one of the above types</li>
  * <li> A <code>Map</code> collection with a generic type definition of one of the above types
  * and an atomic value object type or a value object mapped with custom mapping adapter as map key</li>
+ * <li> A <code>Stream</code>, <code>Iterator</code>, <code>Iterable</code> or <code>CloseableIterator</code>
+ * with a generic type definition of one of the above types. The rows are mapped lazily and the result set,
+ * statement and connection are released when the stream or iterator is closed or fully read</li>
+ * <li> <code>void</code> or <code>int</code> if the method has a <code>RowHandler</code> or
+ * <code>Consumer</code> parameter. The rows are passed to the handler and <code>int</code>
+ * returns the number of rows</li>
  * </ul>
  *
  * @see SqlParser
@@ -93,4 +99,16 @@ public @interface Query {
      * @return initial capacity
      */
     int collectionInitialCapacity() default 0;
+
+    /**
+     * If set the result object is created once and refilled for every row.
+     * This is only allowed for query methods with a <code>RowHandler</code>
+     * or <code>Consumer</code> parameter and result types that are created
+     * with a default constructor.
+     *
+     * @return true if the result object is reused
+     * @see RowHandler
+     * @since 1.2.1
+     */
+    boolean reuseResultObject() default false;
 }
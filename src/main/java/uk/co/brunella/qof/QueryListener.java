@@ -0,0 +1,147 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+/**
+ * Receives events from the query methods of generated query objects.
+ * <p>
+ * The calls to the listener are woven into the generated query methods. They are only
+ * generated if a listener is registered for the class loader of the query definition
+ * when the query object class is generated:
+ * <p>
+ * <pre>
+ * QueryObjectFactory.setQueryListener(new QueryListener() {
+ *     public Object beforePrepare(QueryMethod method) {
+ *         return System.nanoTime();
+ *     }
+ *
+ *     public void afterExecute(QueryMethod method, Object context) {
+ *         long elapsed = System.nanoTime() - (Long) context;
+ *         ...
+ *     }
+ * });
+ * </pre>
+ * If no listener is registered the generated code does not contain any calls to a listener.
+ * <p>
+ * Every invocation of a query method that accesses the database starts with <code>beforePrepare</code>. The object
+ * returned by <code>beforePrepare</code> is passed to all other events of the same
+ * invocation. <code>prepared</code> is called with the SQL statement as it is sent to the
+ * database after the statement was prepared. A successful invocation of a select method calls <code>afterExecute</code>
+ * when the query was executed and <code>rowsMapped</code> when all rows are mapped.
+ * Rows of methods returning an <code>Iterator</code> or a <code>Stream</code> are mapped
+ * lazily and <code>rowsMapped</code> is not called (see <code>QueryMethod.isStreaming()</code>). Insert, update, delete and call methods
+ * call <code>batchFlushed</code> for every executed batch and <code>afterExecute</code>
+ * when all statements were executed. If the invocation fails <code>failure</code> is
+ * called with the exception before it is thrown to the caller.
+ * <p>
+ * Before the last event of an invocation (<code>rowsMapped</code>, <code>afterExecute</code>
+ * of methods without <code>rowsMapped</code> or <code>failure</code>) the listener is asked with
+ * <code>isArgumentsRequired</code> if it needs the arguments of the invocation. Only if it returns
+ * true the arguments are boxed and passed to <code>arguments</code>.
+ * <p>
+ * Listeners are called concurrently by all threads using query objects and must be
+ * thread safe. Exceptions thrown by a listener are thrown to the caller of the query method.
+ *
+ * @see QueryObjectFactory#setQueryListener(QueryListener)
+ * @see QueryMethod
+ * @since 1.2.1
+ */
+public interface QueryListener {
+
+    /**
+     * Called before the statement of a query method is prepared.
+     *
+     * @param method the query method
+     * @return a context object that is passed to the other events of the invocation or null
+     */
+    default Object beforePrepare(QueryMethod method) {
+        return null;
+    }
+
+    /**
+     * Called after the statement of a query method was prepared.
+     *
+     * @param method  the query method
+     * @param context the object returned by <code>beforePrepare</code>
+     * @param sql     the SQL statement after the expansion of array parameters and paging
+     */
+    default void prepared(QueryMethod method, Object context, String sql) {
+    }
+
+    /**
+     * Called after the statement of a query method was executed.
+     *
+     * @param method  the query method
+     * @param context the object returned by <code>beforePrepare</code>
+     */
+    default void afterExecute(QueryMethod method, Object context) {
+    }
+
+    /**
+     * Called after all rows of a select method were mapped.
+     *
+     * @param method   the query method
+     * @param context  the object returned by <code>beforePrepare</code>
+     * @param rowCount the number of mapped rows
+     */
+    default void rowsMapped(QueryMethod method, Object context, int rowCount) {
+    }
+
+    /**
+     * Called after a batch of an insert, update, delete or call method was executed.
+     *
+     * @param method    the query method
+     * @param context   the object returned by <code>beforePrepare</code>
+     * @param batchSize the number of statements in the batch
+     */
+    default void batchFlushed(QueryMethod method, Object context, int batchSize) {
+    }
+
+    /**
+     * Called if a query method fails.
+     *
+     * @param method    the query method
+     * @param context   the object returned by <code>beforePrepare</code>
+     * @param exception the exception thrown by the query method
+     */
+    default void failure(QueryMethod method, Object context, Throwable exception) {
+    }
+
+    /**
+     * Called before the last event of an invocation to decide if the arguments
+     * of the invocation are passed to <code>arguments</code>.
+     *
+     * @param method  the query method
+     * @param context the object returned by <code>beforePrepare</code>
+     * @return true if <code>arguments</code> should be called
+     */
+    default boolean isArgumentsRequired(QueryMethod method, Object context) {
+        return false;
+    }
+
+    /**
+     * Called with the arguments of an invocation if <code>isArgumentsRequired</code> returned true.
+     *
+     * @param method    the query method
+     * @param context   the object returned by <code>beforePrepare</code>
+     * @param arguments the arguments of the invocation, primitive values are boxed
+     */
+    default void arguments(QueryMethod method, Object context, Object[] arguments) {
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import org.objectweb.asm.Type;
+import uk.co.brunella.qof.mapping.QueryType;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Describes a query method of a generated query object.
+ * <p>
+ * There is exactly one instance for every query method of a generated query object
+ * class. It is passed to all events of a <code>QueryListener</code> and can be used
+ * as a key to collect data per query method.
+ *
+ * @see QueryListener
+ * @since 1.2.1
+ */
+public final class QueryMethod {
+
+    private final Class<?> queryDefinitionClass;
+    private final String methodName;
+    private final String methodDescriptor;
+    private final String sql;
+    private final QueryType queryType;
+    private final boolean streaming;
+
+    /**
+     * Internal - Creates a query method description. Called by generated query object classes.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @param methodName           the name of the method
+     * @param methodDescriptor     the descriptor of the method
+     * @param sql                  the SQL statement of the method
+     * @param queryType            the query type
+     */
+    public QueryMethod(Class<?> queryDefinitionClass, String methodName, String methodDescriptor, String sql,
+                       QueryType queryType) {
+        this.queryDefinitionClass = queryDefinitionClass;
+        this.methodName = methodName;
+        this.methodDescriptor = methodDescriptor;
+        this.sql = sql;
+        this.queryType = queryType;
+        this.streaming = queryType == QueryType.QUERY && isStreamingType(Type.getReturnType(methodDescriptor));
+    }
+
+    private static boolean isStreamingType(Type type) {
+        return type.equals(Type.getType(Stream.class)) || type.equals(Type.getType(Iterator.class))
+                || type.equals(Type.getType(Iterable.class)) || type.equals(Type.getType(CloseableIterator.class));
+    }
+
+    /**
+     * Returns the query definition class or interface that declares the method.
+     *
+     * @return query definition class or interface
+     */
+    public Class<?> getQueryDefinitionClass() {
+        return queryDefinitionClass;
+    }
+
+    /**
+     * Returns the name of the method.
+     *
+     * @return the method name
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Returns the descriptor of the method, for example <code>(ILjava/lang/String;)Ljava/util/List;</code>.
+     *
+     * @return the method descriptor
+     */
+    public String getMethodDescriptor() {
+        return methodDescriptor;
+    }
+
+    /**
+     * Returns the SQL statement of the method. Parameters are replaced by '?' and
+     * the statement is not yet expanded for array parameters or paging.
+     *
+     * @return the SQL statement
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the type of the query.
+     *
+     * @return the query type
+     */
+    public QueryType getQueryType() {
+        return queryType;
+    }
+
+    /**
+     * Returns true if the method is a select method that maps the rows lazily, i.e. it returns
+     * an <code>Iterator</code>, <code>Iterable</code>, <code>CloseableIterator</code> or
+     * <code>Stream</code>. <code>QueryListener.rowsMapped</code> is not called for these methods.
+     *
+     * @return true if the rows are mapped lazily
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Returns the class name, method name and parameter types,
+     * for example <code>com.example.PersonQueries.selectPerson(int)</code>.
+     *
+     * @return the method description
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(queryDefinitionClass.getName()).append('.').append(methodName).append('(');
+        Type[] argumentTypes = Type.getArgumentTypes(methodDescriptor);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(argumentTypes[i].getClassName());
+        }
+        return sb.append(')').toString();
+    }
+}
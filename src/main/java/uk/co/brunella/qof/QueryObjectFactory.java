@@ -23,6 +23,7 @@ import uk.co.brunella.qof.adapter.DynamicMappingAdapter;
 import uk.co.brunella.qof.adapter.GeneratorMappingAdapter;
 import uk.co.brunella.qof.adapter.MappingAdapter;
 import uk.co.brunella.qof.codegen.AnnotationMapperFactory;
+import uk.co.brunella.qof.codegen.InstanceFactoryGenerator;
 import uk.co.brunella.qof.codegen.QueryObjectGenerator;
 import uk.co.brunella.qof.codegen.enhancer.QueryObjectEnhancer;
 import uk.co.brunella.qof.customizer.Customizer;
@@ -33,14 +34,24 @@ import uk.co.brunella.qof.mapping.Mapper;
 import uk.co.brunella.qof.mapping.MappingFactory;
 import uk.co.brunella.qof.util.CallStackIntrospector;
 import uk.co.brunella.qof.util.ClassGenerationCache;
-import uk.co.brunella.qof.util.ObjectInstantiator;
+import uk.co.brunella.qof.util.ClassPathScanner;
+import uk.co.brunella.qof.util.InstanceFactory;
 
+import java.io.IOException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Used to create query object implementations from definition interfaces or classes.
@@ -84,8 +95,14 @@ import java.util.Map;
  * implementation one will wait till the generation of the class completes and then
  * just instantiate an object while the other thread is generating the class.</p>
  *
+ * <p> Together with the query object class a factory class is generated that
+ * instantiates query objects by calling the constructors directly without reflection.</p>
+ *
  * <p> The generation process can be customized by using a <code>Customizer</code></p>
  *
+ * <p> Query methods can be observed by registering a <code>QueryListener</code> before
+ * the query object classes are generated.</p>
+ *
  * @see BaseQuery
  * @see Query
  * @see Insert
@@ -99,6 +116,15 @@ public class QueryObjectFactory {
     private static final SQLDialect DEFAULT_SQL_DIALECT = new DefaultDialect();
     private static final Map<ClassLoader, Customizer> customizerMap = new HashMap<>();
     private static final Map<ClassLoader, SQLDialect> sqlDialectMap = new HashMap<>();
+    private static final Map<ClassLoader, QueryListener> queryListenerMap = new HashMap<>();
+    private static final List<Class<? extends Annotation>> QUERY_ANNOTATIONS =
+            Arrays.asList(Query.class, Insert.class, Update.class, Delete.class, Call.class);
+    private static final ClassValue<InstanceFactory<?>> instanceFactories = new ClassValue<InstanceFactory<?>>() {
+        @Override
+        protected InstanceFactory<?> computeValue(Class<?> type) {
+            return new InstanceFactoryGenerator().create(type);
+        }
+    };
 
     static {
         CommonAdapterRegistrar.registerCommonAdapters();
@@ -215,46 +241,217 @@ public class QueryObjectFactory {
         if ((queryDefinitionClass != superClass) && !queryDefinitionClass.isInterface()) {
             throw new RuntimeException("Invalid class hierarchy");
         }
-        @SuppressWarnings("unchecked") Class<T> clazz = (Class<T>) ClassGenerationCache.getCachedClass(queryDefinitionClass);
-        if (clazz == null) {
-            try {
-                List<Mapper> mappers = new ArrayList<>();
-                // get all public methods
-                for (Method method : queryDefinitionClass.getMethods()) {
-                    Mapper mapper = AnnotationMapperFactory.create(queryDefinitionClass, method);
-                    if (mapper != null) {
-                        mappers.add(mapper);
-                    }
+        Class<T> clazz = getQueryObjectClass(queryDefinitionClass, superClass);
+        @SuppressWarnings("unchecked") InstanceFactory<T> instanceFactory = (InstanceFactory<T>) instanceFactories.get(clazz);
+        return instanceFactory.newInstance(parameters);
+    }
+
+    /**
+     * Generates and caches the query object classes of query definitions in parallel.
+     *
+     * <p> This method can be called at startup to avoid generating the classes on the first
+     * use of a query object and to detect invalid query definitions early. The classes are
+     * generated in the common fork-join pool. If the generation of a class fails the
+     * remaining generations are cancelled and an exception is thrown.</p>
+     *
+     * @param queryDefinitionClasses query definition classes or interfaces
+     * @return the preload report with the generation times
+     * @throws RuntimeException the generation of a query object class failed, the cause is
+     *                          the original exception, e.g. a <code>ValidationException</code>
+     * @see #preload(String)
+     * @since 1.2.1
+     */
+    public static PreloadReport preload(Class<?>... queryDefinitionClasses) {
+        return preload(ForkJoinPool.commonPool(), Arrays.asList(queryDefinitionClasses));
+    }
+
+    /**
+     * Generates and caches the query object classes of all query definitions in a package
+     * and its sub packages in parallel.
+     *
+     * <p> Query definitions are interfaces and abstract classes that declare methods annotated
+     * with <code>&#64;Query</code>, <code>&#64;Insert</code>, <code>&#64;Update</code>,
+     * <code>&#64;Delete</code> or <code>&#64;Call</code>. The package is scanned in the
+     * class loader of the caller.</p>
+     *
+     * @param packageName name of the package to scan
+     * @return the preload report with the generation times
+     * @throws RuntimeException the class path could not be scanned or the generation of a query object class failed
+     * @see #preload(Class[])
+     * @since 1.2.1
+     */
+    public static PreloadReport preload(String packageName) {
+        ClassLoader classLoader = CallStackIntrospector.getCaller().getClassLoader();
+        List<Class<?>> queryDefinitionClasses = new ArrayList<>();
+        try {
+            for (String className : ClassPathScanner.findClassNames(classLoader, packageName)) {
+                Class<?> clazz;
+                try {
+                    clazz = Class.forName(className, false, classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // not loadable in this class loader
+                    continue;
                 }
-                // get all protected methods
-                for (Method method : queryDefinitionClass.getDeclaredMethods()) {
-                    if (Modifier.isProtected(method.getModifiers())) {
-                        Mapper mapper = AnnotationMapperFactory.create(queryDefinitionClass, method);
-                        if (mapper != null) {
-                            mappers.add(mapper);
-                        }
-                    }
+                if (isQueryDefinition(clazz)) {
+                    queryDefinitionClasses.add(clazz);
                 }
-                ClassLoader classLoader = queryDefinitionClass.getClassLoader();
-                Customizer customizer = customizerMap.get(classLoader);
-                if (customizer == null) {
-                    customizer = DEFAULT_CUSTOMIZER;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return preload(ForkJoinPool.commonPool(), queryDefinitionClasses);
+    }
+
+    private static PreloadReport preload(Executor executor, List<Class<?>> queryDefinitionClasses) {
+        long startTime = System.nanoTime();
+        Map<Class<?>, Long> generationTimes = new ConcurrentHashMap<>();
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        List<CompletableFuture<Void>> generations = new ArrayList<>();
+        for (Class<?> queryDefinitionClass : queryDefinitionClasses) {
+            CompletableFuture<Void> generation = CompletableFuture.runAsync(() -> {
+                long generationStartTime = System.nanoTime();
+                try {
+                    getQueryObjectClass(queryDefinitionClass,
+                            queryDefinitionClass.isInterface() ? Object.class : queryDefinitionClass);
+                } catch (RuntimeException | Error e) {
+                    throw new RuntimeException("Could not preload query definition " + queryDefinitionClass.getName(), e);
                 }
-                SQLDialect sqlDialect = sqlDialectMap.get(classLoader);
-                if (sqlDialect == null) {
-                    sqlDialect = DEFAULT_SQL_DIALECT;
+                generationTimes.put(queryDefinitionClass, System.nanoTime() - generationStartTime);
+            }, executor);
+            // fail fast without waiting for the other generations
+            generation.whenComplete((result, e) -> {
+                if (e != null) {
+                    failure.completeExceptionally(e);
                 }
-                clazz = new QueryObjectGenerator(customizer, sqlDialect).create(queryDefinitionClass, mappers, superClass);
+            });
+            generations.add(generation);
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(generations.toArray(new CompletableFuture<?>[0])), failure).join();
+        } catch (CompletionException e) {
+            for (CompletableFuture<Void> generation : generations) {
+                generation.cancel(false);
+            }
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+        Map<Class<?>, Long> orderedGenerationTimes = new LinkedHashMap<>();
+        for (Class<?> queryDefinitionClass : queryDefinitionClasses) {
+            orderedGenerationTimes.put(queryDefinitionClass, generationTimes.get(queryDefinitionClass));
+        }
+        return new PreloadReport(System.nanoTime() - startTime, orderedGenerationTimes);
+    }
 
-                clazz = new QueryObjectEnhancer().enhance(queryDefinitionClass, clazz);
+    private static boolean isQueryDefinition(Class<?> clazz) {
+        if (clazz.isAnnotation() || clazz.isEnum() || Modifier.isFinal(clazz.getModifiers())
+                || !(clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()))) {
+            return false;
+        }
+        try {
+            for (Method method : clazz.getDeclaredMethods()) {
+                for (Class<? extends Annotation> annotation : QUERY_ANNOTATIONS) {
+                    if (method.isAnnotationPresent(annotation)) {
+                        return true;
+                    }
+                }
+            }
+        } catch (LinkageError e) {
+            // referenced classes are not available
+        }
+        return false;
+    }
+
+    /*
+     * Returns the query object class from the cache, loads it if it was generated at build time or generates it.
+     */
+    static <T> Class<T> getQueryObjectClass(Class<T> queryDefinitionClass, Class<?> superClass) {
+        @SuppressWarnings("unchecked") Class<T> clazz = (Class<T>) ClassGenerationCache.getCachedClass(queryDefinitionClass);
+        if (clazz == null) {
+            try {
+                ClassLoader classLoader = queryDefinitionClass.getClassLoader();
+                QueryObjectGenerator generator = new QueryObjectGenerator(getCustomizer(classLoader), getSQLDialect(classLoader),
+                        getQueryListener(classLoader));
+                List<Mapper> mappers = createMappers(queryDefinitionClass);
+                clazz = loadPregeneratedClass(generator, queryDefinitionClass, superClass, mappers);
+                if (clazz == null) {
+                    clazz = generator.create(queryDefinitionClass, mappers, superClass);
+
+                    clazz = new QueryObjectEnhancer().enhance(queryDefinitionClass, clazz);
+                }
+                // generate the instance factory before other threads can see the class
+                instanceFactories.get(clazz);
                 // put the newly created class
                 ClassGenerationCache.putCachedClass(clazz, queryDefinitionClass);
-            } catch (RuntimeException e) {
+            } catch (RuntimeException | Error e) {
+                // release threads waiting for the generation
                 ClassGenerationCache.putCachedClass(null, queryDefinitionClass);
                 throw e;
             }
         }
-        return ObjectInstantiator.newInstance(clazz, parameters);
+        return clazz;
+    }
+
+    private static List<Mapper> createMappers(Class<?> queryDefinitionClass) {
+        List<Mapper> mappers = new ArrayList<>();
+        // get all public methods
+        for (Method method : queryDefinitionClass.getMethods()) {
+            Mapper mapper = AnnotationMapperFactory.create(queryDefinitionClass, method);
+            if (mapper != null) {
+                mappers.add(mapper);
+            }
+        }
+        // get all protected methods
+        for (Method method : queryDefinitionClass.getDeclaredMethods()) {
+            if (Modifier.isProtected(method.getModifiers())) {
+                Mapper mapper = AnnotationMapperFactory.create(queryDefinitionClass, method);
+                if (mapper != null) {
+                    mappers.add(mapper);
+                }
+            }
+        }
+        return mappers;
+    }
+
+    /*
+     * Returns the query object class generated at build time or null if it is not available.
+     */
+    private static <T> Class<T> loadPregeneratedClass(QueryObjectGenerator generator, Class<T> queryDefinitionClass,
+                                                      Class<?> superClass, List<Mapper> mappers) {
+        Class<?> clazz = ClassGenerationCache.getPregeneratedClass(
+                generator.getCustomizer().getClassName(queryDefinitionClass), queryDefinitionClass.getClassLoader());
+        if (clazz == null) {
+            return null;
+        }
+        // the class name is taken and the class cannot be generated again
+        if (clazz.getSuperclass() != superClass || !queryDefinitionClass.isAssignableFrom(clazz)
+                || !generator.initializePregeneratedClass(queryDefinitionClass, clazz, mappers)) {
+            throw new RuntimeException("Pregenerated class " + clazz.getName() + " does not match query definition "
+                    + queryDefinitionClass.getName() + ", SQL dialect or customizer");
+        }
+        @SuppressWarnings("unchecked") Class<T> queryObjectClass = (Class<T>) clazz;
+        QueryObjectEnhancer enhancer = new QueryObjectEnhancer();
+        Class<T> enhancedClass = enhancer.findPregeneratedClass(queryDefinitionClass, queryObjectClass);
+        return enhancedClass != null ? enhancedClass : enhancer.enhance(queryDefinitionClass, queryObjectClass);
+    }
+
+    private static synchronized Customizer getCustomizer(ClassLoader classLoader) {
+        Customizer customizer = customizerMap.get(classLoader);
+        return customizer == null ? DEFAULT_CUSTOMIZER : customizer;
+    }
+
+    private static synchronized SQLDialect getSQLDialect(ClassLoader classLoader) {
+        SQLDialect sqlDialect = sqlDialectMap.get(classLoader);
+        return sqlDialect == null ? DEFAULT_SQL_DIALECT : sqlDialect;
+    }
+
+    private static synchronized QueryListener getQueryListener(ClassLoader classLoader) {
+        return queryListenerMap.get(classLoader);
     }
 
     /**
@@ -268,7 +465,7 @@ public class QueryObjectFactory {
         setCustomizer(classLoader, customizer);
     }
 
-    private static synchronized void setCustomizer(ClassLoader classLoader, Customizer customizer) {
+    static synchronized void setCustomizer(ClassLoader classLoader, Customizer customizer) {
         customizerMap.put(classLoader, customizer);
     }
 
@@ -347,7 +544,31 @@ public class QueryObjectFactory {
         setSQLDialect(classLoader, dialect);
     }
 
-    private static synchronized void setSQLDialect(ClassLoader classLoader, SQLDialect dialect) {
+    static synchronized void setSQLDialect(ClassLoader classLoader, SQLDialect dialect) {
         sqlDialectMap.put(classLoader, dialect);
     }
+
+    /**
+     * Sets the <code>QueryListener</code> that receives the events of query methods.
+     *
+     * <p> The listener is only used by query object classes that are generated after it was
+     * set. Classes that were generated before keep the listener they were generated with.
+     * Setting <code>null</code> removes the listener.</p>
+     *
+     * @param listener a query listener or null
+     * @see QueryListener
+     * @since 1.2.1
+     */
+    public static void setQueryListener(QueryListener listener) {
+        ClassLoader classLoader = CallStackIntrospector.getCaller().getClassLoader();
+        setQueryListener(classLoader, listener);
+    }
+
+    static synchronized void setQueryListener(ClassLoader classLoader, QueryListener listener) {
+        if (listener == null) {
+            queryListenerMap.remove(classLoader);
+        } else {
+            queryListenerMap.put(classLoader, listener);
+        }
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import uk.co.brunella.qof.customizer.Customizer;
+import uk.co.brunella.qof.dialect.SQLDialect;
+import uk.co.brunella.qof.util.DefineClassHelper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates query object classes at build time.
+ *
+ * <p> The generated classes are written as class files to an output directory,
+ * usually the output directory of the compiler, and are packaged with the query
+ * definition classes. At runtime <code>QueryObjectFactory</code> loads these classes
+ * instead of generating them, which reduces startup time and does not require
+ * access to <code>ClassLoader.defineClass</code>. Query definitions without
+ * pregenerated classes are still generated at runtime.</p>
+ *
+ * <p> The pregenerator can be run after the compilation with the exec-maven-plugin:</p>
+ *
+ * <blockquote><pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;uk.co.brunella.qof.QueryObjectPregenerator&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *                     &lt;argument&gt;com.example.PersonQueries&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre></blockquote>
+ *
+ * <p> The customizer and SQL dialect used at build time must be the same as at runtime.
+ * They can be specified with the <code>-customizer</code> and <code>-dialect</code> options
+ * followed by a class name with a default constructor. The generated classes contain a
+ * fingerprint of the SQL dialect and the query methods. A pregenerated class that was
+ * generated with another dialect or is out of date with its query definition is rejected
+ * by <code>QueryObjectFactory</code>.</p>
+ *
+ * <p> Calls to a <code>QueryListener</code> are only generated if the <code>-listener</code>
+ * option is given. The listener class is only used to generate the classes; at runtime the
+ * generated classes call the listener registered with <code>QueryObjectFactory</code>.</p>
+ *
+ * @see QueryObjectFactory
+ * @since 1.2.1
+ */
+public final class QueryObjectPregenerator {
+
+    private QueryObjectPregenerator() {
+    }
+
+    /**
+     * Generates query object classes and writes them to an output directory.
+     *
+     * <pre>
+     * QueryObjectPregenerator [-customizer class] [-dialect class] [-listener class] outputDirectory queryDefinitionClass...
+     * </pre>
+     *
+     * @param args command line arguments
+     * @throws Exception generation failed
+     */
+    public static void main(String[] args) throws Exception {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        int i = 0;
+        while (i < args.length - 1 && args[i].startsWith("-")) {
+            if ("-customizer".equals(args[i])) {
+                QueryObjectFactory.setCustomizer(classLoader,
+                        (Customizer) classLoader.loadClass(args[i + 1]).getDeclaredConstructor().newInstance());
+            } else if ("-dialect".equals(args[i])) {
+                QueryObjectFactory.setSQLDialect(classLoader,
+                        (SQLDialect) classLoader.loadClass(args[i + 1]).getDeclaredConstructor().newInstance());
+            } else if ("-listener".equals(args[i])) {
+                QueryObjectFactory.setQueryListener(classLoader,
+                        (QueryListener) classLoader.loadClass(args[i + 1]).getDeclaredConstructor().newInstance());
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i += 2;
+        }
+        if (args.length - i < 2) {
+            throw new IllegalArgumentException("Usage: QueryObjectPregenerator [-customizer class] [-dialect class] "
+                    + "[-listener class] outputDirectory queryDefinitionClass...");
+        }
+        File outputDirectory = new File(args[i++]);
+        List<Class<?>> queryDefinitionClasses = new ArrayList<>();
+        for (; i < args.length; i++) {
+            queryDefinitionClasses.add(Class.forName(args[i], false, classLoader));
+        }
+        List<String> classNames = generate(outputDirectory, queryDefinitionClasses.toArray(new Class<?>[0]));
+        System.out.println("Generated " + classNames.size() + " classes for " + queryDefinitionClasses.size()
+                + " query definitions in " + outputDirectory);
+    }
+
+    /**
+     * Generates query object classes and writes them to an output directory.
+     *
+     * <p> The query object classes are generated with the customizer, SQL dialect and query listener
+     * registered for the class loader of the query definition class. Query definitions
+     * must not have been used to create query objects before in the same class loader.</p>
+     *
+     * @param outputDirectory        root directory of the class files
+     * @param queryDefinitionClasses query definition classes or interfaces
+     * @return names of the generated classes
+     * @throws IOException writing a class file failed
+     */
+    public static List<String> generate(File outputDirectory, Class<?>... queryDefinitionClasses) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (Class<?> queryDefinitionClass : queryDefinitionClasses) {
+            Map<String, byte[]> classes;
+            DefineClassHelper.startRecording();
+            try {
+                Class<?> superClass = queryDefinitionClass.isInterface() ? Object.class : queryDefinitionClass;
+                QueryObjectFactory.getQueryObjectClass(queryDefinitionClass, superClass);
+            } finally {
+                classes = DefineClassHelper.stopRecording();
+            }
+            if (classes.isEmpty()) {
+                throw new IllegalStateException("Query object class for " + queryDefinitionClass.getName()
+                        + " was already generated");
+            }
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                writeClassFile(outputDirectory, entry.getKey(), entry.getValue());
+                classNames.add(entry.getKey());
+            }
+        }
+        return classNames;
+    }
+
+    private static void writeClassFile(File outputDirectory, String className, byte[] byteCode) throws IOException {
+        File file = new File(outputDirectory, className.replace('.', File.separatorChar) + ".class");
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Could not create directory " + file.getParentFile());
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(byteCode);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import uk.co.brunella.qof.exception.UncheckedSQLException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helper class used by generated query objects to map the rows of an
+ * open result set lazily.
+ * <p>
+ * The iterator owns the result set, the statement and the connection.
+ * They are closed (or the statement is returned to the statement cache) and
+ * the connection is returned with <code>ungetConnection</code>
+ * when the iterator is closed, when the last row was read or when the
+ * mapping of a row failed. Instances are not thread safe.
+ *
+ * @param <T> the type of the mapped rows
+ * @see CloseableIterator
+ * @since 1.2.1
+ */
+public class ResultSetIterator<T> implements CloseableIterator<T> {
+
+    private final BaseQuery queryObject;
+    private final ResultSetRowMapper rowMapper;
+    private final int rowMapperId;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final StatementCache statementCache;
+    private boolean rowFetched;
+    private boolean hasRow;
+    private boolean closed;
+
+    /**
+     * Creates a ResultSetIterator.
+     *
+     * @param queryObject    the query object the connection was obtained from
+     * @param rowMapper      the row mapper
+     * @param rowMapperId    the id passed to the row mapper
+     * @param connection     the connection
+     * @param statement      the statement
+     * @param resultSet      the result set
+     * @param statementCache the statement cache the statement was borrowed from or null
+     */
+    public ResultSetIterator(BaseQuery queryObject, ResultSetRowMapper rowMapper, int rowMapperId,
+                             Connection connection, PreparedStatement statement, ResultSet resultSet,
+                             StatementCache statementCache) {
+        this.queryObject = queryObject;
+        this.rowMapper = rowMapper;
+        this.rowMapperId = rowMapperId;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.statementCache = statementCache;
+    }
+
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!rowFetched) {
+            try {
+                hasRow = resultSet.next();
+            } catch (SQLException e) {
+                throw closeAfterFailure(new UncheckedSQLException(e));
+            }
+            rowFetched = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        rowFetched = false;
+        try {
+            return (T) rowMapper.mapRow(rowMapperId, resultSet);
+        } catch (SQLException e) {
+            throw closeAfterFailure(new UncheckedSQLException(e));
+        } catch (RuntimeException e) {
+            throw closeAfterFailure(e);
+        }
+    }
+
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /**
+     * Returns a sequential stream over the remaining rows. Closing the stream
+     * closes this iterator.
+     *
+     * @return the stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            try {
+                resultSet.close();
+            } finally {
+                try {
+                    if (statementCache == null) {
+                        statement.close();
+                    } else {
+                        statementCache.releaseStatement(statement);
+                    }
+                } finally {
+                    queryObject.ungetConnection(connection);
+                }
+            }
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private RuntimeException closeAfterFailure(RuntimeException exception) {
+        try {
+            close();
+        } catch (RuntimeException e) {
+            exception.addSuppressed(e);
+        }
+        return exception;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Internal - ResultSetRowMapper is implemented by generated query objects
+ * that contain query methods with a lazy return type like <code>Stream</code>,
+ * <code>Iterator</code> or <code>Iterable</code>.
+ *
+ * @see ResultSetIterator
+ * @since 1.2.1
+ */
+public interface ResultSetRowMapper {
+
+    /**
+     * Maps the current row of a result set.
+     *
+     * @param rowMapperId the id of the query method the row belongs to
+     * @param resultSet   the result set positioned on the row to map
+     * @return the mapped row
+     * @throws SQLException thrown if the mapping fails
+     */
+    Object mapRow(int rowMapperId, ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.sql.SQLException;
+
+/**
+ * A callback that receives the mapped rows of a query method one by one.
+ * <p>
+ * Query methods that take a <code>RowHandler</code> (or a
+ * <code>java.util.function.Consumer</code>) parameter do not build a result
+ * collection. Each row is mapped and passed to the handler while the result
+ * set is read. The return type of such a method is <code>void</code> or
+ * <code>int</code>, in which case the number of rows is returned.
+ * <p>
+ * <pre>
+ * &#64;Query(sql = "select id {%%.id}, name {%%.name} from person")
+ * int processPersons(RowHandler&lt;Person&gt; handler) throws SQLException;
+ * </pre>
+ * If <code>reuseResultObject</code> is set in the <code>Query</code> annotation
+ * the same result object is refilled for every row and must not be kept by
+ * the handler.
+ *
+ * @param <T> the type of the mapped rows
+ * @see Query#reuseResultObject()
+ * @since 1.2.1
+ */
+public interface RowHandler<T> {
+
+    /**
+     * Called for every row of the result set.
+     *
+     * @param row the mapped row
+     * @throws SQLException to abort the query
+     */
+    void handleRow(T row) throws SQLException;
+}
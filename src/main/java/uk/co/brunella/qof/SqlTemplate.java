@@ -0,0 +1,218 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Internal - A precompiled SQL statement with array parameters.
+ * <p>
+ * The positions of the parameters '?' that are expanded for array arguments
+ * are computed once when the query object class is generated. At runtime
+ * the SQL statement for the lengths of the array arguments is assembled in
+ * a single pass and cached. The result is the same as calling
+ * <code>ParameterReplacer.replace</code> for every array argument.
+ *
+ * @see ParameterReplacer
+ * @since 1.2.1
+ */
+public class SqlTemplate {
+
+    private static final int MAX_DIRECT_CACHE_SIZE = 64;
+    private static final int MAX_CACHE_SIZE = 256;
+
+    private final String sql;
+    private final String[] fragments;
+    private final String[] separators;
+    private final int[] slots;
+    private final String[] directCache;
+    private final Map<Lengths, String> cache;
+
+    /**
+     * Creates a SQL template.
+     *
+     * @param sql              the SQL statement
+     * @param parameterIndexes the indexes of the parameters '?' to expand in ascending order
+     * @param separators       the separators used between the arguments of each parameter
+     */
+    public SqlTemplate(String sql, int[] parameterIndexes, String[] separators) {
+        if (parameterIndexes.length != separators.length) {
+            throw new IllegalArgumentException("Number of parameter indexes and separators differ");
+        }
+        this.sql = sql;
+        int[] positions = findParameterPositions(sql, parameterIndexes);
+        int numFragments = 0;
+        for (int position : positions) {
+            if (position >= 0) {
+                numFragments++;
+            }
+        }
+        this.fragments = new String[numFragments + 1];
+        this.separators = new String[numFragments];
+        this.slots = new int[parameterIndexes.length];
+        int start = 0;
+        int fragment = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] >= 0) {
+                fragments[fragment] = sql.substring(start, positions[i] + 1);
+                this.separators[fragment] = separators[i] + "?";
+                slots[i] = fragment;
+                start = positions[i] + 1;
+                fragment++;
+            } else {
+                slots[i] = -1;
+            }
+        }
+        fragments[fragment] = sql.substring(start);
+        if (parameterIndexes.length == 1) {
+            directCache = new String[MAX_DIRECT_CACHE_SIZE];
+            cache = null;
+        } else {
+            directCache = null;
+            cache = new ConcurrentHashMap<>();
+        }
+    }
+
+    private static int[] findParameterPositions(String sql, int[] parameterIndexes) {
+        int[] positions = new int[parameterIndexes.length];
+        Arrays.fill(positions, -1);
+        int currentIndex = 0;
+        int next = 0;
+        int i = 0;
+        while (i < sql.length() && next < parameterIndexes.length) {
+            char c = sql.charAt(i);
+            if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+                // skip until end of comment
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    break;
+                }
+                i = end + 2;
+                continue;
+            }
+            if (c == '?') {
+                currentIndex++;
+                while (next < parameterIndexes.length && parameterIndexes[next] < currentIndex) {
+                    next++;
+                }
+                if (next < parameterIndexes.length && parameterIndexes[next] == currentIndex) {
+                    positions[next++] = i;
+                }
+            }
+            i++;
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the SQL statement for a single array parameter.
+     *
+     * @param numArgs number of arguments of the array parameter
+     * @return the SQL statement
+     */
+    public String expand(int numArgs) {
+        if (directCache != null && numArgs >= 0 && numArgs < MAX_DIRECT_CACHE_SIZE) {
+            String expandedSql = directCache[numArgs];
+            if (expandedSql == null) {
+                expandedSql = build(new int[]{numArgs});
+                directCache[numArgs] = expandedSql;
+            }
+            return expandedSql;
+        }
+        return expand(new int[]{numArgs});
+    }
+
+    /**
+     * Returns the SQL statement for a number of array parameters.
+     *
+     * @param numArgs number of arguments of each array parameter
+     * @return the SQL statement
+     */
+    public String expand(int[] numArgs) {
+        if (cache == null) {
+            return build(numArgs);
+        }
+        Lengths key = new Lengths(numArgs);
+        String expandedSql = cache.get(key);
+        if (expandedSql == null) {
+            expandedSql = build(numArgs);
+            if (cache.size() < MAX_CACHE_SIZE) {
+                cache.put(key, expandedSql);
+            }
+        }
+        return expandedSql;
+    }
+
+    private String build(int[] numArgs) {
+        if (numArgs.length != slots.length) {
+            throw new IllegalArgumentException("Expected " + slots.length + " array lengths but got " + numArgs.length);
+        }
+        int length = sql.length();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] >= 0 && numArgs[i] > 1) {
+                length += (numArgs[i] - 1) * separators[slots[i]].length();
+            }
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            if (slot >= 0) {
+                sb.append(fragments[slot]);
+                String separator = separators[slot];
+                for (int j = 1; j < numArgs[i]; j++) {
+                    sb.append(separator);
+                }
+            }
+        }
+        sb.append(fragments[fragments.length - 1]);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the SQL statement of the template.
+     *
+     * @return the SQL statement
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    private static final class Lengths {
+
+        private final int[] lengths;
+        private final int hashCode;
+
+        Lengths(int[] lengths) {
+            this.lengths = lengths.clone();
+            this.hashCode = Arrays.hashCode(lengths);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Lengths && Arrays.equals(lengths, ((Lengths) o).lengths);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
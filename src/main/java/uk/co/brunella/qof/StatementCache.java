@@ -0,0 +1,337 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache for prepared statements shared by generated query objects.
+ * <p>
+ * Statements are cached per connection, SQL statement, result set type and
+ * whether they return generated keys.
+ * Generated query objects borrow a statement from the cache instead of
+ * preparing it and return it to the cache instead of closing it. If the
+ * cache holds more than the maximum number of statements the least recently
+ * used statement is closed.
+ * <p>
+ * A statement cache is enabled with a <code>StatementCacheCustomizer</code>:
+ * <p>
+ * <pre>
+ * StatementCache cache = new StatementCache(200);
+ * QueryObjectFactory.setCustomizer(new StatementCacheCustomizer(cache));
+ * </pre>
+ * Statements of a connection should be closed with <code>closeStatements(Connection)</code>
+ * before the connection is closed.
+ *
+ * @see uk.co.brunella.qof.customizer.StatementCacheCustomizer
+ * @since 1.2.1
+ */
+public class StatementCache {
+
+    /**
+     * Default maximum number of cached statements.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+    private final Map<PreparedStatement, Key> borrowedStatements = new IdentityHashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a statement cache with the default maximum size.
+     */
+    public StatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a statement cache.
+     *
+     * @param maxSize the maximum number of cached statements
+     */
+    public StatementCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be greater than zero");
+        }
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a cached statement or prepares a new statement.
+     *
+     * @param connection the connection
+     * @param sql        the SQL statement
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        return prepareStatement(connection, sql, ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * Returns a cached statement or prepares a new statement.
+     *
+     * @param connection    the connection
+     * @param sql           the SQL statement
+     * @param resultSetType the result set type
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepareStatement(Connection connection, String sql, int resultSetType) throws SQLException {
+        return prepareStatement(new Key(connection, sql, resultSetType, false));
+    }
+
+    /**
+     * Returns a cached statement or prepares a new statement that returns generated keys.
+     *
+     * @param connection the connection
+     * @param sql        the SQL statement
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     * @see Statement#RETURN_GENERATED_KEYS
+     */
+    public PreparedStatement prepareStatementReturningGeneratedKeys(Connection connection, String sql) throws SQLException {
+        return prepareStatement(new Key(connection, sql, ResultSet.TYPE_FORWARD_ONLY, true));
+    }
+
+    private PreparedStatement prepareStatement(Key key) throws SQLException {
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = statements.remove(key);
+        }
+        if (statement != null && statement.isClosed()) {
+            statement = null;
+        }
+        if (statement == null) {
+            if (key.returnGeneratedKeys) {
+                statement = key.connection.prepareStatement(key.sql, Statement.RETURN_GENERATED_KEYS);
+            } else if (key.resultSetType == ResultSet.TYPE_FORWARD_ONLY) {
+                statement = key.connection.prepareStatement(key.sql);
+            } else {
+                statement = key.connection.prepareStatement(key.sql, key.resultSetType, ResultSet.CONCUR_READ_ONLY);
+            }
+            synchronized (this) {
+                misses++;
+                borrowedStatements.put(statement, key);
+            }
+        } else {
+            synchronized (this) {
+                hits++;
+                borrowedStatements.put(statement, key);
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Returns a borrowed statement to the cache. The statement is closed if
+     * the cache already holds a statement for the same key or if the statement
+     * was not borrowed from this cache.
+     *
+     * @param statement the statement
+     * @throws SQLException if closing a statement fails
+     */
+    public void releaseStatement(PreparedStatement statement) throws SQLException {
+        PreparedStatement evictedStatement = null;
+        boolean close = false;
+        synchronized (this) {
+            Key key = borrowedStatements.remove(statement);
+            if (key == null || statements.containsKey(key)) {
+                close = true;
+            } else {
+                statements.put(key, statement);
+                if (statements.size() > maxSize) {
+                    Iterator<PreparedStatement> iterator = statements.values().iterator();
+                    evictedStatement = iterator.next();
+                    iterator.remove();
+                    evictions++;
+                }
+            }
+        }
+        try {
+            if (close) {
+                statement.close();
+            }
+        } finally {
+            if (evictedStatement != null) {
+                evictedStatement.close();
+            }
+        }
+    }
+
+    /**
+     * Closes a borrowed statement without returning it to the cache.
+     *
+     * @param statement the statement
+     * @throws SQLException if closing the statement fails
+     */
+    public void closeStatement(PreparedStatement statement) throws SQLException {
+        synchronized (this) {
+            borrowedStatements.remove(statement);
+        }
+        statement.close();
+    }
+
+    /**
+     * Closes and removes all cached statements of a connection.
+     *
+     * @param connection the connection
+     * @throws SQLException if closing a statement fails
+     */
+    public void closeStatements(Connection connection) throws SQLException {
+        List<PreparedStatement> removedStatements = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Key, PreparedStatement>> iterator = statements.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Key, PreparedStatement> entry = iterator.next();
+                if (entry.getKey().connection == connection) {
+                    removedStatements.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        close(removedStatements);
+    }
+
+    /**
+     * Closes and removes all cached statements.
+     *
+     * @throws SQLException if closing a statement fails
+     */
+    public void clear() throws SQLException {
+        List<PreparedStatement> removedStatements;
+        synchronized (this) {
+            removedStatements = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+        close(removedStatements);
+    }
+
+    private void close(List<PreparedStatement> statementsToClose) throws SQLException {
+        SQLException exception = null;
+        for (PreparedStatement statement : statementsToClose) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached statements.
+     *
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of cached statements.
+     *
+     * @return the number of cached statements
+     */
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * Returns the number of statements that were taken from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of statements that had to be prepared.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of statements that were closed because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static final class Key {
+
+        private final Connection connection;
+        private final String sql;
+        private final int resultSetType;
+        private final boolean returnGeneratedKeys;
+
+        Key(Connection connection, String sql, int resultSetType, boolean returnGeneratedKeys) {
+            this.connection = connection;
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.returnGeneratedKeys = returnGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            // connections are compared by identity
+            return connection == key.connection && resultSetType == key.resultSetType
+                    && returnGeneratedKeys == key.returnGeneratedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * System.identityHashCode(connection) + sql.hashCode()) + resultSetType)
+                    + (returnGeneratedKeys ? 1 : 0);
+        }
+    }
+}
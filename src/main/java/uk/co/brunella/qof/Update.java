@@ -41,6 +41,14 @@ import java.lang.annotation.*;
  * int[] updatePersonNames(List&lt;Integer&gt; idList, List&lt;String&gt; nameList);
  * </pre></blockquote>
  *
+ * <p> Collection parameters can also be <code>Iterator</code>, <code>Iterable</code> or <code>Stream</code>.
+ * The return type <code>long</code> returns the total update count.
+ *
+ * <p> Methods returning <code>long</code> or <code>long[]</code> execute the statements with
+ * <code>executeLargeUpdate</code> or <code>executeLargeBatch</code>, so update counts above
+ * <code>Integer.MAX_VALUE</code> are returned correctly. Drivers without support for these methods
+ * fall back to <code>executeUpdate</code> and <code>executeBatch</code>.
+ *
  * @see SqlParser
  */
 @Retention(RetentionPolicy.RUNTIME)
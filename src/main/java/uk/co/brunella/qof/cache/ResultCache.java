@@ -0,0 +1,587 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.cache;
+
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The result cache of a query method annotated with <code>&#64;Cached</code>.
+ * <p>
+ * Results are cached by the argument values of the query method. Lookups and updates
+ * do not lock the cache. If the cache holds more than the maximum number of entries or
+ * exceeds the maximum weight one thread evicts expired and least recently used entries
+ * until the cache is 10% below the limits while other threads continue to use the cache.
+ * <p>
+ * Successful writes of generated insert, update and delete methods invalidate the caches
+ * of the query methods that read from the written tables. If the connection is not in auto-commit
+ * mode the caches are invalidated again when the transaction of the session is committed or rolled
+ * back. Until then no results are added to the caches of the written tables, so uncommitted data
+ * is never served to other threads or connections. Writes that are not
+ * executed by query objects must invalidate the caches with <code>invalidateTables()</code>.
+ * Connections that are not managed by a session context must call <code>transactionCompleted()</code>
+ * after the commit or rollback.
+ * <p>
+ * The caches of all cached query methods can be found with <code>getCaches()</code>:
+ * <p>
+ * <pre>
+ * for (ResultCache cache : ResultCache.getCaches(CurrencyQueries.class)) {
+ *     System.out.println(cache + " hits: " + cache.getHitCount() + " misses: " + cache.getMissCount());
+ * }
+ * </pre>
+ *
+ * @see uk.co.brunella.qof.Cached
+ * @since 1.2.1
+ */
+public final class ResultCache {
+
+    /**
+     * Internal - Returned by <code>get</code> if the cache does not contain a result.
+     */
+    public static final Object MISS = new Object();
+
+    private static final Object NULL_VALUE = new Object();
+    // only update the access time of an entry once per millisecond to reduce contention
+    private static final long ACCESS_TIME_RESOLUTION = TimeUnit.MILLISECONDS.toNanos(1);
+    // the registry, table index and pending invalidations are guarded by caches
+    private static final Set<ResultCache> caches = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Map<String, Set<ResultCache>> cachesByTableName = new HashMap<>();
+    private static final Map<Connection, Set<String>> pendingTableNames = new WeakHashMap<>();
+
+    private final Class<?> queryDefinitionClass;
+    private final String methodName;
+    private final String methodDescriptor;
+    private final String[] tableNames;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    private ResultCache(Class<?> queryDefinitionClass, String methodName, String methodDescriptor,
+                        String[] tableNames, long ttlNanos, int maxEntries, long maxWeight) {
+        this.queryDefinitionClass = queryDefinitionClass;
+        this.methodName = methodName;
+        this.methodDescriptor = methodDescriptor;
+        this.tableNames = tableNames;
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Internal - Creates and registers the result cache of a query method. Called by generated query object classes.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @param methodName           the name of the method
+     * @param methodDescriptor     the descriptor of the method
+     * @param tableNames           the names of the tables the method reads from
+     * @param ttlNanos             the time to live in nanoseconds or 0
+     * @param maxEntries           the maximum number of entries
+     * @param maxWeight            the maximum weight or 0
+     * @return the result cache
+     */
+    public static ResultCache create(Class<?> queryDefinitionClass, String methodName, String methodDescriptor,
+                                     String[] tableNames, long ttlNanos, int maxEntries, long maxWeight) {
+        ResultCache cache = new ResultCache(queryDefinitionClass, methodName, methodDescriptor, tableNames,
+                ttlNanos, maxEntries, maxWeight);
+        synchronized (caches) {
+            caches.add(cache);
+            for (String tableName : tableNames) {
+                cachesByTableName.computeIfAbsent(normalizeTableName(tableName),
+                        name -> Collections.newSetFromMap(new WeakHashMap<>())).add(cache);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Invalidates the caches of the query methods that read from the tables.
+     * Table names are compared case-insensitive and without schema.
+     *
+     * @param tableNames the names of the tables
+     */
+    public static void invalidateTables(String... tableNames) {
+        for (String tableName : tableNames) {
+            for (ResultCache cache : getCachesByTableName(normalizeTableName(tableName))) {
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Internal - Invalidates the caches of the query methods that read from the table after a successful
+     * write. Called by generated query object classes.
+     * <p>
+     * If the connection is not in auto-commit mode the caches are invalidated again
+     * when <code>transactionCompleted()</code> is called for the connection.
+     *
+     * @param connection the connection used to write to the table
+     * @param tableName  the lower case name of the table
+     * @throws SQLException if the auto-commit mode of the connection cannot be read
+     */
+    public static void tableWritten(Connection connection, String tableName) throws SQLException {
+        List<ResultCache> dependentCaches = getCachesByTableName(tableName);
+        if (dependentCaches.isEmpty()) {
+            return;
+        }
+        for (ResultCache cache : dependentCaches) {
+            cache.invalidateAll();
+        }
+        if (!connection.getAutoCommit()) {
+            synchronized (caches) {
+                pendingTableNames.computeIfAbsent(connection, c -> new HashSet<>()).add(tableName);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the caches of the query methods that read from tables that were written
+     * with the connection since the last call. Called by the session context after a commit or rollback.
+     * Must be called after the commit or rollback of connections that are not managed by
+     * a session context.
+     *
+     * @param connection the connection
+     */
+    public static void transactionCompleted(Connection connection) {
+        Set<String> tableNames;
+        synchronized (caches) {
+            if (pendingTableNames.isEmpty()) {
+                return;
+            }
+            tableNames = pendingTableNames.remove(connection);
+        }
+        if (tableNames != null) {
+            for (String tableName : tableNames) {
+                for (ResultCache cache : getCachesByTableName(tableName)) {
+                    cache.invalidateAll();
+                }
+            }
+        }
+    }
+
+    private static List<ResultCache> getCachesByTableName(String tableName) {
+        synchronized (caches) {
+            Set<ResultCache> tableCaches = cachesByTableName.get(tableName);
+            return tableCaches == null ? Collections.emptyList() : new ArrayList<>(tableCaches);
+        }
+    }
+
+    private static String normalizeTableName(String tableName) {
+        return tableName.substring(tableName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the result caches of all cached query methods.
+     *
+     * @return the result caches
+     */
+    public static List<ResultCache> getCaches() {
+        synchronized (caches) {
+            return new ArrayList<>(caches);
+        }
+    }
+
+    /**
+     * Returns the result caches of the cached query methods of a query definition class.
+     * If the query definition class is used in more than one class loader the caches of
+     * all class loaders are returned.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @return the result caches
+     */
+    public static List<ResultCache> getCaches(Class<?> queryDefinitionClass) {
+        List<ResultCache> result = new ArrayList<>();
+        for (ResultCache cache : getCaches()) {
+            if (cache.queryDefinitionClass == queryDefinitionClass) {
+                result.add(cache);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the query definition class or interface that declares the cached method.
+     *
+     * @return query definition class or interface
+     */
+    public Class<?> getQueryDefinitionClass() {
+        return queryDefinitionClass;
+    }
+
+    /**
+     * Returns the name of the cached method.
+     *
+     * @return the method name
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Returns the descriptor of the cached method.
+     *
+     * @return the method descriptor
+     */
+    public String getMethodDescriptor() {
+        return methodDescriptor;
+    }
+
+    /**
+     * Returns the names of the tables the cached method reads from.
+     *
+     * @return the lower case table names
+     */
+    public String[] getTableNames() {
+        return tableNames.clone();
+    }
+
+    /**
+     * Internal - Returns the cached result for the arguments of the query method.
+     *
+     * @param arguments the arguments of the query method
+     * @return the cached result or <code>MISS</code>
+     */
+    public Object get(Object[] arguments) {
+        Key key = new Key(arguments);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long now = System.nanoTime();
+            if (ttlNanos > 0 && now - entry.expirationTime >= 0) {
+                if (remove(key, entry)) {
+                    expirationCount.increment();
+                }
+            } else {
+                if (now - entry.accessTime > ACCESS_TIME_RESOLUTION) {
+                    entry.accessTime = now;
+                }
+                hitCount.increment();
+                return entry.value == NULL_VALUE ? null : entry.value;
+            }
+        }
+        missCount.increment();
+        return MISS;
+    }
+
+    /**
+     * Internal - Returns the version of the cache that is passed to <code>put</code>.
+     * The version changes if the cache is invalidated.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Internal - Adds the result of the query method for the arguments to the cache.
+     * The result is not added if the cache was invalidated since <code>getVersion</code>
+     * was called before the query was executed or if a transaction that wrote to one of
+     * the tables of the cache is not completed yet.
+     *
+     * @param arguments the arguments of the query method
+     * @param result    the result
+     * @param version   the version of the cache before the query was executed
+     */
+    public void put(Object[] arguments, Object result, long version) {
+        if (this.version.get() != version || hasPendingWrites()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Key key = new Key(copyArrays(arguments));
+        Entry entry = new Entry(result == null ? NULL_VALUE : result, weigh(result), now, now + ttlNanos);
+        Entry previous = entries.put(key, entry);
+        weight.addAndGet(previous == null ? entry.weight : entry.weight - previous.weight);
+        if (this.version.get() != version) {
+            // invalidated while the entry was added
+            remove(key, entry);
+        } else {
+            evict();
+        }
+    }
+
+    private boolean hasPendingWrites() {
+        // the result may contain uncommitted data if it was read with the writing connection
+        synchronized (caches) {
+            if (pendingTableNames.isEmpty()) {
+                return false;
+            }
+            for (Set<String> pendingNames : pendingTableNames.values()) {
+                for (String tableName : tableNames) {
+                    if (pendingNames.contains(normalizeTableName(tableName))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        for (Map.Entry<Key, Entry> mapEntry : entries.entrySet()) {
+            remove(mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the entries.
+     *
+     * @return the weight
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Returns the number of lookups that found a result.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a result.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of entries that were evicted because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the number of entries that were removed because they expired.
+     *
+     * @return the number of expirations
+     */
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to lookups.
+     *
+     * @return the hit ratio or 0 if there were no lookups
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long lookups = hits + missCount.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Resets the hit, miss, eviction and expiration counts.
+     */
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+        expirationCount.reset();
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ResultCache[").append(queryDefinitionClass.getName()).append('.')
+                .append(methodName).append('(');
+        Type[] argumentTypes = Type.getArgumentTypes(methodDescriptor);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(argumentTypes[i].getClassName());
+        }
+        return sb.append(")]").toString();
+    }
+
+    private boolean remove(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isFull() {
+        return entries.size() > maxEntries || (maxWeight > 0 && weight.get() > maxWeight);
+    }
+
+    private void evict() {
+        // if another thread is evicting it checks again after it is done
+        while (isFull() && evicting.compareAndSet(false, true)) {
+            try {
+                evictEntries();
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void evictEntries() {
+        long now = System.nanoTime();
+        List<EvictionCandidate> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<Key, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (ttlNanos > 0 && now - entry.expirationTime >= 0) {
+                if (remove(mapEntry.getKey(), entry)) {
+                    expirationCount.increment();
+                }
+            } else {
+                candidates.add(new EvictionCandidate(mapEntry.getKey(), entry, entry.accessTime - now));
+            }
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.age));
+        int targetSize = maxEntries - maxEntries / 10;
+        long targetWeight = maxWeight - maxWeight / 10;
+        for (EvictionCandidate candidate : candidates) {
+            if (entries.size() <= targetSize && (maxWeight == 0 || weight.get() <= targetWeight)) {
+                break;
+            }
+            if (remove(candidate.key, candidate.entry)) {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private static int weigh(Object result) {
+        if (result instanceof Collection) {
+            return 1 + ((Collection<?>) result).size();
+        } else if (result instanceof Map) {
+            return 1 + ((Map<?, ?>) result).size();
+        } else if (result != null && result.getClass().isArray()) {
+            return 1 + Array.getLength(result);
+        }
+        return 1;
+    }
+
+    private static Object[] copyArrays(Object[] arguments) {
+        // array arguments are copied as the caller could modify them later
+        Object[] copy = null;
+        for (int i = 0; i < arguments.length; i++) {
+            Object argument = arguments[i];
+            if (argument != null && argument.getClass().isArray()) {
+                if (copy == null) {
+                    copy = arguments.clone();
+                }
+                int length = Array.getLength(argument);
+                Object arrayCopy = Array.newInstance(argument.getClass().getComponentType(), length);
+                System.arraycopy(argument, 0, arrayCopy, 0, length);
+                copy[i] = arrayCopy;
+            }
+        }
+        return copy == null ? arguments : copy;
+    }
+
+    private static final class Key {
+
+        private final Object[] arguments;
+        private final int hashCode;
+
+        private Key(Object[] arguments) {
+            this.arguments = arguments;
+            this.hashCode = Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && hashCode == ((Key) obj).hashCode
+                    && Arrays.deepEquals(arguments, ((Key) obj).arguments);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final int weight;
+        private final long expirationTime;
+        private volatile long accessTime;
+
+        private Entry(Object value, int weight, long accessTime, long expirationTime) {
+            this.value = value;
+            this.weight = weight;
+            this.accessTime = accessTime;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private static final class EvictionCandidate {
+
+        private final Key key;
+        private final Entry entry;
+        private final long age;
+
+        private EvictionCandidate(Key key, Entry entry, long age) {
+            this.key = key;
+            this.entry = entry;
+            this.age = age;
+        }
+    }
+}
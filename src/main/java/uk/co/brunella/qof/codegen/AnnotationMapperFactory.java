@@ -37,10 +37,79 @@ import java.util.*;
  */
 public final class AnnotationMapperFactory {
 
+    private static final Set<Class<?>> GENERATED_KEY_TYPES = new HashSet<>(Arrays.<Class<?>>asList(
+            Long.TYPE, Long.class, Integer.TYPE, Integer.class, String.class));
+
     private AnnotationMapperFactory() {
     }
 
     public static Mapper create(Class<?> queryDefinitionClass, Method method) {
+        Mapper mapper = createMapper(queryDefinitionClass, method);
+        if (mapper != null && mapper.usesArray()) {
+            mapper.setInListBuckets(getInListBuckets(queryDefinitionClass, method));
+        }
+        if (mapper != null && method.isAnnotationPresent(Cached.class)) {
+            mapper.setCached(getCached(mapper, method));
+        }
+        if (mapper != null && method.isAnnotationPresent(MultiRowInsert.class)) {
+            mapper.setMultiRowInsert(getMultiRowInsert(mapper, method));
+        }
+        return mapper;
+    }
+
+    private static MultiRowInsert getMultiRowInsert(Mapper mapper, Method method) {
+        MultiRowInsert annotation = method.getAnnotation(MultiRowInsert.class);
+        if (mapper.getQueryType() != QueryType.INSERT
+                || mapper.getMethod().getCollectionParameterInfos().length == 0) {
+            throw new ValidationException("Only insert methods with collection parameters can use multi-row inserts");
+        }
+        if (mapper.getGeneratedKeyMapping() != null) {
+            throw new ValidationException("Generated keys are not supported for multi-row inserts");
+        }
+        if (hasStreamingParameter(mapper.getMethod().getCollectionParameterInfos())) {
+            throw new ValidationException("Multi-row inserts are not supported for streaming parameters");
+        }
+        if (annotation.maxRows() < 1) {
+            throw new ValidationException("Invalid multi-row insert definition " + annotation);
+        }
+        return annotation;
+    }
+
+    private static Cached getCached(Mapper mapper, Method method) {
+        Cached annotation = method.getAnnotation(Cached.class);
+        if (mapper.getQueryType() != QueryType.QUERY) {
+            throw new ValidationException("Only query methods can be cached");
+        }
+        MethodReturnInfo returnInfo = mapper.getMethod().getReturnInfo();
+        if (returnInfo.getType() == Void.TYPE || (returnInfo.getCollectionType() != null
+                && (ReflectionUtils.isStreamingType(returnInfo.getCollectionType())
+                || ReflectionUtils.isRowHandlerType(returnInfo.getCollectionType())))) {
+            throw new ValidationException("Only query methods returning a result can be cached");
+        }
+        if (annotation.ttl() < 0 || annotation.maxEntries() < 1 || annotation.maxWeight() < 0) {
+            throw new ValidationException("Invalid cache definition " + annotation);
+        }
+        return annotation;
+    }
+
+    private static int[] getInListBuckets(Class<?> queryDefinitionClass, Method method) {
+        InListBuckets annotation = method.getAnnotation(InListBuckets.class);
+        if (annotation == null) {
+            annotation = queryDefinitionClass.getAnnotation(InListBuckets.class);
+        }
+        if (annotation == null) {
+            return null;
+        }
+        int[] buckets = annotation.value();
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] < 1 || (i > 0 && buckets[i] <= buckets[i - 1])) {
+                throw new ValidationException("In-list bucket sizes must be positive and in ascending order");
+            }
+        }
+        return buckets;
+    }
+
+    private static Mapper createMapper(Class<?> queryDefinitionClass, Method method) {
         if (method.isAnnotationPresent(Query.class)) {
             return create(queryDefinitionClass, MethodInfoFactory.createMethodInfo(method), method.getAnnotation(Query.class));
         } else if (method.isAnnotationPresent(Insert.class)) {
@@ -58,29 +127,110 @@ public final class AnnotationMapperFactory {
 
     private static Mapper create(Class<?> queryDefinitionClass, MethodInfo methodInfo, Query annotation) {
         SqlParser parser = new SqlParser(annotation.sql(), false);
-        return new Mapper(methodInfo, QueryType.QUERY, parser.getSql(),
+        Mapper mapper = new Mapper(methodInfo, QueryType.QUERY, parser.getSql(),
                 createParameterMappers(queryDefinitionClass, methodInfo, parser.getParameterDefinitions()),
                 createResultMappers(queryDefinitionClass, methodInfo, parser.getResultDefinitions(),
                         annotation.factoryClass(), annotation.factoryMethod(),
-                        annotation.collectionClass(), annotation.collectionInitialCapacity()));
+                        annotation.collectionClass(), annotation.collectionInitialCapacity()),
+                annotation.reuseResultObject());
+        mapper.setTableNames(parser.getTableNames());
+        return mapper;
     }
 
     private static Mapper create(Class<?> queryDefinitionClass, MethodInfo methodInfo, Insert annotation) {
         SqlParser parser = new SqlParser(annotation.sql(), false);
-        return new Mapper(methodInfo, QueryType.INSERT, parser.getSql(),
+        Mapper mapper = new Mapper(methodInfo, QueryType.INSERT, parser.getSql(),
                 createParameterMappers(queryDefinitionClass, methodInfo, parser.getParameterDefinitions()), null);
+        mapper.setTableNames(parser.getTableNames());
+        mapper.setGeneratedKeyMapping(createGeneratedKeyMapping(methodInfo, parser.getResultDefinitions()));
+        return mapper;
+    }
+
+    private static GeneratedKeyMapping createGeneratedKeyMapping(MethodInfo methodInfo, ResultDefinition[] resultDefs) {
+        boolean collection = methodInfo.getCollectionParameterInfos().length > 0;
+        MethodReturnInfo returnInfo = methodInfo.getReturnInfo();
+        Class<?> returnType = returnInfo.getType();
+        Class<?> keyType = null;
+        if (collection && returnType == long[].class) {
+            if (hasStreamingParameter(methodInfo.getCollectionParameterInfos())) {
+                throw new ValidationException("Generated keys of streaming parameters must be returned as List");
+            }
+            keyType = Long.TYPE;
+        } else if (collection && (returnType == List.class || returnType == Collection.class)) {
+            keyType = returnInfo.getCollectionElementType();
+            if (!GENERATED_KEY_TYPES.contains(keyType)) {
+                throw new ValidationException("Unsupported generated key type " + keyType);
+            }
+        } else if (!collection && returnType == Long.TYPE) {
+            keyType = Long.TYPE;
+        }
+        if (keyType == null && resultDefs.length == 0) {
+            return null;
+        }
+
+        MethodParameterInfo parameterInfo = null;
+        Method[] setters = new Method[resultDefs.length];
+        for (int i = 0; i < resultDefs.length; i++) {
+            ResultDefinition result = resultDefs[i];
+            String field = result.getField();
+            if (field == null || !"auto".equals(result.getType()) || result.isMapKey() || result.getConstructorParameter() > 0) {
+                throw new ValidationException("Generated keys can only be mapped to fields: " + Arrays.toString(result.getColumns()));
+            }
+            if (parameterInfo == null) {
+                // the first parameter with a setter for the field receives the keys
+                for (MethodParameterInfo info : collection ? methodInfo.getCollectionParameterInfos() : methodInfo.getParameterInfos()) {
+                    Class<?> beanType = collection ? info.getCollectionElementType() : info.getType();
+                    if (beanType != null && !beanType.isPrimitive() && ReflectionUtils.findSetter(beanType, field) != null) {
+                        parameterInfo = info;
+                        break;
+                    }
+                }
+                if (parameterInfo == null) {
+                    throw new ValidationException("No parameter has a setter for generated key field " + field);
+                }
+            }
+            Class<?> beanType = collection ? parameterInfo.getCollectionElementType() : parameterInfo.getType();
+            Method setter = ReflectionUtils.findSetter(beanType, field);
+            if (setter == null || setter.getParameterTypes().length != 1
+                    || !GENERATED_KEY_TYPES.contains(setter.getParameterTypes()[0])) {
+                throw new ValidationException("Cannot set generated key field " + field + " of type " + beanType.getName());
+            }
+            setters[i] = setter;
+        }
+        return new GeneratedKeyMapping(keyType, parameterInfo, setters);
+    }
+
+    /**
+     * Returns true if one of the collection parameters is an <code>Iterator</code>,
+     * <code>Iterable</code> or <code>Stream</code>. These parameters can only be consumed once
+     * and their size is not known in advance.
+     *
+     * @param collectionParameterInfos the collection parameters
+     * @return true if a parameter is a streaming parameter
+     */
+    static boolean hasStreamingParameter(MethodParameterInfo[] collectionParameterInfos) {
+        for (MethodParameterInfo info : collectionParameterInfos) {
+            if (ReflectionUtils.isStreamingType(info.getCollectionType())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static Mapper create(Class<?> queryDefinitionClass, MethodInfo methodInfo, Update annotation) {
         SqlParser parser = new SqlParser(annotation.sql(), false);
-        return new Mapper(methodInfo, QueryType.UPDATE, parser.getSql(),
+        Mapper mapper = new Mapper(methodInfo, QueryType.UPDATE, parser.getSql(),
                 createParameterMappers(queryDefinitionClass, methodInfo, parser.getParameterDefinitions()), null);
+        mapper.setTableNames(parser.getTableNames());
+        return mapper;
     }
 
     private static Mapper create(Class<?> queryDefinitionClass, MethodInfo methodInfo, Delete annotation) {
         SqlParser parser = new SqlParser(annotation.sql(), false);
-        return new Mapper(methodInfo, QueryType.DELETE, parser.getSql(),
+        Mapper mapper = new Mapper(methodInfo, QueryType.DELETE, parser.getSql(),
                 createParameterMappers(queryDefinitionClass, methodInfo, parser.getParameterDefinitions()), null);
+        mapper.setTableNames(parser.getTableNames());
+        return mapper;
     }
 
     private static Mapper create(Class<?> queryDefinitionClass, MethodInfo methodInfo, Call annotation) {
@@ -26,6 +26,7 @@ import org.objectweb.asm.Type;
 import uk.co.brunella.qof.exception.ValidationException;
 import uk.co.brunella.qof.mapping.Mapper;
 import uk.co.brunella.qof.mapping.MethodParameterInfo;
+import uk.co.brunella.qof.util.ReflectionUtils;
 
 import static uk.co.brunella.qof.codegen.Constants.*;
 
@@ -38,6 +39,17 @@ class CallQueryMethodGenerator {
         if (mapper.usesArray()) {
             throw new ValidationException("Array parameters are not allowed for call statements");
         }
+        Class<?> returnCollectionType = mapper.getMethod().getReturnInfo().getCollectionType();
+        if (returnCollectionType != null && (ReflectionUtils.isStreamingType(returnCollectionType)
+                || ReflectionUtils.isPrimitiveCollectionType(returnCollectionType))) {
+            throw new ValidationException("Return type " + returnCollectionType.getName() + " is not allowed for call statements");
+        }
+        if (returnCollectionType != null && ReflectionUtils.isRowHandlerType(returnCollectionType)) {
+            throw new ValidationException("Parameter type " + returnCollectionType.getName() + " is not allowed for call statements");
+        }
+        if (AnnotationMapperFactory.hasStreamingParameter(mapper.getMethod().getCollectionParameterInfos())) {
+            throw new ValidationException("Streaming parameters are not allowed for call statements");
+        }
         if (mapper.getMethod().getCollectionParameterInfos().length > 0) {
             addCallQueryBodyWithCollection(co, generator, mapper);
         } else {
@@ -49,6 +61,9 @@ class CallQueryMethodGenerator {
         Local localConnection = co.make_local(TYPE_Connection);
         Local localCallableStatement = co.make_local(TYPE_CallableStatement);
         Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
+
+        listener.emitBeforePrepare(false);
 
         // connection = getConnection();
         EmitUtils.emitGetConnection(co, generator, localConnection);
@@ -59,8 +74,10 @@ class CallQueryMethodGenerator {
         // ps = connection.prepareCall("{ ? = call xyz (?,?) }");
         co.load_local(localConnection);
         co.push(mapper.getSql());
+        listener.emitKeepSql();
         co.invoke_interface(TYPE_Connection, SIG_prepareCall);
         co.store_local(localCallableStatement);
+        listener.emitPrepared();
 
         // try {
         Block tryBlockStatement = co.begin_block();
@@ -77,6 +94,7 @@ class CallQueryMethodGenerator {
         co.load_local(localCallableStatement);
         co.invoke_interface(TYPE_CallableStatement, SIG_execute);
         co.pop(); // not interested in result
+        listener.emitAfterExecute();
 
         Class<?> returnType = mapper.getMethod().getReturnInfo().getType();
 
@@ -122,6 +140,8 @@ class CallQueryMethodGenerator {
         EmitUtils.emitUngetConnection(co, generator, localConnection);
         co.load_local(localException);
         co.athrow();
+
+        listener.emitFailureHandler();
     }
 
     private static void addCallQueryBodyWithCollection(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper) {
@@ -168,6 +188,9 @@ class CallQueryMethodGenerator {
         Local localConnection = co.make_local(TYPE_Connection);
         Local localCallableStatement = co.make_local(TYPE_CallableStatement);
         Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
+
+        listener.emitBeforePrepare(false);
 
         // connection = getConnection();
         EmitUtils.emitGetConnection(co, generator, localConnection);
@@ -178,8 +201,10 @@ class CallQueryMethodGenerator {
         // ps = connection.prepareStatement("select count(*) from person");
         co.load_local(localConnection);
         co.push(mapper.getSql());
+        listener.emitKeepSql();
         co.invoke_interface(TYPE_Connection, SIG_prepareCall);
         co.store_local(localCallableStatement);
+        listener.emitPrepared();
 
         // try {
         Block tryBlockStatement = co.begin_block();
@@ -254,6 +279,7 @@ class CallQueryMethodGenerator {
         co.load_local(localCallableStatement);
         co.invoke_interface(TYPE_CallableStatement, SIG_executeBatch);
         co.pop();
+        listener.emitBatchFlushed(localCounter);
         co.push(0);
         co.store_local(localCounter);
 
@@ -284,8 +310,10 @@ class CallQueryMethodGenerator {
         co.load_local(localCallableStatement);
         co.invoke_interface(TYPE_CallableStatement, SIG_executeBatch);
         co.pop();
+        listener.emitBatchFlushed(localCounter);
 
         co.mark(labelAfter2);
+        listener.emitAfterExecute();
 
         // finally
         tryBlockStatement.end();
@@ -313,6 +341,8 @@ class CallQueryMethodGenerator {
         EmitUtils.emitUngetConnection(co, generator, localConnection);
         co.load_local(localException);
         co.athrow();
+
+        listener.emitFailureHandler();
     }
 
 }
@@ -21,6 +21,15 @@ package uk.co.brunella.qof.codegen;
 import net.sf.cglib.core.Signature;
 import net.sf.cglib.core.TypeUtils;
 import org.objectweb.asm.Type;
+import uk.co.brunella.qof.AsyncQueryInvoker;
+import uk.co.brunella.qof.QueryListener;
+import uk.co.brunella.qof.QueryMethod;
+import uk.co.brunella.qof.ResultSetIterator;
+import uk.co.brunella.qof.ResultSetRowMapper;
+import uk.co.brunella.qof.RowHandler;
+import uk.co.brunella.qof.SqlTemplate;
+import uk.co.brunella.qof.StatementCache;
+import uk.co.brunella.qof.mapping.QueryType;
 import uk.co.brunella.qof.session.DefaultSessionRunner;
 import uk.co.brunella.qof.session.SessionPolicy;
 import uk.co.brunella.qof.session.TransactionRunnable;
@@ -35,21 +44,36 @@ public final class Constants {
     public static final String EXCEPTION_COLLECTIONS_DIFFERENT_SIZE = "Input collections have different size";
     public static final String EXCEPTION_EMPTY_RESULT = "Empty result set returned";
     public static final String EXCEPTION_MORE_THAN_ONE_RESULT = "More than one result in result set";
+    public static final String EXCEPTION_NO_GENERATED_KEY = "No generated key returned";
     public static final String FIELD_NAME_BATCH_SIZE = "batchSize";
     public static final String FIELD_NAME_FETCH_SIZE = "fetchSize";
     public static final String FIELD_NAME_FIRST_RESULT = "firstResult";
     public static final String FIELD_NAME_MAX_RESULTS = "maxResults";
+    public static final String FIELD_NAME_STATEMENT_CACHE = "$statementCache";
+    public static final String FIELD_NAME_SQL_TEMPLATE = "$sqlTemplate";
+    public static final String FIELD_NAME_EXECUTOR = "executor";
+    public static final String FIELD_NAME_DEFAULT_EXECUTOR = "$executor";
+    public static final String METHOD_NAME_SUFFIX_SYNC = "$sync";
+    public static final String FIELD_NAME_QUERY_LISTENER = "$queryListener";
+    public static final String FIELD_NAME_QUERY_METHOD = "$queryMethod";
+    public static final String FIELD_NAME_RESULT_CACHE = "$resultCache";
+    public static final String METHOD_NAME_SUFFIX_UNCACHED = "$uncached";
+    public static final String FIELD_NAME_MULTI_ROW_SQL = "$multiRowSql";
+    public static final String FIELD_NAME_FINGERPRINT = "$fingerprint";
     // types
     public static final Type TYPE_Object = Type.getType("Ljava/lang/Object;");
+    public static final Type TYPE_ObjectArray = Type.getType("[Ljava/lang/Object;");
     public static final Type TYPE_Byte = Type.getType("Ljava/lang/Byte;");
     public static final Type TYPE_Boolean = Type.getType("Ljava/lang/Boolean;");
     public static final Type TYPE_Short = Type.getType("Ljava/lang/Short;");
     public static final Type TYPE_Integer = Type.getType("Ljava/lang/Integer;");
+    public static final Type TYPE_Math = Type.getType("Ljava/lang/Math;");
     public static final Type TYPE_Long = Type.getType("Ljava/lang/Long;");
     public static final Type TYPE_Float = Type.getType("Ljava/lang/Float;");
     public static final Type TYPE_Double = Type.getType("Ljava/lang/Double;");
     public static final Type TYPE_Date = Type.getType("Ljava/util/Date;");
     public static final Type TYPE_String = Type.getType("Ljava/lang/String;");
+    public static final Type TYPE_StringArray = Type.getType("[Ljava/lang/String;");
     public static final Type TYPE_Character = Type.getType("Ljava/lang/Character;");
     public static final Type TYPE_byte = Type.getType("B");
     public static final Type TYPE_boolean = Type.getType("Z");
@@ -60,12 +84,15 @@ public final class Constants {
     public static final Type TYPE_double = Type.getType("D");
     public static final Type TYPE_char = Type.getType("C");
     public static final Type TYPE_intArray = Type.getType("[I");
+    public static final Type TYPE_longArray = Type.getType("[J");
     public static final Type TYPE_Throwable = Type.getType("Ljava/lang/Throwable;");
     public static final Type TYPE_RuntimeException = Type.getType("Ljava/lang/RuntimeException;");
     public static final Type TYPE_SystemException = Type.getType("Luk/co/brunella/qof/session/SystemException;");
     public static final Type TYPE_Collection = Type.getType("Ljava/util/Collection;");
     public static final Type TYPE_Map = Type.getType("Ljava/util/Map;");
     public static final Type TYPE_Iterator = Type.getType("Ljava/util/Iterator;");
+    public static final Type TYPE_Iterable = Type.getType("Ljava/lang/Iterable;");
+    public static final Type TYPE_Stream = Type.getType("Ljava/util/stream/Stream;");
     public static final Type TYPE_List = Type.getType("Ljava/util/List;");
     public static final Type TYPE_ArrayList = Type.getType("Ljava/util/ArrayList;");
     public static final Type TYPE_HashSet = Type.getType("Ljava/util/HashSet;");
@@ -84,6 +111,9 @@ public final class Constants {
     // methods of Connection/PreparedStament/CallableStatement
     public static final Signature SIG_prepareStatement = new Signature("prepareStatement",
             "(Ljava/lang/String;)Ljava/sql/PreparedStatement;");
+    public static final Signature SIG_prepareStatement_autoGeneratedKeys = new Signature("prepareStatement",
+            "(Ljava/lang/String;I)Ljava/sql/PreparedStatement;");
+    public static final Signature SIG_getGeneratedKeys = new Signature("getGeneratedKeys", "()Ljava/sql/ResultSet;");
     public static final Signature SIG_prepareCall = new Signature("prepareCall",
             "(Ljava/lang/String;)Ljava/sql/CallableStatement;");
     public static final Signature SIG_setNull = new Signature("setNull", "(II)V");
@@ -144,6 +174,7 @@ public final class Constants {
     public static final Signature SIG_hasNext = new Signature("hasNext", "()Z");
     public static final Signature SIG_iterator_next = new Signature("next", "()Ljava/lang/Object;");
     public static final Signature SIG_add = new Signature("add", "(Ljava/lang/Object;)Z");
+    public static final Signature SIG_clear = new Signature("clear", "()V");
     public static final Signature SIG_put = new Signature("put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
     public static final Signature SIG_getConnection = new Signature("getConnection", "()Ljava/sql/Connection;");
     public static final Signature SIG_postGetConnection = new Signature("postGetConnection", "(Ljava/sql/Connection;)V");
@@ -180,6 +211,94 @@ public final class Constants {
             new Signature("executeBeanManaged", "(Luk/co/brunella/qof/session/TransactionRunnable;Ljava/lang/String;Luk/co/brunella/qof/session/SessionPolicy;[Ljava/lang/Object;)Ljava/lang/Object;");
     public static final Signature SIG_DefaultSessionRunner_executeContainerManaged =
             new Signature("executeContainerManaged", "(Luk/co/brunella/qof/session/TransactionRunnable;Ljava/lang/String;Luk/co/brunella/qof/session/SessionPolicy;[Ljava/lang/Object;)Ljava/lang/Object;");
+    public static final Type TYPE_ResultSetIterator = Type.getType(ResultSetIterator.class);
+    public static final Type TYPE_ResultSetRowMapper = Type.getType(ResultSetRowMapper.class);
+    public static final Signature SIG_ResultSetIterator_Constructor =
+            new Signature("<init>", "(Luk/co/brunella/qof/BaseQuery;Luk/co/brunella/qof/ResultSetRowMapper;ILjava/sql/Connection;Ljava/sql/PreparedStatement;Ljava/sql/ResultSet;Luk/co/brunella/qof/StatementCache;)V");
+    public static final Signature SIG_ResultSetIterator_stream = new Signature("stream", "()Ljava/util/stream/Stream;");
+    public static final Type TYPE_StatementCache = Type.getType(StatementCache.class);
+    public static final Signature SIG_StatementCache_prepareStatement = new Signature("prepareStatement",
+            "(Ljava/sql/Connection;Ljava/lang/String;)Ljava/sql/PreparedStatement;");
+    public static final Signature SIG_StatementCache_prepareStatementReturningGeneratedKeys = new Signature(
+            "prepareStatementReturningGeneratedKeys", "(Ljava/sql/Connection;Ljava/lang/String;)Ljava/sql/PreparedStatement;");
+    public static final Signature SIG_StatementCache_releaseStatement = new Signature("releaseStatement", "(Ljava/sql/PreparedStatement;)V");
+    public static final Signature SIG_StatementCache_closeStatement = new Signature("closeStatement", "(Ljava/sql/PreparedStatement;)V");
+    public static final Signature SIG_highestOneBit = new Signature("highestOneBit", "(I)I");
+    public static final Signature SIG_min = new Signature("min", "(II)I");
+    public static final Type TYPE_SqlArrayHelper = Type.getType("Luk/co/brunella/qof/util/SqlArrayHelper;");
+    public static final Signature SIG_createArray = new Signature("createArray", "(Ljava/sql/PreparedStatement;Ljava/lang/String;Ljava/lang/Object;)Ljava/sql/Array;");
+    public static final Signature SIG_setArray = new Signature("setArray", "(ILjava/sql/Array;)V");
+    public static final Type TYPE_SqlTemplate = Type.getType(SqlTemplate.class);
+    public static final Signature SIG_SqlTemplate_Constructor = new Signature("<init>", "(Ljava/lang/String;[I[Ljava/lang/String;)V");
+    public static final Signature SIG_SqlTemplate_expand = new Signature("expand", "(I)Ljava/lang/String;");
+    public static final Signature SIG_SqlTemplate_expand_array = new Signature("expand", "([I)Ljava/lang/String;");
+    public static final Type TYPE_RowHandler = Type.getType(RowHandler.class);
+    public static final Type TYPE_Consumer = Type.getType("Ljava/util/function/Consumer;");
+    public static final Signature SIG_handleRow = new Signature("handleRow", "(Ljava/lang/Object;)V");
+    public static final Signature SIG_accept = new Signature("accept", "(Ljava/lang/Object;)V");
+    public static final Signature SIG_mapRow = new Signature("mapRow", "(ILjava/sql/ResultSet;)Ljava/lang/Object;");
+    public static final Type TYPE_Executor = Type.getType("Ljava/util/concurrent/Executor;");
+    public static final Type TYPE_AsyncQueryInvoker = Type.getType(AsyncQueryInvoker.class);
+    public static final Type TYPE_AsyncQueryHelper = Type.getType("Luk/co/brunella/qof/util/AsyncQueryHelper;");
+    public static final Signature SIG_AsyncQueryHelper_submit = new Signature("submit",
+            "(Ljava/util/concurrent/Executor;Luk/co/brunella/qof/AsyncQueryInvoker;I[Ljava/lang/Object;)Ljava/util/concurrent/CompletableFuture;");
+    public static final Signature SIG_invokeQuery = new Signature("invokeQuery", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+    public static final Type TYPE_Class = Type.getType("Ljava/lang/Class;");
+    public static final Signature SIG_forName = new Signature("forName", "(Ljava/lang/String;)Ljava/lang/Class;");
+    public static final Type TYPE_QueryType = Type.getType(QueryType.class);
+    public static final Type TYPE_QueryMethod = Type.getType(QueryMethod.class);
+    public static final Signature SIG_QueryMethod_Constructor = new Signature("<init>",
+            "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Luk/co/brunella/qof/mapping/QueryType;)V");
+    public static final Type TYPE_QueryListener = Type.getType(QueryListener.class);
+    public static final Signature SIG_QueryListener_beforePrepare = new Signature("beforePrepare",
+            "(Luk/co/brunella/qof/QueryMethod;)Ljava/lang/Object;");
+    public static final Signature SIG_QueryListener_afterExecute = new Signature("afterExecute",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;)V");
+    public static final Signature SIG_QueryListener_rowsMapped = new Signature("rowsMapped",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;I)V");
+    public static final Signature SIG_QueryListener_batchFlushed = new Signature("batchFlushed",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;I)V");
+    public static final Signature SIG_QueryListener_failure = new Signature("failure",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;Ljava/lang/Throwable;)V");
+    public static final Signature SIG_QueryListener_prepared = new Signature("prepared",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;Ljava/lang/String;)V");
+    public static final Signature SIG_QueryListener_isArgumentsRequired = new Signature("isArgumentsRequired",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;)Z");
+    public static final Signature SIG_QueryListener_arguments = new Signature("arguments",
+            "(Luk/co/brunella/qof/QueryMethod;Ljava/lang/Object;[Ljava/lang/Object;)V");
+    public static final Type TYPE_ResultCache = Type.getType("Luk/co/brunella/qof/cache/ResultCache;");
+    public static final Signature SIG_ResultCache_create = new Signature("create",
+            "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;JIJ)Luk/co/brunella/qof/cache/ResultCache;");
+    public static final Signature SIG_ResultCache_tableWritten = new Signature("tableWritten",
+            "(Ljava/sql/Connection;Ljava/lang/String;)V");
+    public static final Signature SIG_ResultCache_get = new Signature("get", "([Ljava/lang/Object;)Ljava/lang/Object;");
+    public static final Signature SIG_ResultCache_getVersion = new Signature("getVersion", "()J");
+    public static final Signature SIG_ResultCache_put = new Signature("put", "([Ljava/lang/Object;Ljava/lang/Object;J)V");
+    public static final Type TYPE_MultiRowInserter = Type.getType("Luk/co/brunella/qof/util/MultiRowInserter;");
+    public static final Signature SIG_MultiRowInserter_Constructor = new Signature("<init>",
+            "(Ljava/sql/Connection;Luk/co/brunella/qof/StatementCache;[Ljava/lang/String;III)V");
+    public static final Signature SIG_MultiRowInserter_getStatement = new Signature("getStatement", "()Ljava/sql/PreparedStatement;");
+    public static final Signature SIG_MultiRowInserter_getSql = new Signature("getSql", "()Ljava/lang/String;");
+    public static final Signature SIG_MultiRowInserter_getParameterIndexOffset = new Signature("getParameterIndexOffset", "()I");
+    public static final Signature SIG_MultiRowInserter_addRow = new Signature("addRow", "()I");
+    public static final Signature SIG_MultiRowInserter_getUpdateCounts = new Signature("getUpdateCounts", "()[I");
+    public static final Signature SIG_MultiRowInserter_close = new Signature("close", "()V");
+    public static final Signature SIG_MultiRowInserter_closeAfterFailure = new Signature("closeAfterFailure", "()V");
+
+    public static final Type TYPE_UpdateCountBuffer = Type.getType("Luk/co/brunella/qof/util/UpdateCountBuffer;");
+    public static final Signature SIG_UpdateCountBuffer_add = new Signature("add", "(I)V");
+    public static final Signature SIG_UpdateCountBuffer_addAll = new Signature("add", "([I)V");
+    public static final Signature SIG_UpdateCountBuffer_toArray = new Signature("toArray", "()[I");
+    public static final Signature SIG_UpdateCountBuffer_sum = new Signature("sum", "([I)J");
+    public static final Signature SIG_UpdateCountBuffer_addLarge = new Signature("add", "(J)V");
+    public static final Signature SIG_UpdateCountBuffer_addAllLarge = new Signature("add", "([J)V");
+    public static final Signature SIG_UpdateCountBuffer_toLongArray = new Signature("toLongArray", "()[J");
+    public static final Signature SIG_UpdateCountBuffer_sumLarge = new Signature("sum", "([J)J");
+    public static final Type TYPE_LargeUpdateHelper = Type.getType("Luk/co/brunella/qof/util/LargeUpdateHelper;");
+    public static final Signature SIG_LargeUpdateHelper_executeUpdate = new Signature("executeUpdate",
+            "(Ljava/sql/Connection;Ljava/sql/PreparedStatement;)J");
+    public static final Signature SIG_LargeUpdateHelper_executeBatch = new Signature("executeBatch",
+            "(Ljava/sql/Connection;Ljava/sql/PreparedStatement;)[J");
 
     private Constants() {
     }
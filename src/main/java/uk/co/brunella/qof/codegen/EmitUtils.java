@@ -26,9 +26,13 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
 import uk.co.brunella.qof.BaseQuery;
 import uk.co.brunella.qof.mapping.Mapper;
+import uk.co.brunella.qof.mapping.ParameterMapping;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Internal - Contains utility functions for code emitters.
@@ -104,6 +108,181 @@ public class EmitUtils {
         co.invoke_interface(local.getType(), Constants.SIG_close);
     }
 
+    /**
+     * Emits code to push the SQL statement of a query method on the stack.
+     * If the query method has array parameters the SQL statement is expanded
+     * at runtime with a precompiled <code>SqlTemplate</code> for the lengths
+     * of the array arguments.
+     *
+     * @param co        the code emitter
+     * @param generator the query object generator
+     * @param mapper    the mapper of the query method
+     * @param sql       the SQL statement
+     */
+    public static void emitPushSql(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper, String sql) {
+        if (!mapper.usesArrayExpansion()) {
+            co.push(sql);
+            return;
+        }
+        List<ParameterMapping> arrayMappings = new ArrayList<ParameterMapping>();
+        for (ParameterMapping mapping : mapper.getParameters()) {
+            if (mapping.usesArray() && mapper.getArrayTypeName(mapping) == null) {
+                arrayMappings.add(mapping);
+            }
+        }
+        // template expects the parameters in ascending order
+        arrayMappings.sort((m1, m2) -> Integer.compare(m1.getSqlIndexes()[0], m2.getSqlIndexes()[0]));
+        int[] parameterIndexes = new int[arrayMappings.size()];
+        String[] separators = new String[arrayMappings.size()];
+        for (int i = 0; i < parameterIndexes.length; i++) {
+            ParameterMapping mapping = arrayMappings.get(i);
+            parameterIndexes[i] = mapping.getSqlIndexes()[0];
+            separators[i] = mapping.getParameterSeparator() == null ? "," : mapping.getParameterSeparator();
+        }
+        String fieldName = generator.getSqlTemplateFieldName(co.getClassEmitter(), sql, parameterIndexes, separators);
+        co.getfield(fieldName);
+        if (parameterIndexes.length == 1) {
+            emitArrayLength(co, mapper, arrayMappings.get(0).getIndex());
+            co.invoke_virtual(Constants.TYPE_SqlTemplate, Constants.SIG_SqlTemplate_expand);
+        } else {
+            co.push(parameterIndexes.length);
+            co.newarray(Constants.TYPE_int);
+            for (int i = 0; i < parameterIndexes.length; i++) {
+                co.dup();
+                co.push(i);
+                emitArrayLength(co, mapper, arrayMappings.get(i).getIndex());
+                co.array_store(Constants.TYPE_int);
+            }
+            co.invoke_virtual(Constants.TYPE_SqlTemplate, Constants.SIG_SqlTemplate_expand_array);
+        }
+    }
+
+    /**
+     * Emits code to push the number of parameters used for an array argument
+     * on the stack. This is the length of the array rounded up to the bucket
+     * size if the query method uses in-list buckets.
+     *
+     * @param co       the code emitter
+     * @param mapper   the mapper of the query method
+     * @param argIndex the index of the array argument
+     * @see uk.co.brunella.qof.InListBuckets
+     */
+    public static void emitArrayLength(CodeEmitter co, Mapper mapper, int argIndex) {
+        co.load_arg(argIndex);
+        co.arraylength();
+        int[] buckets = mapper.getInListBuckets();
+        if (buckets == null) {
+            return;
+        }
+        Label labelEnd = co.make_label();
+        if (buckets.length == 0) {
+            // length < 2 ? length : Integer.highestOneBit(length - 1) * 2
+            co.dup();
+            co.push(2);
+            co.if_icmp(CodeEmitter.LT, labelEnd);
+            co.push(1);
+            co.math(CodeEmitter.SUB, Constants.TYPE_int);
+            co.invoke_static(Constants.TYPE_Integer, Constants.SIG_highestOneBit);
+            co.push(2);
+            co.math(CodeEmitter.MUL, Constants.TYPE_int);
+        } else {
+            // length == 0 ? 0 : length <= bucket1 ? bucket1 : length <= bucket2 ? bucket2 : ... : length
+            // an empty array has no element to repeat as padding
+            co.dup();
+            co.if_jump(CodeEmitter.EQ, labelEnd);
+            for (int bucket : buckets) {
+                Label labelNext = co.make_label();
+                co.dup();
+                co.push(bucket);
+                co.if_icmp(CodeEmitter.GT, labelNext);
+                co.pop();
+                co.push(bucket);
+                co.goTo(labelEnd);
+                co.mark(labelNext);
+            }
+        }
+        co.mark(labelEnd);
+    }
+
+    /**
+     * Emits code to prepare a statement. The connection and the SQL statement
+     * must be on the stack and are replaced by the prepared statement.
+     * If the query object uses a statement cache the statement is borrowed
+     * from the cache.
+     *
+     * @param co        the code emitter
+     * @param generator the query object generator
+     */
+    public static void emitPrepareStatement(CodeEmitter co, QueryObjectGenerator generator) {
+        emitPrepareStatement(co, generator, false);
+    }
+
+    /**
+     * Emits code to prepare a statement. The connection and the SQL statement
+     * must be on the stack and are replaced by the prepared statement.
+     * If the query object uses a statement cache the statement is borrowed
+     * from the cache.
+     *
+     * @param co                  the code emitter
+     * @param generator           the query object generator
+     * @param returnGeneratedKeys true if the statement returns generated keys
+     */
+    public static void emitPrepareStatement(CodeEmitter co, QueryObjectGenerator generator, boolean returnGeneratedKeys) {
+        if (generator.getStatementCache() == null) {
+            if (returnGeneratedKeys) {
+                co.push(Statement.RETURN_GENERATED_KEYS);
+                co.invoke_interface(Constants.TYPE_Connection, Constants.SIG_prepareStatement_autoGeneratedKeys);
+            } else {
+                co.invoke_interface(Constants.TYPE_Connection, Constants.SIG_prepareStatement);
+            }
+        } else {
+            // move the statement cache below connection and sql
+            co.getfield(Constants.FIELD_NAME_STATEMENT_CACHE);
+            co.dup_x2();
+            co.pop();
+            co.invoke_virtual(Constants.TYPE_StatementCache, returnGeneratedKeys
+                    ? Constants.SIG_StatementCache_prepareStatementReturningGeneratedKeys
+                    : Constants.SIG_StatementCache_prepareStatement);
+        }
+    }
+
+    /**
+     * Emits code to release a prepared statement after successful execution.
+     * The statement is returned to the statement cache if the query object
+     * uses one, otherwise it is closed.
+     *
+     * @param co             the code emitter
+     * @param generator      the query object generator
+     * @param localStatement the local that holds the statement
+     */
+    public static void emitReleaseStatement(CodeEmitter co, QueryObjectGenerator generator, Local localStatement) {
+        if (generator.getStatementCache() == null) {
+            emitClose(co, localStatement);
+        } else {
+            co.getfield(Constants.FIELD_NAME_STATEMENT_CACHE);
+            co.load_local(localStatement);
+            co.invoke_virtual(Constants.TYPE_StatementCache, Constants.SIG_StatementCache_releaseStatement);
+        }
+    }
+
+    /**
+     * Emits code to close a prepared statement after a failure. The statement
+     * is not returned to the statement cache.
+     *
+     * @param co             the code emitter
+     * @param generator      the query object generator
+     * @param localStatement the local that holds the statement
+     */
+    public static void emitCloseStatement(CodeEmitter co, QueryObjectGenerator generator, Local localStatement) {
+        if (generator.getStatementCache() == null) {
+            emitClose(co, localStatement);
+        } else {
+            co.getfield(Constants.FIELD_NAME_STATEMENT_CACHE);
+            co.load_local(localStatement);
+            co.invoke_virtual(Constants.TYPE_StatementCache, Constants.SIG_StatementCache_closeStatement);
+        }
+    }
+
     /**
      * Emits code to call <code>getConnection()</code> and stores returned connection
      * in the local connection variable.
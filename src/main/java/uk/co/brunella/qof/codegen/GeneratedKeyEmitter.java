@@ -0,0 +1,320 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.codegen;
+
+import net.sf.cglib.core.Block;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Local;
+import net.sf.cglib.core.Signature;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import uk.co.brunella.qof.mapping.GeneratedKeyMapping;
+import uk.co.brunella.qof.mapping.Mapper;
+import uk.co.brunella.qof.mapping.MethodParameterInfo;
+import uk.co.brunella.qof.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+import static uk.co.brunella.qof.codegen.Constants.*;
+
+/**
+ * Internal - Emits the code that reads the generated keys of an insert method, returns
+ * them and writes them back into the inserted beans.
+ * <p>
+ * The keys are read after every executed statement or batch. Each executed row must return
+ * a row of generated keys. Streaming parameters cannot be iterated twice, so the beans of the
+ * rows that are not executed yet are kept until their keys are read.
+ *
+ * @see GeneratedKeyMapping
+ */
+class GeneratedKeyEmitter {
+
+    private final CodeEmitter co;
+    private final GeneratedKeyMapping mapping;
+    private final boolean collection;
+    private final boolean streaming;
+    private Local localKeys;
+    private Local localRows;
+    private Local localBeanIterator;
+    private Local localPendingBeans;
+    private Local localResult;
+    private Local localIndex;
+
+    GeneratedKeyEmitter(CodeEmitter co, Mapper mapper, boolean collection, boolean streaming) {
+        this.co = co;
+        this.mapping = mapper.getGeneratedKeyMapping();
+        this.collection = collection;
+        this.streaming = streaming;
+    }
+
+    /**
+     * Declares the locals and initializes the result and the iterator over the inserted beans.
+     *
+     * @param localSize the local that holds the number of rows to insert or <code>null</code>
+     *                  if it is not known
+     */
+    void emitInit(Local localSize) {
+        localKeys = co.make_local(TYPE_ResultSet);
+        localRows = co.make_local(TYPE_int);
+        Class<?> keyType = mapping.getKeyType();
+        if (keyType != null) {
+            if (!collection) {
+                // long result = 0;
+                localResult = co.make_local(TYPE_long);
+                co.push(0L);
+                co.store_local(localResult);
+            } else if (keyType == Long.TYPE) {
+                // long[] result = new long[size]; int index = 0;
+                localResult = co.make_local(TYPE_longArray);
+                co.load_local(localSize);
+                co.newarray(TYPE_long);
+                co.store_local(localResult);
+                localIndex = co.make_local(TYPE_int);
+                co.push(0);
+                co.store_local(localIndex);
+            } else {
+                // List result = new ArrayList(size);
+                localResult = co.make_local(TYPE_List);
+                co.new_instance(TYPE_ArrayList);
+                co.dup();
+                if (localSize == null) {
+                    co.invoke_constructor(TYPE_ArrayList);
+                } else {
+                    co.load_local(localSize);
+                    co.invoke_constructor(TYPE_ArrayList, SIG_Constructor_int);
+                }
+                co.store_local(localResult);
+            }
+        }
+        MethodParameterInfo parameterInfo = mapping.getParameterInfo();
+        if (streaming && parameterInfo != null) {
+            // List pendingBeans = new ArrayList();
+            localBeanIterator = co.make_local(TYPE_Iterator);
+            localPendingBeans = co.make_local(TYPE_List);
+            co.new_instance(TYPE_ArrayList);
+            co.dup();
+            co.invoke_constructor(TYPE_ArrayList);
+            co.store_local(localPendingBeans);
+        } else if (collection && parameterInfo != null) {
+            // Iterator beans = collection.iterator();
+            localBeanIterator = co.make_local(TYPE_Iterator);
+            co.load_arg(parameterInfo.getIndex());
+            co.invoke_interface(TYPE_Collection, SIG_iterator);
+            co.store_local(localBeanIterator);
+        }
+    }
+
+    /**
+     * Keeps the bean of the current row of a streaming parameter until its keys are read.
+     *
+     * @param collectionParameterInfos the collection parameters
+     * @param localObjects             the locals that hold the current elements of the collection parameters
+     */
+    void emitKeepBean(MethodParameterInfo[] collectionParameterInfos, Local[] localObjects) {
+        if (localPendingBeans == null) {
+            return;
+        }
+        for (int i = 0; i < collectionParameterInfos.length; i++) {
+            if (collectionParameterInfos[i] == mapping.getParameterInfo()) {
+                // pendingBeans.add(bean);
+                co.load_local(localPendingBeans);
+                co.load_local(localObjects[i]);
+                co.invoke_interface(TYPE_List, SIG_add);
+                co.pop();
+            }
+        }
+    }
+
+    /**
+     * Emits the code that reads the generated keys of the executed rows.
+     *
+     * @param localPreparedStatement the local that holds the executed statement
+     * @param localExecutedRows      the local that holds the number of executed rows or
+     *                               <code>null</code> for one row
+     */
+    void emitRead(Local localPreparedStatement, Local localExecutedRows) {
+        // keys = ps.getGeneratedKeys();
+        co.load_local(localPreparedStatement);
+        co.invoke_interface(TYPE_PreparedStatement, SIG_getGeneratedKeys);
+        co.store_local(localKeys);
+        // try {
+        Block tryBlock = co.begin_block();
+
+        if (localPendingBeans != null) {
+            // beans = pendingBeans.iterator();
+            co.load_local(localPendingBeans);
+            co.invoke_interface(TYPE_List, SIG_iterator);
+            co.store_local(localBeanIterator);
+        }
+
+        // for (rows = executedRows; rows > 0; rows--) {
+        if (localExecutedRows == null) {
+            co.push(1);
+        } else {
+            co.load_local(localExecutedRows);
+        }
+        co.store_local(localRows);
+        Label labelLoop = co.make_label();
+        Label labelEndLoop = co.make_label();
+        co.mark(labelLoop);
+        co.load_local(localRows);
+        co.if_jump(CodeEmitter.LE, labelEndLoop);
+
+        // if (!keys.next()) throw new SQLException("No generated key returned");
+        Label labelNext = co.make_label();
+        co.load_local(localKeys);
+        co.invoke_interface(TYPE_ResultSet, SIG_next);
+        co.if_jump(CodeEmitter.NE, labelNext);
+        co.throw_exception(TYPE_SQLException, EXCEPTION_NO_GENERATED_KEY);
+        co.mark(labelNext);
+
+        emitSetKeys();
+        emitAddResult();
+
+        co.iinc(localRows, -1);
+        co.goTo(labelLoop);
+        co.mark(labelEndLoop);
+
+        if (localPendingBeans != null) {
+            // pendingBeans.clear();
+            co.load_local(localPendingBeans);
+            co.invoke_interface(TYPE_List, SIG_clear);
+        }
+
+        // } finally { keys.close(); }
+        tryBlock.end();
+        co.load_local(localKeys);
+        co.invoke_interface(TYPE_ResultSet, SIG_close);
+        Label labelEnd = co.make_label();
+        co.goTo(labelEnd);
+
+        EmitUtils.emitCatchException(co, tryBlock, null);
+        Local localException = co.make_local(TYPE_Throwable);
+        co.store_local(localException);
+        co.load_local(localKeys);
+        co.invoke_interface(TYPE_ResultSet, SIG_close);
+        co.load_local(localException);
+        co.athrow();
+        co.mark(labelEnd);
+    }
+
+    /**
+     * Pushes the result of the method, the key of a single insert, the array or the list of keys.
+     */
+    void emitLoadResult() {
+        co.load_local(localResult);
+    }
+
+    private void emitSetKeys() {
+        Method[] setters = mapping.getSetters();
+        if (setters.length == 0) {
+            return;
+        }
+        // bean = beans.next();
+        MethodParameterInfo parameterInfo = mapping.getParameterInfo();
+        Class<?> beanType;
+        if (collection) {
+            beanType = parameterInfo.getCollectionElementType();
+            co.load_local(localBeanIterator);
+            co.invoke_interface(TYPE_Iterator, SIG_iterator_next);
+            co.checkcast(Type.getType(beanType));
+        } else {
+            beanType = parameterInfo.getType();
+            co.load_arg(parameterInfo.getIndex());
+        }
+        Local localBean = co.make_local(Type.getType(beanType));
+        co.store_local(localBean);
+        for (int i = 0; i < setters.length; i++) {
+            // bean.setId(keys.getLong(i + 1));
+            Method setter = setters[i];
+            co.load_local(localBean);
+            emitGetKey(i + 1, setter.getParameterTypes()[0]);
+            Type owner = Type.getType(setter.getDeclaringClass());
+            Signature signature = ReflectionUtils.getMethodSignature(setter);
+            if (setter.getDeclaringClass().isInterface()) {
+                co.invoke_interface(owner, signature);
+            } else {
+                co.invoke_virtual(owner, signature);
+            }
+            if (setter.getReturnType() != Void.TYPE) {
+                if (Type.getType(setter.getReturnType()).getSize() == 2) {
+                    co.pop2();
+                } else {
+                    co.pop();
+                }
+            }
+        }
+    }
+
+    private void emitAddResult() {
+        Class<?> keyType = mapping.getKeyType();
+        if (keyType == null) {
+            return;
+        }
+        if (!collection) {
+            // result = keys.getLong(1);
+            emitGetKey(1, keyType);
+            co.store_local(localResult);
+        } else if (keyType == Long.TYPE) {
+            // result[index++] = keys.getLong(1);
+            co.load_local(localResult);
+            co.load_local(localIndex);
+            co.iinc(localIndex, 1);
+            emitGetKey(1, keyType);
+            co.array_store(TYPE_long);
+        } else {
+            // result.add(keys.getObject(1));
+            co.load_local(localResult);
+            emitGetKey(1, keyType);
+            co.invoke_interface(TYPE_List, SIG_add);
+            co.pop();
+        }
+    }
+
+    private void emitGetKey(int column, Class<?> type) {
+        co.load_local(localKeys);
+        co.push(column);
+        if (type == Long.TYPE || type == Long.class) {
+            co.invoke_interface(TYPE_ResultSet, SIG_getLong);
+            if (type == Long.class) {
+                co.invoke_static(TYPE_Long, SIG_Long_valueOf);
+                emitNullIfWasNull();
+            }
+        } else if (type == Integer.TYPE || type == Integer.class) {
+            co.invoke_interface(TYPE_ResultSet, SIG_getInt);
+            if (type == Integer.class) {
+                co.invoke_static(TYPE_Integer, SIG_Integer_valueOf);
+                emitNullIfWasNull();
+            }
+        } else {
+            co.invoke_interface(TYPE_ResultSet, SIG_getString);
+        }
+    }
+
+    private void emitNullIfWasNull() {
+        // if (keys.wasNull()) value = null;
+        Label labelNotNull = co.make_label();
+        co.load_local(localKeys);
+        co.invoke_interface(TYPE_ResultSet, SIG_wasNull);
+        co.if_jump(CodeEmitter.EQ, labelNotNull);
+        co.pop();
+        co.aconst_null();
+        co.mark(labelNotNull);
+    }
+}
@@ -21,17 +21,16 @@ package uk.co.brunella.qof.codegen;
 import net.sf.cglib.core.Block;
 import net.sf.cglib.core.CodeEmitter;
 import net.sf.cglib.core.Local;
-import net.sf.cglib.core.Signature;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
-import uk.co.brunella.qof.ParameterReplacer;
 import uk.co.brunella.qof.exception.ValidationException;
 import uk.co.brunella.qof.mapping.Mapper;
 import uk.co.brunella.qof.mapping.MethodParameterInfo;
-import uk.co.brunella.qof.mapping.ParameterMapping;
 import uk.co.brunella.qof.mapping.QueryType;
+import uk.co.brunella.qof.util.MultiRowInserter;
 
-import java.util.List;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import static uk.co.brunella.qof.codegen.Constants.*;
 
@@ -55,12 +54,20 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         Local localConnection = co.make_local(TYPE_Connection);
         Local localPreparedStatement = co.make_local(TYPE_PreparedStatement);
         Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
 
         // check for valid return type
         Class<?> returnType = mapper.getMethod().getReturnInfo().getType();
-        if (returnType != Integer.TYPE && returnType != Void.TYPE) {
-            throw new ValidationException("Only int or void is allowed as return type");
+        boolean returnGeneratedKeys = mapper.getGeneratedKeyMapping() != null;
+        boolean returnKey = returnGeneratedKeys && mapper.getGeneratedKeyMapping().getKeyType() != null;
+        // insert methods returning long return the generated key
+        boolean returnLargeUpdateCount = returnType == Long.TYPE && !returnKey;
+        if (returnType != Integer.TYPE && returnType != Void.TYPE && !returnKey && !returnLargeUpdateCount) {
+            throw new ValidationException("Only int, long or void is allowed as return type");
         }
+        GeneratedKeyEmitter keys = returnGeneratedKeys ? new GeneratedKeyEmitter(co, mapper, false, false) : null;
+
+        listener.emitBeforePrepare(false);
 
         // connection = getConnection();
         EmitUtils.emitGetConnection(co, generator, localConnection);
@@ -70,15 +77,21 @@ public class InsertUpdateDeleteQueryMethodGenerator {
 
         // ps = connection.prepareStatement("select count(*) from person");
         co.load_local(localConnection);
-        pushSql(co, mapper, mapper.getSql());
-        co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+        EmitUtils.emitPushSql(co, generator, mapper, mapper.getSql());
+        listener.emitKeepSql();
+        EmitUtils.emitPrepareStatement(co, generator, returnGeneratedKeys);
         co.store_local(localPreparedStatement);
+        listener.emitPrepared();
 
         // try {
         Block tryBlockStatement = co.begin_block();
 
+        if (keys != null) {
+            keys.emitInit(null);
+        }
+
         Local localParameterIndexOffset = null;
-        if (mapper.usesArray()) {
+        if (mapper.usesArrayExpansion()) {
             localParameterIndexOffset = co.make_local(TYPE_int);
             co.push(0);
             co.store_local(localParameterIndexOffset);
@@ -88,19 +101,33 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         mapper.acceptParameterMappers(pmg);
 
         // ps.executeUpdate();
-        co.load_local(localPreparedStatement);
-        co.invoke_interface(TYPE_PreparedStatement, SIG_executeUpdate);
         Local localResult = null;
-        if (returnType == Integer.TYPE) {
-            localResult = co.make_local(TYPE_int);
+        if (returnLargeUpdateCount) {
+            // result = LargeUpdateHelper.executeUpdate(connection, ps);
+            co.load_local(localConnection);
+            co.load_local(localPreparedStatement);
+            co.invoke_static(TYPE_LargeUpdateHelper, SIG_LargeUpdateHelper_executeUpdate);
+            localResult = co.make_local(TYPE_long);
             co.store_local(localResult);
         } else {
-            co.pop();
+            co.load_local(localPreparedStatement);
+            co.invoke_interface(TYPE_PreparedStatement, SIG_executeUpdate);
+            if (returnType == Integer.TYPE) {
+                localResult = co.make_local(TYPE_int);
+                co.store_local(localResult);
+            } else {
+                co.pop();
+            }
         }
+        if (keys != null) {
+            keys.emitRead(localPreparedStatement, null);
+        }
+        listener.emitAfterExecute();
+        emitInvalidateResultCaches(co, mapper, localConnection);
 
         // finally
         tryBlockStatement.end();
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitReleaseStatement(co, generator, localPreparedStatement);
 
         tryBlockConnection.end();
         EmitUtils.emitUngetConnection(co, generator, localConnection);
@@ -108,6 +135,8 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         // return result
         if (localResult != null) {
             co.load_local(localResult);
+        } else if (returnType == Long.TYPE) {
+            keys.emitLoadResult();
         }
         co.return_value();
         // }
@@ -116,7 +145,7 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         EmitUtils.emitCatchException(co, tryBlockStatement, null);
         Block tryBlockStatement2 = co.begin_block();
         co.store_local(localException);
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitCloseStatement(co, generator, localPreparedStatement);
         co.load_local(localException);
         co.athrow();
         tryBlockStatement2.end();
@@ -127,56 +156,60 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         EmitUtils.emitUngetConnection(co, generator, localConnection);
         co.load_local(localException);
         co.athrow();
+
+        listener.emitFailureHandler();
     }
 
     private static void addInsertUpdateDeleteQueryBodyWithCollection(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper) {
         MethodParameterInfo[] collectionParameterInfos = mapper.getMethod().getCollectionParameterInfos();
         int numParameterCollections = collectionParameterInfos.length;
-
+        // iterators, iterables and streams are consumed once and their size is not known up front
+        boolean streaming = AnnotationMapperFactory.hasStreamingParameter(collectionParameterInfos);
 
         // check for valid return type
         Class<?> returnType = mapper.getMethod().getReturnInfo().getType();
-        if (!(returnType == Void.TYPE)
-                && !(returnType.isArray() && returnType.getComponentType() == Integer.TYPE)) {
-            throw new ValidationException("Only int[] or void is allowed as return type");
+        boolean returnGeneratedKeys = mapper.getGeneratedKeyMapping() != null;
+        boolean returnKeys = returnGeneratedKeys && mapper.getGeneratedKeyMapping().getKeyType() != null;
+        boolean returnUpdateCounts = returnType == int[].class;
+        // insert methods returning long[] return the generated keys
+        boolean returnLargeUpdateCounts = returnType == long[].class && !returnKeys;
+        boolean returnTotal = returnType == Long.TYPE;
+        if (returnType != Void.TYPE && !returnUpdateCounts && !returnLargeUpdateCounts && !returnTotal && !returnKeys) {
+            throw new ValidationException("Only int[], long[], long or void is allowed as return type");
         }
 
-        // check for different sizes
-        if (numParameterCollections > 1) {
-            Label labelException = co.make_label();
-            Label labelNoException = co.make_label();
-
-            for (int i = 0; i < numParameterCollections - 1; i++) {
-                co.load_arg(collectionParameterInfos[i].getIndex());
-                co.invoke_interface(TYPE_Collection, SIG_size);
-                co.load_arg(collectionParameterInfos[i + 1].getIndex());
-                co.invoke_interface(TYPE_Collection, SIG_size);
-                co.if_icmp(CodeEmitter.NE, labelException);
+        Local[] localIterators = new Local[numParameterCollections];
+        if (streaming) {
+            // Iterator<Person> iter = stream.iterator();
+            for (int i = 0; i < numParameterCollections; i++) {
+                localIterators[i] = co.make_local(TYPE_Iterator);
+                emitIterator(co, collectionParameterInfos[i]);
+                co.store_local(localIterators[i]);
             }
-            co.goTo(labelNoException);
-
-            co.mark(labelException);
-            co.throw_exception(TYPE_SQLException, EXCEPTION_COLLECTIONS_DIFFERENT_SIZE);
-
-            co.mark(labelNoException);
+            // if (!iter.hasNext()) return;
+            co.load_local(localIterators[0]);
+            co.invoke_interface(TYPE_Iterator, SIG_hasNext);
+            Label labelNotEmpty = co.make_label();
+            co.if_jump(CodeEmitter.NE, labelNotEmpty);
+            emitPushEmptyResult(co, returnType, returnKeys);
+            co.return_value();
+            co.mark(labelNotEmpty);
+        } else {
+            addCollectionSizeChecks(co, collectionParameterInfos, returnType, returnKeys);
         }
 
-        // if (parameter.size() == 0) return;
-        co.load_arg(collectionParameterInfos[0].getIndex());
-        co.invoke_interface(TYPE_Collection, SIG_size);
-        Label labelNotZero = co.make_label();
-        co.if_jump(CodeEmitter.NE, labelNotZero);
-        if (returnType.isArray()) {
-            // push new int[0]
-            co.push(0);
-            co.newarray(TYPE_int);
+        if (mapper.getMultiRowInsert() != null) {
+            addMultiRowInsertBody(co, generator, mapper);
+            return;
         }
-        co.return_value();
-        co.mark(labelNotZero);
 
         Local localConnection = co.make_local(TYPE_Connection);
         Local localPreparedStatement = co.make_local(TYPE_PreparedStatement);
         Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
+        GeneratedKeyEmitter keys = returnGeneratedKeys ? new GeneratedKeyEmitter(co, mapper, true, streaming) : null;
+
+        listener.emitBeforePrepare(false);
 
         // connection = getConnection();
         EmitUtils.emitGetConnection(co, generator, localConnection);
@@ -186,29 +219,55 @@ public class InsertUpdateDeleteQueryMethodGenerator {
 
         // ps = connection.prepareStatement("select count(*) from person");
         co.load_local(localConnection);
-        pushSql(co, mapper, mapper.getSql());
-        co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+        EmitUtils.emitPushSql(co, generator, mapper, mapper.getSql());
+        listener.emitKeepSql();
+        EmitUtils.emitPrepareStatement(co, generator, returnGeneratedKeys);
         co.store_local(localPreparedStatement);
+        listener.emitPrepared();
 
         // try {
         Block tryBlockStatement = co.begin_block();
 
-        Local localResult = null;
-        Local localPartResult = null;
-        Local localIndex = null;
+        // long results are executed with executeLargeUpdate and executeLargeBatch
+        UpdateCountLocals counts = new UpdateCountLocals(returnLargeUpdateCounts || returnTotal);
 
-        if (returnType.isArray()) {
+        if (keys != null) {
+            if (streaming) {
+                keys.emitInit(null);
+            } else {
+                Local localSize = co.make_local(TYPE_int);
+                co.load_arg(collectionParameterInfos[0].getIndex());
+                co.invoke_interface(TYPE_Collection, SIG_size);
+                co.store_local(localSize);
+                keys.emitInit(localSize);
+            }
+        }
+
+        if ((returnUpdateCounts || returnLargeUpdateCounts) && streaming) {
+            // buffer = new UpdateCountBuffer();
+            counts.localBuffer = co.make_local(TYPE_UpdateCountBuffer);
+            co.new_instance(TYPE_UpdateCountBuffer);
+            co.dup();
+            co.invoke_constructor(TYPE_UpdateCountBuffer);
+            co.store_local(counts.localBuffer);
+        } else if (returnUpdateCounts || returnLargeUpdateCounts) {
             // result = new int[collection.size()];
-            localResult = co.make_local(TYPE_intArray);
-            localPartResult = co.make_local(TYPE_intArray);
+            Type arrayType = returnLargeUpdateCounts ? TYPE_longArray : TYPE_intArray;
+            counts.localResult = co.make_local(arrayType);
+            counts.localPartResult = co.make_local(arrayType);
             co.load_arg(collectionParameterInfos[0].getIndex());
             co.invoke_interface(TYPE_Collection, SIG_size);
-            co.newarray(TYPE_int);
-            co.store_local(localResult);
+            co.newarray(returnLargeUpdateCounts ? TYPE_long : TYPE_int);
+            co.store_local(counts.localResult);
             // int index = 0;
-            localIndex = co.make_local(TYPE_int);
+            counts.localIndex = co.make_local(TYPE_int);
             co.push(0);
-            co.store_local(localIndex);
+            co.store_local(counts.localIndex);
+        } else if (returnTotal) {
+            // long total = 0;
+            counts.localTotal = co.make_local(TYPE_long);
+            co.push(0L);
+            co.store_local(counts.localTotal);
         }
 
         // start the loop
@@ -221,13 +280,14 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         co.push(0);
         co.store_local(localCounter);
 
-        Local[] localIterators = new Local[numParameterCollections];
         Local[] localObjects = new Local[numParameterCollections];
         for (int i = 0; i < numParameterCollections; i++) {
-            localIterators[i] = co.make_local(TYPE_Iterator);
-            co.load_arg(collectionParameterInfos[i].getIndex());
-            co.invoke_interface(TYPE_Collection, SIG_iterator);
-            co.store_local(localIterators[i]);
+            if (!streaming) {
+                localIterators[i] = co.make_local(TYPE_Iterator);
+                co.load_arg(collectionParameterInfos[i].getIndex());
+                co.invoke_interface(TYPE_Collection, SIG_iterator);
+                co.store_local(localIterators[i]);
+            }
 
             localObjects[i] = co.make_local(Type.getType(collectionParameterInfos[i].getCollectionElementType()));
         }
@@ -241,15 +301,25 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         co.if_jump(CodeEmitter.EQ, labelEndWhile);
 
         for (int i = 0; i < numParameterCollections; i++) {
+            if (streaming && i > 0) {
+                // if (!iter2.hasNext()) throw new SQLException("Input collections have different size");
+                emitCheckHasNext(co, localIterators[i], true);
+            }
             co.load_local(localIterators[i]);
             co.invoke_interface(TYPE_Iterator, SIG_iterator_next);
             co.checkcast(Type.getType(collectionParameterInfos[i].getCollectionElementType()));
             co.store_local(localObjects[i]);
         }
         co.iinc(localCounter, 1);
+        if (keys != null) {
+            keys.emitKeepBean(collectionParameterInfos, localObjects);
+        }
+
+            Label labelException = co.make_label();
+            Label labelNoException = co.make_label();
 
         Local localParameterIndexOffset = null;
-        if (mapper.usesArray()) {
+        if (mapper.usesArrayExpansion()) {
             localParameterIndexOffset = co.make_local(TYPE_int);
             co.push(0);
             co.store_local(localParameterIndexOffset);
@@ -286,29 +356,11 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         Label labelAfter = co.make_label();
         co.if_icmp(CodeEmitter.LT, labelAfter);
 
-        co.load_local(localPreparedStatement);
-        co.invoke_interface(TYPE_PreparedStatement, SIG_executeBatch);
-        if (returnType.isArray()) {
-            co.store_local(localPartResult);
-            // System.arraycopy(partResult, 0, result, index, partResult.length);
-            co.load_local(localPartResult);
-            co.push(0);
-            co.load_local(localResult);
-            co.load_local(localIndex);
-            co.load_local(localPartResult);
-            co.arraylength();
-            co.invoke_static(TYPE_System, SIG_arraycopy);
-
-            // index += partResult.length;
-            co.load_local(localIndex);
-            co.load_local(localPartResult);
-            co.arraylength();
-            co.math(CodeEmitter.ADD, TYPE_int);
-            co.store_local(localIndex);
-
-        } else {
-            co.pop();
+        counts.emitExecuteBatch(co, localConnection, localPreparedStatement);
+        if (keys != null) {
+            keys.emitRead(localPreparedStatement, localCounter);
         }
+        listener.emitBatchFlushed(localCounter);
         co.push(0);
         co.store_local(localCounter);
 
@@ -318,24 +370,22 @@ public class InsertUpdateDeleteQueryMethodGenerator {
 
         co.mark(labelNoBatching);
 
-        if (returnType.isArray()) {
-            // result[index++] = ps.executeUpdate();
-            co.load_local(localResult);
-            co.load_local(localIndex);
-            co.iinc(localIndex, 1);
-            co.load_local(localPreparedStatement);
-            co.invoke_interface(TYPE_PreparedStatement, SIG_executeUpdate);
-            co.array_store(TYPE_int);
-        } else {
-            co.load_local(localPreparedStatement);
-            co.invoke_interface(TYPE_PreparedStatement, SIG_executeUpdate);
-            co.pop();
+        counts.emitExecuteUpdate(co, localConnection, localPreparedStatement);
+        if (keys != null) {
+            keys.emitRead(localPreparedStatement, null);
         }
 
         co.goTo(labelBeginWhile);
 
         co.mark(labelEndWhile);
 
+        if (streaming) {
+            // if (iter2.hasNext()) throw new SQLException("Input collections have different size");
+            for (int i = 1; i < numParameterCollections; i++) {
+                emitCheckHasNext(co, localIterators[i], false);
+            }
+        }
+
         // if (batchSize > 0 && i > 0) {
         // ps.executeBatch();
         // }
@@ -346,34 +396,184 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         co.getfield(FIELD_NAME_BATCH_SIZE);
         co.if_jump(CodeEmitter.LE, labelAfter2);
 
-        co.load_local(localPreparedStatement);
-        co.invoke_interface(TYPE_PreparedStatement, SIG_executeBatch);
-        if (returnType.isArray()) {
-            co.store_local(localPartResult);
-            // System.arraycopy(partResult, 0, result, index, partResult.length);
-            co.load_local(localPartResult);
-            co.push(0);
-            co.load_local(localResult);
-            co.load_local(localIndex);
-            co.load_local(localPartResult);
-            co.arraylength();
-            co.invoke_static(TYPE_System, SIG_arraycopy);
-        } else {
-            co.pop();
+        counts.emitExecuteBatch(co, localConnection, localPreparedStatement);
+        if (keys != null) {
+            keys.emitRead(localPreparedStatement, localCounter);
         }
+        listener.emitBatchFlushed(localCounter);
 
         co.mark(labelAfter2);
+        listener.emitAfterExecute();
+        emitInvalidateResultCaches(co, mapper, localConnection);
 
         // finally
         tryBlockStatement.end();
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitReleaseStatement(co, generator, localPreparedStatement);
 
         tryBlockConnection.end();
         EmitUtils.emitUngetConnection(co, generator, localConnection);
 
         // return result
+        if (returnKeys) {
+            keys.emitLoadResult();
+        } else {
+            counts.emitLoadResult(co);
+        }
+        co.return_value();
+        // }
+
+        // exception handler
+        EmitUtils.emitCatchException(co, tryBlockStatement, null);
+        Block tryBlockStatement2 = co.begin_block();
+        co.store_local(localException);
+        EmitUtils.emitCloseStatement(co, generator, localPreparedStatement);
+        co.load_local(localException);
+        co.athrow();
+        tryBlockStatement2.end();
+
+        EmitUtils.emitCatchException(co, tryBlockConnection, null);
+        EmitUtils.emitCatchException(co, tryBlockStatement2, null);
+        co.store_local(localException);
+        EmitUtils.emitUngetConnection(co, generator, localConnection);
+        co.load_local(localException);
+        co.athrow();
+
+        listener.emitFailureHandler();
+    }
+
+    private static void addMultiRowInsertBody(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper) {
+        MethodParameterInfo[] collectionParameterInfos = mapper.getMethod().getCollectionParameterInfos();
+        int numParameterCollections = collectionParameterInfos.length;
+        Class<?> returnType = mapper.getMethod().getReturnInfo().getType();
+        if (returnType == Long.TYPE) {
+            throw new ValidationException("Only int[] or void is allowed as return type for multi-row inserts");
+        }
+
+        // the statements for 1, 2, 4, ... rows
+        int parametersPerRow = MultiRowInserter.countParameters(mapper.getSql());
+        int maxRows = mapper.getMultiRowInsert().maxRows();
+        if (parametersPerRow > 0) {
+            maxRows = Math.max(1, Math.min(maxRows, generator.getSqlDialect().getMaxParameters() / parametersPerRow));
+        }
+        String[] sqls;
+        try {
+            sqls = MultiRowInserter.createSqls(mapper.getSql(), maxRows);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException(e.getMessage());
+        }
+        String sqlFieldName = generator.getMultiRowSqlFieldName(co.getClassEmitter(), sqls);
+
+        Local localConnection = co.make_local(TYPE_Connection);
+        Local localInserter = co.make_local(TYPE_MultiRowInserter);
+        Local localPreparedStatement = co.make_local(TYPE_PreparedStatement);
+        Local localParameterIndexOffset = co.make_local(TYPE_int);
+        Local localRows = co.make_local(TYPE_int);
+        Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
+
+        listener.emitBeforePrepare(false);
+
+        // connection = getConnection();
+        EmitUtils.emitGetConnection(co, generator, localConnection);
+
+        // try {
+        Block tryBlockConnection = co.begin_block();
+
+        // inserter = new MultiRowInserter(connection, statementCache, sqls, parametersPerRow, list.size(), batchSize);
+        co.new_instance(TYPE_MultiRowInserter);
+        co.dup();
+        co.load_local(localConnection);
+        if (generator.getStatementCache() == null) {
+            co.aconst_null();
+        } else {
+            co.getfield(FIELD_NAME_STATEMENT_CACHE);
+        }
+        co.getfield(sqlFieldName);
+        co.push(parametersPerRow);
+        co.load_arg(collectionParameterInfos[0].getIndex());
+        co.invoke_interface(TYPE_Collection, SIG_size);
+        co.load_this();
+        co.getfield(FIELD_NAME_BATCH_SIZE);
+        co.invoke_constructor(TYPE_MultiRowInserter, SIG_MultiRowInserter_Constructor);
+        co.store_local(localInserter);
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_getSql);
+        listener.emitKeepSql();
+        co.pop();
+        listener.emitPrepared();
+
+        // try {
+        Block tryBlockStatement = co.begin_block();
+
+        // Iterator<Person> iter = list.iterator();
+        // while (iter.hasNext()) {
+        // Person person = iter.next();
+        Local[] localIterators = new Local[numParameterCollections];
+        Local[] localObjects = new Local[numParameterCollections];
+        for (int i = 0; i < numParameterCollections; i++) {
+            localIterators[i] = co.make_local(TYPE_Iterator);
+            co.load_arg(collectionParameterInfos[i].getIndex());
+            co.invoke_interface(TYPE_Collection, SIG_iterator);
+            co.store_local(localIterators[i]);
+
+            localObjects[i] = co.make_local(Type.getType(collectionParameterInfos[i].getCollectionElementType()));
+        }
+
+        Label labelBeginWhile = co.make_label();
+        Label labelEndWhile = co.make_label();
+        co.mark(labelBeginWhile);
+        co.load_local(localIterators[0]);
+        co.invoke_interface(TYPE_Iterator, SIG_hasNext);
+        co.if_jump(CodeEmitter.EQ, labelEndWhile);
+
+        for (int i = 0; i < numParameterCollections; i++) {
+            co.load_local(localIterators[i]);
+            co.invoke_interface(TYPE_Iterator, SIG_iterator_next);
+            co.checkcast(Type.getType(collectionParameterInfos[i].getCollectionElementType()));
+            co.store_local(localObjects[i]);
+        }
+
+        // ps = inserter.getStatement();
+        // offset = inserter.getParameterIndexOffset();
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_getStatement);
+        co.store_local(localPreparedStatement);
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_getParameterIndexOffset);
+        co.store_local(localParameterIndexOffset);
+
+        ParameterMappingGenerator pmg = new ParameterMappingGenerator(co, localPreparedStatement, localObjects,
+                collectionParameterInfos, localParameterIndexOffset);
+        mapper.acceptParameterMappers(pmg);
+
+        // rows = inserter.addRow();
+        // if (rows > 0) {
+        // listener.batchFlushed(rows);
+        // }
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_addRow);
+        co.store_local(localRows);
+        co.load_local(localRows);
+        co.if_jump(CodeEmitter.LE, labelBeginWhile);
+        listener.emitBatchFlushed(localRows);
+        co.goTo(labelBeginWhile);
+
+        co.mark(labelEndWhile);
+        listener.emitAfterExecute();
+        emitInvalidateResultCaches(co, mapper, localConnection);
+
+        // finally
+        tryBlockStatement.end();
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_close);
+
+        tryBlockConnection.end();
+        EmitUtils.emitUngetConnection(co, generator, localConnection);
+
+        // return inserter.getUpdateCounts();
         if (returnType.isArray()) {
-            co.load_local(localResult);
+            co.load_local(localInserter);
+            co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_getUpdateCounts);
         }
         co.return_value();
         // }
@@ -382,7 +582,8 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         EmitUtils.emitCatchException(co, tryBlockStatement, null);
         Block tryBlockStatement2 = co.begin_block();
         co.store_local(localException);
-        EmitUtils.emitClose(co, localPreparedStatement);
+        co.load_local(localInserter);
+        co.invoke_virtual(TYPE_MultiRowInserter, SIG_MultiRowInserter_closeAfterFailure);
         co.load_local(localException);
         co.athrow();
         tryBlockStatement2.end();
@@ -393,29 +594,216 @@ public class InsertUpdateDeleteQueryMethodGenerator {
         EmitUtils.emitUngetConnection(co, generator, localConnection);
         co.load_local(localException);
         co.athrow();
+
+        listener.emitFailureHandler();
     }
 
-    private static void pushSql(CodeEmitter co, Mapper mapper, String sql) {
-        if (mapper.usesArray()) {
-            co.push(sql);
-            List<ParameterMapping> mappings = mapper.getParameters();
-            for (int i = mappings.size() - 1; i >= 0; i--) {
-                ParameterMapping mapping = mappings.get(i);
-                if (mapping.usesArray()) {
-                    co.push(mapping.getSqlIndexes()[0]); // index
-                    co.load_arg(mapping.getIndex());
-                    co.arraylength(); // numArgs
-                    if (mapping.getParameterSeparator() == null) {
-                        co.push(",");
-                    } else {
-                        co.push(mapping.getParameterSeparator());
-                    }
-                    co.invoke_static(Type.getType(ParameterReplacer.class),
-                            new Signature("replace", "(Ljava/lang/String;IILjava/lang/String;)Ljava/lang/String;"));
-                }
+    private static void addCollectionSizeChecks(CodeEmitter co, MethodParameterInfo[] collectionParameterInfos,
+                                                Class<?> returnType, boolean returnKeys) {
+        int numParameterCollections = collectionParameterInfos.length;
+
+        // check for different sizes
+        if (numParameterCollections > 1) {
+            Label labelException = co.make_label();
+            Label labelNoException = co.make_label();
+
+            for (int i = 0; i < numParameterCollections - 1; i++) {
+                co.load_arg(collectionParameterInfos[i].getIndex());
+                co.invoke_interface(TYPE_Collection, SIG_size);
+                co.load_arg(collectionParameterInfos[i + 1].getIndex());
+                co.invoke_interface(TYPE_Collection, SIG_size);
+                co.if_icmp(CodeEmitter.NE, labelException);
             }
+            co.goTo(labelNoException);
+
+            co.mark(labelException);
+            co.throw_exception(TYPE_SQLException, EXCEPTION_COLLECTIONS_DIFFERENT_SIZE);
+
+            co.mark(labelNoException);
+        }
+
+        // if (parameter.size() == 0) return;
+        co.load_arg(collectionParameterInfos[0].getIndex());
+        co.invoke_interface(TYPE_Collection, SIG_size);
+        Label labelNotZero = co.make_label();
+        co.if_jump(CodeEmitter.NE, labelNotZero);
+        emitPushEmptyResult(co, returnType, returnKeys);
+        co.return_value();
+        co.mark(labelNotZero);
+    }
+
+    private static void emitPushEmptyResult(CodeEmitter co, Class<?> returnType, boolean returnKeys) {
+        if (returnType.isArray()) {
+            // push new int[0] or new long[0]
+            co.push(0);
+            co.newarray(Type.getType(returnType.getComponentType()));
+        } else if (returnKeys) {
+            // push new ArrayList()
+            co.new_instance(TYPE_ArrayList);
+            co.dup();
+            co.invoke_constructor(TYPE_ArrayList);
+        } else if (returnType == Long.TYPE) {
+            co.push(0L);
+        }
+    }
+
+    private static void emitIterator(CodeEmitter co, MethodParameterInfo parameterInfo) {
+        Class<?> collectionType = parameterInfo.getCollectionType();
+        co.load_arg(parameterInfo.getIndex());
+        if (Iterator.class.isAssignableFrom(collectionType)) {
+            // the parameter is the iterator
+            return;
+        }
+        if (collectionType == Stream.class) {
+            co.invoke_interface(TYPE_Stream, SIG_iterator);
+        } else if (collectionType == Iterable.class) {
+            co.invoke_interface(TYPE_Iterable, SIG_iterator);
         } else {
-            co.push(sql);
+            co.invoke_interface(TYPE_Collection, SIG_iterator);
+        }
+    }
+
+    private static void emitCheckHasNext(CodeEmitter co, Local localIterator, boolean expected) {
+        // if (iter.hasNext() != expected) throw new SQLException("Input collections have different size");
+        Label labelOk = co.make_label();
+        co.load_local(localIterator);
+        co.invoke_interface(TYPE_Iterator, SIG_hasNext);
+        co.if_jump(expected ? CodeEmitter.NE : CodeEmitter.EQ, labelOk);
+        co.throw_exception(TYPE_SQLException, EXCEPTION_COLLECTIONS_DIFFERENT_SIZE);
+        co.mark(labelOk);
+    }
+
+    private static void emitInvalidateResultCaches(CodeEmitter co, Mapper mapper, Local localConnection) {
+        // ResultCache.tableWritten(connection, "table");
+        for (String tableName : mapper.getTableNames()) {
+            co.load_local(localConnection);
+            co.push(tableName);
+            co.invoke_static(TYPE_ResultCache, SIG_ResultCache_tableWritten);
+        }
+    }
+
+    /**
+     * Locals that collect the update counts of a batch method. Only the locals for the
+     * return type of the method are used.
+     */
+    private static class UpdateCountLocals {
+        // executes with executeLargeUpdate and executeLargeBatch
+        private final boolean large;
+        // int[] or long[] result with the size of the collections
+        private Local localResult;
+        private Local localPartResult;
+        private Local localIndex;
+        // update count buffer for streaming parameters
+        private Local localBuffer;
+        // long total
+        private Local localTotal;
+
+        UpdateCountLocals(boolean large) {
+            this.large = large;
+        }
+
+        void emitExecuteBatch(CodeEmitter co, Local localConnection, Local localPreparedStatement) {
+            if (large) {
+                // partResult = LargeUpdateHelper.executeBatch(connection, ps);
+                co.load_local(localConnection);
+                co.load_local(localPreparedStatement);
+                co.invoke_static(TYPE_LargeUpdateHelper, SIG_LargeUpdateHelper_executeBatch);
+            } else {
+                // partResult = ps.executeBatch();
+                co.load_local(localPreparedStatement);
+                co.invoke_interface(TYPE_PreparedStatement, SIG_executeBatch);
+            }
+            if (localResult != null) {
+                co.store_local(localPartResult);
+                // System.arraycopy(partResult, 0, result, index, partResult.length);
+                co.load_local(localPartResult);
+                co.push(0);
+                co.load_local(localResult);
+                co.load_local(localIndex);
+                co.load_local(localPartResult);
+                co.arraylength();
+                co.invoke_static(TYPE_System, SIG_arraycopy);
+
+                // index += partResult.length;
+                co.load_local(localIndex);
+                co.load_local(localPartResult);
+                co.arraylength();
+                co.math(CodeEmitter.ADD, TYPE_int);
+                co.store_local(localIndex);
+            } else if (localBuffer != null) {
+                // buffer.add(partResult);
+                co.load_local(localBuffer);
+                co.swap();
+                co.invoke_virtual(TYPE_UpdateCountBuffer,
+                        large ? SIG_UpdateCountBuffer_addAllLarge : SIG_UpdateCountBuffer_addAll);
+            } else if (localTotal != null) {
+                // total += UpdateCountBuffer.sum(partResult);
+                co.invoke_static(TYPE_UpdateCountBuffer, large ? SIG_UpdateCountBuffer_sumLarge : SIG_UpdateCountBuffer_sum);
+                co.load_local(localTotal);
+                co.math(CodeEmitter.ADD, TYPE_long);
+                co.store_local(localTotal);
+            } else {
+                co.pop();
+            }
+        }
+
+        void emitExecuteUpdate(CodeEmitter co, Local localConnection, Local localPreparedStatement) {
+            Type countType = large ? TYPE_long : TYPE_int;
+            if (large) {
+                // count = LargeUpdateHelper.executeUpdate(connection, ps);
+                co.load_local(localConnection);
+                co.load_local(localPreparedStatement);
+                co.invoke_static(TYPE_LargeUpdateHelper, SIG_LargeUpdateHelper_executeUpdate);
+            } else {
+                // count = ps.executeUpdate();
+                co.load_local(localPreparedStatement);
+                co.invoke_interface(TYPE_PreparedStatement, SIG_executeUpdate);
+            }
+            if (localResult == null && localBuffer == null && localTotal == null) {
+                if (large) {
+                    co.pop2();
+                } else {
+                    co.pop();
+                }
+                return;
+            }
+            Local localCount = co.make_local(countType);
+            co.store_local(localCount);
+            if (localResult != null) {
+                // result[index++] = count;
+                co.load_local(localResult);
+                co.load_local(localIndex);
+                co.iinc(localIndex, 1);
+                co.load_local(localCount);
+                co.array_store(countType);
+            } else if (localBuffer != null) {
+                // buffer.add(count);
+                co.load_local(localBuffer);
+                co.load_local(localCount);
+                co.invoke_virtual(TYPE_UpdateCountBuffer, large ? SIG_UpdateCountBuffer_addLarge : SIG_UpdateCountBuffer_add);
+            } else {
+                // total += count;
+                co.load_local(localTotal);
+                co.load_local(localCount);
+                if (!large) {
+                    co.cast_numeric(TYPE_int, TYPE_long);
+                }
+                co.math(CodeEmitter.ADD, TYPE_long);
+                co.store_local(localTotal);
+            }
+        }
+
+        void emitLoadResult(CodeEmitter co) {
+            if (localResult != null) {
+                co.load_local(localResult);
+            } else if (localBuffer != null) {
+                // return buffer.toArray();
+                co.load_local(localBuffer);
+                co.invoke_virtual(TYPE_UpdateCountBuffer,
+                        large ? SIG_UpdateCountBuffer_toLongArray : SIG_UpdateCountBuffer_toArray);
+            } else if (localTotal != null) {
+                co.load_local(localTotal);
+            }
         }
     }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.codegen;
+
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.*;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import uk.co.brunella.qof.util.ClassGenerationCache;
+import uk.co.brunella.qof.util.DefineClassHelper;
+import uk.co.brunella.qof.util.InstanceFactory;
+import uk.co.brunella.qof.util.ReflectionUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal - generates an <code>InstanceFactory</code> for a class.
+ *
+ * <p> The generated factory calls the constructors of the class directly.
+ * Private constructors are not accessible from the factory and are ignored.
+ * A factory class that was generated at build time is used if available.</p>
+ *
+ * @see InstanceFactory
+ * @since 1.2.1
+ */
+public class InstanceFactoryGenerator {
+
+    private static final String CLASS_NAME_SUFFIX = "$InstanceFactory";
+    private static final Type TYPE_InstanceFactory = Type.getType(InstanceFactory.class);
+    private static final Signature SIG_Constructor = new Signature("<init>", "([[Ljava/lang/Class;)V");
+    private static final Signature SIG_newInstance = new Signature("newInstance", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+    private static final Type TYPE_Exception = Type.getType(Exception.class);
+
+    /**
+     * Generates an instance factory for a class and returns a new instance of it.
+     *
+     * @param <T>   type of the created objects
+     * @param clazz the class
+     * @return the instance factory
+     */
+    public <T> InstanceFactory<T> create(Class<T> clazz) {
+        if (Modifier.isAbstract(clazz.getModifiers())) {
+            throw new RuntimeException("Cannot create instance factory for abstract class " + clazz.getName());
+        }
+        final List<Constructor<?>> constructors = new ArrayList<>();
+        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(constructor.getModifiers())) {
+                constructors.add(constructor);
+            }
+        }
+        Class<?>[][] constructorParameterTypes = new Class<?>[constructors.size()][];
+        for (int i = 0; i < constructorParameterTypes.length; i++) {
+            constructorParameterTypes[i] = constructors.get(i).getParameterTypes();
+        }
+
+        String className = clazz.getName() + CLASS_NAME_SUFFIX;
+        try {
+            Class<?> factoryClass = ClassGenerationCache.getPregeneratedClass(className, clazz.getClassLoader());
+            if (factoryClass == null) {
+                DebuggingClassWriter cw = new DebuggingClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+                ClassEmitter ce = new ClassEmitter(cw);
+                ce.begin_class(Constants.V1_2, Constants.ACC_PUBLIC, className, TYPE_InstanceFactory, null, "<generated>");
+                addConstructor(ce);
+                addNewInstanceMethod(ce, Type.getType(clazz), constructors);
+                ce.end_class();
+                factoryClass = DefineClassHelper.defineClass(className, cw.toByteArray(), clazz);
+            }
+            @SuppressWarnings("unchecked") InstanceFactory<T> factory = (InstanceFactory<T>) factoryClass
+                    .getConstructor(Class[][].class).newInstance((Object) constructorParameterTypes);
+            return factory;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void addConstructor(ClassEmitter ce) {
+        CodeEmitter co = ce.begin_method(Constants.ACC_PUBLIC, SIG_Constructor, null);
+        co.load_this();
+        co.load_arg(0);
+        co.super_invoke_constructor(SIG_Constructor);
+        co.return_value();
+        co.end_method();
+    }
+
+    private void addNewInstanceMethod(ClassEmitter ce, final Type type, final List<Constructor<?>> constructors) {
+        // Object newInstance(int constructorIndex, Object[] initArgs) throws Exception
+        final CodeEmitter co = ce.begin_method(Constants.ACC_PROTECTED, SIG_newInstance, new Type[]{TYPE_Exception});
+        int[] indexes = new int[constructors.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        co.load_arg(0);
+        co.process_switch(indexes, new ProcessSwitchCallback() {
+            public void processCase(int key, Label end) {
+                Constructor<?> constructor = constructors.get(key);
+                Signature signature = ReflectionUtils.getConstructorSignature(constructor);
+                co.new_instance(type);
+                co.dup();
+                Type[] argumentTypes = signature.getArgumentTypes();
+                for (int i = 0; i < argumentTypes.length; i++) {
+                    co.load_arg(1);
+                    co.push(i);
+                    co.array_load(uk.co.brunella.qof.codegen.Constants.TYPE_Object);
+                    co.unbox(argumentTypes[i]);
+                }
+                co.invoke_constructor(type, signature);
+                co.return_value();
+            }
+
+            public void processDefault() {
+                co.throw_exception(uk.co.brunella.qof.codegen.Constants.TYPE_RuntimeException, "Unknown constructor index");
+            }
+        });
+        co.end_method();
+    }
+}
@@ -119,6 +119,28 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
         }
     }
 
+    private ArrayLoop beginArrayLoop(Mapper mapper, int argIndex) {
+        // for (int i = 0; i < length; i++) {
+        ArrayLoop loop = new ArrayLoop(mapper, argIndex);
+        co.push(0);
+        co.store_local(loop.localIndex);
+        co.goTo(loop.labelLoopTest);
+        co.mark(loop.labelLoopStart);
+        return loop;
+    }
+
+    private void endArrayLoop(ArrayLoop loop) {
+        co.iinc(parameterIndexOffset, 1);
+
+        co.iinc(loop.localIndex, 1);
+        co.mark(loop.labelLoopTest);
+        co.load_local(loop.localIndex);
+        EmitUtils.emitArrayLength(co, loop.mapper, loop.argIndex);
+        co.if_icmp(CodeEmitter.LT, loop.labelLoopStart);
+
+        co.iinc(parameterIndexOffset, -1);
+    }
+
     private int findIndex(int argIndex) {
         for (int i = 0; i < collectionIndexes.length; i++) {
             if (collectionIndexes[i] == argIndex) {
@@ -131,48 +153,74 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
     // implementation of MappingVisitor
 
     public final void visit(Mapper mapper, AbstractNumberMapping mapping) {
-        mapping.accept(mapper, (NumberMappingVisitor) this);
+        if (!generateArrayBinding(mapper, mapping)) {
+            mapping.accept(mapper, (NumberMappingVisitor) this);
+        }
     }
 
     public final void visit(Mapper mapper, AbstractCharacterMapping mapping) {
-        mapping.accept(mapper, (CharacterMappingVisitor) this);
+        if (!generateArrayBinding(mapper, mapping)) {
+            mapping.accept(mapper, (CharacterMappingVisitor) this);
+        }
     }
 
     public final void visit(Mapper mapper, AbstractDateTimeMapping mapping) {
-        mapping.accept(mapper, (DateTimeMappingVisitor) this);
+        if (!generateArrayBinding(mapper, mapping)) {
+            mapping.accept(mapper, (DateTimeMappingVisitor) this);
+        }
+    }
+
+    private boolean generateArrayBinding(Mapper mapper, ParameterMapping mapping) {
+        String typeName = mapper.getArrayTypeName(mapping);
+        if (typeName == null) {
+            return false;
+        }
+        // ps.setArray(index, SqlArrayHelper.createArray(ps, typeName, array));
+        co.load_local(preparedStatement);
+        co.push(mapping.getSqlIndexes()[0]);
+        if (parameterIndexOffset != null) {
+            co.load_local(parameterIndexOffset);
+            co.math(CodeEmitter.ADD, TYPE_int);
+        }
+        co.load_local(preparedStatement);
+        co.push(typeName);
+        co.load_arg(mapping.getIndex());
+        co.invoke_static(TYPE_SqlArrayHelper, SIG_createArray);
+        co.invoke_interface(preparedStatement.getType(), SIG_setArray);
+        return true;
     }
 
     // implementation of NumberMappingVisitor
 
     public void visit(Mapper mapper, AbstractNumberMapping.ByteMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Byte, TYPE_byte, SIG_byteValue, SIG_setByte, java.sql.Types.TINYINT);
+        generateParameterMapping(mapper, mapping, TYPE_Byte, TYPE_byte, SIG_byteValue, SIG_setByte, java.sql.Types.TINYINT);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.ShortMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Short, TYPE_short, SIG_shortValue, SIG_setShort, java.sql.Types.SMALLINT);
+        generateParameterMapping(mapper, mapping, TYPE_Short, TYPE_short, SIG_shortValue, SIG_setShort, java.sql.Types.SMALLINT);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.IntegerMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Integer, TYPE_int, SIG_intValue, SIG_setInt, java.sql.Types.INTEGER);
+        generateParameterMapping(mapper, mapping, TYPE_Integer, TYPE_int, SIG_intValue, SIG_setInt, java.sql.Types.INTEGER);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.LongMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Long, TYPE_long, SIG_longValue, SIG_setLong, java.sql.Types.BIGINT);
+        generateParameterMapping(mapper, mapping, TYPE_Long, TYPE_long, SIG_longValue, SIG_setLong, java.sql.Types.BIGINT);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.FloatMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Float, TYPE_float, SIG_floatValue, SIG_setFloat, java.sql.Types.REAL);
+        generateParameterMapping(mapper, mapping, TYPE_Float, TYPE_float, SIG_floatValue, SIG_setFloat, java.sql.Types.REAL);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.DoubleMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Double, TYPE_double, SIG_doubleValue, SIG_setDouble, java.sql.Types.DOUBLE);
+        generateParameterMapping(mapper, mapping, TYPE_Double, TYPE_double, SIG_doubleValue, SIG_setDouble, java.sql.Types.DOUBLE);
     }
 
     public void visit(Mapper mapper, AbstractNumberMapping.BooleanMapping mapping) {
-        generateParameterMapping(mapping, TYPE_Boolean, TYPE_boolean, SIG_booleanValue, SIG_setBoolean, java.sql.Types.BOOLEAN);
+        generateParameterMapping(mapper, mapping, TYPE_Boolean, TYPE_boolean, SIG_booleanValue, SIG_setBoolean, java.sql.Types.BOOLEAN);
     }
 
-    private void generateParameterMapping(ParameterMapping mapping, Type boxedType, Type unboxedType,
+    private void generateParameterMapping(Mapper mapper, ParameterMapping mapping, Type boxedType, Type unboxedType,
                                           Signature signatureUnbox, Signature signatureSet, int sqlType) {
         int argIndex = mapping.getIndex();
         int sqlIndex = mapping.getSqlIndexes()[0];
@@ -180,20 +228,14 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
         Class<?> objectType = mapping.getType();
 
         if (mapping.usesArray()) {
-            Local localIndex = co.make_local(TYPE_int);
-            co.push(0);
-            co.store_local(localIndex);
-            Label labelLoopTest = co.make_label();
-            co.goTo(labelLoopTest);
-            Label labelLoopStart = co.make_label();
-            co.mark(labelLoopStart);
+            ArrayLoop loop = beginArrayLoop(mapper, argIndex);
 
             co.load_local(preparedStatement);
             co.push(sqlIndex);
             co.load_local(parameterIndexOffset);
             co.math(CodeEmitter.ADD, TYPE_int);
             co.load_arg(argIndex);
-            co.load_local(localIndex);
+            loop.loadIndex();
             if (objectType.isPrimitive()) {
                 if (getters != null) {
                     co.array_load(Type.getType(getters[0].getDeclaringClass()));
@@ -214,16 +256,7 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
 
             co.invoke_interface(preparedStatement.getType(), signatureSet);
 
-            co.iinc(parameterIndexOffset, 1);
-
-            co.iinc(localIndex, 1);
-            co.mark(labelLoopTest);
-            co.load_local(localIndex);
-            co.load_arg(argIndex);
-            co.arraylength();
-            co.if_icmp(CodeEmitter.LT, labelLoopStart);
-
-            co.iinc(parameterIndexOffset, -1);
+            endArrayLoop(loop);
 
         } else {
 
@@ -277,34 +310,19 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
         Method[] getters = mapping.getGetters();
 
         if (mapping.usesArray()) {
-            Local localIndex = co.make_local(TYPE_int);
-            co.push(0);
-            co.store_local(localIndex);
-            Label labelLoopTest = co.make_label();
-            co.goTo(labelLoopTest);
-            Label labelLoopStart = co.make_label();
-            co.mark(labelLoopStart);
+            ArrayLoop loop = beginArrayLoop(mapper, argIndex);
 
             co.load_local(preparedStatement);
             co.push(sqlIndex);
             co.load_local(parameterIndexOffset);
             co.math(CodeEmitter.ADD, TYPE_int);
             co.load_arg(argIndex);
-            co.load_local(localIndex);
+            loop.loadIndex();
             co.array_load(TYPE_String);
 
             co.invoke_interface(preparedStatement.getType(), SIG_setString);
 
-            co.iinc(parameterIndexOffset, 1);
-
-            co.iinc(localIndex, 1);
-            co.mark(labelLoopTest);
-            co.load_local(localIndex);
-            co.load_arg(argIndex);
-            co.arraylength();
-            co.if_icmp(CodeEmitter.LT, labelLoopStart);
-
-            co.iinc(parameterIndexOffset, -1);
+            endArrayLoop(loop);
 
         } else {
             // setString(index, value);
@@ -326,20 +344,14 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
         Class<?> objectType = mapping.getType();
 
         if (mapping.usesArray()) {
-            Local localIndex = co.make_local(TYPE_int);
-            co.push(0);
-            co.store_local(localIndex);
-            Label labelLoopTest = co.make_label();
-            co.goTo(labelLoopTest);
-            Label labelLoopStart = co.make_label();
-            co.mark(labelLoopStart);
+            ArrayLoop loop = beginArrayLoop(mapper, argIndex);
 
             co.load_local(preparedStatement);
             co.push(sqlIndex);
             co.load_local(parameterIndexOffset);
             co.math(CodeEmitter.ADD, TYPE_int);
             co.load_arg(argIndex);
-            co.load_local(localIndex);
+            loop.loadIndex();
 
             if (objectType.isPrimitive()) {
                 // it's a char
@@ -362,16 +374,7 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
             }
             co.invoke_interface(preparedStatement.getType(), SIG_setString);
 
-            co.iinc(parameterIndexOffset, 1);
-
-            co.iinc(localIndex, 1);
-            co.mark(labelLoopTest);
-            co.load_local(localIndex);
-            co.load_arg(argIndex);
-            co.arraylength();
-            co.if_icmp(CodeEmitter.LT, labelLoopStart);
-
-            co.iinc(parameterIndexOffset, -1);
+            endArrayLoop(loop);
 
         } else {
             // setString(index, value);
@@ -407,31 +410,25 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
     // implementation of DateTimeVisitor
 
     public void visit(Mapper mapper, AbstractDateTimeMapping.DateMapping mapping) {
-        generateParameterMapping(mapping, TYPE_sqlDate, SIG_setDate, java.sql.Types.DATE);
+        generateParameterMapping(mapper, mapping, TYPE_sqlDate, SIG_setDate, java.sql.Types.DATE);
     }
 
     public void visit(Mapper mapper, AbstractDateTimeMapping.TimeMapping mapping) {
-        generateParameterMapping(mapping, TYPE_sqlTime, SIG_setTime, java.sql.Types.TIME);
+        generateParameterMapping(mapper, mapping, TYPE_sqlTime, SIG_setTime, java.sql.Types.TIME);
     }
 
     public void visit(Mapper mapper, AbstractDateTimeMapping.TimestampMapping mapping) {
-        generateParameterMapping(mapping, TYPE_sqlTimestamp, SIG_setTimestamp, java.sql.Types.TIMESTAMP);
+        generateParameterMapping(mapper, mapping, TYPE_sqlTimestamp, SIG_setTimestamp, java.sql.Types.TIMESTAMP);
     }
 
-    public final void generateParameterMapping(AbstractDateTimeMapping mapping, Type sqlType, Signature sqlTypeSet,
+    public final void generateParameterMapping(Mapper mapper, AbstractDateTimeMapping mapping, Type sqlType, Signature sqlTypeSet,
                                                int sqlTypeCode) {
         int argIndex = mapping.getIndex();
         int sqlIndex = mapping.getSqlIndexes()[0];
         Method[] getters = mapping.getGetters();
 
         if (mapping.usesArray()) {
-            Local localIndex = co.make_local(TYPE_int);
-            co.push(0);
-            co.store_local(localIndex);
-            Label labelLoopTest = co.make_label();
-            co.goTo(labelLoopTest);
-            Label labelLoopStart = co.make_label();
-            co.mark(labelLoopStart);
+            ArrayLoop loop = beginArrayLoop(mapper, argIndex);
 
             co.load_local(preparedStatement);
             co.push(sqlIndex);
@@ -442,23 +439,14 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
             co.dup();
 
             co.load_arg(argIndex);
-            co.load_local(localIndex);
+            loop.loadIndex();
             co.aaload();
 
             co.invoke_virtual(TYPE_Date, SIG_getTimeLong);
             co.invoke_constructor(sqlType, new Signature("<init>", "(J)V"));
             co.invoke_interface(preparedStatement.getType(), sqlTypeSet);
 
-            co.iinc(parameterIndexOffset, 1);
-
-            co.iinc(localIndex, 1);
-            co.mark(labelLoopTest);
-            co.load_local(localIndex);
-            co.load_arg(argIndex);
-            co.arraylength();
-            co.if_icmp(CodeEmitter.LT, labelLoopStart);
-
-            co.iinc(parameterIndexOffset, -1);
+            endArrayLoop(loop);
 
         } else {
 
@@ -505,18 +493,12 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
                 throw new RuntimeException("Only adapters for one column can be used for in-clauses");
             }
 
-            Local localIndex = co.make_local(TYPE_int);
-            co.push(0);
-            co.store_local(localIndex);
-            Label labelLoopTest = co.make_label();
-            co.goTo(labelLoopTest);
-            Label labelLoopStart = co.make_label();
-            co.mark(labelLoopStart);
+            ArrayLoop loop = beginArrayLoop(mapper, argIndex);
 
             if (mapping.getAdapter() instanceof GeneratorMappingAdapter) {
                 // load the argument on top of the stack
                 co.load_arg(argIndex);
-                co.load_local(localIndex);
+                loop.loadIndex();
                 co.aaload();
                 ((GeneratorMappingAdapter) mapping.getAdapter()).generateToPreparedStatement(
                         mapping, co, preparedStatement, sqlIndexes, parameterIndexOffset);
@@ -525,7 +507,7 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
                 // set(PreparedStatement ps, Object value, int[] indexes)
                 co.load_local(preparedStatement);
                 co.load_arg(argIndex);
-                co.load_local(localIndex);
+                loop.loadIndex();
                 co.aaload();
                 // new int[] {...}
                 co.push(sqlIndexes.length);
@@ -546,16 +528,7 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
                 throw new RuntimeException("Unsupported adapter type " + mapping.getAdapter());
             }
 
-            co.iinc(parameterIndexOffset, 1);
-
-            co.iinc(localIndex, 1);
-            co.mark(labelLoopTest);
-            co.load_local(localIndex);
-            co.load_arg(argIndex);
-            co.arraylength();
-            co.if_icmp(CodeEmitter.LT, labelLoopStart);
-
-            co.iinc(parameterIndexOffset, -1);
+            endArrayLoop(loop);
 
         } else {
             if (mapping.getAdapter() instanceof GeneratorMappingAdapter) {
@@ -589,4 +562,33 @@ public class ParameterMappingGenerator implements MappingVisitor, NumberMappingV
         }
     }
 
+    private class ArrayLoop {
+        Mapper mapper;
+        int argIndex;
+        Local localIndex;
+        Label labelLoopTest;
+        Label labelLoopStart;
+
+        ArrayLoop(Mapper mapper, int argIndex) {
+            this.mapper = mapper;
+            this.argIndex = argIndex;
+            this.localIndex = co.make_local(TYPE_int);
+            this.labelLoopTest = co.make_label();
+            this.labelLoopStart = co.make_label();
+        }
+
+        void loadIndex() {
+            co.load_local(localIndex);
+            if (mapper.getInListBuckets() != null) {
+                // padding parameters repeat the last element
+                // Math.min(i, array.length - 1)
+                co.load_arg(argIndex);
+                co.arraylength();
+                co.push(1);
+                co.math(CodeEmitter.SUB, TYPE_int);
+                co.invoke_static(TYPE_Math, SIG_min);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.codegen;
+
+import net.sf.cglib.core.Block;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Local;
+import org.objectweb.asm.Label;
+import uk.co.brunella.qof.mapping.Mapper;
+
+import static uk.co.brunella.qof.codegen.Constants.*;
+
+/**
+ * Internal - Emits the calls to the query listener in a query method.
+ * <p>
+ * If the query object is generated without a query listener no code is emitted.
+ *
+ * @see uk.co.brunella.qof.QueryListener
+ */
+class QueryListenerEmitter {
+
+    private final CodeEmitter co;
+    private final String queryMethodFieldName;
+    private Local localContext;
+    private Local localCompleted;
+    private Local localRowCount;
+    private Local localSql;
+    private Block tryBlock;
+
+    QueryListenerEmitter(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper) {
+        this.co = co;
+        this.queryMethodFieldName = generator.getQueryMethodFieldName(mapper);
+    }
+
+    /**
+     * Emits the call to <code>beforePrepare</code> and starts the block that reports failures.
+     *
+     * @param countRows true if the rows of a select method are counted
+     */
+    void emitBeforePrepare(boolean countRows) {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        if (countRows) {
+            // int rowCount = 0;
+            localRowCount = co.make_local(TYPE_int);
+            co.push(0);
+            co.store_local(localRowCount);
+        }
+        // Object context = $queryListener.beforePrepare($queryMethodN);
+        localContext = co.make_local(TYPE_Object);
+        co.getfield(FIELD_NAME_QUERY_LISTENER);
+        co.getfield(queryMethodFieldName);
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_beforePrepare);
+        co.store_local(localContext);
+        // boolean completed = false;
+        localCompleted = co.make_local(TYPE_boolean);
+        co.push(false);
+        co.store_local(localCompleted);
+        // try {
+        tryBlock = co.begin_block();
+    }
+
+    /**
+     * Emits code to keep the SQL statement that is on top of the stack for <code>prepared</code>.
+     * The statement stays on the stack.
+     */
+    void emitKeepSql() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        if (localSql == null) {
+            localSql = co.make_local(TYPE_String);
+        }
+        co.dup();
+        co.store_local(localSql);
+    }
+
+    /**
+     * Emits the call to <code>prepared</code> with the SQL statement kept by <code>emitKeepSql</code>.
+     */
+    void emitPrepared() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        emitLoadListenerAndContext();
+        co.load_local(localSql);
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_prepared);
+    }
+
+    void emitAfterExecute() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        if (localRowCount == null) {
+            // the invocation completes with afterExecute
+            emitCompleted();
+            emitArguments();
+        }
+        emitLoadListenerAndContext();
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_afterExecute);
+    }
+
+    void emitCountRow() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        co.iinc(localRowCount, 1);
+    }
+
+    void emitRowsMapped() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        emitCompleted();
+        emitArguments();
+        emitLoadListenerAndContext();
+        co.load_local(localRowCount);
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_rowsMapped);
+    }
+
+    /**
+     * Emits the call to <code>batchFlushed</code>.
+     *
+     * @param localBatchSize the local that holds the number of statements in the batch
+     */
+    void emitBatchFlushed(Local localBatchSize) {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        emitLoadListenerAndContext();
+        co.load_local(localBatchSize);
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_batchFlushed);
+    }
+
+    /**
+     * Ends the block started by <code>emitBeforePrepare</code> and emits the exception handler
+     * that calls <code>failure</code>. Must be called after all other code of the method was emitted.
+     * <p>
+     * Exceptions thrown after the invocation completed, for example when the statement
+     * is closed, are not reported as <code>failure</code>.
+     */
+    void emitFailureHandler() {
+        if (queryMethodFieldName == null) {
+            return;
+        }
+        tryBlock.end();
+        // } catch (Throwable e) {
+        //   if (!completed) {
+        //     $queryListener.failure($queryMethodN, context, e);
+        //   }
+        //   throw e;
+        // }
+        Local localException = co.make_local(TYPE_Throwable);
+        Label labelRethrow = co.make_label();
+        EmitUtils.emitCatchException(co, tryBlock, null);
+        co.store_local(localException);
+        co.load_local(localCompleted);
+        co.if_jump(CodeEmitter.NE, labelRethrow);
+        emitArguments();
+        emitLoadListenerAndContext();
+        co.load_local(localException);
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_failure);
+        co.mark(labelRethrow);
+        co.load_local(localException);
+        co.athrow();
+    }
+
+    private void emitCompleted() {
+        // completed = true;
+        co.push(true);
+        co.store_local(localCompleted);
+    }
+
+    private void emitArguments() {
+        // if ($queryListener.isArgumentsRequired($queryMethodN, context)) {
+        //   $queryListener.arguments($queryMethodN, context, new Object[] { arg1, arg2, ... });
+        // }
+        Label labelSkip = co.make_label();
+        emitLoadListenerAndContext();
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_isArgumentsRequired);
+        co.if_jump(CodeEmitter.EQ, labelSkip);
+        emitLoadListenerAndContext();
+        co.create_arg_array();
+        co.invoke_interface(TYPE_QueryListener, SIG_QueryListener_arguments);
+        co.mark(labelSkip);
+    }
+
+    private void emitLoadListenerAndContext() {
+        co.getfield(FIELD_NAME_QUERY_LISTENER);
+        co.getfield(queryMethodFieldName);
+        co.load_local(localContext);
+    }
+}
@@ -21,9 +21,16 @@ package uk.co.brunella.qof.codegen;
 import net.sf.cglib.core.Constants;
 import net.sf.cglib.core.*;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import uk.co.brunella.qof.AsyncQueryInvoker;
 import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Cached;
 import uk.co.brunella.qof.Paging;
+import uk.co.brunella.qof.QueryListener;
+import uk.co.brunella.qof.ResultSetRowMapper;
+import uk.co.brunella.qof.StatementCache;
 import uk.co.brunella.qof.adapter.DynamicMappingAdapter;
 import uk.co.brunella.qof.adapter.MappingAdapter;
 import uk.co.brunella.qof.customizer.Customizer;
@@ -32,6 +39,7 @@ import uk.co.brunella.qof.exception.ValidationException;
 import uk.co.brunella.qof.mapping.AdapterMapping;
 import uk.co.brunella.qof.mapping.Mapper;
 import uk.co.brunella.qof.mapping.Mapping;
+import uk.co.brunella.qof.mapping.ParameterMapping;
 import uk.co.brunella.qof.mapping.QueryType;
 import uk.co.brunella.qof.util.DefineClassHelper;
 import uk.co.brunella.qof.util.ReflectionUtils;
@@ -41,8 +49,12 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * Internal - QueryObjectGenerator is the main generator class for query objects.
@@ -60,6 +72,8 @@ public class QueryObjectGenerator {
     public static final int DEFAULT_BATCH_SIZE = 100;
     private static final String DEBUG_LOCATION_PROPERTY = "cglib.debugLocation";
     private static String debugLocation;
+    private static final QueryListener NO_OP_QUERY_LISTENER = new QueryListener() {
+    };
 
     static {
         debugLocation = System.getProperty(DEBUG_LOCATION_PROPERTY);
@@ -73,10 +87,23 @@ public class QueryObjectGenerator {
     private SQLDialect sqlDialect;
     private boolean implementPaging;
     private Method postGetConnectionMethod;
+    private List<Mapper> rowMappers = new ArrayList<Mapper>();
+    private StatementCache statementCache;
+    private Map<String, SqlTemplateField> sqlTemplates = new LinkedHashMap<String, SqlTemplateField>();
+    private Map<String, String[]> multiRowSqls = new LinkedHashMap<String, String[]>();
+    private List<Mapper> asyncMappers = new ArrayList<Mapper>();
+    private Executor executor;
+    private QueryListener queryListener;
+    private List<Mapper> mappers = new ArrayList<Mapper>();
 
     public QueryObjectGenerator(Customizer customizer, SQLDialect sqlDialect) {
+        this(customizer, sqlDialect, null);
+    }
+
+    public QueryObjectGenerator(Customizer customizer, SQLDialect sqlDialect, QueryListener queryListener) {
         this.customizer = customizer;
         this.sqlDialect = sqlDialect;
+        this.queryListener = queryListener;
     }
 
     public static String getAdapterFieldName(Class<?> adapterClass) {
@@ -103,6 +130,47 @@ public class QueryObjectGenerator {
         return customizer;
     }
 
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public QueryListener getQueryListener() {
+        return queryListener;
+    }
+
+    /**
+     * Returns the name of the static field that holds the <code>QueryMethod</code>
+     * of a query method or null if the query object is generated without a query listener.
+     *
+     * @param mapper the mapper of the query method
+     * @return the field name or null
+     */
+    public String getQueryMethodFieldName(Mapper mapper) {
+        if (queryListener == null) {
+            return null;
+        }
+        int index = mappers.indexOf(mapper);
+        if (index < 0) {
+            throw new RuntimeException("No query method for method " + mapper.getMethod().getSignature().getName());
+        }
+        return uk.co.brunella.qof.codegen.Constants.FIELD_NAME_QUERY_METHOD + index;
+    }
+
+    /**
+     * Returns the id that is passed to <code>mapRow()</code> to map the rows
+     * of a query method with a streaming return type.
+     *
+     * @param mapper the mapper of the query method
+     * @return the row mapper id
+     */
+    public int getRowMapperId(Mapper mapper) {
+        int id = rowMappers.indexOf(mapper);
+        if (id < 0) {
+            throw new RuntimeException("No row mapper for method " + mapper.getMethod().getSignature().getName());
+        }
+        return id;
+    }
+
     public <T> Class<T> create(Class<T> queryDefinitionClass, List<Mapper> mappers) {
         return create(queryDefinitionClass, mappers, Object.class);
     }
@@ -110,8 +178,22 @@ public class QueryObjectGenerator {
     public <T> Class<T> create(Class<T> queryDefinitionClass, List<Mapper> mappers, Class<?> superClass) {
         this.queryDefinitionClass = queryDefinitionClass;
         this.superClass = superClass;
+        this.mappers = mappers;
         implementPaging = Paging.class.isAssignableFrom(queryDefinitionClass);
         postGetConnectionMethod = findPostGetConnectionMethod(queryDefinitionClass);
+        rowMappers = getRowMappers(mappers);
+        asyncMappers = getAsyncMappers(mappers);
+        for (Mapper mapper : mappers) {
+            bindArrayParameters(mapper);
+            if (implementPaging && mapper.getCached() != null && mapper.getMethod().getReturnInfo().getCollectionType() != null) {
+                // the result depends on the paging state of the query object
+                throw new ValidationException("Method " + mapper.getMethod().getSignature().getName()
+                        + " cannot be cached because the query definition implements Paging");
+            }
+        }
+        sqlTemplates.clear();
+        statementCache = customizer.getStatementCache(queryDefinitionClass);
+        executor = asyncMappers.size() > 0 ? customizer.getExecutor(queryDefinitionClass) : null;
         try {
             String className = customizer.getClassName(queryDefinitionClass);
             classNameType = createClassNameType(className);
@@ -124,7 +206,7 @@ public class QueryObjectGenerator {
             ClassEmitter ce = new ClassEmitter(cw);
 
             beginClass(ce);
-            addStaticInitializer(ce, mappers);
+            addStaticFields(ce, mappers);
             addConstructorAndFields(ce);
             addBaseQueryMethods(ce);
             if (implementPaging) {
@@ -134,15 +216,157 @@ public class QueryObjectGenerator {
             for (Mapper mapper : mappers) {
                 addQueryMethod(ce, mapper);
             }
+            if (rowMappers.size() > 0) {
+                addRowMapperMethod(ce);
+            }
+            if (asyncMappers.size() > 0) {
+                addInvokeQueryMethod(ce);
+            }
+            addStaticInitializer(ce, mappers);
             endClass(ce);
 
-            return DefineClassHelper.defineClass(className, cw.toByteArray(), queryDefinitionClass.getClassLoader());
+            Class<T> queryObjectClass = DefineClassHelper.defineClass(className, cw.toByteArray(), queryDefinitionClass);
+            initializeStaticFields(queryObjectClass);
+            return queryObjectClass;
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Returns the fingerprint of a query object class generated for the mappers.
+     *
+     * <p> The fingerprint is made of the class name of the SQL dialect and a hash of the
+     * signatures, query types and SQL statements of the query methods as well as the
+     * settings that change the generated SQL.</p>
+     *
+     * @param mappers the mappers of the query methods
+     * @return the fingerprint
+     * @since 1.2.1
+     */
+    public String getFingerprint(List<Mapper> mappers) {
+        // the order of the mappers depends on the order of getMethods()
+        List<String> descriptions = new ArrayList<>(mappers.size());
+        for (Mapper mapper : mappers) {
+            Signature signature = mapper.getMethod().getSignature();
+            descriptions.add(signature.getName() + signature.getDescriptor() + '\n' + mapper.getQueryType()
+                    + '\n' + mapper.getSql() + '\n' + Arrays.toString(mapper.getInListBuckets())
+                    + '\n' + (mapper.getMultiRowInsert() == null ? "-" : mapper.getMultiRowInsert().maxRows()));
+        }
+        Collections.sort(descriptions);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String description : descriptions) {
+                digest.update(description.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder fingerprint = new StringBuilder(sqlDialect.getClass().getName()).append(':');
+            for (byte b : digest.digest()) {
+                fingerprint.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Initializes a query object class that was generated at build time.
+     *
+     * <p> The class can only be used if it was generated with the current SQL dialect
+     * and for the current query methods, otherwise false is returned. This is checked
+     * with the fingerprint that is stored in the class.</p>
+     *
+     * <p> The static fields of the class are set from the customizer. If the class
+     * was generated with a statement cache but the customizer does not return one
+     * (or vice versa) the class cannot be used and false is returned.</p>
+     *
+     * <p> If the class was generated with calls to a query listener but no query listener
+     * is registered the calls go to a listener that ignores all events. If the class was
+     * generated without calls to a query listener a registered listener does not receive
+     * events from the class.</p>
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @param queryObjectClass     the pregenerated query object class
+     * @param mappers              the mappers of the query methods
+     * @return true if the class was initialized, false if the class does not match the query
+     * methods, SQL dialect or customizer
+     * @see #getFingerprint(List)
+     * @since 1.2.1
+     */
+    public boolean initializePregeneratedClass(Class<?> queryDefinitionClass, Class<?> queryObjectClass,
+                                               List<Mapper> mappers) {
+        if (!getFingerprint(mappers).equals(getFingerprint(queryObjectClass))) {
+            return false;
+        }
+        statementCache = customizer.getStatementCache(queryDefinitionClass);
+        boolean hasExecutor = hasStaticField(queryObjectClass, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_DEFAULT_EXECUTOR);
+        executor = hasExecutor ? customizer.getExecutor(queryDefinitionClass) : null;
+        if ((statementCache != null) != hasStaticField(queryObjectClass, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_STATEMENT_CACHE)) {
+            return false;
+        }
+        if (hasStaticField(queryObjectClass, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_QUERY_LISTENER)) {
+            if (queryListener == null) {
+                queryListener = NO_OP_QUERY_LISTENER;
+            }
+        } else {
+            queryListener = null;
+        }
+        try {
+            initializeStaticFields(queryObjectClass);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    private void initializeStaticFields(Class<?> queryObjectClass) throws Exception {
+        if (statementCache != null) {
+            queryObjectClass.getField(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_STATEMENT_CACHE).set(null, statementCache);
+        }
+        if (executor != null) {
+            queryObjectClass.getField(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_DEFAULT_EXECUTOR).set(null, executor);
+        }
+        if (queryListener != null) {
+            queryObjectClass.getField(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_QUERY_LISTENER).set(null, queryListener);
+        }
+    }
+
+    private String getFingerprint(Class<?> queryObjectClass) {
+        try {
+            Field field = queryObjectClass.getDeclaredField(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_FINGERPRINT);
+            return Modifier.isStatic(field.getModifiers()) ? (String) field.get(null) : null;
+        } catch (NoSuchFieldException | IllegalAccessException | ClassCastException e) {
+            // generated by an older version
+            return null;
+        }
+    }
+
+    private boolean hasStaticField(Class<?> clazz, String fieldName) {
+        try {
+            return Modifier.isStatic(clazz.getDeclaredField(fieldName).getModifiers());
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    private void bindArrayParameters(Mapper mapper) {
+        // bind array parameters as JDBC arrays if supported by the dialect
+        if (mapper.getParameters() == null || mapper.getQueryType() == QueryType.CALL) {
+            return;
+        }
+        for (ParameterMapping mapping : mapper.getParameters()) {
+            if (mapping.usesArray() && mapping.getParameterSeparator() == null
+                    && mapping.getAdapter() == null && mapping.getGetters() == null) {
+                String typeName = sqlDialect.getArrayTypeName(mapping.getType());
+                if (typeName != null) {
+                    mapper.bindArrayParameter(mapping, typeName, sqlDialect.getArrayParameterString());
+                }
+            }
+        }
+    }
+
     private String createClassNameType(String className) {
         return "L" + className.replace('.', '/') + ";";
     }
@@ -174,6 +398,12 @@ public class QueryObjectGenerator {
         if (implementPaging) {
             interfaceTypes.add(Type.getType(Paging.class));
         }
+        if (rowMappers.size() > 0) {
+            interfaceTypes.add(Type.getType(ResultSetRowMapper.class));
+        }
+        if (asyncMappers.size() > 0) {
+            interfaceTypes.add(Type.getType(AsyncQueryInvoker.class));
+        }
         ce.begin_class(Constants.V1_2, Constants.ACC_PUBLIC, customizer.getClassName(queryDefinitionClass), Type
                 .getType(superClass), interfaceTypes.toArray(new Type[interfaceTypes.size()]), "<generated>");
     }
@@ -190,7 +420,20 @@ public class QueryObjectGenerator {
         if (Modifier.isProtected(mapper.getMethod().getModifiers())) {
             access = Constants.ACC_PROTECTED;
         }
-        co = ce.begin_method(access, mapper.getMethod().getSignature(), new Type[]{uk.co.brunella.qof.codegen.Constants.TYPE_SQLException});
+        Signature signature = mapper.getMethod().getSignature();
+        if (mapper.getMethod().isAsynchronous()) {
+            // the query is implemented in a private method that is called by invokeQuery
+            addAsyncQueryMethod(ce, access, signature, asyncMappers.indexOf(mapper));
+            access = Constants.ACC_PRIVATE;
+            signature = getSyncSignature(mapper);
+        }
+        if (mapper.getCached() != null) {
+            // the query is implemented in a private method that is called if the result is not cached
+            addCachedQueryMethod(ce, mapper, access, signature);
+            access = Constants.ACC_PRIVATE;
+            signature = getUncachedSignature(signature);
+        }
+        co = ce.begin_method(access, signature, new Type[]{uk.co.brunella.qof.codegen.Constants.TYPE_SQLException});
 
         QueryType queryType = mapper.getQueryType();
         if (queryType == QueryType.QUERY) {
@@ -206,6 +449,180 @@ public class QueryObjectGenerator {
         co.end_method();
     }
 
+    private void addCachedQueryMethod(ClassEmitter ce, Mapper mapper, int access, Signature signature) {
+        // Object[] arguments = new Object[] {...};
+        // Object result = $resultCache.get(arguments);
+        // if (result == ResultCache.MISS) {
+        //   long version = $resultCache.getVersion();
+        //   result = name$uncached(...);
+        //   $resultCache.put(arguments, result, version);
+        // }
+        // return result;
+        CodeEmitter co = ce.begin_method(access, signature, new Type[]{uk.co.brunella.qof.codegen.Constants.TYPE_SQLException});
+        String fieldName = getResultCacheFieldName(mapper);
+        Local localArguments = co.make_local(uk.co.brunella.qof.codegen.Constants.TYPE_ObjectArray);
+        Local localResult = co.make_local(uk.co.brunella.qof.codegen.Constants.TYPE_Object);
+        Local localVersion = co.make_local(Type.LONG_TYPE);
+        co.create_arg_array();
+        co.store_local(localArguments);
+        co.getfield(fieldName);
+        co.load_local(localArguments);
+        co.invoke_virtual(uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache,
+                uk.co.brunella.qof.codegen.Constants.SIG_ResultCache_get);
+        co.store_local(localResult);
+
+        Label labelCached = co.make_label();
+        co.load_local(localResult);
+        co.getstatic(uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache, "MISS",
+                uk.co.brunella.qof.codegen.Constants.TYPE_Object);
+        co.if_cmp(uk.co.brunella.qof.codegen.Constants.TYPE_Object, CodeEmitter.NE, labelCached);
+        co.getfield(fieldName);
+        co.invoke_virtual(uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache,
+                uk.co.brunella.qof.codegen.Constants.SIG_ResultCache_getVersion);
+        co.store_local(localVersion);
+        co.load_this();
+        co.load_args();
+        // private methods are called with invokespecial
+        Signature uncachedSignature = getUncachedSignature(signature);
+        co.visitMethodInsn(Opcodes.INVOKESPECIAL, ce.getClassType().getInternalName(), uncachedSignature.getName(),
+                uncachedSignature.getDescriptor(), false);
+        co.box(signature.getReturnType());
+        co.store_local(localResult);
+        co.getfield(fieldName);
+        co.load_local(localArguments);
+        co.load_local(localResult);
+        co.load_local(localVersion);
+        co.invoke_virtual(uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache,
+                uk.co.brunella.qof.codegen.Constants.SIG_ResultCache_put);
+
+        co.mark(labelCached);
+        co.load_local(localResult);
+        co.unbox(signature.getReturnType());
+        co.return_value();
+        co.end_method();
+    }
+
+    private Signature getUncachedSignature(Signature signature) {
+        return new Signature(signature.getName() + uk.co.brunella.qof.codegen.Constants.METHOD_NAME_SUFFIX_UNCACHED,
+                signature.getReturnType(), signature.getArgumentTypes());
+    }
+
+    private String getResultCacheFieldName(Mapper mapper) {
+        return uk.co.brunella.qof.codegen.Constants.FIELD_NAME_RESULT_CACHE + mappers.indexOf(mapper);
+    }
+
+    private void addRowMapperMethod(ClassEmitter ce) {
+        // Object mapRow(int rowMapperId, ResultSet resultSet) throws SQLException
+        final CodeEmitter co = ce.begin_method(Constants.ACC_PUBLIC, uk.co.brunella.qof.codegen.Constants.SIG_mapRow,
+                new Type[]{uk.co.brunella.qof.codegen.Constants.TYPE_SQLException});
+        final Local localResultSet = co.make_local(uk.co.brunella.qof.codegen.Constants.TYPE_ResultSet);
+        co.load_arg(1);
+        co.store_local(localResultSet);
+
+        int[] rowMapperIds = new int[rowMappers.size()];
+        for (int i = 0; i < rowMapperIds.length; i++) {
+            rowMapperIds[i] = i;
+        }
+        co.load_arg(0);
+        co.process_switch(rowMapperIds, new ProcessSwitchCallback() {
+            public void processCase(int key, Label end) {
+                SelectQueryMethodGenerator.addRowMapperBody(co, rowMappers.get(key), localResultSet);
+            }
+
+            public void processDefault() {
+                co.throw_exception(uk.co.brunella.qof.codegen.Constants.TYPE_RuntimeException, "Unknown row mapper id");
+            }
+        });
+        co.end_method();
+    }
+
+    private void addAsyncQueryMethod(ClassEmitter ce, int access, Signature signature, int queryId) {
+        // CompletableFuture selectAsync(...)
+        CodeEmitter co = ce.begin_method(access, signature, null);
+        // return AsyncQueryHelper.submit(executor, this, queryId, new Object[] {...});
+        co.load_this();
+        emitGetField(co, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_EXECUTOR);
+        co.load_this();
+        co.push(queryId);
+        co.create_arg_array();
+        co.invoke_static(uk.co.brunella.qof.codegen.Constants.TYPE_AsyncQueryHelper,
+                uk.co.brunella.qof.codegen.Constants.SIG_AsyncQueryHelper_submit);
+        co.return_value();
+        co.end_method();
+    }
+
+    private void addInvokeQueryMethod(final ClassEmitter ce) {
+        // Object invokeQuery(int queryId, Object[] arguments) throws SQLException
+        final CodeEmitter co = ce.begin_method(Constants.ACC_PUBLIC, uk.co.brunella.qof.codegen.Constants.SIG_invokeQuery,
+                new Type[]{uk.co.brunella.qof.codegen.Constants.TYPE_SQLException});
+
+        int[] queryIds = new int[asyncMappers.size()];
+        for (int i = 0; i < queryIds.length; i++) {
+            queryIds[i] = i;
+        }
+        co.load_arg(0);
+        co.process_switch(queryIds, new ProcessSwitchCallback() {
+            public void processCase(int key, Label end) {
+                Signature signature = getSyncSignature(asyncMappers.get(key));
+                co.load_this();
+                Type[] argumentTypes = signature.getArgumentTypes();
+                for (int i = 0; i < argumentTypes.length; i++) {
+                    co.load_arg(1);
+                    co.push(i);
+                    co.array_load(uk.co.brunella.qof.codegen.Constants.TYPE_Object);
+                    co.unbox(argumentTypes[i]);
+                }
+                // private methods are called with invokespecial
+                co.visitMethodInsn(Opcodes.INVOKESPECIAL, ce.getClassType().getInternalName(), signature.getName(),
+                        signature.getDescriptor(), false);
+                if (signature.getReturnType() == Type.VOID_TYPE) {
+                    co.aconst_null();
+                } else {
+                    co.box(signature.getReturnType());
+                }
+                co.return_value();
+            }
+
+            public void processDefault() {
+                co.throw_exception(uk.co.brunella.qof.codegen.Constants.TYPE_RuntimeException, "Unknown query id");
+            }
+        });
+        co.end_method();
+    }
+
+    private Signature getSyncSignature(Mapper mapper) {
+        Signature signature = mapper.getMethod().getSignature();
+        return new Signature(signature.getName() + uk.co.brunella.qof.codegen.Constants.METHOD_NAME_SUFFIX_SYNC,
+                Type.getType(mapper.getMethod().getReturnInfo().getType()), signature.getArgumentTypes());
+    }
+
+    private List<Mapper> getAsyncMappers(List<Mapper> mappers) {
+        List<Mapper> asyncMappers = new ArrayList<Mapper>();
+        for (Mapper mapper : mappers) {
+            if (mapper.getMethod().isAsynchronous()) {
+                Class<?> collectionType = mapper.getMethod().getReturnInfo().getCollectionType();
+                if (collectionType != null && ReflectionUtils.isStreamingType(collectionType)) {
+                    throw new ValidationException("Return type " + collectionType.getName()
+                            + " is not allowed for asynchronous methods");
+                }
+                asyncMappers.add(mapper);
+            }
+        }
+        return asyncMappers;
+    }
+
+    private List<Mapper> getRowMappers(List<Mapper> mappers) {
+        List<Mapper> rowMappers = new ArrayList<Mapper>();
+        for (Mapper mapper : mappers) {
+            Class<?> collectionType = mapper.getMethod().getReturnInfo().getCollectionType();
+            if (mapper.getQueryType() == QueryType.QUERY && collectionType != null
+                    && ReflectionUtils.isStreamingType(collectionType)) {
+                rowMappers.add(mapper);
+            }
+        }
+        return rowMappers;
+    }
+
     private void addToString(ClassEmitter ce) {
         CodeEmitter co;
         co = ce.begin_method(Constants.ACC_PUBLIC, uk.co.brunella.qof.codegen.Constants.SIG_toString, null);
@@ -220,6 +637,8 @@ public class QueryObjectGenerator {
         customizer.getConnectionFactoryCustomizer(queryDefinitionClass).emitSetConnection(queryDefinitionClass, superClass, ce);
         addGetterAndSetter(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_FETCH_SIZE, "I");
         addGetterAndSetter(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_BATCH_SIZE, "I");
+        addGetterAndSetter(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_EXECUTOR,
+                uk.co.brunella.qof.codegen.Constants.TYPE_Executor.getDescriptor());
     }
 
     private void addPagingMethods(ClassEmitter ce) {
@@ -277,21 +696,179 @@ public class QueryObjectGenerator {
         co.end_method();
     }
 
+    /**
+     * Returns the name of the static field that holds the <code>SqlTemplate</code>
+     * for a SQL statement with array parameters. The field is declared on first use
+     * and initialized in the static initializer.
+     *
+     * @param ce               the class emitter
+     * @param sql              the SQL statement
+     * @param parameterIndexes the indexes of the parameters to expand in ascending order
+     * @param separators       the separators of the parameters
+     * @return the field name
+     */
+    public String getSqlTemplateFieldName(ClassEmitter ce, String sql, int[] parameterIndexes, String[] separators) {
+        String key = sql + '\0' + Arrays.toString(parameterIndexes) + '\0' + Arrays.toString(separators);
+        SqlTemplateField field = sqlTemplates.get(key);
+        if (field == null) {
+            field = new SqlTemplateField(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_SQL_TEMPLATE + sqlTemplates.size(),
+                    sql, parameterIndexes, separators);
+            ce.declare_field(Constants.PRIVATE_FINAL_STATIC, field.name, uk.co.brunella.qof.codegen.Constants.TYPE_SqlTemplate, null);
+            sqlTemplates.put(key, field);
+        }
+        return field.name;
+    }
+
+    /**
+     * Returns the name of the static field that holds the statements of a
+     * multi-row insert. The field is declared and initialized in the static initializer.
+     *
+     * @param ce   the class emitter
+     * @param sqls the statements for 2<sup>i</sup> rows
+     * @return the field name
+     */
+    public String getMultiRowSqlFieldName(ClassEmitter ce, String[] sqls) {
+        String name = uk.co.brunella.qof.codegen.Constants.FIELD_NAME_MULTI_ROW_SQL + multiRowSqls.size();
+        ce.declare_field(Constants.PRIVATE_FINAL_STATIC, name, uk.co.brunella.qof.codegen.Constants.TYPE_StringArray, null);
+        multiRowSqls.put(name, sqls);
+        return name;
+    }
+
+    private void addStaticFields(ClassEmitter ce, List<Mapper> mappers) {
+        // a constant with the fingerprint to check classes generated at build time
+        ce.declare_field(Constants.ACC_PUBLIC + Constants.ACC_STATIC + Constants.ACC_FINAL,
+                uk.co.brunella.qof.codegen.Constants.FIELD_NAME_FINGERPRINT,
+                uk.co.brunella.qof.codegen.Constants.TYPE_String, getFingerprint(mappers));
+        // declare a private static final field for each dynamic adapter
+        for (Class<?> dynamicAdapterClass : getDynamicAdapterClasses(mappers)) {
+            ce.declare_field(Constants.PRIVATE_FINAL_STATIC, getAdapterFieldName(dynamicAdapterClass),
+                    Type.getType(dynamicAdapterClass), null);
+        }
+        if (queryListener != null) {
+            // set after the class is defined
+            ce.declare_field(Constants.ACC_PUBLIC + Constants.ACC_STATIC, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_QUERY_LISTENER,
+                    uk.co.brunella.qof.codegen.Constants.TYPE_QueryListener, null);
+            // declare a private static final field with the query method description for each mapper
+            for (Mapper mapper : mappers) {
+                ce.declare_field(Constants.PRIVATE_FINAL_STATIC, getQueryMethodFieldName(mapper),
+                        uk.co.brunella.qof.codegen.Constants.TYPE_QueryMethod, null);
+            }
+        }
+        // declare a private static final field with the result cache for each cached mapper
+        for (Mapper mapper : mappers) {
+            if (mapper.getCached() != null) {
+                ce.declare_field(Constants.PRIVATE_FINAL_STATIC, getResultCacheFieldName(mapper),
+                        uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache, null);
+            }
+        }
+    }
+
     private void addStaticInitializer(ClassEmitter ce, List<Mapper> mappers) {
-        // create a private static final field for each dynamic adapter
+        // initialize the dynamic adapter, SQL template, multi-row SQL, query method and result cache fields
         Set<Class<?>> dynamicAdapters = getDynamicAdapterClasses(mappers);
-        if (dynamicAdapters.size() > 0) {
+        boolean cached = false;
+        for (Mapper mapper : mappers) {
+            cached |= mapper.getCached() != null;
+        }
+        if (dynamicAdapters.size() > 0 || sqlTemplates.size() > 0 || multiRowSqls.size() > 0
+                || queryListener != null || cached) {
             // static initializer
             CodeEmitter co = ce.begin_static();
             for (Class<?> dynamicAdapterClass : dynamicAdapters) {
                 String fieldName = getAdapterFieldName(dynamicAdapterClass);
                 Type fieldType = Type.getType(dynamicAdapterClass);
-                ce.declare_field(Constants.PRIVATE_FINAL_STATIC, fieldName, fieldType, null);
                 co.new_instance(fieldType);
                 co.dup();
                 co.invoke_constructor(fieldType);
                 co.putfield(fieldName);
             }
+            for (SqlTemplateField field : sqlTemplates.values()) {
+                // new SqlTemplate(sql, new int[] {...}, new String[] {...})
+                co.new_instance(uk.co.brunella.qof.codegen.Constants.TYPE_SqlTemplate);
+                co.dup();
+                co.push(field.sql);
+                co.push(field.parameterIndexes.length);
+                co.newarray(uk.co.brunella.qof.codegen.Constants.TYPE_int);
+                for (int i = 0; i < field.parameterIndexes.length; i++) {
+                    co.dup();
+                    co.push(i);
+                    co.push(field.parameterIndexes[i]);
+                    co.array_store(uk.co.brunella.qof.codegen.Constants.TYPE_int);
+                }
+                co.push(field.separators.length);
+                co.newarray(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                for (int i = 0; i < field.separators.length; i++) {
+                    co.dup();
+                    co.push(i);
+                    co.push(field.separators[i]);
+                    co.array_store(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                }
+                co.invoke_constructor(uk.co.brunella.qof.codegen.Constants.TYPE_SqlTemplate,
+                        uk.co.brunella.qof.codegen.Constants.SIG_SqlTemplate_Constructor);
+                co.putfield(field.name);
+            }
+            for (Map.Entry<String, String[]> field : multiRowSqls.entrySet()) {
+                // new String[] {...}
+                String[] sqls = field.getValue();
+                co.push(sqls.length);
+                co.newarray(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                for (int i = 0; i < sqls.length; i++) {
+                    co.dup();
+                    co.push(i);
+                    co.push(sqls[i]);
+                    co.array_store(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                }
+                co.putfield(field.getKey());
+            }
+            if (queryListener != null) {
+                for (Mapper mapper : mappers) {
+                    // new QueryMethod(Class.forName(className), methodName, methodDescriptor, sql, QueryType.XYZ)
+                    Signature signature = mapper.getMethod().getSignature();
+                    co.new_instance(uk.co.brunella.qof.codegen.Constants.TYPE_QueryMethod);
+                    co.dup();
+                    co.push(queryDefinitionClass.getName());
+                    co.invoke_static(uk.co.brunella.qof.codegen.Constants.TYPE_Class, uk.co.brunella.qof.codegen.Constants.SIG_forName);
+                    co.push(signature.getName());
+                    co.push(signature.getDescriptor());
+                    if (mapper.getSql() == null) {
+                        co.aconst_null();
+                    } else {
+                        co.push(mapper.getSql());
+                    }
+                    co.getstatic(uk.co.brunella.qof.codegen.Constants.TYPE_QueryType, mapper.getQueryType().name(),
+                            uk.co.brunella.qof.codegen.Constants.TYPE_QueryType);
+                    co.invoke_constructor(uk.co.brunella.qof.codegen.Constants.TYPE_QueryMethod,
+                            uk.co.brunella.qof.codegen.Constants.SIG_QueryMethod_Constructor);
+                    co.putfield(getQueryMethodFieldName(mapper));
+                }
+            }
+            for (Mapper mapper : mappers) {
+                Cached cachedAnnotation = mapper.getCached();
+                if (cachedAnnotation != null) {
+                    // ResultCache.create(Class.forName(className), methodName, methodDescriptor, new String[] {...},
+                    //   ttlNanos, maxEntries, maxWeight)
+                    Signature signature = mapper.getMethod().getSignature();
+                    co.push(queryDefinitionClass.getName());
+                    co.invoke_static(uk.co.brunella.qof.codegen.Constants.TYPE_Class, uk.co.brunella.qof.codegen.Constants.SIG_forName);
+                    co.push(signature.getName());
+                    co.push(signature.getDescriptor());
+                    String[] tableNames = mapper.getTableNames();
+                    co.push(tableNames.length);
+                    co.newarray(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                    for (int i = 0; i < tableNames.length; i++) {
+                        co.dup();
+                        co.push(i);
+                        co.push(tableNames[i]);
+                        co.array_store(uk.co.brunella.qof.codegen.Constants.TYPE_String);
+                    }
+                    co.push(cachedAnnotation.unit().toNanos(cachedAnnotation.ttl()));
+                    co.push(cachedAnnotation.maxEntries());
+                    co.push(cachedAnnotation.maxWeight());
+                    co.invoke_static(uk.co.brunella.qof.codegen.Constants.TYPE_ResultCache,
+                            uk.co.brunella.qof.codegen.Constants.SIG_ResultCache_create);
+                    co.putfield(getResultCacheFieldName(mapper));
+                }
+            }
             co.return_value();
             co.end_method();
         }
@@ -310,8 +887,21 @@ public class QueryObjectGenerator {
 
         customizer.getConnectionFactoryCustomizer(queryDefinitionClass).emitFields(queryDefinitionClass, superClass, ce);
 
+        if (statementCache != null) {
+            // set after the class is defined
+            ce.declare_field(Constants.ACC_PUBLIC + Constants.ACC_STATIC, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_STATEMENT_CACHE,
+                    uk.co.brunella.qof.codegen.Constants.TYPE_StatementCache, null);
+        }
+
         addFieldIfNeeded(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_BATCH_SIZE, uk.co.brunella.qof.codegen.Constants.TYPE_int);
         addFieldIfNeeded(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_FETCH_SIZE, uk.co.brunella.qof.codegen.Constants.TYPE_int);
+        addFieldIfNeeded(ce, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_EXECUTOR, uk.co.brunella.qof.codegen.Constants.TYPE_Executor);
+
+        if (executor != null) {
+            // set after the class is defined
+            ce.declare_field(Constants.ACC_PUBLIC + Constants.ACC_STATIC, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_DEFAULT_EXECUTOR,
+                    uk.co.brunella.qof.codegen.Constants.TYPE_Executor, null);
+        }
 
         CodeEmitter co;
         // init method
@@ -330,6 +920,11 @@ public class QueryObjectGenerator {
             co.push(DEFAULT_FETCH_SIZE);
         }
         emitPutField(co, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_FETCH_SIZE);
+        if (executor != null) {
+            co.load_this();
+            co.getfield(uk.co.brunella.qof.codegen.Constants.FIELD_NAME_DEFAULT_EXECUTOR);
+            emitPutField(co, uk.co.brunella.qof.codegen.Constants.FIELD_NAME_EXECUTOR);
+        }
         co.return_value();
         co.end_method();
 
@@ -473,4 +1068,18 @@ public class QueryObjectGenerator {
         }
     }
 
+
+    private static class SqlTemplateField {
+        String name;
+        String sql;
+        int[] parameterIndexes;
+        String[] separators;
+
+        public SqlTemplateField(String name, String sql, int[] parameterIndexes, String[] separators) {
+            this.name = name;
+            this.sql = sql;
+            this.parameterIndexes = parameterIndexes;
+            this.separators = separators;
+        }
+    }
 }
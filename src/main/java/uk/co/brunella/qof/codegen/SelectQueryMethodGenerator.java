@@ -24,18 +24,20 @@ import net.sf.cglib.core.Local;
 import net.sf.cglib.core.Signature;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
-import uk.co.brunella.qof.ParameterReplacer;
+import uk.co.brunella.qof.RowHandler;
 import uk.co.brunella.qof.customizer.Customizer;
 import uk.co.brunella.qof.dialect.SQLDialect;
 import uk.co.brunella.qof.exception.ValidationException;
 import uk.co.brunella.qof.mapping.Mapper;
-import uk.co.brunella.qof.mapping.ParameterMapping;
+import uk.co.brunella.qof.mapping.MethodParameterInfo;
 import uk.co.brunella.qof.mapping.ResultMapping;
+import uk.co.brunella.qof.util.ReflectionUtils;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static uk.co.brunella.qof.codegen.Constants.*;
 
@@ -49,7 +51,47 @@ public class SelectQueryMethodGenerator {
             throw new ValidationException("No result mappers defined");
         }
         ResultMapping resultMapping = mapper.getResults().get(0);
+        if (mapper.isReuseResultObject() && !(resultMapping.usesCollection()
+                && ReflectionUtils.isRowHandlerType(resultMapping.getCollectionType()))) {
+            throw new ValidationException("reuseResultObject is only allowed for methods with a row handler parameter");
+        }
         if (resultMapping.usesCollection()) {
+            if (ReflectionUtils.isStreamingType(resultMapping.getCollectionType())) {
+                // rows are mapped lazily by mapRow()
+                if (resultMapping.getCollectionClass() != null) {
+                    throw new ValidationException("collectionClass is not allowed for return type "
+                            + resultMapping.getCollectionType().getName());
+                }
+                addSelectQueryBodyWithCollection(co, generator, mapper);
+                return;
+            }
+            if (ReflectionUtils.isRowHandlerType(resultMapping.getCollectionType())) {
+                // rows are passed to the row handler parameter
+                Class<?> returnType = mapper.getMethod().getReturnInfo().getType();
+                if (returnType != void.class && returnType != int.class) {
+                    throw new ValidationException("Only void or int are allowed as return type for methods with a "
+                            + resultMapping.getCollectionType().getName() + " parameter");
+                }
+                if (resultMapping.getCollectionClass() != null) {
+                    throw new ValidationException("collectionClass is not allowed for methods with a "
+                            + resultMapping.getCollectionType().getName() + " parameter");
+                }
+                if (mapper.isReuseResultObject()
+                        && (mapper.getNumberOfConstructorParameters() > 0 || mapper.getStaticFactoryMethod() != null)) {
+                    throw new ValidationException("reuseResultObject is not allowed with constructor or static factory method mappings");
+                }
+                addSelectQueryBodyWithCollection(co, generator, mapper);
+                return;
+            }
+            if (ReflectionUtils.isPrimitiveCollectionType(resultMapping.getCollectionType())) {
+                // values are collected unboxed in a primitive list
+                if (mapper.getResults().size() != 1 || !resultMapping.usesAtomic()) {
+                    throw new ValidationException("Return type " + resultMapping.getCollectionType().getSimpleName()
+                            + " requires a single column result mapping");
+                }
+                addSelectQueryBodyWithCollection(co, generator, mapper);
+                return;
+            }
             // check collection is List
             if (!Collection.class.isAssignableFrom(resultMapping.getCollectionType())
                     && !Map.class.isAssignableFrom(resultMapping.getCollectionType())) {
@@ -66,11 +108,14 @@ public class SelectQueryMethodGenerator {
         Local localPreparedStatement = co.make_local(TYPE_PreparedStatement);
         Local localResultSet = co.make_local(TYPE_ResultSet);
         Local localException = co.make_local(TYPE_Throwable);
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
 
         // ResultSet rs = null;
         co.aconst_null();
         co.store_local(localResultSet);
 
+        listener.emitBeforePrepare(true);
+
         // connection = getConnection();
         EmitUtils.emitGetConnection(co, generator, localConnection);
 
@@ -80,8 +125,10 @@ public class SelectQueryMethodGenerator {
         // ps = connection.prepareStatement(sql);
         co.load_local(localConnection);
         co.push(mapper.getSql());
-        co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+        listener.emitKeepSql();
+        EmitUtils.emitPrepareStatement(co, generator);
         co.store_local(localPreparedStatement);
+        listener.emitPrepared();
 
         // try {
         Block tryBlockStatement = co.begin_block();
@@ -99,6 +146,7 @@ public class SelectQueryMethodGenerator {
         co.load_local(localPreparedStatement);
         co.invoke_interface(TYPE_PreparedStatement, SIG_executeQuery);
         co.store_local(localResultSet);
+        listener.emitAfterExecute();
 
         // try {
         Block tryBlockResultSet = co.begin_block();
@@ -136,6 +184,7 @@ public class SelectQueryMethodGenerator {
         // --- get results
         ResultMappingGenerator rmp = new ResultMappingGenerator(co, localResultSet, localResult, null, false, null);
         mapper.acceptResultMappers(rmp);
+        listener.emitCountRow();
 
         // if (rs.next()) {
         co.load_local(localResultSet);
@@ -160,10 +209,11 @@ public class SelectQueryMethodGenerator {
         EmitUtils.emitClose(co, localResultSet);
 
         tryBlockStatement.end();
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitReleaseStatement(co, generator, localPreparedStatement);
 
         tryBlockConnection.end();
         EmitUtils.emitUngetConnection(co, generator, localConnection);
+        listener.emitRowsMapped();
 
         // return result
         co.load_local(localResult);
@@ -171,29 +221,9 @@ public class SelectQueryMethodGenerator {
         // }
 
         // exception handlers
-        EmitUtils.emitCatchException(co, tryBlockResultSet, null);
-        Block tryBlockResultSet2 = co.begin_block();
-        Block tryBlockStatement2 = co.begin_block();
-        co.store_local(localException);
-        EmitUtils.emitClose(co, localResultSet);
-        co.load_local(localException);
-        co.athrow();
-        tryBlockResultSet2.end();
-
-        EmitUtils.emitCatchException(co, tryBlockStatement, null);
-        EmitUtils.emitCatchException(co, tryBlockResultSet2, null);
-        co.store_local(localException);
-        EmitUtils.emitClose(co, localPreparedStatement);
-        co.load_local(localException);
-        co.athrow();
-        tryBlockStatement2.end();
-
-        EmitUtils.emitCatchException(co, tryBlockConnection, null);
-        EmitUtils.emitCatchException(co, tryBlockStatement2, null);
-        co.store_local(localException);
-        EmitUtils.emitUngetConnection(co, generator, localConnection);
-        co.load_local(localException);
-        co.athrow();
+        emitExceptionHandlers(co, generator, tryBlockConnection, tryBlockStatement, tryBlockResultSet,
+                localConnection, localPreparedStatement, localResultSet, localException);
+        listener.emitFailureHandler();
     }
 
     private static void addSelectQueryBodyWithCollection(CodeEmitter co, QueryObjectGenerator generator, Mapper mapper) {
@@ -203,6 +233,7 @@ public class SelectQueryMethodGenerator {
         Local localResultCollection = co.make_local(TYPE_Collection);
         Local localException = co.make_local(TYPE_Throwable);
         Local localMapKey;
+        QueryListenerEmitter listener = new QueryListenerEmitter(co, generator, mapper);
         boolean usesMap = false;
         Block tryBlockConnection;
         Block tryBlockStatement;
@@ -212,6 +243,13 @@ public class SelectQueryMethodGenerator {
         boolean implementPaging = generator.getImplementPaging();
         Customizer customizer = generator.getCustomizer();
 
+        Class<?> resultCollectionType = mapper.getMethod().getReturnInfo().getCollectionType();
+        boolean streaming = ReflectionUtils.isStreamingType(resultCollectionType);
+        boolean usesRowHandler = ReflectionUtils.isRowHandlerType(resultCollectionType);
+        Local localRowCount = null;
+        Type primitiveListType = null;
+        Local localPrimitiveList = null;
+
         Class<?> resultMapKeyType = mapper.getMethod().getReturnInfo().getMapKeyType();
         if (resultMapKeyType == null) {
             localMapKey = null;
@@ -222,47 +260,71 @@ public class SelectQueryMethodGenerator {
         // ResultSet rs = null;
         co.aconst_null();
         co.store_local(localResultSet);
-        // list = new ArrayList();
-        Type collectionType;
-        // is there a user specified collection class?
-        ResultMapping result = mapper.getResults().size() > 0 ? mapper.getResults().get(0) : null;
-        int collectionInitialCapacity = result.getInitialCollectionCapacity();
-        if (result.getCollectionClass() != null) {
-            collectionType = Type.getType(result.getCollectionClass());
-            usesMap = Map.class.isAssignableFrom(result.getCollectionClass());
-        } else {
-            Class<?> resultCollectionType = mapper.getMethod().getReturnInfo().getCollectionType();
-            if (resultCollectionType == List.class) {
-                collectionType = customizer.getListType();
-            } else if (resultCollectionType == Set.class) {
-                collectionType = customizer.getSetType();
-            } else if (resultCollectionType == Map.class) {
-                usesMap = true;
-                collectionType = customizer.getMapType();
+        if (usesRowHandler) {
+            if (mapper.getMethod().getReturnInfo().getType() == int.class) {
+                // int rowCount = 0;
+                localRowCount = co.make_local(TYPE_int);
+                co.push(0);
+                co.store_local(localRowCount);
+            }
+        } else if (ReflectionUtils.isPrimitiveCollectionType(resultCollectionType)) {
+            // list = new IntList();
+            primitiveListType = Type.getType(ReflectionUtils.getPrimitiveListType(resultCollectionType));
+            localPrimitiveList = co.make_local(primitiveListType);
+            int collectionInitialCapacity = mapper.getResults().get(0).getInitialCollectionCapacity();
+            co.new_instance(primitiveListType);
+            co.dup();
+            if (collectionInitialCapacity == 0) {
+                co.invoke_constructor(primitiveListType);
             } else {
-                throw new ValidationException("Collection type " + resultCollectionType + " is not allowed");
+                co.push(collectionInitialCapacity);
+                co.invoke_constructor(primitiveListType, SIG_Constructor_int);
             }
+            co.store_local(localPrimitiveList);
+        } else if (!streaming) {
+            // list = new ArrayList();
+            Type collectionType;
+            // is there a user specified collection class?
+            ResultMapping result = mapper.getResults().size() > 0 ? mapper.getResults().get(0) : null;
+            int collectionInitialCapacity = result.getInitialCollectionCapacity();
+            if (result.getCollectionClass() != null) {
+                collectionType = Type.getType(result.getCollectionClass());
+                usesMap = Map.class.isAssignableFrom(result.getCollectionClass());
+            } else {
+                if (resultCollectionType == List.class) {
+                    collectionType = customizer.getListType();
+                } else if (resultCollectionType == Set.class) {
+                    collectionType = customizer.getSetType();
+                } else if (resultCollectionType == Map.class) {
+                    usesMap = true;
+                    collectionType = customizer.getMapType();
+                } else {
+                    throw new ValidationException("Collection type " + resultCollectionType + " is not allowed");
+                }
+            }
+            co.new_instance(collectionType);
+            co.dup();
+            if (collectionInitialCapacity == 0) {
+                co.invoke_constructor(collectionType);
+            } else {
+                co.push(collectionInitialCapacity);
+                co.invoke_constructor(collectionType, SIG_Constructor_int);
+            }
+            co.store_local(localResultCollection);
         }
-        co.new_instance(collectionType);
-        co.dup();
-        if (collectionInitialCapacity == 0) {
-            co.invoke_constructor(collectionType);
-        } else {
-            co.push(collectionInitialCapacity);
-            co.invoke_constructor(collectionType, SIG_Constructor_int);
-        }
-        co.store_local(localResultCollection);
 
         Local localParameterIndexOffset = null;
-        if (mapper.usesArray() ||
+        if (mapper.usesArrayExpansion() ||
                 (implementPaging && sqlDialect.limitParametersBeforeQueryParameters())) {
             localParameterIndexOffset = co.make_local(TYPE_int);
         }
-        if (mapper.usesArray()) {
+        if (mapper.usesArrayExpansion()) {
             co.push(0);
             co.store_local(localParameterIndexOffset);
         }
 
+        listener.emitBeforePrepare(!streaming);
+
         if (implementPaging) {
             String sql = mapper.getSql();
 
@@ -281,9 +343,11 @@ public class SelectQueryMethodGenerator {
 
             // ps = connection.prepareStatement(sql);
             co.load_local(localConnection);
-            pushSql(co, mapper, sql);
-            co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+            EmitUtils.emitPushSql(co, generator, mapper, sql);
+            listener.emitKeepSql();
+            EmitUtils.emitPrepareStatement(co, generator);
             co.store_local(localPreparedStatement);
+            listener.emitPrepared();
 
             if (sqlDialect.limitParametersBeforeQueryParameters()) {
                 co.push(0);
@@ -304,9 +368,11 @@ public class SelectQueryMethodGenerator {
 
             co.load_local(localConnection);
             //co.push(sqlDialect.getLimitString(sql, false));
-            pushSql(co, mapper, sqlDialect.getLimitString(sql, false));
-            co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+            EmitUtils.emitPushSql(co, generator, mapper, sqlDialect.getLimitString(sql, false));
+            listener.emitKeepSql();
+            EmitUtils.emitPrepareStatement(co, generator);
             co.store_local(localPreparedStatement);
+            listener.emitPrepared();
 
             // try {
             tryBlockStatement = co.begin_block();
@@ -339,9 +405,11 @@ public class SelectQueryMethodGenerator {
 
             co.load_local(localConnection);
 
-            pushSql(co, mapper, sqlDialect.getLimitString(sql, true));
-            co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+            EmitUtils.emitPushSql(co, generator, mapper, sqlDialect.getLimitString(sql, true));
+            listener.emitKeepSql();
+            EmitUtils.emitPrepareStatement(co, generator);
             co.store_local(localPreparedStatement);
+            listener.emitPrepared();
 
             // try {
             tryBlockStatement = co.begin_block();
@@ -461,9 +529,11 @@ public class SelectQueryMethodGenerator {
 
             // ps = connection.prepareStatement(sql);
             co.load_local(localConnection);
-            pushSql(co, mapper, mapper.getSql());
-            co.invoke_interface(TYPE_Connection, SIG_prepareStatement);
+            EmitUtils.emitPushSql(co, generator, mapper, mapper.getSql());
+            listener.emitKeepSql();
+            EmitUtils.emitPrepareStatement(co, generator);
             co.store_local(localPreparedStatement);
+            listener.emitPrepared();
 
             // try {
             tryBlockStatement = co.begin_block();
@@ -483,10 +553,44 @@ public class SelectQueryMethodGenerator {
         co.load_local(localPreparedStatement);
         co.invoke_interface(TYPE_PreparedStatement, SIG_executeQuery);
         co.store_local(localResultSet);
+        listener.emitAfterExecute();
 
         // try {
         tryBlockResultSet = co.begin_block();
 
+        if (streaming) {
+            // return new ResultSetIterator(this, this, rowMapperId, connection, ps, rs, statementCache);
+            co.new_instance(TYPE_ResultSetIterator);
+            co.dup();
+            co.load_this();
+            co.load_this();
+            co.push(generator.getRowMapperId(mapper));
+            co.load_local(localConnection);
+            co.load_local(localPreparedStatement);
+            co.load_local(localResultSet);
+            if (generator.getStatementCache() == null) {
+                co.aconst_null();
+            } else {
+                co.getfield(FIELD_NAME_STATEMENT_CACHE);
+            }
+            co.invoke_constructor(TYPE_ResultSetIterator, SIG_ResultSetIterator_Constructor);
+            if (resultCollectionType == Stream.class) {
+                co.invoke_virtual(TYPE_ResultSetIterator, SIG_ResultSetIterator_stream);
+            }
+
+            // the iterator closes the result set and the statement and ungets the connection
+            tryBlockResultSet.end();
+            tryBlockStatement.end();
+            tryBlockConnection.end();
+            co.return_value();
+
+            // exception handlers
+            emitExceptionHandlers(co, generator, tryBlockConnection, tryBlockStatement, tryBlockResultSet,
+                    localConnection, localPreparedStatement, localResultSet, localException);
+            listener.emitFailureHandler();
+            return;
+        }
+
         ResultMapping resultMapping = null;
         for (ResultMapping rm : mapper.getResults()) {
             if (!rm.isMapKey()) {
@@ -500,14 +604,21 @@ public class SelectQueryMethodGenerator {
 
         Local localResult = co.make_local(Type.getType(resultMapping.getBeanType() != null ? resultMapping
                 .getBeanType() : resultMapping.getType()));
+        boolean createResultObject = !(mapper.getResults().size() == 1 && resultMapping.usesAtomic())
+                && !(usesMap && mapper.getResults().size() == 2 && resultMapping.usesAtomic());
+        if (createResultObject && mapper.isReuseResultObject()) {
+            // the result object is created once and refilled for every row
+            EmitUtils.createAndStoreNewResultObject(co, mapper, localResultSet, localResult);
+            createResultObject = false;
+        }
+
         // while (rs.next()) {
         co.mark(labelWhile);
         co.load_local(localResultSet);
         co.invoke_interface(TYPE_ResultSet, SIG_next);
         co.if_jump(CodeEmitter.EQ, labelFinally);
 
-        if (!(mapper.getResults().size() == 1 && resultMapping.usesAtomic())
-                && !(usesMap && mapper.getResults().size() == 2 && resultMapping.usesAtomic())) {
+        if (createResultObject) {
             EmitUtils.createAndStoreNewResultObject(co, mapper, localResultSet, localResult);
         }
 
@@ -515,7 +626,25 @@ public class SelectQueryMethodGenerator {
         ResultMappingGenerator rmp = new ResultMappingGenerator(co, localResultSet, localResult, localMapKey, false, null);
         mapper.acceptResultMappers(rmp);
 
-        if (usesMap) {
+        if (usesRowHandler) {
+            // handler.handleRow(result);
+            co.load_arg(getRowHandlerParameterIndex(mapper));
+            co.load_local(localResult);
+            if (resultCollectionType == RowHandler.class) {
+                co.invoke_interface(TYPE_RowHandler, SIG_handleRow);
+            } else {
+                co.invoke_interface(TYPE_Consumer, SIG_accept);
+            }
+            if (localRowCount != null) {
+                co.iinc(localRowCount, 1);
+            }
+        } else if (localPrimitiveList != null) {
+            // list.add(result);
+            co.load_local(localPrimitiveList);
+            co.load_local(localResult);
+            co.invoke_virtual(primitiveListType, new Signature("add",
+                    Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(resultMapping.getType()))));
+        } else if (usesMap) {
             co.load_local(localResultCollection);
             co.load_local(localMapKey);
             co.load_local(localResult);
@@ -528,6 +657,7 @@ public class SelectQueryMethodGenerator {
             co.invoke_interface(TYPE_Collection, SIG_add);
             co.pop();
         }
+        listener.emitCountRow();
 
         // } // end while
         co.goTo(labelWhile);
@@ -539,17 +669,38 @@ public class SelectQueryMethodGenerator {
         EmitUtils.emitClose(co, localResultSet);
 
         tryBlockStatement.end();
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitReleaseStatement(co, generator, localPreparedStatement);
 
         tryBlockConnection.end();
         EmitUtils.emitUngetConnection(co, generator, localConnection);
+        listener.emitRowsMapped();
 
         // return result
-        co.load_local(localResultCollection);
+        if (localRowCount != null) {
+            co.load_local(localRowCount);
+        } else if (localPrimitiveList != null) {
+            co.load_local(localPrimitiveList);
+            if (resultCollectionType.isArray()) {
+                // list.toArray();
+                co.invoke_virtual(primitiveListType, new Signature("toArray",
+                        Type.getMethodDescriptor(Type.getType(resultCollectionType))));
+            }
+        } else if (!usesRowHandler) {
+            co.load_local(localResultCollection);
+        }
         co.return_value();
         // }
 
         // exception handlers
+        emitExceptionHandlers(co, generator, tryBlockConnection, tryBlockStatement, tryBlockResultSet,
+                localConnection, localPreparedStatement, localResultSet, localException);
+        listener.emitFailureHandler();
+    }
+
+    private static void emitExceptionHandlers(CodeEmitter co, QueryObjectGenerator generator,
+                                              Block tryBlockConnection, Block tryBlockStatement, Block tryBlockResultSet,
+                                              Local localConnection, Local localPreparedStatement,
+                                              Local localResultSet, Local localException) {
         EmitUtils.emitCatchException(co, tryBlockResultSet, null);
         Block tryBlockResultSet2 = co.begin_block();
         Block tryBlockStatement2 = co.begin_block();
@@ -562,7 +713,7 @@ public class SelectQueryMethodGenerator {
         EmitUtils.emitCatchException(co, tryBlockStatement, null);
         EmitUtils.emitCatchException(co, tryBlockResultSet2, null);
         co.store_local(localException);
-        EmitUtils.emitClose(co, localPreparedStatement);
+        EmitUtils.emitCloseStatement(co, generator, localPreparedStatement);
         co.load_local(localException);
         co.athrow();
         tryBlockStatement2.end();
@@ -573,31 +724,41 @@ public class SelectQueryMethodGenerator {
         EmitUtils.emitUngetConnection(co, generator, localConnection);
         co.load_local(localException);
         co.athrow();
+    }
 
+    /**
+     * Emits the mapping of the current row of a result set for a query method
+     * with a streaming return type. The mapped row is returned from the method.
+     *
+     * @param co             the code emitter
+     * @param mapper         the mapper of the query method
+     * @param localResultSet the result set
+     */
+    static void addRowMapperBody(CodeEmitter co, Mapper mapper, Local localResultSet) {
+        ResultMapping resultMapping = mapper.getResults().get(0);
+        Local localResult = co.make_local(Type.getType(resultMapping.getBeanType() != null ? resultMapping
+                .getBeanType() : resultMapping.getType()));
+
+        if (!(mapper.getResults().size() == 1 && resultMapping.usesAtomic())) {
+            EmitUtils.createAndStoreNewResultObject(co, mapper, localResultSet, localResult);
+        }
+
+        // get results
+        ResultMappingGenerator rmp = new ResultMappingGenerator(co, localResultSet, localResult, null, false, null);
+        mapper.acceptResultMappers(rmp);
+
+        // return result
+        co.load_local(localResult);
+        co.return_value();
     }
 
-    private static void pushSql(CodeEmitter co, Mapper mapper, String sql) {
-        if (mapper.usesArray()) {
-            co.push(sql);
-            List<ParameterMapping> mappings = mapper.getParameters();
-            for (int i = mappings.size() - 1; i >= 0; i--) {
-                ParameterMapping mapping = mappings.get(i);
-                if (mapping.usesArray()) {
-                    co.push(mapping.getSqlIndexes()[0]); // index
-                    co.load_arg(mapping.getIndex());
-                    co.arraylength(); // numArgs
-                    if (mapping.getParameterSeparator() == null) {
-                        co.push(",");
-                    } else {
-                        co.push(mapping.getParameterSeparator());
-                    }
-                    co.invoke_static(Type.getType(ParameterReplacer.class),
-                            new Signature("replace", "(Ljava/lang/String;IILjava/lang/String;)Ljava/lang/String;"));
-                }
+    private static int getRowHandlerParameterIndex(Mapper mapper) {
+        for (MethodParameterInfo parameterInfo : mapper.getMethod().getParameterInfos()) {
+            if (ReflectionUtils.isRowHandlerType(parameterInfo.getType())) {
+                return parameterInfo.getIndex();
             }
-        } else {
-            co.push(sql);
         }
+        throw new ValidationException("No row handler parameter found");
     }
 
 }
@@ -40,4 +40,22 @@ public interface QueryObjectClassEnhancer {
      */
     <T> Class<T> enhance(Class<T> queryDefinitionClass, Class<T> superClass);
 
+    /**
+     * Called when a query object class was generated at build time to find the
+     * pregenerated enhanced class.
+     * <p>
+     * Returns either the pregenerated class that inherits from the <code>superClass</code>,
+     * the <code>superClass</code> if no enhancements are needed or null if the enhanced
+     * class is not available.
+     *
+     * @param queryDefinitionClass the query definition class or interface
+     * @param superClass           the super class
+     * @param <T>                  Query definition class type
+     * @return the pregenerated enhanced class, the super class or null
+     * @since 1.2.1
+     */
+    default <T> Class<T> findPregeneratedClass(Class<T> queryDefinitionClass, Class<T> superClass) {
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -24,4 +24,8 @@ public class QueryObjectEnhancer implements QueryObjectClassEnhancer {
         // TODO enhancer registry
         return new SessionRunnerEnhancer().enhance(queryDefinitionClass, superClass);
     }
+
+    public <T> Class<T> findPregeneratedClass(Class<T> queryDefinitionClass, Class<T> superClass) {
+        return new SessionRunnerEnhancer().findPregeneratedClass(queryDefinitionClass, superClass);
+    }
 }
@@ -27,6 +27,7 @@ import uk.co.brunella.qof.session.DefaultSessionRunner;
 import uk.co.brunella.qof.session.TransactionManagementType;
 import uk.co.brunella.qof.session.UseDefaultSessionRunner;
 import uk.co.brunella.qof.session.UseSessionContext;
+import uk.co.brunella.qof.util.ClassGenerationCache;
 import uk.co.brunella.qof.util.DefineClassHelper;
 import uk.co.brunella.qof.util.ReflectionUtils;
 
@@ -64,6 +65,18 @@ public class SessionRunnerEnhancer implements QueryObjectClassEnhancer {
         return superClass;
     }
 
+    public <T> Class<T> findPregeneratedClass(Class<T> queryDefinitionClass, Class<T> superClass) {
+        if (getAllAnnotatedMethods(queryDefinitionClass, superClass).isEmpty()) {
+            return superClass;
+        }
+        Class<?> clazz = ClassGenerationCache.getPregeneratedClass(getClassName(superClass), queryDefinitionClass.getClassLoader());
+        if (clazz == null || clazz.getSuperclass() != superClass) {
+            return null;
+        }
+        @SuppressWarnings("unchecked") Class<T> enhancedClass = (Class<T>) clazz;
+        return enhancedClass;
+    }
+
     private <T> List<Method> getAllAnnotatedMethods(Class<T> queryDefinitionClass, Class<T> superClass) {
         Map<String, Method> annotatedMethods = new HashMap<>();
 
@@ -152,7 +165,7 @@ public class SessionRunnerEnhancer implements QueryObjectClassEnhancer {
 
         try {
             return DefineClassHelper.defineClass(getClassName(superClass), cw.toByteArray(),
-                    queryDefinitionClass.getClassLoader());
+                    queryDefinitionClass);
         } catch (Exception e) {
             throw new RuntimeException("SessionRunnerEnhancer could not create new class", e);
         }
@@ -282,7 +295,7 @@ public class SessionRunnerEnhancer implements QueryObjectClassEnhancer {
 
         try {
             DefineClassHelper.defineClass(className, cw.toByteArray(),
-                    queryDefinitionClass.getClassLoader());
+                    queryDefinitionClass);
         } catch (Exception e) {
             throw new RuntimeException("SessionRunnerEnhancer could not create new class", e);
         }
@@ -19,6 +19,9 @@
 package uk.co.brunella.qof.customizer;
 
 import org.objectweb.asm.Type;
+import uk.co.brunella.qof.StatementCache;
+
+import java.util.concurrent.Executor;
 
 /**
  * Defines methods to customize the generation process.
@@ -65,4 +68,31 @@ public interface Customizer {
      * @return connection factory customizer instance
      */
     ConnectionFactoryCustomizer getConnectionFactoryCustomizer(Class<?> queryDefinitionClass);
+
+    /**
+     * Customizes the statement cache used by the query object. If a statement
+     * cache is returned the generated query methods borrow prepared statements
+     * from the cache instead of preparing and closing them on every call.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @return the statement cache or null if statements should not be cached
+     * @see StatementCache
+     * @since 1.2.1
+     */
+    default StatementCache getStatementCache(Class<?> queryDefinitionClass) {
+        return null;
+    }
+
+    /**
+     * Customizes the executor used to run query methods with a <code>CompletableFuture</code>
+     * return type. The executor can be changed per query object with <code>BaseQuery.setExecutor</code>.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @return the executor or null if the default executor of QOF should be used
+     * @see uk.co.brunella.qof.BaseQuery#setExecutor(Executor)
+     * @since 1.2.1
+     */
+    default Executor getExecutor(Class<?> queryDefinitionClass) {
+        return null;
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.customizer;
+
+import uk.co.brunella.qof.StatementCache;
+
+/**
+ * Provides a customizer that enables a <code>StatementCache</code> for all
+ * generated query objects.
+ * <p>
+ * Generated select, insert, update and delete methods borrow their prepared
+ * statements from the cache and return them instead of closing them.
+ * <p>
+ * <pre>
+ * StatementCacheCustomizer customizer = new StatementCacheCustomizer(200);
+ * QueryObjectFactory.setCustomizer(customizer);
+ * ...
+ * long hits = customizer.getStatementCache().getHits();
+ * </pre>
+ *
+ * @see StatementCache
+ * @since 1.2.1
+ */
+public class StatementCacheCustomizer extends DefaultCustomizer {
+
+    private final StatementCache statementCache;
+
+    /**
+     * Creates a customizer with a statement cache of the default size.
+     */
+    public StatementCacheCustomizer() {
+        this(new StatementCache());
+    }
+
+    /**
+     * Creates a customizer with a statement cache.
+     *
+     * @param maxSize the maximum number of cached statements
+     */
+    public StatementCacheCustomizer(int maxSize) {
+        this(new StatementCache(maxSize));
+    }
+
+    /**
+     * Creates a customizer that uses an existing statement cache.
+     *
+     * @param statementCache the statement cache
+     */
+    public StatementCacheCustomizer(StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Returns the statement cache used by all query objects.
+     *
+     * @param queryDefinitionClass query definition class or interface
+     * @return the statement cache
+     * @see Customizer#getStatementCache(Class)
+     */
+    @Override
+    public StatementCache getStatementCache(Class<?> queryDefinitionClass) {
+        return statementCache;
+    }
+
+    /**
+     * Returns the statement cache.
+     *
+     * @return the statement cache
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+}
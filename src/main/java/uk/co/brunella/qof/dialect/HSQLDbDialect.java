@@ -18,11 +18,57 @@
  */
 package uk.co.brunella.qof.dialect;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Implements HSQLDB specific SQL syntax.
+ * <p>
+ * If array parameters are enabled, array parameters of in-clauses are bound as
+ * one JDBC array and the SQL statement uses <code>IN (UNNEST(?))</code>. The
+ * SQL statement is then the same for any number of elements.
  */
 public class HSQLDbDialect implements SQLDialect {
 
+    private static final Map<Class<?>, String> ARRAY_TYPE_NAMES = new HashMap<>();
+
+    static {
+        ARRAY_TYPE_NAMES.put(Boolean.TYPE, "BOOLEAN");
+        ARRAY_TYPE_NAMES.put(Boolean.class, "BOOLEAN");
+        ARRAY_TYPE_NAMES.put(Byte.TYPE, "TINYINT");
+        ARRAY_TYPE_NAMES.put(Byte.class, "TINYINT");
+        ARRAY_TYPE_NAMES.put(Short.TYPE, "SMALLINT");
+        ARRAY_TYPE_NAMES.put(Short.class, "SMALLINT");
+        ARRAY_TYPE_NAMES.put(Integer.TYPE, "INTEGER");
+        ARRAY_TYPE_NAMES.put(Integer.class, "INTEGER");
+        ARRAY_TYPE_NAMES.put(Long.TYPE, "BIGINT");
+        ARRAY_TYPE_NAMES.put(Long.class, "BIGINT");
+        ARRAY_TYPE_NAMES.put(Float.TYPE, "REAL");
+        ARRAY_TYPE_NAMES.put(Float.class, "REAL");
+        ARRAY_TYPE_NAMES.put(Double.TYPE, "DOUBLE");
+        ARRAY_TYPE_NAMES.put(Double.class, "DOUBLE");
+        ARRAY_TYPE_NAMES.put(String.class, "VARCHAR");
+    }
+
+    private final boolean arrayParameters;
+
+    /**
+     * Creates a HSQLDB dialect that expands array parameters.
+     */
+    public HSQLDbDialect() {
+        this(false);
+    }
+
+    /**
+     * Creates a HSQLDB dialect.
+     *
+     * @param arrayParameters true if array parameters should be bound as JDBC arrays
+     * @since 1.2.1
+     */
+    public HSQLDbDialect(boolean arrayParameters) {
+        this.arrayParameters = arrayParameters;
+    }
+
     public String getLimitString(String sql, boolean hasOffset) {
         return new StringBuffer(sql.length() + 10).append(sql).insert(sql.toLowerCase().indexOf("select") + 6,
                 hasOffset ? " limit ? ?" : " top ?").toString();
@@ -39,4 +85,12 @@ public class HSQLDbDialect implements SQLDialect {
     public boolean limitOffsetFirst() {
         return true;
     }
+
+    public String getArrayTypeName(Class<?> elementType) {
+        return arrayParameters ? ARRAY_TYPE_NAMES.get(elementType) : null;
+    }
+
+    public String getArrayParameterString() {
+        return "UNNEST(?)";
+    }
 }
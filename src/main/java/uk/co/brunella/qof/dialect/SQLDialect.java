@@ -73,4 +73,45 @@ public interface SQLDialect {
      * @return true if offset is set first
      */
     boolean limitOffsetFirst();
+
+    /**
+     * Returns the SQL type name used to bind array parameters with elements
+     * of the given type as a JDBC array with <code>Connection.createArrayOf</code>.
+     * If <code>null</code> is returned the parameter '?' is expanded to one
+     * parameter for every element of the array.
+     *
+     * @param elementType the type of the array elements
+     * @return the SQL type name or <code>null</code> if array parameters are expanded
+     * @see #getArrayParameterString()
+     * @since 1.2.1
+     */
+    default String getArrayTypeName(Class<?> elementType) {
+        return null;
+    }
+
+    /**
+     * Returns the SQL expression that replaces the parameter '?' of an array
+     * parameter that is bound as a JDBC array, for example <code>UNNEST(?)</code>.
+     * The expression must contain exactly one parameter '?'.
+     *
+     * @return the SQL expression
+     * @see #getArrayTypeName(Class)
+     * @since 1.2.1
+     */
+    default String getArrayParameterString() {
+        return "?";
+    }
+
+    /**
+     * Returns the maximum number of parameters '?' of a statement that is supported by
+     * the database and the JDBC driver. This limits the number of rows of multi-row
+     * insert statements.
+     *
+     * @return the maximum number of parameters
+     * @see uk.co.brunella.qof.MultiRowInsert
+     * @since 1.2.1
+     */
+    default int getMaxParameters() {
+        return 2000;
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.exception;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a <code>SQLException</code> that is thrown while a result set is
+ * traversed lazily, for example from <code>Iterator.next()</code> or from
+ * a stream operation.
+ *
+ * @see uk.co.brunella.qof.CloseableIterator
+ * @since 1.2.1
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    private static final long serialVersionUID = -2386722935427431528L;
+
+    /**
+     * Creates an UncheckedSQLException.
+     *
+     * @param cause the SQL exception
+     */
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    /**
+     * Returns the wrapped SQL exception.
+     *
+     * @return the SQL exception
+     */
+    @Override
+    public SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.mapping;
+
+import java.lang.reflect.Method;
+
+/**
+ * Internal - Describes how the generated keys of an insert statement are returned
+ * and written back into the inserted beans.
+ * <p>
+ * The key columns are mapped by their position in the generated keys result set.
+ *
+ * @since 1.2.1
+ */
+public class GeneratedKeyMapping {
+
+    private final Class<?> keyType;
+    private final MethodParameterInfo parameterInfo;
+    private final Method[] setters;
+
+    /**
+     * Creates a generated key mapping.
+     *
+     * @param keyType       the type of the keys returned by the method or <code>null</code>
+     *                      if the method returns update counts
+     * @param parameterInfo the parameter with the beans that receive the keys or <code>null</code>
+     * @param setters       the setters for the key columns 1, 2, ...
+     */
+    public GeneratedKeyMapping(Class<?> keyType, MethodParameterInfo parameterInfo, Method[] setters) {
+        this.keyType = keyType;
+        this.parameterInfo = parameterInfo;
+        this.setters = setters;
+    }
+
+    /**
+     * Returns the type of the keys returned by the method, for example <code>long</code>
+     * for <code>long</code> and <code>long[]</code> or the element type of a list.
+     *
+     * @return the key type or <code>null</code> if the method returns update counts
+     */
+    public Class<?> getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * Returns the parameter with the beans that receive the keys. This is either a bean
+     * or a collection of beans.
+     *
+     * @return the parameter or <code>null</code> if keys are not written back
+     */
+    public MethodParameterInfo getParameterInfo() {
+        return parameterInfo;
+    }
+
+    /**
+     * Returns the setters for the key columns.
+     *
+     * @return the setters, the setter at index i is used for column i + 1
+     */
+    public Method[] getSetters() {
+        return setters;
+    }
+}
@@ -18,11 +18,17 @@
  */
 package uk.co.brunella.qof.mapping;
 
+import uk.co.brunella.qof.Cached;
+import uk.co.brunella.qof.MultiRowInsert;
+import uk.co.brunella.qof.ParameterReplacer;
+
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Mapper {
 
@@ -31,14 +37,27 @@ public class Mapper {
     private String sql;
     private List<ParameterMapping> parameters;
     private List<ResultMapping> results;
+    private boolean reuseResultObject;
+    private int[] inListBuckets;
+    private Cached cached;
+    private MultiRowInsert multiRowInsert;
+    private GeneratedKeyMapping generatedKeyMapping;
+    private String[] tableNames = new String[0];
+    private Map<ParameterMapping, String> arrayTypeNames = new HashMap<>();
 
     public Mapper(MethodInfo methodInfo, QueryType type, String sql, List<ParameterMapping> parameters,
                   List<ResultMapping> results) {
+        this(methodInfo, type, sql, parameters, results, false);
+    }
+
+    public Mapper(MethodInfo methodInfo, QueryType type, String sql, List<ParameterMapping> parameters,
+                  List<ResultMapping> results, boolean reuseResultObject) {
         this.methodInfo = methodInfo;
         this.queryType = type;
         this.sql = sql;
         this.parameters = parameters;
         this.results = results;
+        this.reuseResultObject = reuseResultObject;
     }
 
     public MethodInfo getMethod() {
@@ -61,6 +80,100 @@ public class Mapper {
         return results;
     }
 
+    public boolean isReuseResultObject() {
+        return reuseResultObject;
+    }
+
+    /**
+     * Returns the bucket sizes for array parameters.
+     *
+     * @return the bucket sizes, an empty array for powers of two or
+     * <code>null</code> if bucketing is not used
+     */
+    public int[] getInListBuckets() {
+        return inListBuckets;
+    }
+
+    public void setInListBuckets(int[] inListBuckets) {
+        this.inListBuckets = inListBuckets;
+    }
+
+    /**
+     * Returns the result cache definition of the query method.
+     *
+     * @return the result cache definition or <code>null</code> if results are not cached
+     */
+    public Cached getCached() {
+        return cached;
+    }
+
+    public void setCached(Cached cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * Returns the multi-row insert definition of the insert method.
+     *
+     * @return the multi-row insert definition or <code>null</code> if rows are inserted one by one
+     */
+    public MultiRowInsert getMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    public void setMultiRowInsert(MultiRowInsert multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * Returns the generated key mapping of the insert method.
+     *
+     * @return the generated key mapping or <code>null</code> if generated keys are not used
+     */
+    public GeneratedKeyMapping getGeneratedKeyMapping() {
+        return generatedKeyMapping;
+    }
+
+    public void setGeneratedKeyMapping(GeneratedKeyMapping generatedKeyMapping) {
+        this.generatedKeyMapping = generatedKeyMapping;
+    }
+
+    /**
+     * Returns the names of the tables that are referenced in the SQL statement.
+     *
+     * @return the lower case table names
+     */
+    public String[] getTableNames() {
+        return tableNames;
+    }
+
+    public void setTableNames(String[] tableNames) {
+        this.tableNames = tableNames;
+    }
+
+    /**
+     * Binds an array parameter as a JDBC array instead of expanding the parameter
+     * to one parameter for every element. The parameter in the SQL statement is
+     * replaced with the SQL expression for array parameters.
+     *
+     * @param mapping         the array parameter mapping
+     * @param typeName        the SQL type name of the array elements
+     * @param parameterString the SQL expression that replaces the parameter
+     */
+    public void bindArrayParameter(ParameterMapping mapping, String typeName, String parameterString) {
+        sql = ParameterReplacer.replaceParameter(sql, mapping.getSqlIndexes()[0], parameterString);
+        arrayTypeNames.put(mapping, typeName);
+    }
+
+    /**
+     * Returns the SQL type name of an array parameter that is bound as a JDBC array.
+     *
+     * @param mapping the parameter mapping
+     * @return the SQL type name or <code>null</code> if the parameter is not bound as a JDBC array
+     */
+    public String getArrayTypeName(ParameterMapping mapping) {
+        return arrayTypeNames.get(mapping);
+    }
+
     public int getNumberOfConstructorParameters() {
         int num = 0;
         for (ResultMapping mapping : results) {
@@ -140,6 +253,22 @@ public class Mapper {
         return maxIndex;
     }
 
+    /**
+     * Returns true if an array parameter is expanded to one parameter for every element.
+     *
+     * @return true if array parameters are expanded
+     */
+    public boolean usesArrayExpansion() {
+        if (parameters != null) {
+            for (ParameterMapping mapping : parameters) {
+                if (mapping.usesArray() && !arrayTypeNames.containsKey(mapping)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public boolean usesArray() {
         if (parameters != null) {
             for (ParameterMapping mapping : parameters) {
@@ -33,4 +33,6 @@ public interface MethodInfo {
     MethodReturnInfo getReturnInfo();
 
     String getDescription();
+
+    boolean isAsynchronous();
 }
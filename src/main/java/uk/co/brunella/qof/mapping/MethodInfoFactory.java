@@ -19,10 +19,14 @@
 package uk.co.brunella.qof.mapping;
 
 import net.sf.cglib.core.Signature;
+import uk.co.brunella.qof.Delete;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Update;
 import uk.co.brunella.qof.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
 public class MethodInfoFactory {
@@ -32,9 +36,34 @@ public class MethodInfoFactory {
         int modifiers = method.getModifiers();
         MethodParameterInfo[] parameterInfos = createParameterInfos(method);
         MethodParameterInfo[] collectionParameterInfos = createCollectionParameterInfos(parameterInfos);
-        MethodReturnInfo returnInfo = createReturnInfos(method);
+        Type asyncResultType = ReflectionUtils.getAsyncResultType(method.getGenericReturnType());
+        MethodReturnInfo returnInfo;
+        if (asyncResultType == null) {
+            returnInfo = createReturnInfos(method, method.getReturnType(), method.getGenericReturnType());
+        } else {
+            returnInfo = createReturnInfos(method, getAsyncResultClass(method, asyncResultType), asyncResultType);
+        }
 
-        return new MethodInfoImpl(signature, modifiers, parameterInfos, collectionParameterInfos, returnInfo, method.toGenericString());
+        return new MethodInfoImpl(signature, modifiers, parameterInfos, collectionParameterInfos, returnInfo,
+                method.toGenericString(), asyncResultType != null);
+    }
+
+    private static Class<?> getAsyncResultClass(Method method, Type asyncResultType) {
+        Class<?> type;
+        if (asyncResultType instanceof ParameterizedType) {
+            type = (Class<?>) ((ParameterizedType) asyncResultType).getRawType();
+        } else {
+            type = (Class<?>) asyncResultType;
+        }
+        if (type == Void.class) {
+            return void.class;
+        }
+        if (type == Integer.class && (method.isAnnotationPresent(Insert.class) || method.isAnnotationPresent(Update.class)
+                || method.isAnnotationPresent(Delete.class) || hasRowHandlerParameter(method))) {
+            // update and row counts are returned as int
+            return int.class;
+        }
+        return type;
     }
 
     private static MethodParameterInfo[] createParameterInfos(Method method) {
@@ -47,6 +76,10 @@ public class MethodInfoFactory {
             String name = parameters[i].getName();
             Class<?> type = types[i];
             Class<?> collectionType = ReflectionUtils.getCollectionType(genericTypes[i]);
+            if (collectionType == null) {
+                // iterators, iterables and streams are consumed like collections
+                collectionType = ReflectionUtils.getStreamingType(genericTypes[i]);
+            }
             Class<?> collectionElementType;
             if (collectionType == null) {
                 collectionElementType = null;
@@ -77,16 +110,40 @@ public class MethodInfoFactory {
         return collectionParameterInfos;
     }
 
-    private static MethodReturnInfo createReturnInfos(Method method) {
-        Class<?> type = method.getReturnType();
-        Class<?> collectionType = ReflectionUtils.getCollectionType(method.getGenericReturnType());
+    private static boolean hasRowHandlerParameter(Method method) {
+        for (Type parameterType : method.getGenericParameterTypes()) {
+            if (ReflectionUtils.getRowHandlerType(parameterType) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MethodReturnInfo createReturnInfos(Method method, Class<?> type, Type genericType) {
+        // rows of methods with a row handler parameter are returned through the handler
+        for (Type parameterType : method.getGenericParameterTypes()) {
+            Class<?> rowHandlerType = ReflectionUtils.getRowHandlerType(parameterType);
+            if (rowHandlerType != null) {
+                return new MethodReturnInfoImpl(type, rowHandlerType,
+                        ReflectionUtils.getCollectionParameterizedType(parameterType), null);
+            }
+        }
+        // values of primitive arrays and lists are collected unboxed
+        Class<?> primitiveElementType = ReflectionUtils.getPrimitiveCollectionElementType(type);
+        if (primitiveElementType != null) {
+            return new MethodReturnInfoImpl(type, type, primitiveElementType, null);
+        }
+        Class<?> collectionType = ReflectionUtils.getCollectionType(genericType);
+        if (collectionType == null) {
+            collectionType = ReflectionUtils.getStreamingType(genericType);
+        }
         Class<?> collectionElementType;
         if (collectionType == null) {
             collectionElementType = null;
         } else {
-            collectionElementType = ReflectionUtils.getCollectionParameterizedType(method.getGenericReturnType());
+            collectionElementType = ReflectionUtils.getCollectionParameterizedType(genericType);
         }
-        Class<?> mapKeyType = ReflectionUtils.getCollectionParameterizedKeyType(method.getGenericReturnType());
+        Class<?> mapKeyType = ReflectionUtils.getCollectionParameterizedKeyType(genericType);
         return new MethodReturnInfoImpl(type, collectionType, collectionElementType, mapKeyType);
     }
 
@@ -98,9 +155,11 @@ public class MethodInfoFactory {
         private MethodParameterInfo[] collectionParameterInfos;
         private MethodReturnInfo returnInfo;
         private String description;
+        private boolean asynchronous;
 
         MethodInfoImpl(Signature signature, int modifiers, MethodParameterInfo[] parameterInfos,
-                       MethodParameterInfo[] collectionParameterInfos, MethodReturnInfo returnInfo, String description) {
+                       MethodParameterInfo[] collectionParameterInfos, MethodReturnInfo returnInfo, String description,
+                       boolean asynchronous) {
             super();
             this.signature = signature;
             this.modifiers = modifiers;
@@ -108,6 +167,7 @@ public class MethodInfoFactory {
             this.collectionParameterInfos = collectionParameterInfos;
             this.returnInfo = returnInfo;
             this.description = description;
+            this.asynchronous = asynchronous;
         }
 
         public Signature getSignature() {
@@ -137,6 +197,10 @@ public class MethodInfoFactory {
         public String getDescription() {
             return description;
         }
+
+        public boolean isAsynchronous() {
+            return asynchronous;
+        }
     }
 
     protected static class MethodParameterInfoImpl implements MethodParameterInfo {
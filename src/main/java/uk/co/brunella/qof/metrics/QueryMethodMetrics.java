@@ -0,0 +1,96 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+import uk.co.brunella.qof.QueryMethod;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of one query method.
+ *
+ * @see QueryMetrics
+ * @since 1.2.1
+ */
+public final class QueryMethodMetrics {
+
+    private final QueryMethod method;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedStatementCount = new LongAdder();
+
+    QueryMethodMetrics(QueryMethod method) {
+        this.method = method;
+    }
+
+    /**
+     * Returns the query method.
+     *
+     * @return the query method
+     */
+    public QueryMethod getMethod() {
+        return method;
+    }
+
+    void called() {
+        callCount.increment();
+    }
+
+    void completed(long nanos) {
+        latency.record(nanos);
+    }
+
+    void failed() {
+        errorCount.increment();
+    }
+
+    void rowsMapped(int rows) {
+        rowCount.add(rows);
+    }
+
+    void batchFlushed(int batchSize) {
+        batchCount.increment();
+        batchedStatementCount.add(batchSize);
+    }
+
+    /**
+     * Returns a copy of the current metrics.
+     *
+     * @return the snapshot
+     */
+    public QueryMethodSnapshot getSnapshot() {
+        return new QueryMethodSnapshot(method, callCount.sum(), errorCount.sum(), rowCount.sum(),
+                batchCount.sum(), batchedStatementCount.sum(), latency.getSnapshot());
+    }
+
+    /**
+     * Clears the metrics.
+     */
+    public void reset() {
+        latency.reset();
+        callCount.reset();
+        errorCount.reset();
+        rowCount.reset();
+        batchCount.reset();
+        batchedStatementCount.reset();
+    }
+}
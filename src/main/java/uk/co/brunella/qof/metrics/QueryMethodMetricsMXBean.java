@@ -0,0 +1,124 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+/**
+ * JMX interface of the metrics of a query method.
+ *
+ * @see QueryMetrics#registerMBeans(javax.management.MBeanServer)
+ * @since 1.2.1
+ */
+public interface QueryMethodMetricsMXBean {
+
+    /**
+     * Returns the query method as class name, method name and parameter types.
+     *
+     * @return the query method
+     */
+    String getMethod();
+
+    /**
+     * Returns the SQL statement of the method.
+     *
+     * @return the SQL statement
+     */
+    String getSql();
+
+    /**
+     * Returns the number of invocations.
+     *
+     * @return the number of invocations
+     */
+    long getCallCount();
+
+    /**
+     * Returns the number of failed invocations.
+     *
+     * @return the number of failed invocations
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the number of mapped rows.
+     *
+     * @return the number of rows
+     */
+    long getRowCount();
+
+    /**
+     * Returns the number of executed batches.
+     *
+     * @return the number of batches
+     */
+    long getBatchCount();
+
+    /**
+     * Returns the number of statements executed in batches.
+     *
+     * @return the number of statements
+     */
+    long getBatchedStatementCount();
+
+    /**
+     * Returns the total time of successful invocations in milliseconds.
+     *
+     * @return the total time
+     */
+    double getTotalTimeMillis();
+
+    /**
+     * Returns the mean time of successful invocations in milliseconds.
+     *
+     * @return the mean time
+     */
+    double getMeanTimeMillis();
+
+    /**
+     * Returns the maximum time of successful invocations in milliseconds.
+     *
+     * @return the maximum time
+     */
+    double getMaxTimeMillis();
+
+    /**
+     * Returns the median time of successful invocations in milliseconds.
+     *
+     * @return the median time
+     */
+    double getPercentile50Millis();
+
+    /**
+     * Returns the 95th percentile of the time of successful invocations in milliseconds.
+     *
+     * @return the 95th percentile
+     */
+    double getPercentile95Millis();
+
+    /**
+     * Returns the 99th percentile of the time of successful invocations in milliseconds.
+     *
+     * @return the 99th percentile
+     */
+    double getPercentile99Millis();
+
+    /**
+     * Clears the metrics.
+     */
+    void reset();
+}
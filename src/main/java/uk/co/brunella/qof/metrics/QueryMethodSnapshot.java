@@ -0,0 +1,121 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+import uk.co.brunella.qof.QueryMethod;
+
+/**
+ * An immutable copy of the metrics of a query method.
+ *
+ * @see QueryMetrics#getSnapshots()
+ * @since 1.2.1
+ */
+public final class QueryMethodSnapshot {
+
+    private final QueryMethod method;
+    private final long callCount;
+    private final long errorCount;
+    private final long rowCount;
+    private final long batchCount;
+    private final long batchedStatementCount;
+    private final LatencyHistogram.Snapshot latency;
+
+    QueryMethodSnapshot(QueryMethod method, long callCount, long errorCount, long rowCount, long batchCount,
+                        long batchedStatementCount, LatencyHistogram.Snapshot latency) {
+        this.method = method;
+        this.callCount = callCount;
+        this.errorCount = errorCount;
+        this.rowCount = rowCount;
+        this.batchCount = batchCount;
+        this.batchedStatementCount = batchedStatementCount;
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the query method.
+     *
+     * @return the query method
+     */
+    public QueryMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the number of invocations.
+     *
+     * @return the number of invocations
+     */
+    public long getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * Returns the number of failed invocations.
+     *
+     * @return the number of failed invocations
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Returns the number of rows mapped by select methods.
+     * Rows of streaming select methods are not counted.
+     *
+     * @return the number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of executed batches.
+     *
+     * @return the number of batches
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the number of statements executed in batches.
+     *
+     * @return the number of statements
+     */
+    public long getBatchedStatementCount() {
+        return batchedStatementCount;
+    }
+
+    /**
+     * Returns the latencies of successful invocations in nanoseconds.
+     * The latency of select methods includes the mapping of all rows
+     * unless the method is streaming.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    public String toString() {
+        return method + ": calls=" + callCount + ", errors=" + errorCount + ", rows=" + rowCount
+                + ", batches=" + batchCount + ", batchedStatements=" + batchedStatementCount
+                + ", totalNanos=" + latency.getTotal() + ", maxNanos=" + latency.getMax();
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+import uk.co.brunella.qof.QueryListener;
+import uk.co.brunella.qof.QueryMethod;
+import uk.co.brunella.qof.mapping.QueryType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of metrics of query methods.
+ * <p>
+ * <code>QueryMetrics</code> is a <code>QueryListener</code> that records for every query method
+ * the number of invocations and errors, the latency of successful invocations, the number of
+ * mapped rows and the number and size of executed batches:
+ * <p>
+ * <pre>
+ * QueryMetrics metrics = new QueryMetrics();
+ * QueryObjectFactory.setQueryListener(metrics);
+ * metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+ * ...
+ * for (QueryMethodSnapshot snapshot : metrics.getSnapshots()) {
+ *     System.out.println(snapshot);
+ * }
+ * </pre>
+ * The metrics are collected without locks. Metrics are only collected for query object
+ * classes that are generated after the registry was set as query listener.
+ * <p>
+ * If the MBeans are registered every query method is exported as an MXBean with the name
+ * <code>uk.co.brunella.qof:type=QueryMethodMetrics,registry=<i>name</i>,class=<i>class</i>,method=<i>method</i></code>.
+ *
+ * @see uk.co.brunella.qof.QueryObjectFactory#setQueryListener(QueryListener)
+ * @see QueryMethodMetricsMXBean
+ * @since 1.2.1
+ */
+public class QueryMetrics implements QueryListener {
+
+    /**
+     * The JMX domain of the MBeans.
+     */
+    public static final String JMX_DOMAIN = "uk.co.brunella.qof";
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String name;
+    private final ConcurrentMap<QueryMethod, QueryMethodMetrics> metricsMap = new ConcurrentHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private MBeanServer mBeanServer;
+
+    /**
+     * Creates a registry with the name <code>default</code>.
+     */
+    public QueryMetrics() {
+        this("default");
+    }
+
+    /**
+     * Creates a registry. The name is used to distinguish the MBeans of different registries.
+     *
+     * @param name the name of the registry
+     */
+    public QueryMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the registry.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object beforePrepare(QueryMethod method) {
+        QueryMethodMetrics metrics = getMetrics(method);
+        metrics.called();
+        return new Invocation(metrics, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecute(QueryMethod method, Object context) {
+        if (method.getQueryType() != QueryType.QUERY || method.isStreaming()) {
+            // select methods complete after the rows are mapped
+            ((Invocation) context).completed();
+        }
+    }
+
+    @Override
+    public void rowsMapped(QueryMethod method, Object context, int rowCount) {
+        Invocation invocation = (Invocation) context;
+        invocation.metrics.rowsMapped(rowCount);
+        invocation.completed();
+    }
+
+    @Override
+    public void batchFlushed(QueryMethod method, Object context, int batchSize) {
+        ((Invocation) context).metrics.batchFlushed(batchSize);
+    }
+
+    @Override
+    public void failure(QueryMethod method, Object context, Throwable exception) {
+        ((Invocation) context).metrics.failed();
+    }
+
+    /**
+     * Returns the metrics of a query method.
+     *
+     * @param method the query method
+     * @return the metrics
+     */
+    public QueryMethodMetrics getMetrics(QueryMethod method) {
+        QueryMethodMetrics metrics = metricsMap.get(method);
+        if (metrics == null) {
+            metrics = new QueryMethodMetrics(method);
+            QueryMethodMetrics existing = metricsMap.putIfAbsent(method, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            registerMBean(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns snapshots of the metrics of all invoked query methods ordered by
+     * the total latency, the query method with the highest total latency first.
+     *
+     * @return the snapshots
+     */
+    public List<QueryMethodSnapshot> getSnapshots() {
+        List<QueryMethodSnapshot> snapshots = new ArrayList<>(metricsMap.size());
+        for (QueryMethodMetrics metrics : metricsMap.values()) {
+            snapshots.add(metrics.getSnapshot());
+        }
+        snapshots.sort(Comparator.comparingLong((QueryMethodSnapshot s) -> s.getLatency().getTotal()).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Clears the metrics of all query methods.
+     */
+    public void reset() {
+        for (QueryMethodMetrics metrics : metricsMap.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Registers an MXBean for every query method in an MBean server. Query methods
+     * that are invoked for the first time later are registered when they are invoked.
+     *
+     * @param mBeanServer the MBean server
+     * @throws JMException if an MBean could not be registered
+     * @see QueryMethodMetricsMXBean
+     */
+    public synchronized void registerMBeans(MBeanServer mBeanServer) throws JMException {
+        if (this.mBeanServer != null) {
+            throw new IllegalStateException("MBeans are already registered");
+        }
+        this.mBeanServer = mBeanServer;
+        for (QueryMethodMetrics metrics : metricsMap.values()) {
+            ObjectName objectName = getObjectName(metrics.getMethod());
+            mBeanServer.registerMBean(new MethodMXBean(metrics), objectName);
+            registeredNames.add(objectName);
+        }
+    }
+
+    /**
+     * Unregisters all MXBeans of the registry.
+     *
+     * @throws JMException if an MBean could not be unregistered
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (mBeanServer != null) {
+            try {
+                for (ObjectName objectName : registeredNames) {
+                    if (mBeanServer.isRegistered(objectName)) {
+                        mBeanServer.unregisterMBean(objectName);
+                    }
+                }
+            } finally {
+                registeredNames.clear();
+                mBeanServer = null;
+            }
+        }
+    }
+
+    private synchronized void registerMBean(QueryMethodMetrics metrics) {
+        if (mBeanServer != null) {
+            try {
+                ObjectName objectName = getObjectName(metrics.getMethod());
+                mBeanServer.registerMBean(new MethodMXBean(metrics), objectName);
+                registeredNames.add(objectName);
+            } catch (JMException e) {
+                // a failing export must not fail the query method, the metrics are still collected
+            }
+        }
+    }
+
+    /**
+     * Returns the JMX object name of the MXBean of a query method.
+     *
+     * @param method the query method
+     * @return the object name
+     * @throws MalformedObjectNameException if the name is not valid
+     */
+    public ObjectName getObjectName(QueryMethod method) throws MalformedObjectNameException {
+        String className = method.getQueryDefinitionClass().getName();
+        String methodName = method.toString().substring(className.length() + 1);
+        return new ObjectName(JMX_DOMAIN + ":type=QueryMethodMetrics,registry=" + ObjectName.quote(name)
+                + ",class=" + className + ",method=" + ObjectName.quote(methodName));
+    }
+
+    private static final class Invocation {
+
+        private final QueryMethodMetrics metrics;
+        private final long startTime;
+
+        private Invocation(QueryMethodMetrics metrics, long startTime) {
+            this.metrics = metrics;
+            this.startTime = startTime;
+        }
+
+        private void completed() {
+            metrics.completed(System.nanoTime() - startTime);
+        }
+    }
+
+    private static final class MethodMXBean implements QueryMethodMetricsMXBean {
+
+        private final QueryMethodMetrics metrics;
+
+        private MethodMXBean(QueryMethodMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        public String getMethod() {
+            return metrics.getMethod().toString();
+        }
+
+        public String getSql() {
+            return metrics.getMethod().getSql();
+        }
+
+        public long getCallCount() {
+            return metrics.getSnapshot().getCallCount();
+        }
+
+        public long getErrorCount() {
+            return metrics.getSnapshot().getErrorCount();
+        }
+
+        public long getRowCount() {
+            return metrics.getSnapshot().getRowCount();
+        }
+
+        public long getBatchCount() {
+            return metrics.getSnapshot().getBatchCount();
+        }
+
+        public long getBatchedStatementCount() {
+            return metrics.getSnapshot().getBatchedStatementCount();
+        }
+
+        public double getTotalTimeMillis() {
+            return metrics.getSnapshot().getLatency().getTotal() / NANOS_PER_MILLI;
+        }
+
+        public double getMeanTimeMillis() {
+            return metrics.getSnapshot().getLatency().getMean() / NANOS_PER_MILLI;
+        }
+
+        public double getMaxTimeMillis() {
+            return metrics.getSnapshot().getLatency().getMax() / NANOS_PER_MILLI;
+        }
+
+        public double getPercentile50Millis() {
+            return metrics.getSnapshot().getLatency().getPercentile(50) / NANOS_PER_MILLI;
+        }
+
+        public double getPercentile95Millis() {
+            return metrics.getSnapshot().getLatency().getPercentile(95) / NANOS_PER_MILLI;
+        }
+
+        public double getPercentile99Millis() {
+            return metrics.getSnapshot().getLatency().getPercentile(99) / NANOS_PER_MILLI;
+        }
+
+        public void reset() {
+            metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+import uk.co.brunella.qof.QueryMethod;
+
+import java.util.Arrays;
+
+/**
+ * An entry of the slow query log.
+ *
+ * @see SlowQueryLog
+ * @since 1.2.1
+ */
+public final class SlowQuery {
+
+    private static final int MAX_ARGUMENTS_LENGTH = 1000;
+
+    private final QueryMethod method;
+    private final String sql;
+    private final Object[] arguments;
+    private final int rowCount;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long fetchNanos;
+    private final long totalNanos;
+    private final Throwable exception;
+
+    SlowQuery(QueryMethod method, String sql, Object[] arguments, int rowCount, long prepareNanos,
+              long executeNanos, long fetchNanos, long totalNanos, Throwable exception) {
+        this.method = method;
+        this.sql = sql;
+        this.arguments = arguments;
+        this.rowCount = rowCount;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.fetchNanos = fetchNanos;
+        this.totalNanos = totalNanos;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns the query method.
+     *
+     * @return the query method
+     */
+    public QueryMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the SQL statement as it was sent to the database, i.e. after the expansion
+     * of array parameters and paging. If the query failed before the statement was
+     * prepared the SQL statement of the query method is returned.
+     *
+     * @return the SQL statement
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the arguments of the query method from which the parameters were bound.
+     *
+     * @return the arguments
+     */
+    public Object[] getArguments() {
+        return arguments.clone();
+    }
+
+    /**
+     * Returns the number of mapped rows of a select method or the number of statements
+     * executed in batches. Returns -1 if the number is not known.
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the time to get the connection and to prepare the statement in nanoseconds.
+     *
+     * @return the prepare time
+     */
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    /**
+     * Returns the time to set the parameters and to execute the statement in nanoseconds.
+     *
+     * @return the execute time
+     */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * Returns the time to fetch and map the rows of a select method in nanoseconds.
+     *
+     * @return the fetch time
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * Returns the total time of the invocation in nanoseconds.
+     *
+     * @return the total time
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns the exception if the query failed.
+     *
+     * @return the exception or null
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Slow query ").append(toMillis(totalNanos)).append(" ms (prepare ")
+                .append(toMillis(prepareNanos)).append(" ms, execute ").append(toMillis(executeNanos))
+                .append(" ms, fetch ").append(toMillis(fetchNanos)).append(" ms");
+        if (rowCount >= 0) {
+            sb.append(", ").append(rowCount).append(" rows");
+        }
+        if (exception != null) {
+            sb.append(", failed: ").append(exception);
+        }
+        sb.append(") ").append(method).append(": ").append(sql);
+        String argumentsString = Arrays.deepToString(arguments);
+        if (argumentsString.length() > MAX_ARGUMENTS_LENGTH) {
+            argumentsString = argumentsString.substring(0, MAX_ARGUMENTS_LENGTH) + "...";
+        }
+        return sb.append(' ').append(argumentsString).toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.metrics;
+
+import uk.co.brunella.qof.QueryListener;
+import uk.co.brunella.qof.QueryMethod;
+import uk.co.brunella.qof.mapping.QueryType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A <code>QueryListener</code> that logs query methods that run longer than a threshold.
+ * <p>
+ * An entry of the log contains the SQL statement as it was sent to the database, the
+ * arguments of the query method, the number of rows and the time spent to prepare and
+ * execute the statement and to fetch and map the rows:
+ * <p>
+ * <pre>
+ * SlowQueryLog slowQueryLog = new SlowQueryLog(500, TimeUnit.MILLISECONDS);
+ * QueryObjectFactory.setQueryListener(slowQueryLog);
+ * </pre>
+ * By default the entries are logged with <code>java.util.logging</code> with level
+ * <code>WARNING</code> to the logger <code>uk.co.brunella.qof.SlowQueryLog</code>.
+ * <p>
+ * The number of entries is limited to a maximum per second. Slow queries above the
+ * limit are not logged but counted. The arguments of a query method are only boxed
+ * if the query method was slow and the entry is logged.
+ * <p>
+ * If the log is disabled with <code>setEnabled(false)</code> the listener does not
+ * allocate any objects. Query object classes that are generated without a query listener
+ * do not call the log at all.
+ *
+ * @see uk.co.brunella.qof.QueryObjectFactory#setQueryListener(QueryListener)
+ * @see uk.co.brunella.qof.CompositeQueryListener
+ * @since 1.2.1
+ */
+public class SlowQueryLog implements QueryListener {
+
+    /**
+     * Default maximum number of entries per second.
+     */
+    public static final int DEFAULT_MAX_ENTRIES_PER_SECOND = 10;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Logger LOGGER = Logger.getLogger("uk.co.brunella.qof.SlowQueryLog");
+
+    private final Consumer<SlowQuery> consumer;
+    private final long entryInterval;
+    private final AtomicLong nextEntryTime;
+    private final LongAdder suppressedCount = new LongAdder();
+    private volatile long thresholdNanos;
+    private volatile boolean enabled = true;
+
+    /**
+     * Creates a slow query log that logs with <code>java.util.logging</code> at most
+     * <code>DEFAULT_MAX_ENTRIES_PER_SECOND</code> entries per second.
+     *
+     * @param threshold the threshold
+     * @param unit      the time unit of the threshold
+     */
+    public SlowQueryLog(long threshold, TimeUnit unit) {
+        this(threshold, unit, DEFAULT_MAX_ENTRIES_PER_SECOND,
+                slowQuery -> LOGGER.log(Level.WARNING, slowQuery.toString(), slowQuery.getException()));
+    }
+
+    /**
+     * Creates a slow query log.
+     *
+     * @param threshold           the threshold
+     * @param unit                the time unit of the threshold
+     * @param maxEntriesPerSecond the maximum number of entries per second
+     * @param consumer            receives the entries
+     */
+    public SlowQueryLog(long threshold, TimeUnit unit, int maxEntriesPerSecond, Consumer<SlowQuery> consumer) {
+        if (maxEntriesPerSecond < 1) {
+            throw new IllegalArgumentException("Maximum entries per second must be at least 1");
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.entryInterval = NANOS_PER_SECOND / maxEntriesPerSecond;
+        this.nextEntryTime = new AtomicLong(System.nanoTime());
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns true if the log is enabled.
+     *
+     * @return true if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the log.
+     *
+     * @param enabled true to enable the log
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the threshold.
+     *
+     * @param unit the time unit
+     * @return the threshold
+     */
+    public long getThreshold(TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the threshold. Query methods that run longer are logged.
+     *
+     * @param threshold the threshold
+     * @param unit      the time unit of the threshold
+     */
+    public void setThreshold(long threshold, TimeUnit unit) {
+        this.thresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Returns the number of slow queries that were not logged because the maximum
+     * number of entries per second was exceeded.
+     *
+     * @return the number of suppressed entries
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    @Override
+    public Object beforePrepare(QueryMethod method) {
+        return enabled ? new Invocation(method.getSql(), System.nanoTime()) : null;
+    }
+
+    @Override
+    public void prepared(QueryMethod method, Object context, String sql) {
+        if (context != null) {
+            Invocation invocation = (Invocation) context;
+            invocation.sql = sql;
+            invocation.preparedTime = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterExecute(QueryMethod method, Object context) {
+        if (context != null) {
+            Invocation invocation = (Invocation) context;
+            // the end time is already taken if afterExecute completes the invocation
+            invocation.executedTime = invocation.endTime != 0 ? invocation.endTime : System.nanoTime();
+            if (method.getQueryType() != QueryType.QUERY || method.isStreaming()) {
+                completed(method, invocation, null);
+            }
+        }
+    }
+
+    @Override
+    public void rowsMapped(QueryMethod method, Object context, int rowCount) {
+        if (context != null) {
+            Invocation invocation = (Invocation) context;
+            invocation.rowCount = rowCount;
+            completed(method, invocation, null);
+        }
+    }
+
+    @Override
+    public void batchFlushed(QueryMethod method, Object context, int batchSize) {
+        if (context != null) {
+            Invocation invocation = (Invocation) context;
+            invocation.rowCount = Math.max(invocation.rowCount, 0) + batchSize;
+        }
+    }
+
+    @Override
+    public void failure(QueryMethod method, Object context, Throwable exception) {
+        if (context != null) {
+            completed(method, (Invocation) context, exception);
+        }
+    }
+
+    @Override
+    public boolean isArgumentsRequired(QueryMethod method, Object context) {
+        if (context != null && !((Invocation) context).completed) {
+            Invocation invocation = (Invocation) context;
+            invocation.endTime = System.nanoTime();
+            invocation.slow = invocation.endTime - invocation.startTime >= thresholdNanos
+                    && tryAcquireEntry(invocation.endTime);
+            return invocation.slow;
+        }
+        return false;
+    }
+
+    @Override
+    public void arguments(QueryMethod method, Object context, Object[] arguments) {
+        if (context != null) {
+            ((Invocation) context).arguments = arguments;
+        }
+    }
+
+    private void completed(QueryMethod method, Invocation invocation, Throwable exception) {
+        // an invocation is logged at most once even if failure follows afterExecute
+        if (invocation.completed || !invocation.slow) {
+            invocation.completed = true;
+            return;
+        }
+        invocation.completed = true;
+        long preparedTime = invocation.preparedTime != 0 ? invocation.preparedTime : invocation.endTime;
+        long executedTime = invocation.executedTime != 0 ? invocation.executedTime : invocation.endTime;
+        consumer.accept(new SlowQuery(method, invocation.sql,
+                invocation.arguments != null ? invocation.arguments : new Object[0], invocation.rowCount,
+                preparedTime - invocation.startTime, executedTime - preparedTime,
+                invocation.endTime - executedTime, invocation.endTime - invocation.startTime, exception));
+    }
+
+    private boolean tryAcquireEntry(long now) {
+        // generic cell rate algorithm: the next entry time advances by the entry interval
+        // for every entry and may be up to one second ahead of the current time
+        while (true) {
+            long next = nextEntryTime.get();
+            long start = next - now < 0 ? now : next;
+            if (start - now > NANOS_PER_SECOND - entryInterval) {
+                suppressedCount.increment();
+                return false;
+            }
+            if (nextEntryTime.compareAndSet(next, start + entryInterval)) {
+                return true;
+            }
+        }
+    }
+
+    private static final class Invocation {
+
+        private final long startTime;
+        private String sql;
+        private long preparedTime;
+        private long executedTime;
+        private long endTime;
+        private int rowCount = -1;
+        private boolean slow;
+        private boolean completed;
+        private Object[] arguments;
+
+        private Invocation(String sql, long startTime) {
+            this.sql = sql;
+            this.startTime = startTime;
+        }
+    }
+}
@@ -21,7 +21,12 @@ package uk.co.brunella.qof.parser;
 import uk.co.brunella.qof.exception.SqlParserException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,6 +93,12 @@ public class SqlParser {
             Pattern.compile("\\{([\\w\\-]+)?%%((\\d+)|\\*|\\.(\\w+))?(@\\d+)?(\\[[\\w]+])?}");
     private static final Pattern PARAMETER_DEF_PATTERN =
             Pattern.compile("\\{([\\w\\-]+)?%(\\d+|[a-zA-Z_]\\w+)((\\.\\w+)(\\.\\w+)?(\\.\\w+)?(\\.\\w+)?(\\.\\w+)?)?(@\\d+)?(\\[[\\w]+])?(#.*#)?}");
+    // keywords that can follow a table name and are therefore not aliases
+    private static final Set<String> NON_ALIAS_KEYWORDS = new HashSet<>(Arrays.asList(
+            "where", "join", "inner", "left", "right", "full", "outer", "cross", "natural", "on", "using",
+            "group", "order", "having", "limit", "offset", "fetch", "for", "union", "except", "intersect", "minus",
+            "set", "values", "value", "select", "default", "returning", "window", "start", "connect", "partition",
+            "when", "with"));
     private List<ParameterDefinition> parameterDefs;
     private List<ResultDefinition> resultDefs;
     private List<Integer> openCurlyBrackets;
@@ -143,6 +154,94 @@ public class SqlParser {
         return sql;
     }
 
+    /**
+     * Returns the names of the tables that are referenced in the SQL statement.
+     *
+     * <p> Table names are found after <code>from</code>, <code>join</code>, <code>into</code>
+     * and <code>using</code> and after <code>update</code> at the beginning of the statement.
+     * The names are returned in lower case without schema and quotes. Names of common table
+     * expressions and functions like <code>extract(year from date)</code> may be returned as well.
+     *
+     * @return the referenced table names in the order of appearance
+     */
+    public String[] getTableNames() {
+        List<String> tokens = tokenize(sql);
+        Set<String> tableNames = new LinkedHashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if ("from".equals(token) || "join".equals(token) || "into".equals(token) || "using".equals(token)
+                    || ("update".equals(token) && i == 0)) {
+                // table references separated by commas
+                int j = i + 1;
+                while (j < tokens.size() && isTableName(tokens.get(j))) {
+                    tableNames.add(getUnqualifiedName(tokens.get(j++)));
+                    // skip alias
+                    if (j < tokens.size() && "as".equals(tokens.get(j))) {
+                        j += 2;
+                    } else if (j < tokens.size() && isTableName(tokens.get(j))) {
+                        j++;
+                    }
+                    if (j < tokens.size() && ",".equals(tokens.get(j))) {
+                        j++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+        return tableNames.toArray(new String[0]);
+    }
+
+    private static boolean isTableName(String token) {
+        char c = token.charAt(0);
+        return (Character.isLetter(c) || c == '_' || c == '"' || c == '`' || c == '[')
+                && !NON_ALIAS_KEYWORDS.contains(token);
+    }
+
+    private static String getUnqualifiedName(String name) {
+        String unqualifiedName = name.substring(name.lastIndexOf('.') + 1);
+        char c = unqualifiedName.charAt(0);
+        if (c == '"' || c == '`' || c == '[') {
+            unqualifiedName = unqualifiedName.substring(1, unqualifiedName.length() - 1);
+        }
+        return unqualifiedName;
+    }
+
+    private static List<String> tokenize(String sql) {
+        // splits the SQL statement into lower case names, quoted names and single characters
+        // and skips string literals
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                i = sql.indexOf('\'', i + 1);
+                i = i < 0 ? sql.length() : i + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '"' || c == '`' || c == '[') {
+                // a name optionally qualified with schema and quoted
+                while (i < sql.length()) {
+                    c = sql.charAt(i);
+                    if (c == '"' || c == '`' || c == '[') {
+                        int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+                        i = end < 0 ? sql.length() : end + 1;
+                    } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.') {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(sql.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
     private String parse(String sql, boolean isCallableStatement) {
         findCurlyBrackets(sql);
         int curlyBracketIndex = 0;
@@ -20,6 +20,8 @@ package uk.co.brunella.qof.session;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Abstract base class for implementing a <code>SessionRunner</code>.
@@ -141,7 +143,6 @@ public abstract class BaseSessionRunner<T> implements SessionRunner<T>, SessionR
     }
 
     protected T execute(TransactionManagementType transactionManagementType, Object... arguments) throws SystemException {
-        T result;
         if (transactionManagementType == TransactionManagementType.NONE) {
             ((SessionContextExt) sessionContext).startSession(sessionPolicy);
         } else {
@@ -151,29 +152,112 @@ public abstract class BaseSessionRunner<T> implements SessionRunner<T>, SessionR
                 throw new SystemException("SessionContext does not support transaction management type");
             }
         }
+        if (sessionContext instanceof ScopedSessionContext) {
+            return run(((ScopedSessionContext) sessionContext).getSessionScope(), arguments);
+        }
+        T result;
         try {
-            sessionContext.getUserTransaction().begin();
-            try {
-                result = run(sessionContext.getConnection(), arguments);
-            } catch (Throwable e) {
-                try {
-                    sessionContext.getUserTransaction().rollback();
-                } catch (SystemException se) {
-                    // ignore - nothing we can do about
+            result = run(sessionContext.getUserTransaction(), sessionContext.getConnection(), arguments);
+        } finally {
+            sessionContext.stopSession();
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new session in the calling thread and executes the <code>run</code> method
+     * with the executor. The transaction is committed or rolled back and the session is
+     * stopped on the thread of the executor.
+     * <p>
+     * The session is detached from the calling thread before it is handed to the executor,
+     * so query objects using the session context can be called by the <code>run</code> method.
+     *
+     * @param executor  the executor
+     * @param arguments arguments passed to the <code>run</code> method
+     * @return the future result of the <code>run</code> method. It is completed exceptionally
+     * with a <code>SystemException</code> if the execution fails.
+     * @throws SystemException       Thrown if the session cannot be started
+     * @throws IllegalStateException Thrown if a session is already running in the calling thread
+     *                               or the session policy requires to join a session
+     * @see ScopedSessionContext
+     * @since 1.2.1
+     */
+    public CompletableFuture<T> executeAsync(Executor executor, final Object... arguments) throws SystemException {
+        if (!(sessionContext instanceof ScopedSessionContext)) {
+            throw new SystemException("SessionContext does not support asynchronous execution");
+        }
+        if (sessionPolicy == SessionPolicy.MUST_JOIN_EXISTING_SESSION) {
+            throw new IllegalStateException("Asynchronous execution can not join an existing session");
+        }
+        final ScopedSessionContext scopedSessionContext = (ScopedSessionContext) sessionContext;
+        scopedSessionContext.startSession(SessionPolicy.MUST_START_NEW_SESSION);
+        final SessionScope sessionScope = scopedSessionContext.detachSession();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        scopedSessionContext.attachSession(sessionScope);
+                    } catch (RuntimeException e) {
+                        stopDetachedSession(sessionScope);
+                        future.completeExceptionally(new SystemException(e));
+                        return;
+                    }
+                    try {
+                        future.complete(BaseSessionRunner.this.run(sessionScope, arguments));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
                 }
-                throw new SystemException(e);
+            });
+        } catch (RuntimeException e) {
+            // rejected by the executor
+            stopDetachedSession(sessionScope);
+            throw new SystemException(e);
+        }
+        return future;
+    }
+
+    private void stopDetachedSession(SessionScope sessionScope) {
+        try {
+            ((ScopedSessionContext) sessionContext).stopSession(sessionScope);
+        } catch (SystemException se) {
+            // ignore - nothing we can do about
+        }
+    }
+
+    private T run(SessionScope sessionScope, Object... arguments) throws SystemException {
+        // the session is stopped through its scope in case it was moved to another thread
+        T result;
+        try {
+            result = run(sessionScope.getUserTransaction(), sessionScope.getConnection(), arguments);
+        } finally {
+            ((ScopedSessionContext) sessionContext).stopSession(sessionScope);
+        }
+        return result;
+    }
+
+    private T run(UserTransaction userTransaction, Connection connection, Object... arguments) throws SystemException {
+        T result;
+        userTransaction.begin();
+        try {
+            result = run(connection, arguments);
+        } catch (Throwable e) {
+            try {
+                userTransaction.rollback();
+            } catch (SystemException se) {
+                // ignore - nothing we can do about
             }
-            if (sessionContext.getUserTransaction().isRollbackOnly()) {
-                sessionContext.getUserTransaction().rollback();
-            } else {
-                try {
-                    sessionContext.getUserTransaction().commit();
-                } catch (RollbackException re) {
-                    // can't happen
-                }
+            throw new SystemException(e);
+        }
+        if (userTransaction.isRollbackOnly()) {
+            userTransaction.rollback();
+        } else {
+            try {
+                userTransaction.commit();
+            } catch (RollbackException re) {
+                // can't happen
             }
-        } finally {
-            sessionContext.stopSession();
         }
         return result;
     }
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs large batches in parallel on several connections of a session context.
+ *
+ * <p>The rows passed to <code>execute</code> are split into partitions of about
+ * equal size. Every partition is run by the <code>TransactionRunnable</code> on a
+ * thread of the executor in its own session, that is with its own connection and
+ * transaction. The update counts returned for the partitions are concatenated in
+ * the order of the rows.</p>
+ *
+ * <p>The <code>ParallelCommitPolicy</code> defines whether every partition commits
+ * on its own or whether all partitions are committed or rolled back together.
+ * <code>ALL_OR_NOTHING</code> keeps the transactions of the finished partitions open
+ * until the last partition is done and then commits them one after the other. This
+ * is not a two-phase commit - if a commit fails the partitions committed before
+ * stay committed. As the transactions are held open concurrently, the database must
+ * not block the writes of one partition on locks held by another, for example
+ * because of table level locking.</p>
+ *
+ * <p>The partition is passed to the runnable as first argument, followed by the
+ * arguments of <code>execute</code>. Query objects using the session context pick
+ * up the connection of the partition:</p>
+ *
+ * <blockquote><pre>
+ * int[] counts = new ParallelBatchRunner(
+ *     (connection, arguments) -&gt; personQueries.insertPersons((List&lt;Person&gt;) arguments[0]),
+ *     4, ParallelCommitPolicy.ALL_OR_NOTHING).execute(executor, persons);
+ * </pre></blockquote>
+ *
+ * <p>Every partition starts its session on the thread of the executor when it is run.
+ * With <code>PER_PARTITION</code> a partition returns its connection when it is done,
+ * so if the executor has fewer threads or the data source fewer connections than
+ * there are partitions the remaining partitions wait and run one after the other.
+ * <code>ALL_OR_NOTHING</code> holds the connections of all finished partitions until
+ * the end and therefore needs a connection for every partition at the same time. A
+ * partition that cannot get a connection fails and all partitions are rolled back.
+ * Sessions must not join each other, so the executor must not run partitions on
+ * threads that already have a session of the context.</p>
+ *
+ * @see ParallelCommitPolicy
+ * @see ScopedSessionContext
+ * @since 1.2.1
+ */
+public class ParallelBatchRunner {
+
+    private final SessionContext sessionContext;
+    private final TransactionRunnable<int[]> runnable;
+    private final int partitions;
+    private final ParallelCommitPolicy commitPolicy;
+
+    /**
+     * Creates a <code>ParallelBatchRunner</code> that runs the partitions in sessions
+     * of the default session context.
+     *
+     * @param runnable     the runnable called for every partition
+     * @param partitions   the maximal number of partitions
+     * @param commitPolicy the commit policy
+     * @throws IllegalArgumentException Thrown if the number of partitions is less than one
+     */
+    public ParallelBatchRunner(TransactionRunnable<int[]> runnable, int partitions, ParallelCommitPolicy commitPolicy) {
+        this(runnable, SessionContext.DEFAULT_CONTEXT_NAME, partitions, commitPolicy);
+    }
+
+    /**
+     * Creates a <code>ParallelBatchRunner</code> that runs the partitions in sessions
+     * of the session context with the given name.
+     *
+     * @param runnable     the runnable called for every partition
+     * @param contextName  the context name
+     * @param partitions   the maximal number of partitions
+     * @param commitPolicy the commit policy
+     * @throws IllegalArgumentException Thrown if the number of partitions is less than one
+     */
+    public ParallelBatchRunner(TransactionRunnable<int[]> runnable, String contextName, int partitions,
+                               ParallelCommitPolicy commitPolicy) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be at least 1");
+        }
+        this.sessionContext = SessionContextFactory.getContext(contextName);
+        this.runnable = runnable;
+        this.partitions = partitions;
+        this.commitPolicy = commitPolicy;
+    }
+
+    /**
+     * Splits the rows into partitions and runs them with the executor. Returns
+     * once all partitions are done.
+     *
+     * <p>A partition fails if its session cannot be started, the runnable throws an
+     * exception or marks the transaction for rollback only.</p>
+     *
+     * @param executor  the executor
+     * @param rows      the rows
+     * @param arguments arguments passed to the runnable after the partition
+     * @return the update counts of all partitions
+     * @throws SystemException Thrown if partitions failed. The cause is the error of the
+     *                         first failed partition, the errors of the other failed
+     *                         partitions are suppressed exceptions.
+     */
+    public int[] execute(Executor executor, List<?> rows, Object... arguments) throws SystemException {
+        if (!(sessionContext instanceof ScopedSessionContext)) {
+            throw new SystemException("SessionContext does not support parallel execution");
+        }
+        int size = rows.size();
+        if (size == 0) {
+            return new int[0];
+        }
+        int count = Math.min(partitions, size);
+
+        List<CompletableFuture<int[]>> futures = new ArrayList<>(count);
+        SessionScope[] sessionScopes = new SessionScope[count];
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<int[]> future = new CompletableFuture<>();
+            futures.add(future);
+            Object[] partitionArguments = new Object[arguments.length + 1];
+            partitionArguments[0] = rows.subList((int) ((long) size * i / count), (int) ((long) size * (i + 1) / count));
+            System.arraycopy(arguments, 0, partitionArguments, 1, arguments.length);
+            try {
+                executor.execute(createTask(sessionScopes, i, partitionArguments, future));
+            } catch (RuntimeException e) {
+                // rejected by the executor
+                future.completeExceptionally(e);
+            }
+        }
+
+        int[][] results = new int[count][];
+        List<Integer> failedPartitions = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            try {
+                results[i] = futures.get(i).join();
+            } catch (CompletionException e) {
+                failedPartitions.add(i);
+                Throwable error = e.getCause();
+                if (error instanceof SystemException && error.getCause() != null) {
+                    // report the error of the partition rather than its wrapper
+                    error = error.getCause();
+                }
+                errors.add(error);
+            }
+        }
+
+        if (commitPolicy == ParallelCommitPolicy.ALL_OR_NOTHING) {
+            completeTransactions(sessionScopes, results, errors.isEmpty());
+        }
+        if (!errors.isEmpty()) {
+            String message = "Partitions " + failedPartitions + " of " + count + " failed, "
+                    + (commitPolicy == ParallelCommitPolicy.ALL_OR_NOTHING ? "all" : "the failed")
+                    + " partitions were rolled back";
+            SystemException exception = new SystemException(message, errors.get(0));
+            for (Throwable error : errors.subList(1, errors.size())) {
+                exception.addSuppressed(error);
+            }
+            throw exception;
+        }
+        return concat(results);
+    }
+
+    private Runnable createTask(final SessionScope[] sessionScopes, final int partition, final Object[] arguments,
+                                final CompletableFuture<int[]> future) {
+        return new Runnable() {
+            public void run() {
+                ScopedSessionContext scopedSessionContext = (ScopedSessionContext) sessionContext;
+                SessionScope sessionScope;
+                try {
+                    scopedSessionContext.startSession(SessionPolicy.MUST_START_NEW_SESSION);
+                    sessionScope = scopedSessionContext.getSessionScope();
+                } catch (SystemException e) {
+                    future.completeExceptionally(e);
+                    return;
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(new SystemException(e));
+                    return;
+                }
+                // the calling thread reads the scope after the future is completed
+                sessionScopes[partition] = sessionScope;
+                try {
+                    future.complete(runPartition(sessionScope, arguments));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+    }
+
+    private int[] runPartition(SessionScope sessionScope, Object[] arguments) throws SystemException {
+        UserTransaction userTransaction = sessionScope.getUserTransaction();
+        boolean keepSession = false;
+        try {
+            userTransaction.begin();
+            int[] result;
+            try {
+                result = runnable.run(sessionScope.getConnection(), arguments);
+            } catch (Throwable e) {
+                rollback(userTransaction);
+                throw new SystemException(e);
+            }
+            if (userTransaction.isRollbackOnly()) {
+                userTransaction.rollback();
+                throw new SystemException("Transaction was marked for rollback only");
+            }
+            if (commitPolicy == ParallelCommitPolicy.PER_PARTITION) {
+                commit(userTransaction);
+            } else {
+                // the calling thread commits or rolls back once all partitions are done
+                ((ScopedSessionContext) sessionContext).detachSession();
+                keepSession = true;
+            }
+            return result != null ? result : new int[0];
+        } finally {
+            if (!keepSession) {
+                stopSession(sessionScope);
+            }
+        }
+    }
+
+    private void completeTransactions(SessionScope[] sessionScopes, int[][] results, boolean commit)
+            throws SystemException {
+        // only partitions with a result still have an open session
+        SystemException exception = null;
+        for (int i = 0; i < sessionScopes.length; i++) {
+            if (results[i] == null) {
+                continue;
+            }
+            UserTransaction userTransaction = sessionScopes[i].getUserTransaction();
+            if (commit && exception == null) {
+                try {
+                    commit(userTransaction);
+                } catch (SystemException e) {
+                    exception = new SystemException("Commit of partition " + i + " failed, "
+                            + "partitions committed before were not rolled back", e);
+                }
+            } else {
+                rollback(userTransaction);
+            }
+            stopSession(sessionScopes[i]);
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static int[] concat(int[][] results) {
+        int length = 0;
+        for (int[] result : results) {
+            length += result.length;
+        }
+        int[] counts = new int[length];
+        int offset = 0;
+        for (int[] result : results) {
+            System.arraycopy(result, 0, counts, offset, result.length);
+            offset += result.length;
+        }
+        return counts;
+    }
+
+    private static void commit(UserTransaction userTransaction) throws SystemException {
+        try {
+            userTransaction.commit();
+        } catch (RollbackException e) {
+            throw new SystemException(e);
+        }
+    }
+
+    private static void rollback(UserTransaction userTransaction) {
+        try {
+            userTransaction.rollback();
+        } catch (SystemException | RuntimeException e) {
+            // ignore - nothing we can do about
+        }
+    }
+
+    private void stopSession(SessionScope sessionScope) {
+        try {
+            ((ScopedSessionContext) sessionContext).stopSession(sessionScope);
+        } catch (SystemException | RuntimeException e) {
+            // ignore - nothing we can do about
+        }
+    }
+}
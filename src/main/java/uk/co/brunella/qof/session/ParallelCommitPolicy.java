@@ -0,0 +1,43 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.session;
+
+/**
+ * <code>ParallelCommitPolicy</code> defines how the transactions of the
+ * partitions of a <code>ParallelBatchRunner</code> are completed.
+ *
+ * @see ParallelBatchRunner
+ * @since 1.2.1
+ */
+public enum ParallelCommitPolicy {
+
+    /**
+     * Every partition commits its own transaction as soon as it is done.
+     * A failing partition is rolled back but does not affect the others.
+     */
+    PER_PARTITION,
+
+    /**
+     * The transactions of all partitions are kept open until every partition
+     * is done. They are committed if all partitions succeeded and rolled back
+     * otherwise.
+     */
+    ALL_OR_NOTHING
+
+}
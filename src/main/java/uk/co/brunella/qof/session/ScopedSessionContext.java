@@ -0,0 +1,76 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.session;
+
+/**
+ * Extension interface for <code>SessionContext</code>.
+ * <p>
+ * Adds methods to bind sessions explicitly to threads. A session is started
+ * and bound to the calling thread by <code>startSession</code>. It can be
+ * detached from the thread, handed to another thread as a <code>SessionScope</code>
+ * and attached or stopped there.
+ * <p>
+ * Threads only hold a reference to a session while the session is attached
+ * to them, so a large number of short-lived threads does not leave
+ * session objects behind.
+ *
+ * @see SessionScope
+ * @since 1.2.1
+ */
+public interface ScopedSessionContext extends SessionContextExt {
+
+    /**
+     * Returns the scope of the session bound to the calling thread.
+     *
+     * @return the session scope
+     * @throws IllegalStateException Thrown if no session is running in the calling thread
+     */
+    SessionScope getSessionScope();
+
+    /**
+     * Detaches the session from the calling thread. The session keeps running
+     * and can be attached to another thread or stopped from any thread.
+     *
+     * @return the session scope
+     * @throws IllegalStateException Thrown if no session is running in the calling thread
+     */
+    SessionScope detachSession();
+
+    /**
+     * Attaches a detached session to the calling thread.
+     *
+     * @param sessionScope the session scope
+     * @throws IllegalArgumentException Thrown if the session belongs to a different context
+     * @throws IllegalStateException    Thrown if the session is not running, is attached to
+     *                                  another thread or if a session is already running in the calling thread
+     */
+    void attachSession(SessionScope sessionScope);
+
+    /**
+     * Stops a session. The session must either be attached to the calling thread
+     * or be detached.
+     *
+     * @param sessionScope the session scope
+     * @throws SystemException          Thrown if an unexpected error condition occurs
+     * @throws IllegalArgumentException Thrown if the session belongs to a different context
+     * @throws IllegalStateException    Thrown if the session is not running or is attached to another thread
+     * @see SessionContext#stopSession()
+     */
+    void stopSession(SessionScope sessionScope) throws SystemException;
+}
@@ -29,6 +29,8 @@ import java.sql.Connection;
  * <p>A session context is created by a session context factory.</p>
  * <p>A session context creates a separate session for each calling thread.
  * Therefore session can not be shared between sessions.</p>
+ * <p>A running session can be handed over to another thread with the methods
+ * of <code>ScopedSessionContext</code>.</p>
  *
  * <p>A <code>SessionContext</code> can be used in the following way:</p>
  *
@@ -56,6 +58,7 @@ import java.sql.Connection;
  * </pre></blockquote>
  *
  * @see SessionContextFactory
+ * @see ScopedSessionContext
  * @see UserTransaction
  * @since 1.0.0
  */
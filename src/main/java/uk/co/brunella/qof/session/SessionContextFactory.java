@@ -18,6 +18,8 @@
  */
 package uk.co.brunella.qof.session;
 
+import uk.co.brunella.qof.cache.ResultCache;
+
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -27,6 +29,7 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implementation of a session context factory.
@@ -241,8 +244,6 @@ public class SessionContextFactory {
 
     /**
      * Internal default implementation of <code>SessionContext</code>.
-     * <p>
-     * Uses a <code>ThreadLocal</code> field to handle sessions for different threads.
      */
     protected static class DefaultSessionContext extends BaseSessionContext {
 
@@ -275,8 +276,6 @@ public class SessionContextFactory {
 
     /**
      * Internal JNDI implementation of <code>SessionContext</code>.
-     * <p>
-     * Uses a <code>ThreadLocal</code> field to handle sessions for different threads.
      */
     protected static class JndiSessionContext extends BaseSessionContext {
 
@@ -351,9 +350,10 @@ public class SessionContextFactory {
     /**
      * Internal base implementation of <code>SessionContext</code>.
      * <p>
-     * Uses a <code>ThreadLocal</code> field to handle sessions for different threads.
+     * Uses a <code>ThreadLocal</code> field to bind running sessions to threads. The
+     * field is only set while a session is attached to a thread.
      */
-    protected static abstract class BaseSessionContext implements SessionContext, SessionContextExt {
+    protected static abstract class BaseSessionContext implements SessionContext, SessionContextExt, ScopedSessionContext {
 
         final static SessionConnectionHandler DEFAULT_SESSION_CONNECTION_HANDLER_SET_AUTOCOMMIT_TO_FALSE =
                 new DefaultSessionConnectionHandler(true);
@@ -364,11 +364,7 @@ public class SessionContextFactory {
         SessionConnectionHandler sessionConnectionHandler;
         boolean setAutoCommitToFalse;
 
-        ThreadLocal<Session> sessionThreadLocal = new ThreadLocal<Session>() {
-            protected synchronized Session initialValue() {
-                return new Session();
-            }
-        };
+        final ThreadLocal<Session> sessionThreadLocal = new ThreadLocal<Session>();
 
         private BaseSessionContext(String contextName) {
             this.contextName = contextName;
@@ -388,21 +384,51 @@ public class SessionContextFactory {
         protected abstract UserTransaction getNewUserTransaction(Connection connection, TransactionManagementType transactionManagementType, Session session) throws SystemException;
 
         public Connection getConnection() {
+            return getBoundSession().getConnection();
+        }
+
+        public UserTransaction getUserTransaction() {
+            return getBoundSession().getUserTransaction();
+        }
+
+        private Session getBoundSession() {
             Session session = sessionThreadLocal.get();
-            if (session.getState() == SessionState.STOPPED) {
+            if (session == null) {
                 throw new IllegalStateException("Session is not running in thread for context " + contextName);
-            } else {
-                return session.getConnection();
             }
+            return session;
         }
 
-        public UserTransaction getUserTransaction() {
-            Session session = sessionThreadLocal.get();
+        private Session getSession(SessionScope sessionScope) {
+            if (!(sessionScope instanceof Session) || ((Session) sessionScope).getSessionContext() != this) {
+                throw new IllegalArgumentException("Session does not belong to context " + contextName);
+            }
+            return (Session) sessionScope;
+        }
+
+        public SessionScope getSessionScope() {
+            return getBoundSession();
+        }
+
+        public SessionScope detachSession() {
+            Session session = getBoundSession();
+            session.setOwner(null);
+            sessionThreadLocal.remove();
+            return session;
+        }
+
+        public void attachSession(SessionScope sessionScope) {
+            Session session = getSession(sessionScope);
             if (session.getState() == SessionState.STOPPED) {
-                throw new IllegalStateException("Session is not running in thread for context " + contextName);
-            } else {
-                return session.getUserTransaction();
+                throw new IllegalStateException("Session is not running for context " + contextName);
+            }
+            if (sessionThreadLocal.get() != null) {
+                throw new IllegalStateException("Session already running in thread for context " + contextName);
             }
+            if (!session.attach(Thread.currentThread())) {
+                throw new IllegalStateException("Session is attached to another thread for context " + contextName);
+            }
+            sessionThreadLocal.set(session);
         }
 
         public void startSession() throws SystemException {
@@ -423,14 +449,14 @@ public class SessionContextFactory {
             }
             Session session = sessionThreadLocal.get();
             DataSource dataSource;
-            if (sessionPolicy == SessionPolicy.MUST_START_NEW_SESSION && session.getState() == SessionState.RUNNING) {
+            if (sessionPolicy == SessionPolicy.MUST_START_NEW_SESSION && session != null) {
                 throw new IllegalStateException("Session already running in thread for context "
                         + contextName + " and session policy requires to start new session");
-            } else if (sessionPolicy == SessionPolicy.MUST_JOIN_EXISTING_SESSION && session.getState() == SessionState.STOPPED) {
+            } else if (sessionPolicy == SessionPolicy.MUST_JOIN_EXISTING_SESSION && session == null) {
                 throw new IllegalStateException("Session is not running in thread for context "
                         + contextName + " and session policy requires to join session");
             }
-            if (session.getState() == SessionState.STOPPED) {
+            if (session == null) {
                 dataSource = getDataSource();
                 if (dataSource == null) {
                     throw new SystemException("No data source defined for context " + contextName);
@@ -453,28 +479,43 @@ public class SessionContextFactory {
                         }
                     }
                 }
+                session = new Session(this);
                 session.setConnection(connection);
                 session.setUserTransaction(getNewUserTransaction(connection, transactionManagementType, session));
                 session.setState(SessionState.RUNNING);
+                session.attach(Thread.currentThread());
+                sessionThreadLocal.set(session);
             }
             session.join();
         }
 
         public void stopSession() throws SystemException {
-            Session session = sessionThreadLocal.get();
+            stopSession(getBoundSession());
+        }
+
+        public void stopSession(SessionScope sessionScope) throws SystemException {
+            Session session = getSession(sessionScope);
+            Thread owner = session.getOwner();
             if (session.getState() == SessionState.STOPPED) {
-                throw new IllegalStateException("Session is not running in thread for context " + contextName);
+                throw new IllegalStateException("Session is not running for context " + contextName);
+            } else if (owner != null && owner != Thread.currentThread()) {
+                throw new IllegalStateException("Session is attached to another thread for context " + contextName);
             } else if (session.unjoin() <= 0) {
-                session.setState(SessionState.STOPPED);
+                if (owner != null) {
+                    session.setOwner(null);
+                    sessionThreadLocal.remove();
+                }
+                Connection connection = session.getConnection();
                 ((BaseUserTransaction) session.getUserTransaction()).close();
+                session.setState(SessionState.STOPPED);
                 session.setUserTransaction(null);
                 if (sessionConnectionHandler != null) {
-                    sessionConnectionHandler.closeConnection(session.getConnection());
+                    sessionConnectionHandler.closeConnection(connection);
                 } else {
                     if (setAutoCommitToFalse) {
-                        DEFAULT_SESSION_CONNECTION_HANDLER_SET_AUTOCOMMIT_TO_FALSE.closeConnection(session.getConnection());
+                        DEFAULT_SESSION_CONNECTION_HANDLER_SET_AUTOCOMMIT_TO_FALSE.closeConnection(connection);
                     } else {
-                        DEFAULT_SESSION_CONNECTION_HANDLER.closeConnection(session.getConnection());
+                        DEFAULT_SESSION_CONNECTION_HANDLER.closeConnection(connection);
                     }
                 }
                 session.setConnection(null);
@@ -483,14 +524,51 @@ public class SessionContextFactory {
 
     }
 
-    static class Session {
+    static class Session implements SessionScope {
 
-        private Connection connection;
-        private UserTransaction userTransaction;
-        private SessionState state = SessionState.STOPPED;
-        private int joinCount = 0;
+        private final BaseSessionContext sessionContext;
+        private final AtomicReference<Thread> owner = new AtomicReference<>();
+        private volatile Connection connection;
+        private volatile UserTransaction userTransaction;
+        private volatile SessionState state = SessionState.STOPPED;
+        private volatile int joinCount = 0;
+
+        Session() {
+            this(null);
+        }
+
+        Session(BaseSessionContext sessionContext) {
+            this.sessionContext = sessionContext;
+        }
+
+        BaseSessionContext getSessionContext() {
+            return sessionContext;
+        }
+
+        Thread getOwner() {
+            return owner.get();
+        }
+
+        void setOwner(Thread thread) {
+            owner.set(thread);
+        }
+
+        boolean attach(Thread thread) {
+            return owner.compareAndSet(null, thread);
+        }
+
+        public String getContextName() {
+            return sessionContext == null ? null : sessionContext.contextName;
+        }
+
+        public boolean isRunning() {
+            return state == SessionState.RUNNING;
+        }
 
         public Connection getConnection() {
+            if (state == SessionState.STOPPED) {
+                throw new IllegalStateException("Session is not running for context " + getContextName());
+            }
             return connection;
         }
 
@@ -510,6 +588,9 @@ public class SessionContextFactory {
         }
 
         public UserTransaction getUserTransaction() {
+            if (state == SessionState.STOPPED) {
+                throw new IllegalStateException("Session is not running for context " + getContextName());
+            }
             return userTransaction;
         }
 
@@ -560,6 +641,8 @@ public class SessionContextFactory {
                             connection.rollback();
                         } catch (SQLException e) {
                             throw new SystemException(e);
+                        } finally {
+                            ResultCache.transactionCompleted(connection);
                         }
                         throw new RollbackException("Transaction was rolled back");
                     } else {
@@ -568,6 +651,8 @@ public class SessionContextFactory {
                             connection.commit();
                         } catch (SQLException e) {
                             throw new SystemException(e);
+                        } finally {
+                            ResultCache.transactionCompleted(connection);
                         }
                     }
                 }
@@ -590,6 +675,8 @@ public class SessionContextFactory {
                         connection.rollback();
                     } catch (SQLException e) {
                         throw new SystemException(e);
+                    } finally {
+                        ResultCache.transactionCompleted(connection);
                     }
                 }
             } else {
@@ -618,6 +705,7 @@ public class SessionContextFactory {
                         || transactionState == TransactionState.CLOSED) {
                     throw new IllegalStateException("Invalid state: Transaction is " + transactionState);
                 } else {
+                    invalidateResultCaches();
                     if (transactionState == TransactionState.IN_TRANSACTION_ROLLBACK) {
                         transactionState = TransactionState.NEW;
                         throw new RollbackException("Transaction was rolled back");
@@ -640,6 +728,7 @@ public class SessionContextFactory {
                     throw new IllegalStateException("Invalid state: Transaction is " + transactionState);
                 } else {
                     transactionState = TransactionState.NEW;
+                    invalidateResultCaches();
                 }
             } else {
                 setRollbackOnly();
@@ -690,6 +779,14 @@ public class SessionContextFactory {
 
         public void close() {
             transactionState = TransactionState.CLOSED;
+            // the connection is closed without commit
+            invalidateResultCaches();
+        }
+
+        protected void invalidateResultCaches() {
+            if (session.isRunning()) {
+                ResultCache.transactionCompleted(session.getConnection());
+            }
         }
 
         protected enum TransactionState {
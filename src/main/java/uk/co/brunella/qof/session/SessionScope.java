@@ -0,0 +1,80 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.session;
+
+import java.sql.Connection;
+
+/**
+ * Represents a running session independently of the thread it is bound to.
+ * <p>
+ * A session scope is a carrier object that allows a session to be handed over
+ * from one thread to another. The thread that started a session detaches it
+ * and passes the scope to a child task that attaches it to its own thread:
+ *
+ * <blockquote><pre>
+ * ScopedSessionContext ctx = (ScopedSessionContext) SessionContextFactory.getContext();
+ * ctx.startSession();
+ * final SessionScope scope = ctx.detachSession();
+ * executor.execute(new Runnable() {
+ *   public void run() {
+ *     ctx.attachSession(scope);
+ *     // query objects using the session context use the session of the scope
+ *     ...
+ *     ctx.stopSession(scope);
+ *   }
+ * });
+ * </pre></blockquote>
+ *
+ * <p>A session scope is attached to at most one thread at a time.</p>
+ *
+ * @see ScopedSessionContext
+ * @since 1.2.1
+ */
+public interface SessionScope {
+
+    /**
+     * Returns the name of the session context the session belongs to.
+     *
+     * @return the context name
+     */
+    String getContextName();
+
+    /**
+     * Returns true if the session is running.
+     *
+     * @return true if the session is running
+     */
+    boolean isRunning();
+
+    /**
+     * Returns the database connection of the session.
+     *
+     * @return the connection
+     * @throws IllegalStateException Thrown if the session is not running
+     */
+    Connection getConnection();
+
+    /**
+     * Returns the user transaction of the session.
+     *
+     * @return the user transaction
+     * @throws IllegalStateException Thrown if the session is not running
+     */
+    UserTransaction getUserTransaction();
+}
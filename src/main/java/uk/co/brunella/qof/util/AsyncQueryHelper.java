@@ -0,0 +1,114 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import uk.co.brunella.qof.AsyncQueryInvoker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper class to run asynchronous query methods on an executor.
+ *
+ * @see uk.co.brunella.qof.BaseQuery#setExecutor(Executor)
+ * @since 1.2.1
+ */
+public class AsyncQueryHelper {
+
+    /**
+     * Number of threads of the default executor.
+     */
+    public static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private AsyncQueryHelper() {
+    }
+
+    /**
+     * Returns the executor used if neither the customizer nor the query object define one.
+     *
+     * <p>The executor is created on first use and owned by QOF. It runs at most
+     * <code>DEFAULT_POOL_SIZE</code> daemon threads and queues further queries.
+     * Idle threads are stopped after a minute. Blocking JDBC calls are therefore
+     * kept away from the common fork join pool.</p>
+     *
+     * @return the default executor
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Submits a query to an executor. The returned future is completed with the result
+     * of the query or completed exceptionally with the exception thrown by the query.
+     * If no executor is specified the query is run by the default executor.
+     *
+     * @param executor  the executor or null
+     * @param invoker   the query object
+     * @param queryId   the id of the asynchronous query method
+     * @param arguments the arguments of the query method call
+     * @param <T>       the result type
+     * @return the future result of the query
+     * @see #getDefaultExecutor()
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> submit(Executor executor, final AsyncQueryInvoker invoker,
+                                                  final int queryId, final Object[] arguments) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    future.complete((T) invoker.invokeQuery(queryId, arguments));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+        try {
+            (executor == null ? getDefaultExecutor() : executor).execute(task);
+        } catch (RuntimeException e) {
+            // rejected by the executor
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static class DefaultExecutorHolder {
+
+        private static final Executor EXECUTOR = createExecutor();
+
+        private static Executor createExecutor() {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "qof-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
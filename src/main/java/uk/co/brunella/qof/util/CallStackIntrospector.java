@@ -18,20 +18,52 @@
  */
 package uk.co.brunella.qof.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Utility class to retrieve call stack information.
+ *
+ * <p> On Java 9 and later the call stack is retrieved with <code>StackWalker</code>,
+ * on Java 8 with <code>SecurityManager.getClassContext</code>.</p>
  */
 public class CallStackIntrospector {
 
     private static Method GET_CLASS_CONTEXT;
     private static SecurityManager SECURITY_MANAGER;
+    private static Object STACK_WALKER;
+    private static MethodHandle WALK;
+    private static MethodHandle GET_DECLARING_CLASS;
+    private static final Function<Stream<?>, Class<?>[]> DECLARING_CLASSES =
+            frames -> frames.map(CallStackIntrospector::getDeclaringClass).toArray(Class<?>[]::new);
 
     static {
+        try {
+            // Java 9 and later
+            Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> optionClass = Class.forName("java.lang.StackWalker$Option");
+            Object retainClassReference = optionClass.getField("RETAIN_CLASS_REFERENCE").get(null);
+            STACK_WALKER = stackWalkerClass.getMethod("getInstance", optionClass).invoke(null, retainClassReference);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WALK = lookup.unreflect(stackWalkerClass.getMethod("walk", Function.class));
+            GET_DECLARING_CLASS = lookup.unreflect(Class.forName("java.lang.StackWalker$StackFrame").getMethod("getDeclaringClass"));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            STACK_WALKER = null;
+        }
+
+        if (STACK_WALKER == null) {
+            initializeSecurityManager();
+        }
+    }
+
+    private static void initializeSecurityManager() {
         SECURITY_MANAGER = System.getSecurityManager();
         if (SECURITY_MANAGER == null) {
             SECURITY_MANAGER = new SecurityManager();
@@ -57,7 +89,12 @@ public class CallStackIntrospector {
      * @return Array of classes
      */
     static Class<?>[] getCallStack() {
-        if (GET_CLASS_CONTEXT != null) {
+        if (STACK_WALKER != null) {
+            try {
+                return (Class<?>[]) WALK.invoke(STACK_WALKER, DECLARING_CLASSES);
+            } catch (Throwable ignored) {
+            }
+        } else if (GET_CLASS_CONTEXT != null) {
             try {
                 return (Class<?>[]) GET_CLASS_CONTEXT.invoke(SECURITY_MANAGER, (Object[]) null);
             } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException ignored) {
@@ -66,6 +103,14 @@ public class CallStackIntrospector {
         return null;
     }
 
+    private static Class<?> getDeclaringClass(Object stackFrame) {
+        try {
+            return (Class<?>) GET_DECLARING_CLASS.invoke(stackFrame);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Returns the class of the caller.
      *
@@ -82,6 +127,15 @@ public class CallStackIntrospector {
      * @return Caller class at given level or <code>null</code>
      */
     static Class<?> getCaller(int level) {
+        if (STACK_WALKER != null && level >= 0) {
+            // only walk the frames up to the caller
+            try {
+                return (Class<?>) WALK.invoke(STACK_WALKER,
+                        (Function<Stream<?>, Class<?>>) frames -> findCaller(frames.iterator(), level));
+            } catch (Throwable ignored) {
+                return null;
+            }
+        }
         Class<?>[] callStack = getCallStack();
         int baseLevel = findBaseLevel(callStack);
         if (baseLevel + level + 1 < 0 || baseLevel + level + 1 >= callStack.length) {
@@ -91,6 +145,19 @@ public class CallStackIntrospector {
         }
     }
 
+    private static Class<?> findCaller(Iterator<?> frames, int level) {
+        int framesAfterIntrospector = -1;
+        while (frames.hasNext()) {
+            Class<?> clazz = getDeclaringClass(frames.next());
+            if (clazz == CallStackIntrospector.class) {
+                framesAfterIntrospector = 0;
+            } else if (framesAfterIntrospector >= 0 && ++framesAfterIntrospector == level + 1) {
+                return clazz;
+            }
+        }
+        return null;
+    }
+
     private static int findBaseLevel(Class<?>[] callStack) {
         for (int i = callStack.length - 1; i >= 0; i--) {
             if (callStack[i] == CallStackIntrospector.class) {
@@ -18,18 +18,39 @@
  */
 package uk.co.brunella.qof.util;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Caches generated classes according to a specified key.
  * <code>ClassGenerationCache</code> is thread-safe.
  * Classes are cached separately for each class loader.
+ *
+ * <p> Cache hits do not take any lock. A class for a key is generated only once:
+ * the first caller that misses the cache generates the class, other callers for the
+ * same key wait till the generation completes. Callers for other keys are not blocked.</p>
+ *
+ * <p> The cache is attached to the first class of the key and therefore does not prevent
+ * its class loader from being garbage collected.</p>
+ *
+ * <p> Classes generated at build time can be loaded with
+ * {@link #getPregeneratedClass(String, ClassLoader)} before falling back to generation.</p>
  */
 public final class ClassGenerationCache {
 
-    private static final Map<ClassLoader, Map<String, Class<?>>> cache = new WeakHashMap<>();
+    private static final ClassValue<ConcurrentMap<String, Object>> cache = new ClassValue<ConcurrentMap<String, Object>>() {
+        @Override
+        protected ConcurrentMap<String, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final LongAdder hitCount = new LongAdder();
+    private static final LongAdder missCount = new LongAdder();
+    private static final LongAdder generationTime = new LongAdder();
+    private static final LongAdder pregeneratedCount = new LongAdder();
 
     ClassGenerationCache() {
     }
@@ -45,23 +66,24 @@ public final class ClassGenerationCache {
      * @return the cached class or null if not found
      */
     public static Class<?> getCachedClass(Class<?>... key) {
-        Map<String, Class<?>> classCache = getClassCache(key);
-        synchronized (classCache) {
-            Class<?> clazz = classCache.get(createMapKey(key));
-            while (clazz == GENERATION_PENDING.class) {
-                try {
-                    // wait till the class is generated
-                    classCache.wait();
-                } catch (InterruptedException e) {
-                    // ignore
+        ConcurrentMap<String, Object> classCache = cache.get(key[0]);
+        String mapKey = createMapKey(key);
+        Object value = classCache.get(mapKey);
+        while (!(value instanceof Class)) {
+            if (value == null) {
+                value = classCache.putIfAbsent(mapKey, new GenerationPending());
+                if (value == null) {
+                    missCount.increment();
+                    return null;
                 }
-                clazz = classCache.get(createMapKey(key));
-            }
-            if (clazz == null) {
-                classCache.put(createMapKey(key), GENERATION_PENDING.class);
+            } else {
+                // wait till the class is generated
+                ((GenerationPending) value).await();
+                value = classCache.get(mapKey);
             }
-            return clazz;
         }
+        hitCount.increment();
+        return (Class<?>) value;
     }
 
     /**
@@ -72,17 +94,108 @@ public final class ClassGenerationCache {
      * @param key   the key
      */
     public static void putCachedClass(Class<?> clazz, Class<?>... key) {
-        Map<String, Class<?>> classCache = getClassCache(key);
-        synchronized (classCache) {
-            if (clazz == null) {
-                classCache.remove(createMapKey(key));
-            } else {
-                classCache.put(createMapKey(key), clazz);
-            }
-            classCache.notifyAll();
+        ConcurrentMap<String, Object> classCache = cache.get(key[0]);
+        String mapKey = createMapKey(key);
+        Object previous;
+        if (clazz == null) {
+            previous = classCache.remove(mapKey);
+        } else {
+            previous = classCache.put(mapKey, clazz);
+        }
+        if (previous instanceof GenerationPending) {
+            GenerationPending pending = (GenerationPending) previous;
+            generationTime.add(System.nanoTime() - pending.startTime);
+            pending.complete();
         }
     }
 
+    /**
+     * Returns a class that was generated at build time and is available from a class loader.
+     * Returns null if the class is not available or if the current thread records
+     * generated classes.
+     *
+     * @param className   name of the pregenerated class
+     * @param classLoader class loader to load the class from
+     * @return the pregenerated class or null if not available
+     * @see DefineClassHelper#isRecording()
+     * @since 1.2.1
+     */
+    public static Class<?> getPregeneratedClass(String className, ClassLoader classLoader) {
+        if (DefineClassHelper.isRecording()) {
+            // classes are generated at build time
+            return null;
+        }
+        if (classLoader == null) {
+            classLoader = ClassGenerationCache.class.getClassLoader();
+        }
+        if (classLoader.getResource(className.replace('.', '/') + ".class") == null) {
+            return null;
+        }
+        try {
+            Class<?> clazz = Class.forName(className, true, classLoader);
+            pregeneratedCount.increment();
+            return clazz;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of cache lookups that returned a class. This includes
+     * lookups that waited for the generation of the class in another thread.
+     *
+     * @return number of cache hits
+     * @since 1.2.1
+     */
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of cache lookups that did not find a class and marked
+     * the key for generation.
+     *
+     * @return number of cache misses
+     * @since 1.2.1
+     */
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the total time spent generating classes in nanoseconds, measured
+     * from the cache miss till the class (or null on failure) is put into the cache.
+     *
+     * @return total generation time in nanoseconds
+     * @since 1.2.1
+     */
+    public static long getGenerationTime() {
+        return generationTime.sum();
+    }
+
+    /**
+     * Returns the number of classes that were loaded as pregenerated classes
+     * instead of being generated at runtime.
+     *
+     * @return number of loaded pregenerated classes
+     * @since 1.2.1
+     */
+    public static long getPregeneratedCount() {
+        return pregeneratedCount.sum();
+    }
+
+    /**
+     * Resets the hit, miss, pregenerated and generation time counters.
+     *
+     * @since 1.2.1
+     */
+    public static void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        generationTime.reset();
+        pregeneratedCount.reset();
+    }
+
     private static String createMapKey(Class<?>... key) {
         StringBuilder sb = new StringBuilder();
         for (Class<?> clazz : key) {
@@ -92,13 +205,28 @@ public final class ClassGenerationCache {
         return sb.toString();
     }
 
-    private static Map<String, Class<?>> getClassCache(Class<?>... key) {
-        ClassLoader classLoader = key[0].getClassLoader();
-        synchronized (cache) {
-            return cache.computeIfAbsent(classLoader, k -> new HashMap<>());
+    private static final class GenerationPending {
+
+        private final long startTime = System.nanoTime();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        void complete() {
+            latch.countDown();
         }
-    }
 
-    private static final class GENERATION_PENDING {
+        void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
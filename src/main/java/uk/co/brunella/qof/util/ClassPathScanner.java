@@ -0,0 +1,102 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Internal - finds the classes of a package and its sub packages in
+ * directories and jar files of a class loader.
+ *
+ * @since 1.2.1
+ */
+public final class ClassPathScanner {
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private ClassPathScanner() {
+    }
+
+    /**
+     * Returns the names of all classes in a package and its sub packages.
+     *
+     * @param classLoader the class loader
+     * @param packageName the package name
+     * @return list of class names
+     * @throws IOException the class path could not be read
+     */
+    public static List<String> findClassNames(ClassLoader classLoader, String packageName) throws IOException {
+        String path = packageName.replace('.', '/');
+        List<String> classNames = new ArrayList<>();
+        Enumeration<URL> resources = classLoader.getResources(path);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            if ("file".equals(url.getProtocol())) {
+                findClassNames(new File(decode(url.getPath())), packageName, classNames);
+            } else if ("jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+                connection.setUseCaches(false);
+                try (JarFile jarFile = ((JarURLConnection) connection).getJarFile()) {
+                    findClassNames(jarFile, path + '/', classNames);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void findClassNames(File directory, String packageName, List<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findClassNames(file, packageName + '.' + file.getName(), classNames);
+            } else if (file.getName().endsWith(CLASS_FILE_SUFFIX)) {
+                String name = file.getName();
+                classNames.add(packageName + '.' + name.substring(0, name.length() - CLASS_FILE_SUFFIX.length()));
+            }
+        }
+    }
+
+    private static void findClassNames(JarFile jarFile, String path, List<String> classNames) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path) && name.endsWith(CLASS_FILE_SUFFIX)) {
+                classNames.add(name.substring(0, name.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.'));
+            }
+        }
+    }
+
+    private static String decode(String path) throws UnsupportedEncodingException {
+        return URLDecoder.decode(path, "UTF-8");
+    }
+}
@@ -18,16 +18,28 @@
  */
 package uk.co.brunella.qof.util;
 
-import net.sf.cglib.core.CodeGenerationException;
 import uk.co.brunella.qof.codegen.QueryObjectGenerator;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Helper class to call the defineClass method of the ClassLoader.
+ * Helper class to define generated classes.
+ *
+ * <p> On Java 9 and later classes are defined with <code>MethodHandles.Lookup.defineClass</code>
+ * if a class in the same package as the generated class is known. Otherwise the protected
+ * <code>ClassLoader.defineClass</code> method is called by reflection, which is the only
+ * option on Java 8 and requires <code>--add-opens java.base/java.lang=ALL-UNNAMED</code>
+ * on Java 16 and later.</p>
+ *
+ * <p> Setting the system property <code>uk.co.brunella.qof.useClassLoaderDefineClass</code>
+ * to <code>true</code> always uses <code>ClassLoader.defineClass</code>.</p>
  *
  * @see ClassLoader
  */
@@ -35,6 +47,10 @@ public class DefineClassHelper {
 
     private static final ProtectionDomain PROTECTION_DOMAIN;
     private static Method DEFINE_CLASS;
+    private static Method PRIVATE_LOOKUP_IN;
+    private static Method LOOKUP_DEFINE_CLASS;
+    private static volatile boolean useLookup;
+    private static final ThreadLocal<Map<String, byte[]>> recordedClasses = new ThreadLocal<>();
 
     static {
         PROTECTION_DOMAIN = (ProtectionDomain) AccessController.doPrivileged((PrivilegedAction<Object>) QueryObjectGenerator.class::getProtectionDomain);
@@ -46,12 +62,22 @@ public class DefineClassHelper {
                     DEFINE_CLASS = loader.getDeclaredMethod("defineClass", String.class, byte[].class,
                             Integer.TYPE, Integer.TYPE, ProtectionDomain.class);
                     DEFINE_CLASS.setAccessible(true);
-                } catch (ClassNotFoundException | NoSuchMethodException e) {
-                    throw new CodeGenerationException(e);
+                } catch (ClassNotFoundException | NoSuchMethodException | RuntimeException e) {
+                    // java.lang is not open to this module
+                    DEFINE_CLASS = null;
                 }
                 return null;
             }
         });
+        try {
+            // Java 9 and later
+            PRIVATE_LOOKUP_IN = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            LOOKUP_DEFINE_CLASS = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+        } catch (NoSuchMethodException e) {
+            PRIVATE_LOOKUP_IN = null;
+            LOOKUP_DEFINE_CLASS = null;
+        }
+        useLookup = LOOKUP_DEFINE_CLASS != null && !Boolean.getBoolean("uk.co.brunella.qof.useClassLoaderDefineClass");
     }
 
     /**
@@ -67,9 +93,116 @@ public class DefineClassHelper {
      * @see ClassLoader
      */
     public static <T> Class<T> defineClass(String className, byte[] byteCode, ClassLoader loader) throws Exception {
+        record(className, byteCode);
+        return defineClassInClassLoader(className, byteCode, loader);
+    }
+
+    /**
+     * Defines a class in the class loader and package of a neighbor class and returns a
+     * <code>Class</code> instance if successful.
+     *
+     * <p> Uses <code>MethodHandles.Lookup.defineClass</code> if available and the class
+     * is in the same package as the neighbor class, otherwise <code>ClassLoader.defineClass</code>
+     * of the class loader of the neighbor class.</p>
+     *
+     * @param <T>       type of the class
+     * @param className class name
+     * @param byteCode  array containing the byte code of the class
+     * @param neighbor  a class in the class loader the class is defined in
+     * @return newly defined class
+     * @throws Exception error occurred
+     * @since 1.2.1
+     */
+    public static <T> Class<T> defineClass(String className, byte[] byteCode, Class<?> neighbor) throws Exception {
+        record(className, byteCode);
+        if (useLookup && neighbor.getClassLoader() != null && getPackageName(className).equals(getPackageName(neighbor.getName()))) {
+            try {
+                Object lookup = PRIVATE_LOOKUP_IN.invoke(null, neighbor, MethodHandles.lookup());
+                @SuppressWarnings("unchecked") Class<T> definedClass = (Class<T>) LOOKUP_DEFINE_CLASS.invoke(lookup, (Object) byteCode);
+                return definedClass;
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw (Error) e.getCause();
+            }
+        }
+        return defineClassInClassLoader(className, byteCode, neighbor.getClassLoader());
+    }
+
+    private static <T> Class<T> defineClassInClassLoader(String className, byte[] byteCode, ClassLoader loader) throws Exception {
+        if (DEFINE_CLASS == null) {
+            throw new IllegalStateException("ClassLoader.defineClass is not accessible, cannot define class " + className);
+        }
         Object[] args = new Object[]{className, byteCode, 0, byteCode.length, PROTECTION_DOMAIN};
         @SuppressWarnings("unchecked") Class<T> definedClass = (Class<T>) DEFINE_CLASS.invoke(loader, args);
         return definedClass;
     }
 
+    private static void record(String className, byte[] byteCode) {
+        Map<String, byte[]> recorded = recordedClasses.get();
+        if (recorded != null) {
+            recorded.put(className, byteCode);
+        }
+    }
+
+    private static String getPackageName(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? "" : className.substring(0, index);
+    }
+
+    /*
+     * Selects the define class strategy, used by tests and benchmarks.
+     */
+    static boolean setUseLookup(boolean useLookup) {
+        boolean previous = DefineClassHelper.useLookup;
+        DefineClassHelper.useLookup = useLookup && LOOKUP_DEFINE_CLASS != null;
+        return previous;
+    }
+
+    static boolean isLookupAvailable() {
+        return LOOKUP_DEFINE_CLASS != null;
+    }
+
+    static boolean isClassLoaderDefineClassAvailable() {
+        return DEFINE_CLASS != null;
+    }
+
+    /**
+     * Internal - starts recording the byte code of all classes that are defined
+     * by the current thread.
+     *
+     * @see #stopRecording()
+     * @since 1.2.1
+     */
+    public static void startRecording() {
+        recordedClasses.set(new LinkedHashMap<String, byte[]>());
+    }
+
+    /**
+     * Internal - stops recording and returns the byte code of the classes defined
+     * by the current thread since recording was started.
+     *
+     * @return map of class name to byte code in the order of definition
+     * @see #startRecording()
+     * @since 1.2.1
+     */
+    public static Map<String, byte[]> stopRecording() {
+        Map<String, byte[]> recorded = recordedClasses.get();
+        recordedClasses.remove();
+        if (recorded == null) {
+            throw new IllegalStateException("Recording was not started");
+        }
+        return recorded;
+    }
+
+    /**
+     * Internal - returns true if the current thread records defined classes.
+     *
+     * @return true if recording
+     * @since 1.2.1
+     */
+    public static boolean isRecording() {
+        return recordedClasses.get() != null;
+    }
 }
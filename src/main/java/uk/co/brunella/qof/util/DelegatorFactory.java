@@ -116,7 +116,8 @@ public class DelegatorFactory {
         DebuggingClassWriter cw = new DebuggingClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         ClassEmitter ce = new ClassEmitter(cw);
 
-        String className = delegateeClass.getName() + "$" + delegateeFactory.getName() + "$Delegator";
+        // keep the delegator in the package of the delegatee class
+        String className = delegateeClass.getName() + "$" + delegateeFactory.getName().replace('.', '$') + "$Delegator";
         if (className.startsWith("java")) {
             className = "$" + className;
         }
@@ -133,12 +134,10 @@ public class DelegatorFactory {
 
         ce.end_class();
 
-        ClassLoader classLoader = delegateeClass.getClassLoader();
-        if (classLoader == null) {
-            classLoader = DelegatorFactory.class.getClassLoader();
+        if (delegateeClass.getClassLoader() == null) {
+            return DefineClassHelper.defineClass(className, cw.toByteArray(), DelegatorFactory.class.getClassLoader());
         }
-
-        return DefineClassHelper.defineClass(className, cw.toByteArray(), classLoader);
+        return DefineClassHelper.defineClass(className, cw.toByteArray(), delegateeClass);
     }
 
     private static void createConstructorAndFields(ClassEmitter ce, Object[] constructorParameters) {
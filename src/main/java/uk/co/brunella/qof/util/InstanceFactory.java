@@ -0,0 +1,146 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Internal - base class of generated instance factories.
+ *
+ * <p> A generated subclass creates instances of a single class by calling its
+ * constructors directly. The constructor matching the argument types is
+ * resolved once for each combination of argument types and then cached.</p>
+ *
+ * @param <T> type of the created objects
+ * @see uk.co.brunella.qof.codegen.InstanceFactoryGenerator
+ * @since 1.2.1
+ */
+public abstract class InstanceFactory<T> {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final Class<?>[][] constructorParameterTypes;
+    private final int defaultConstructorIndex;
+    private final ConcurrentMap<ArgumentTypes, Integer> constructorIndexCache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an instance factory.
+     *
+     * @param constructorParameterTypes the parameter types of the constructors in the order
+     *                                  of the constructor index
+     */
+    protected InstanceFactory(Class<?>[][] constructorParameterTypes) {
+        this.constructorParameterTypes = constructorParameterTypes;
+        this.defaultConstructorIndex = findConstructorIndex(NO_ARGUMENTS);
+    }
+
+    /**
+     * Creates a new instance using the given parameters.
+     * If no constructor for the given parameters can be found an exception is thrown.
+     *
+     * @param initArgs constructor arguments
+     * @return a new instance
+     * @throws RuntimeException instantiation failed
+     * @see ObjectInstantiator#newInstance(Class, Object[])
+     */
+    public T newInstance(Object[] initArgs) {
+        int index;
+        if (initArgs == null || initArgs.length == 0) {
+            index = defaultConstructorIndex;
+            initArgs = NO_ARGUMENTS;
+        } else {
+            ArgumentTypes argumentTypes = new ArgumentTypes(initArgs);
+            Integer cachedIndex = constructorIndexCache.get(argumentTypes);
+            if (cachedIndex == null) {
+                cachedIndex = findConstructorIndex(initArgs);
+                constructorIndexCache.putIfAbsent(argumentTypes, cachedIndex);
+            }
+            index = cachedIndex;
+        }
+        if (index < 0) {
+            throw new RuntimeException("Cannot find matching constructor");
+        }
+        try {
+            return newInstance(index, initArgs);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Calls the constructor with the specified index.
+     *
+     * @param constructorIndex index of the constructor
+     * @param initArgs         constructor arguments
+     * @return a new instance
+     * @throws Exception exception thrown by the constructor
+     */
+    protected abstract T newInstance(int constructorIndex, Object[] initArgs) throws Exception;
+
+    private int findConstructorIndex(Object[] initArgs) {
+        for (int index = 0; index < constructorParameterTypes.length; index++) {
+            Class<?>[] parameterTypes = constructorParameterTypes[index];
+            if (parameterTypes.length == initArgs.length) {
+                boolean match = true;
+                for (int i = 0; i < parameterTypes.length && match; i++) {
+                    if (initArgs[i] != null) {
+                        Class<?> parameterType = parameterTypes[i];
+                        Class<?> initArg = initArgs[i].getClass();
+                        if (parameterType.isPrimitive()) {
+                            initArg = ReflectionUtils.unbox(initArg);
+                        }
+                        match = parameterType.isAssignableFrom(initArg);
+                    }
+                }
+                if (match) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static final class ArgumentTypes {
+
+        private final Class<?>[] types;
+        private final int hashCode;
+
+        ArgumentTypes(Object[] initArgs) {
+            types = new Class<?>[initArgs.length];
+            for (int i = 0; i < initArgs.length; i++) {
+                types[i] = initArgs[i] == null ? null : initArgs[i].getClass();
+            }
+            hashCode = Arrays.hashCode(types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ArgumentTypes && Arrays.equals(types, ((ArgumentTypes) obj).types);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Internal - Executes insert, update and delete statements of methods that return <code>long</code>
+ * or <code>long[]</code> update counts with <code>executeLargeUpdate</code> and
+ * <code>executeLargeBatch</code>.
+ * <p>
+ * Drivers that do not implement the JDBC 4.2 methods throw <code>UnsupportedOperationException</code>
+ * or <code>SQLFeatureNotSupportedException</code> before the statement is executed. The statement is
+ * then executed with <code>executeUpdate</code> or <code>executeBatch</code> and the connection is
+ * remembered, so the large methods are only tried once per connection.
+ *
+ * @since 1.2.1
+ */
+public class LargeUpdateHelper {
+
+    private static final Map<Connection, Boolean> unsupportedConnections = new WeakHashMap<>();
+    // avoids the lookup while all drivers support large update counts
+    private static volatile boolean hasUnsupportedConnections;
+
+    private LargeUpdateHelper() {
+    }
+
+    /**
+     * Executes a statement and returns its update count.
+     *
+     * @param connection the connection of the statement
+     * @param statement  the prepared statement
+     * @return the update count
+     * @throws SQLException if the statement fails
+     */
+    public static long executeUpdate(Connection connection, PreparedStatement statement) throws SQLException {
+        if (isSupported(connection)) {
+            try {
+                return statement.executeLargeUpdate();
+            } catch (UnsupportedOperationException | SQLFeatureNotSupportedException e) {
+                setUnsupported(connection);
+            }
+        }
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Executes the batch of a statement and returns its update counts.
+     *
+     * @param connection the connection of the statement
+     * @param statement  the prepared statement
+     * @return the update counts
+     * @throws SQLException if the batch fails
+     */
+    public static long[] executeBatch(Connection connection, PreparedStatement statement) throws SQLException {
+        if (isSupported(connection)) {
+            try {
+                return statement.executeLargeBatch();
+            } catch (UnsupportedOperationException | SQLFeatureNotSupportedException e) {
+                setUnsupported(connection);
+            }
+        }
+        int[] counts = statement.executeBatch();
+        long[] largeCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            largeCounts[i] = counts[i];
+        }
+        return largeCounts;
+    }
+
+    /**
+     * Returns false if the driver of the connection does not support large update counts.
+     *
+     * @param connection the connection
+     * @return false if large update counts are not supported
+     */
+    public static boolean isSupported(Connection connection) {
+        if (!hasUnsupportedConnections) {
+            return true;
+        }
+        synchronized (unsupportedConnections) {
+            return !unsupportedConnections.containsKey(connection);
+        }
+    }
+
+    private static void setUnsupported(Connection connection) {
+        synchronized (unsupportedConnections) {
+            unsupportedConnections.put(connection, Boolean.TRUE);
+        }
+        hasUnsupportedConnections = true;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import uk.co.brunella.qof.StatementCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Internal - Executes the multi-row insert statements of an insert method annotated with
+ * <code>&#64;MultiRowInsert</code>.
+ * <p>
+ * The statements for 1, 2, 4, ... rows are created when the query object class is generated.
+ * For every row the generated code binds the parameters of the row to the statement returned by
+ * <code>getStatement()</code> with the offset returned by <code>getParameterIndexOffset()</code>
+ * and calls <code>addRow()</code>. The statement is executed when all its rows are bound. The
+ * remaining rows are inserted with statements for fewer rows.
+ *
+ * @see uk.co.brunella.qof.MultiRowInsert
+ * @since 1.2.1
+ */
+public class MultiRowInserter {
+
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final String[] sqls;
+    private final int parametersPerRow;
+    private final int maxRowsPerStatement;
+    private final int[] updateCounts;
+    private int remainingRows;
+    private int rowsPerStatement;
+    private int row;
+    private int index;
+    private PreparedStatement statement;
+
+    /**
+     * Creates a multi-row inserter.
+     *
+     * @param connection       the connection
+     * @param statementCache   the statement cache or <code>null</code>
+     * @param sqls             the statements for 2<sup>i</sup> rows
+     * @param parametersPerRow the number of parameters of a row
+     * @param numberOfRows     the number of rows to insert
+     * @param batchSize        the batch size of the query object or 0 if batching is not enabled
+     */
+    public MultiRowInserter(Connection connection, StatementCache statementCache, String[] sqls,
+                            int parametersPerRow, int numberOfRows, int batchSize) {
+        this.connection = connection;
+        this.statementCache = statementCache;
+        this.sqls = sqls;
+        this.parametersPerRow = parametersPerRow;
+        int maxRows = 1 << (sqls.length - 1);
+        if (batchSize > 0 && batchSize < maxRows) {
+            maxRows = Integer.highestOneBit(batchSize);
+        }
+        this.maxRowsPerStatement = maxRows;
+        this.updateCounts = new int[numberOfRows];
+        this.remainingRows = numberOfRows;
+        this.rowsPerStatement = getRowsPerStatement();
+    }
+
+    /**
+     * Returns the statement for the current row. The statement is prepared if needed.
+     *
+     * @return the statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement getStatement() throws SQLException {
+        if (statement == null) {
+            String sql = getSql();
+            statement = statementCache == null ? connection.prepareStatement(sql)
+                    : statementCache.prepareStatement(connection, sql);
+        }
+        return statement;
+    }
+
+    /**
+     * Returns the SQL statement for the current row.
+     *
+     * @return the SQL statement
+     */
+    public String getSql() {
+        return sqls[Integer.numberOfTrailingZeros(rowsPerStatement)];
+    }
+
+    /**
+     * Returns the offset that is added to the parameter indexes of the current row.
+     *
+     * @return the parameter index offset
+     */
+    public int getParameterIndexOffset() {
+        return row * parametersPerRow;
+    }
+
+    /**
+     * Called after the parameters of the current row are bound. Executes the statement
+     * if the parameters of all its rows are bound.
+     *
+     * @return the number of inserted rows if the statement was executed, otherwise 0
+     * @throws SQLException if the statement fails
+     */
+    public int addRow() throws SQLException {
+        if (++row < rowsPerStatement) {
+            return 0;
+        }
+        int rows = rowsPerStatement;
+        int updateCount = statement.executeUpdate();
+        Arrays.fill(updateCounts, index, index + rows, updateCount == rows ? 1 : Statement.SUCCESS_NO_INFO);
+        index += rows;
+        remainingRows -= rows;
+        row = 0;
+        if (remainingRows > 0) {
+            int nextRowsPerStatement = getRowsPerStatement();
+            if (nextRowsPerStatement != rowsPerStatement) {
+                rowsPerStatement = nextRowsPerStatement;
+                releaseStatement();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the update counts of the rows.
+     *
+     * @return the update counts
+     */
+    public int[] getUpdateCounts() {
+        return updateCounts;
+    }
+
+    /**
+     * Releases the statement after all rows are inserted.
+     *
+     * @throws SQLException if the statement cannot be closed
+     */
+    public void close() throws SQLException {
+        releaseStatement();
+    }
+
+    /**
+     * Closes the statement after a failure. The statement is not returned to the statement cache.
+     *
+     * @throws SQLException if the statement cannot be closed
+     */
+    public void closeAfterFailure() throws SQLException {
+        if (statement != null) {
+            PreparedStatement statementToClose = statement;
+            statement = null;
+            if (statementCache == null) {
+                statementToClose.close();
+            } else {
+                statementCache.closeStatement(statementToClose);
+            }
+        }
+    }
+
+    private void releaseStatement() throws SQLException {
+        if (statement != null) {
+            PreparedStatement statementToRelease = statement;
+            statement = null;
+            if (statementCache == null) {
+                statementToRelease.close();
+            } else {
+                statementCache.releaseStatement(statementToRelease);
+            }
+        }
+    }
+
+    private int getRowsPerStatement() {
+        return remainingRows >= maxRowsPerStatement ? maxRowsPerStatement : Integer.highestOneBit(remainingRows);
+    }
+
+    /**
+     * Creates the multi-row insert statements for 1, 2, 4, ... rows by repeating
+     * the <code>values</code> clause of an insert statement. Called when the query
+     * object class is generated.
+     *
+     * @param sql     the insert statement
+     * @param maxRows the maximum number of rows, rounded down to a power of two
+     * @return the statements for 2<sup>i</sup> rows
+     * @throws IllegalArgumentException if the statement has no <code>values</code> clause or
+     *                                  has parameters outside of the <code>values</code> clause
+     */
+    public static String[] createSqls(String sql, int maxRows) {
+        int valuesStart = findValues(sql);
+        if (valuesStart < 0) {
+            throw new IllegalArgumentException("Insert statement has no values clause: " + sql);
+        }
+        int valuesEnd = findClosingBracket(sql, valuesStart);
+        if (valuesEnd < 0) {
+            throw new IllegalArgumentException("Values clause is not closed: " + sql);
+        }
+        String prefix = sql.substring(0, valuesStart);
+        String values = sql.substring(valuesStart, valuesEnd + 1);
+        String suffix = sql.substring(valuesEnd + 1);
+        if (countParameters(prefix) > 0 || countParameters(suffix) > 0) {
+            throw new IllegalArgumentException("Parameters must be in the values clause: " + sql);
+        }
+        if (suffix.trim().startsWith(",")) {
+            throw new IllegalArgumentException("Insert statement has more than one values clause: " + sql);
+        }
+        String[] sqls = new String[Integer.numberOfTrailingZeros(Integer.highestOneBit(Math.max(maxRows, 1))) + 1];
+        StringBuilder sb = new StringBuilder(prefix.length() + values.length() * (1 << (sqls.length - 1)) * 2);
+        for (int i = 0; i < sqls.length; i++) {
+            int rows = 1 << i;
+            sb.setLength(0);
+            sb.append(prefix).append(values);
+            for (int j = 1; j < rows; j++) {
+                sb.append(',').append(values);
+            }
+            sqls[i] = sb.append(suffix).toString();
+        }
+        return sqls;
+    }
+
+    /**
+     * Returns the number of parameters '?' outside of string literals.
+     *
+     * @param sql the SQL statement
+     * @return the number of parameters
+     */
+    public static int countParameters(String sql) {
+        int count = 0;
+        char quoteChar = '\0';
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != '\0') {
+                if (c == quoteChar) {
+                    quoteChar = '\0';
+                }
+            } else if (c == '\'' || c == '"') {
+                quoteChar = c;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int findValues(String sql) {
+        // returns the index of the opening bracket after the keyword values
+        char quoteChar = '\0';
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != '\0') {
+                if (c == quoteChar) {
+                    quoteChar = '\0';
+                }
+            } else if (c == '\'' || c == '"') {
+                quoteChar = c;
+            } else if (sql.regionMatches(true, i, "values", 0, 6)
+                    && (i == 0 || !isNameChar(sql.charAt(i - 1)))
+                    && (i + 6 == sql.length() || !isNameChar(sql.charAt(i + 6)))) {
+                int j = i + 6;
+                while (j < sql.length() && Character.isWhitespace(sql.charAt(j))) {
+                    j++;
+                }
+                return j < sql.length() && sql.charAt(j) == '(' ? j : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int findClosingBracket(String sql, int start) {
+        int depth = 0;
+        char quoteChar = '\0';
+        for (int i = start; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != '\0') {
+                if (c == quoteChar) {
+                    quoteChar = '\0';
+                }
+            } else if (c == '\'' || c == '"') {
+                quoteChar = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -19,13 +19,22 @@
 package uk.co.brunella.qof.util;
 
 import net.sf.cglib.core.Signature;
+import uk.co.brunella.qof.CloseableIterator;
+import uk.co.brunella.qof.DoubleList;
+import uk.co.brunella.qof.IntList;
+import uk.co.brunella.qof.LongList;
+import uk.co.brunella.qof.RowHandler;
 import uk.co.brunella.qof.exception.ValidationException;
 
 import java.lang.reflect.*;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Utility class for reflection functionality.
@@ -175,6 +184,135 @@ public final class ReflectionUtils {
         return null;
     }
 
+    /**
+     * Returns the streaming type of a type. Streaming types are <code>Stream</code>,
+     * <code>Iterator</code>, <code>Iterable</code> and <code>CloseableIterator</code>.
+     *
+     * @param type the type
+     * @return the streaming type or null
+     */
+    public static Class<?> getStreamingType(Type type) {
+        if (type instanceof ParameterizedType) {
+            Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            if (isStreamingType(rawType)) {
+                return rawType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the class is a streaming type.
+     *
+     * @param type the class
+     * @return true if the class is <code>Stream</code>, <code>Iterator</code>,
+     * <code>Iterable</code> or <code>CloseableIterator</code>
+     */
+    public static boolean isStreamingType(Class<?> type) {
+        return type == Stream.class || type == Iterator.class || type == Iterable.class
+                || type == CloseableIterator.class;
+    }
+
+    /**
+     * Returns the row handler type of a type. Row handler types are <code>RowHandler</code>
+     * and <code>Consumer</code>.
+     *
+     * @param type the type
+     * @return the row handler type or null
+     */
+    public static Class<?> getRowHandlerType(Type type) {
+        if (type instanceof ParameterizedType) {
+            Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            if (isRowHandlerType(rawType)) {
+                return rawType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the class is a row handler type.
+     *
+     * @param type the class
+     * @return true if the class is <code>RowHandler</code> or <code>Consumer</code>
+     */
+    public static boolean isRowHandlerType(Class<?> type) {
+        return type == RowHandler.class || type == Consumer.class;
+    }
+
+    /**
+     * Returns the element type of a primitive collection type. Primitive collection
+     * types are <code>int[]</code>, <code>long[]</code>, <code>double[]</code>,
+     * <code>IntList</code>, <code>LongList</code> and <code>DoubleList</code>.
+     *
+     * @param type the class
+     * @return the primitive element type or null
+     */
+    public static Class<?> getPrimitiveCollectionElementType(Class<?> type) {
+        if (type == int[].class || type == IntList.class) {
+            return int.class;
+        } else if (type == long[].class || type == LongList.class) {
+            return long.class;
+        } else if (type == double[].class || type == DoubleList.class) {
+            return double.class;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the class is a primitive collection type.
+     *
+     * @param type the class
+     * @return true if the class is a primitive array or list of <code>int</code>,
+     * <code>long</code> or <code>double</code>
+     * @see #getPrimitiveCollectionElementType(Class)
+     */
+    public static boolean isPrimitiveCollectionType(Class<?> type) {
+        return getPrimitiveCollectionElementType(type) != null;
+    }
+
+    /**
+     * Returns the primitive list type used to collect the values of a primitive collection type.
+     *
+     * @param type the primitive collection type
+     * @return <code>IntList</code>, <code>LongList</code>, <code>DoubleList</code> or null
+     */
+    public static Class<?> getPrimitiveListType(Class<?> type) {
+        Class<?> elementType = getPrimitiveCollectionElementType(type);
+        if (elementType == int.class) {
+            return IntList.class;
+        } else if (elementType == long.class) {
+            return LongList.class;
+        } else if (elementType == double.class) {
+            return DoubleList.class;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the result type of an asynchronous return type. The asynchronous
+     * return type is <code>CompletableFuture</code> parameterized with the result type.
+     *
+     * @param type the type
+     * @return the result type or null if the type is not a <code>CompletableFuture</code>
+     * @throws ValidationException if the result type is missing or is not a class or parameterized class
+     */
+    public static Type getAsyncResultType(Type type) {
+        if (type == CompletableFuture.class) {
+            throw new ValidationException("CompletableFuture must be parameterized with the result type");
+        }
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == CompletableFuture.class) {
+            Type resultType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (!(resultType instanceof Class<?>) && !(resultType instanceof ParameterizedType)) {
+                throw new ValidationException("Result type " + resultType + " of CompletableFuture is not supported");
+            }
+            return resultType;
+        }
+        return null;
+    }
+
     /**
      * Returns the array component type of a type.
      *
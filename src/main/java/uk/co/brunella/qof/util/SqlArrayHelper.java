@@ -0,0 +1,59 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Helper class to bind array parameters as JDBC arrays.
+ *
+ * @see uk.co.brunella.qof.dialect.SQLDialect#getArrayTypeName(Class)
+ * @since 1.2.1
+ */
+public class SqlArrayHelper {
+
+    private SqlArrayHelper() {
+    }
+
+    /**
+     * Creates a JDBC array from a Java array using the connection of a statement.
+     * Arrays of primitive types are converted to arrays of the wrapper types.
+     *
+     * @param statement the prepared statement
+     * @param typeName  the SQL type name of the array elements
+     * @param array     the Java array
+     * @return the JDBC array
+     * @throws SQLException if the array cannot be created
+     */
+    public static Array createArray(PreparedStatement statement, String typeName, Object array) throws SQLException {
+        Object[] elements;
+        if (array instanceof Object[]) {
+            elements = (Object[]) array;
+        } else {
+            int length = java.lang.reflect.Array.getLength(array);
+            elements = new Object[length];
+            for (int i = 0; i < length; i++) {
+                elements[i] = java.lang.reflect.Array.get(array, i);
+            }
+        }
+        return statement.getConnection().createArrayOf(typeName, elements);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2007 - 2010 brunella ltd
+ *
+ * Licensed under the LGPL Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.co.brunella.qof.util;
+
+import java.util.Arrays;
+
+/**
+ * Internal - Collects the update counts of insert, update and delete methods with streaming
+ * parameters like <code>Iterator</code>, <code>Iterable</code> or <code>Stream</code>.
+ * <p>
+ * The number of rows is not known before the input is consumed, so the update counts
+ * of every executed statement or batch are appended to a growing array. Large update counts
+ * of methods returning <code>long[]</code> are collected with the <code>long</code> variants.
+ *
+ * @since 1.2.1
+ */
+public class UpdateCountBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Appends the update count of an executed statement.
+     *
+     * @param count the update count
+     */
+    public void add(int count) {
+        ensureCapacity(size + 1);
+        counts[size++] = count;
+    }
+
+    /**
+     * Appends the update counts of an executed batch.
+     *
+     * @param batchCounts the update counts
+     */
+    public void add(int[] batchCounts) {
+        ensureCapacity(size + batchCounts.length);
+        for (int count : batchCounts) {
+            counts[size++] = count;
+        }
+    }
+
+    /**
+     * Appends the large update count of an executed statement.
+     *
+     * @param count the update count
+     */
+    public void add(long count) {
+        ensureCapacity(size + 1);
+        counts[size++] = count;
+    }
+
+    /**
+     * Appends the large update counts of an executed batch.
+     *
+     * @param batchCounts the update counts
+     */
+    public void add(long[] batchCounts) {
+        ensureCapacity(size + batchCounts.length);
+        System.arraycopy(batchCounts, 0, counts, size, batchCounts.length);
+        size += batchCounts.length;
+    }
+
+    /**
+     * Returns the number of update counts.
+     *
+     * @return the number of update counts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the update counts.
+     *
+     * @return the update counts
+     */
+    public int[] toArray() {
+        int[] array = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = (int) counts[i];
+        }
+        return array;
+    }
+
+    /**
+     * Returns the large update counts.
+     *
+     * @return the update counts
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(counts, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(capacity, counts.length * 2));
+        }
+    }
+
+    /**
+     * Returns the sum of update counts. Counts of rows with unknown update counts
+     * (<code>Statement.SUCCESS_NO_INFO</code>) are not added.
+     *
+     * @param counts the update counts
+     * @return the sum of the update counts
+     */
+    public static long sum(int[] counts) {
+        long sum = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                sum += count;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of large update counts. Counts of rows with unknown update counts
+     * (<code>Statement.SUCCESS_NO_INFO</code>) are not added.
+     *
+     * @param counts the update counts
+     * @return the sum of the update counts
+     */
+    public static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                sum += count;
+            }
+        }
+        return sum;
+    }
+}
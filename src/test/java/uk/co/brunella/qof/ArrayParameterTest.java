@@ -0,0 +1,111 @@
+package uk.co.brunella.qof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.customizer.StatementCacheCustomizer;
+import uk.co.brunella.qof.dialect.DefaultDialect;
+import uk.co.brunella.qof.dialect.HSQLDbDialect;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArrayParameterTest {
+
+    private Connection connection;
+    private Queries queries;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:arrayparametertest", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table test (id integer, name varchar(20), value varchar(20))");
+            for (int i = 1; i <= 10; i++) {
+                statement.execute("insert into test values (" + i + ", 'name" + i + "', 'value" + i + "')");
+            }
+        }
+        QueryObjectFactory.setSQLDialect(new HSQLDbDialect(true));
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        queries.setConnection(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        QueryObjectFactory.setSQLDialect(new DefaultDialect());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table test");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testSelectIntArray() throws SQLException {
+        assertEquals(Arrays.asList("name2", "name3", "name5"), queries.selectByIds(new int[]{2, 3, 5}));
+        assertEquals(Arrays.asList("name7"), queries.selectByIds(new int[]{7}));
+        assertTrue(queries.selectByIds(new int[0]).isEmpty());
+    }
+
+    @Test
+    public void testSelectStringArrayWithOtherParameters() throws SQLException {
+        assertEquals(Arrays.asList("name1", "name4"),
+                queries.selectByNames(0, new String[]{"name1", "name4", "name8"}, 5));
+    }
+
+    @Test
+    public void testSelectWithExpandedArray() throws SQLException {
+        // separators are not supported by array binding and use expansion
+        assertEquals(Arrays.asList("name1", "name2"),
+                queries.selectLike(new String[]{"name1", "name2"}, new Integer[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testUpdate() throws SQLException {
+        assertEquals(3, queries.update("updated", new Integer[]{1, 2, 3}));
+        assertEquals(Arrays.asList("name1", "name2", "name3"), queries.selectByValue("updated"));
+    }
+
+    @Test
+    public void testSameSqlForAnyArrayLength() throws SQLException {
+        StatementCache statementCache = new StatementCache();
+        QueryObjectFactory.setCustomizer(new StatementCacheCustomizer(statementCache));
+        try {
+            CachedQueries cachedQueries = QueryObjectFactory.createQueryObject(CachedQueries.class);
+            cachedQueries.setConnection(connection);
+            assertEquals(Arrays.asList("name2", "name3"), cachedQueries.selectByIds(new long[]{2, 3}));
+            assertEquals(Arrays.asList("name4", "name5", "name6"), cachedQueries.selectByIds(new long[]{4, 5, 6}));
+            assertEquals(1, statementCache.getMisses());
+            assertEquals(1, statementCache.getHits());
+            statementCache.closeStatements(connection);
+        } finally {
+            QueryObjectFactory.setDefaultCustomizer();
+        }
+    }
+
+    public interface CachedQueries extends BaseQuery {
+        @Query(sql = "select name {%%} from test where id in ({%1}) order by id")
+        List<String> selectByIds(long[] ids) throws SQLException;
+    }
+
+    public interface Queries extends BaseQuery {
+        @Query(sql = "select name {%%} from test where id in ({%1}) order by id")
+        List<String> selectByIds(int[] ids) throws SQLException;
+
+        @Query(sql = "select name {%%} from test where id > {%1} and name in ({%2}) and id < {%3} order by id")
+        List<String> selectByNames(int minId, String[] names, int maxId) throws SQLException;
+
+        @Query(sql = "select name {%%} from test where (name like {%1# or name like #}) and id in ({%2}) order by id")
+        List<String> selectLike(String[] names, Integer[] ids) throws SQLException;
+
+        @Query(sql = "select name {%%} from test where value = {%1} order by id")
+        List<String> selectByValue(String value) throws SQLException;
+
+        @Update(sql = "update test set value = {%1} where id in ({%2})")
+        int update(String value, Integer[] ids) throws SQLException;
+    }
+}
@@ -0,0 +1,242 @@
+package uk.co.brunella.qof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.customizer.DefaultCustomizer;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+import uk.co.brunella.qof.util.AsyncQueryHelper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class AsyncQueryTest {
+
+    private Connection connection;
+    private Queries queries;
+    private List<String> log;
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "query-worker");
+            }
+        });
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+        queries.setExecutor(executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+        QueryObjectFactory.setDefaultCustomizer();
+    }
+
+    private void setIds(int... ids) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int id : ids) {
+            Map<String, Object> data = new HashMap<>();
+            results.add(data);
+            data.put("id", id);
+            data.put("name", "name" + id);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    @Test
+    public void testSelectList() throws Exception {
+        setIds(11, 12);
+        CompletableFuture<List<TestBean>> future = queries.selectAll();
+        List<TestBean> beans = future.get();
+        assertEquals(2, beans.size());
+        assertEquals(11, beans.get(0).getId());
+        assertEquals("name12", beans.get(1).getName());
+        assertEquals("query-worker", queries.ungetConnectionThread);
+    }
+
+    @Test
+    public void testSelectSingleWithParameters() throws Exception {
+        setIds(11);
+        assertEquals("name11", queries.selectName(11, "abc").get());
+        assertEquals("prepareStatement(select name from test where id = ? and name = ? )", log.get(0));
+        assertEquals("setInt(1,11)", log.get(2));
+        assertEquals("setString(2,abc)", log.get(3));
+    }
+
+    @Test
+    public void testPrimitiveResult() throws Exception {
+        setIds(11);
+        assertEquals(Integer.valueOf(11), queries.selectId("name11").get());
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        assertEquals(Integer.valueOf(1), queries.insert(5, "name5").get());
+        assertTrue(log.contains("executeUpdate()"));
+        assertEquals("query-worker", queries.ungetConnectionThread);
+    }
+
+    @Test
+    public void testVoid() throws Exception {
+        assertNull(queries.delete(5).get());
+        assertTrue(log.contains("executeUpdate()"));
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        List<Integer> ids = Arrays.asList(1, 2, 3);
+        assertArrayEquals(new int[]{1, 2, 3}, queries.deleteAll(ids).get());
+    }
+
+    @Test
+    public void testException() throws InterruptedException {
+        ((MockConnectionData) connection).setPrepareFails(true);
+        try {
+            queries.selectAll().get();
+            fail("Should throw exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+            assertEquals("prepareStatement failed", e.getCause().getMessage());
+        }
+        assertEquals("query-worker", queries.ungetConnectionThread);
+    }
+
+    @Test
+    public void testRejectedExecution() throws InterruptedException {
+        executorService.shutdown();
+        CompletableFuture<List<TestBean>> future = queries.selectAll();
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        setIds(11);
+        Queries otherQueries = QueryObjectFactory.createQueryObject(Queries.class);
+        otherQueries.setConnection(MockConnectionFactory.getConnection());
+        otherQueries.setExecutor(executorService);
+        CompletableFuture<String> name = queries.selectName(11, "abc");
+        CompletableFuture<Integer> count = otherQueries.insert(5, "name5");
+        CompletableFuture.allOf(name, count).get();
+        assertEquals("name11", name.get());
+        assertEquals(Integer.valueOf(1), count.get());
+    }
+
+    @Test
+    public void testDefaultExecutor() throws Exception {
+        queries.setExecutor(null);
+        setIds(11);
+        assertEquals("name11", queries.selectName(11, "abc").get());
+        assertTrue(queries.ungetConnectionThread.startsWith("qof-async-"));
+    }
+
+    @Test
+    public void testDefaultExecutorThreads() throws Exception {
+        CompletableFuture<Boolean> daemon = new CompletableFuture<>();
+        AsyncQueryHelper.getDefaultExecutor().execute(() -> daemon.complete(Thread.currentThread().isDaemon()));
+        assertTrue(daemon.get());
+        assertSame(AsyncQueryHelper.getDefaultExecutor(), AsyncQueryHelper.getDefaultExecutor());
+    }
+
+    @Test
+    public void testCustomizerExecutor() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        QueryObjectFactory.setCustomizer(new DefaultCustomizer() {
+            @Override
+            public Executor getExecutor(Class<?> queryDefinitionClass) {
+                return executor;
+            }
+        });
+        CustomizerQueries customizerQueries = QueryObjectFactory.createQueryObject(CustomizerQueries.class);
+        customizerQueries.setConnection(connection);
+        assertSame(executor, customizerQueries.getExecutor());
+        CompletableFuture<Integer> future = customizerQueries.delete(1);
+        assertFalse(future.isDone());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(Integer.valueOf(1), future.get());
+    }
+
+    @Test
+    public void testStreamNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(StreamQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Return type java.util.stream.Stream is not allowed for asynchronous methods", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRawCompletableFutureNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(RawQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("CompletableFuture must be parameterized with the result type", e.getMessage());
+        }
+    }
+
+    public static abstract class Queries implements BaseQuery {
+
+        public volatile String ungetConnectionThread;
+
+        @Query(sql = "select id {%%.id}, name {%%.name} from test")
+        public abstract CompletableFuture<List<TestBean>> selectAll();
+
+        @Query(sql = "select name {%%} from test where id = {%1} and name = {%2}")
+        public abstract CompletableFuture<String> selectName(int id, String name);
+
+        @Query(sql = "select id {%%} from test where name = {%1}")
+        public abstract CompletableFuture<Integer> selectId(String name);
+
+        @Insert(sql = "insert into test values ({%1}, {%2})")
+        public abstract CompletableFuture<Integer> insert(int id, String name);
+
+        @Delete(sql = "delete from test where id = {%1}")
+        public abstract CompletableFuture<Void> delete(int id);
+
+        @Delete(sql = "delete from test where id = {%1}")
+        public abstract CompletableFuture<int[]> deleteAll(List<Integer> ids);
+
+        public void ungetConnection(Connection connection) {
+            ungetConnectionThread = Thread.currentThread().getName();
+        }
+    }
+
+    public interface CustomizerQueries extends BaseQuery {
+        @Delete(sql = "delete from test where id = {%1}")
+        CompletableFuture<Integer> delete(int id);
+    }
+
+    public interface StreamQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        CompletableFuture<Stream<Integer>> select();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public interface RawQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        CompletableFuture select();
+    }
+}
@@ -0,0 +1,390 @@
+package uk.co.brunella.qof;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.cache.ResultCache;
+import uk.co.brunella.qof.exception.ValidationException;
+import uk.co.brunella.qof.session.SessionContext;
+import uk.co.brunella.qof.session.SessionContextFactory;
+import uk.co.brunella.qof.session.UserTransaction;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CachedQueryTest {
+
+    private Connection connection;
+    private CachedQueries queries;
+
+    @Before
+    public void setUp() {
+        connection = MockConnectionFactory.getConnection();
+        queries = QueryObjectFactory.createQueryObject(CachedQueries.class);
+        queries.setConnection(connection);
+        // caches are shared by all query objects of the generated class
+        for (ResultCache cache : ResultCache.getCaches(CachedQueries.class)) {
+            cache.invalidateAll();
+            cache.resetStatistics();
+        }
+    }
+
+    @Test
+    public void testCaches() {
+        List<ResultCache> caches = ResultCache.getCaches(CachedQueries.class);
+        assertEquals(5, caches.size());
+        List<String> names = new ArrayList<>();
+        for (ResultCache cache : caches) {
+            names.add(cache.getMethodName());
+        }
+        assertTrue(names.containsAll(Arrays.asList("selectValue", "selectInteger", "selectValues", "selectExpiring",
+                "selectLimited")));
+        assertEquals("ResultCache[" + CachedQueries.class.getName() + ".selectValue(int)]",
+                getCache("selectValue").toString());
+    }
+
+    @Test
+    public void testPrimitiveResult() throws SQLException {
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+        setResultSetData(66);
+        assertEquals(55, queries.selectValue(1));
+        assertEquals(66, queries.selectValue(2));
+        ResultCache cache = getCache("selectValue");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testSharedByQueryObjects() throws SQLException {
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+        CachedQueries otherQueries = QueryObjectFactory.createQueryObject(CachedQueries.class);
+        otherQueries.setConnection(MockConnectionFactory.getConnection());
+        assertEquals(55, otherQueries.selectValue(1));
+        assertEquals(1, getCache("selectValue").getHitCount());
+    }
+
+    @Test
+    public void testNullResult() throws SQLException {
+        setResultSetData();
+        assertNull(queries.selectInteger(1, "a"));
+        setResultSetData(55);
+        assertNull(queries.selectInteger(1, "a"));
+        assertEquals(Integer.valueOf(55), queries.selectInteger(1, null));
+        assertEquals(Integer.valueOf(55), queries.selectInteger(1, null));
+        ResultCache cache = getCache("selectInteger");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testListResult() throws SQLException {
+        setResultSetData(1, 2, 3);
+        assertEquals(Arrays.asList(1, 2, 3), queries.selectValues(1));
+        setResultSetData(4);
+        assertEquals(Arrays.asList(1, 2, 3), queries.selectValues(1));
+        assertEquals(4, getCache("selectValues").getWeight());
+    }
+
+    @Test
+    public void testInvalidateAll() throws SQLException {
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+        getCache("selectValue").invalidateAll();
+        setResultSetData(66);
+        assertEquals(66, queries.selectValue(1));
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws SQLException {
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.selectValue(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(0, getCache("selectValue").getSize());
+        }
+        ((MockConnectionData) connection).setExecuteFails(false);
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        setResultSetData(55);
+        assertEquals(55, queries.selectExpiring(1));
+        setResultSetData(66);
+        assertEquals(55, queries.selectExpiring(1));
+        Thread.sleep(60);
+        assertEquals(66, queries.selectExpiring(1));
+        assertEquals(1, getCache("selectExpiring").getExpirationCount());
+    }
+
+    @Test
+    public void testMaxEntries() throws SQLException {
+        for (int i = 0; i < 15; i++) {
+            setResultSetData(i);
+            assertEquals(i, queries.selectLimited(i));
+        }
+        ResultCache cache = getCache("selectLimited");
+        assertTrue(cache.getSize() <= 10);
+        assertTrue(cache.getEvictionCount() >= 5);
+        // the most recent result is still cached
+        setResultSetData(99);
+        assertEquals(14, queries.selectLimited(14));
+    }
+
+    @Test
+    public void testAsynchronous() throws Exception {
+        AsyncCachedQueries asyncQueries = QueryObjectFactory.createQueryObject(AsyncCachedQueries.class);
+        asyncQueries.setConnection(connection);
+        setResultSetData(55);
+        assertEquals(Integer.valueOf(55), asyncQueries.selectValueAsync(1).get());
+        setResultSetData(66);
+        assertEquals(Integer.valueOf(55), asyncQueries.selectValueAsync(1).get());
+        assertEquals(1, ResultCache.getCaches(AsyncCachedQueries.class).get(0).getHitCount());
+    }
+
+    @Test
+    public void testWriteInvalidatesCaches() throws SQLException {
+        WriteQueries writeQueries = QueryObjectFactory.createQueryObject(WriteQueries.class);
+        writeQueries.setConnection(connection);
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+        setResultSetData(55);
+        assertEquals(Arrays.asList(55), queries.selectValues(1));
+        writeQueries.insertOther(1);
+        assertEquals(2, getCache("selectValue").getSize() + getCache("selectValues").getSize());
+        writeQueries.update(66);
+        assertEquals(0, getCache("selectValue").getSize());
+        assertEquals(0, getCache("selectValues").getSize());
+        setResultSetData(66);
+        assertEquals(66, queries.selectValue(1));
+    }
+
+    @Test
+    public void testSessionTransaction() throws Exception {
+        String contextName = CachedQueryTest.class.getName();
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:cachedquerytest");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        SessionContextFactory.setDataSource(contextName, dataSource);
+        SessionContext ctx = SessionContextFactory.getContext(contextName);
+        ctx.startSession();
+        try {
+            Connection sessionConnection = ctx.getConnection();
+            try (Statement statement = sessionConnection.createStatement()) {
+                statement.execute("create table cached_person (id integer, name varchar(40))");
+                statement.execute("insert into cached_person values (1, 'a')");
+            }
+            sessionConnection.commit();
+            PersonQueries personQueries = QueryObjectFactory.createQueryObject(PersonQueries.class);
+            personQueries.setConnection(sessionConnection);
+            ResultCache cache = ResultCache.getCaches(PersonQueries.class).get(0);
+            UserTransaction transaction = ctx.getUserTransaction();
+
+            transaction.begin();
+            assertEquals("a", personQueries.selectName(1));
+            personQueries.updateName(1, "b");
+            // uncommitted result is not cached
+            assertEquals("b", personQueries.selectName(1));
+            assertEquals(0, cache.getSize());
+            transaction.rollback();
+            assertEquals("a", personQueries.selectName(1));
+
+            transaction.begin();
+            personQueries.updateName(1, "c");
+            // cached by another thread before the commit
+            cache.put(new Object[]{1}, "a", cache.getVersion());
+            transaction.commit();
+            assertEquals("c", personQueries.selectName(1));
+        } finally {
+            ctx.stopSession();
+            SessionContextFactory.removeContext(contextName);
+        }
+    }
+
+    @Test
+    public void testUncommittedWriteOfOtherThread() throws Exception {
+        try (Connection connectionA = DriverManager.getConnection("jdbc:hsqldb:mem:cachedquerythreadtest", "sa", "");
+             Connection connectionB = DriverManager.getConnection("jdbc:hsqldb:mem:cachedquerythreadtest", "sa", "")) {
+            try (Statement statement = connectionA.createStatement()) {
+                // reads of thread B must not wait for the write lock of thread A
+                statement.execute("set database transaction control mvcc");
+                statement.execute("create table cached_person (id integer, name varchar(40))");
+                statement.execute("insert into cached_person values (1, 'a')");
+            }
+            connectionA.setAutoCommit(false);
+            PersonQueries personQueriesA = QueryObjectFactory.createQueryObject(PersonQueries.class);
+            personQueriesA.setConnection(connectionA);
+            PersonQueries personQueriesB = QueryObjectFactory.createQueryObject(PersonQueries.class);
+            personQueriesB.setConnection(connectionB);
+            ResultCache cache = ResultCache.getCaches(PersonQueries.class).get(0);
+            cache.invalidateAll();
+            cache.resetStatistics();
+
+            personQueriesA.updateName(1, "b");
+            assertEquals("b", personQueriesA.selectName(1));
+            String nameB = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return personQueriesB.selectName(1);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get();
+            assertEquals("a", nameB);
+            assertEquals(0, cache.getSize());
+
+            connectionA.rollback();
+            ResultCache.transactionCompleted(connectionA);
+            assertEquals("a", personQueriesB.selectName(1));
+            assertEquals("a", personQueriesA.selectName(1));
+            assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    public void testUpdateCannotBeCached() {
+        try {
+            QueryObjectFactory.createQueryObject(CachedUpdateQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Only query methods can be cached", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRowHandlerCannotBeCached() {
+        try {
+            QueryObjectFactory.createQueryObject(CachedRowHandlerQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Only query methods returning a result can be cached", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidDefinition() {
+        try {
+            QueryObjectFactory.createQueryObject(InvalidCachedQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertTrue(e.getMessage().startsWith("Invalid cache definition"));
+        }
+    }
+
+    @Test
+    public void testPagingCannotBeCached() {
+        try {
+            QueryObjectFactory.createQueryObject(PagingCachedQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Method selectValues cannot be cached because the query definition implements Paging",
+                    e.getMessage());
+        }
+    }
+
+    private ResultCache getCache(String methodName) {
+        for (ResultCache cache : ResultCache.getCaches(CachedQueries.class)) {
+            if (cache.getMethodName().equals(methodName)) {
+                return cache;
+            }
+        }
+        throw new IllegalArgumentException(methodName);
+    }
+
+    private void setResultSetData(Object... values) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("value", value);
+            results.add(data);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    public interface CachedQueries extends BaseQuery {
+        @Cached
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        int selectValue(int id) throws SQLException;
+
+        @Cached
+        @Query(sql = "select value {%%} from cached_test where id = {%1} and name = {%2}")
+        Integer selectInteger(int id, String name) throws SQLException;
+
+        @Cached(maxWeight = 100)
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        List<Integer> selectValues(int id) throws SQLException;
+
+        @Cached(ttl = 50, unit = TimeUnit.MILLISECONDS)
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        int selectExpiring(int id) throws SQLException;
+
+        @Cached(maxEntries = 10)
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        int selectLimited(int id) throws SQLException;
+    }
+
+    public interface WriteQueries extends BaseQuery {
+        @Update(sql = "update cached_test set value = {%1}")
+        void update(int value) throws SQLException;
+
+        @Insert(sql = "insert into other values ({%1})")
+        void insertOther(int value) throws SQLException;
+    }
+
+    public interface PersonQueries extends BaseQuery {
+        @Cached
+        @Query(sql = "select name {%%} from cached_person where id = {%1}")
+        String selectName(int id) throws SQLException;
+
+        @Update(sql = "update cached_person set name = {%2} where id = {%1}")
+        void updateName(int id, String name) throws SQLException;
+    }
+
+    public interface AsyncCachedQueries extends BaseQuery {
+        @Cached
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        CompletableFuture<Integer> selectValueAsync(int id) throws SQLException;
+    }
+
+    public interface CachedUpdateQueries extends BaseQuery {
+        @Cached
+        @Update(sql = "update cached_test set value = {%1}")
+        void update(int value) throws SQLException;
+    }
+
+    public interface CachedRowHandlerQueries extends BaseQuery {
+        @Cached
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        int selectValues(int id, RowHandler<Integer> handler) throws SQLException;
+    }
+
+    public interface InvalidCachedQueries extends BaseQuery {
+        @Cached(maxEntries = 0)
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        int selectValue(int id) throws SQLException;
+    }
+
+    public interface PagingCachedQueries extends BaseQuery, Paging {
+        @Cached
+        @Query(sql = "select value {%%} from cached_test where id = {%1}")
+        List<Integer> selectValues(int id) throws SQLException;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.co.brunella.qof;
+
+import org.junit.Test;
+import uk.co.brunella.qof.mapping.QueryType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompositeQueryListenerTest {
+
+    private final QueryMethod method = new QueryMethod(CompositeQueryListenerTest.class, "select", "()I",
+            "select 1", QueryType.QUERY);
+
+    @Test
+    public void testEvents() {
+        List<String> events = new ArrayList<>();
+        CompositeQueryListener listener = new CompositeQueryListener(
+                new RecordingListener("a", events, false), new RecordingListener("b", events, true));
+        Object context = listener.beforePrepare(method);
+        listener.prepared(method, context, "select 1");
+        listener.afterExecute(method, context);
+        assertTrue(listener.isArgumentsRequired(method, context));
+        listener.arguments(method, context, new Object[]{1});
+        listener.rowsMapped(method, context, 1);
+        listener.batchFlushed(method, context, 2);
+        listener.failure(method, context, new Exception("failed"));
+        assertEquals(Arrays.asList(
+                "a.beforePrepare", "b.beforePrepare",
+                "a.prepared(a-ctx,select 1)", "b.prepared(b-ctx,select 1)",
+                "a.afterExecute(a-ctx)", "b.afterExecute(b-ctx)",
+                "b.arguments(b-ctx,1)",
+                "a.rowsMapped(a-ctx,1)", "b.rowsMapped(b-ctx,1)",
+                "a.batchFlushed(a-ctx,2)", "b.batchFlushed(b-ctx,2)",
+                "a.failure(a-ctx,failed)", "b.failure(b-ctx,failed)"), events);
+    }
+
+    @Test
+    public void testArgumentsNotRequired() {
+        List<String> events = new ArrayList<>();
+        CompositeQueryListener listener = new CompositeQueryListener(new RecordingListener("a", events, false));
+        Object context = listener.beforePrepare(method);
+        assertFalse(listener.isArgumentsRequired(method, context));
+        assertEquals(1, listener.getListeners().size());
+    }
+
+    private static class RecordingListener implements QueryListener {
+
+        private final String name;
+        private final List<String> events;
+        private final boolean argumentsRequired;
+
+        private RecordingListener(String name, List<String> events, boolean argumentsRequired) {
+            this.name = name;
+            this.events = events;
+            this.argumentsRequired = argumentsRequired;
+        }
+
+        @Override
+        public Object beforePrepare(QueryMethod method) {
+            events.add(name + ".beforePrepare");
+            return name + "-ctx";
+        }
+
+        @Override
+        public void prepared(QueryMethod method, Object context, String sql) {
+            events.add(name + ".prepared(" + context + "," + sql + ")");
+        }
+
+        @Override
+        public void afterExecute(QueryMethod method, Object context) {
+            events.add(name + ".afterExecute(" + context + ")");
+        }
+
+        @Override
+        public void rowsMapped(QueryMethod method, Object context, int rowCount) {
+            events.add(name + ".rowsMapped(" + context + "," + rowCount + ")");
+        }
+
+        @Override
+        public void batchFlushed(QueryMethod method, Object context, int batchSize) {
+            events.add(name + ".batchFlushed(" + context + "," + batchSize + ")");
+        }
+
+        @Override
+        public void failure(QueryMethod method, Object context, Throwable exception) {
+            events.add(name + ".failure(" + context + "," + exception.getMessage() + ")");
+        }
+
+        @Override
+        public boolean isArgumentsRequired(QueryMethod method, Object context) {
+            return argumentsRequired;
+        }
+
+        @Override
+        public void arguments(QueryMethod method, Object context, Object[] arguments) {
+            events.add(name + ".arguments(" + context + "," + arguments[0] + ")");
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package uk.co.brunella.qof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.exception.ValidationException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class GeneratedKeysTest {
+
+    private Connection connection;
+    private GeneratedKeyQueries queries;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:generatedkeys", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table generated_key_person if exists");
+            statement.execute("create table generated_key_person (id bigint generated by default as identity (start with 100) "
+                    + "primary key, name varchar(40))");
+        }
+        queries = QueryObjectFactory.createQueryObject(GeneratedKeyQueries.class);
+        queries.setConnection(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void testReturnKey() throws SQLException {
+        assertEquals(100, queries.insertName("a"));
+        assertEquals(101, queries.insertName("b"));
+        assertEquals("b", selectName(101));
+    }
+
+    @Test
+    public void testSetKey() throws SQLException {
+        Person person = new Person("a");
+        assertEquals(1, queries.insertPerson(person));
+        assertEquals(Long.valueOf(100), person.getId());
+    }
+
+    @Test
+    public void testReturnKeysWithBatching() throws SQLException {
+        queries.setBatchSize(2);
+        List<Person> persons = createPersons(5);
+        long[] keys = queries.insertPersons(persons);
+        assertArrayEquals(new long[]{100, 101, 102, 103, 104}, keys);
+        for (int i = 0; i < persons.size(); i++) {
+            assertEquals(Long.valueOf(100 + i), persons.get(i).getId());
+            assertEquals("name" + i, selectName(100 + i));
+        }
+    }
+
+    @Test
+    public void testReturnKeysWithoutBatching() throws SQLException {
+        queries.setBatchSize(0);
+        List<Person> persons = createPersons(3);
+        long[] keys = queries.insertPersons(persons);
+        assertArrayEquals(new long[]{100, 101, 102}, keys);
+        assertEquals(Long.valueOf(102), persons.get(2).getId());
+    }
+
+    @Test
+    public void testReturnKeyList() throws SQLException {
+        assertEquals(Arrays.asList(100L, 101L, 102L), queries.insertNames(Arrays.asList("a", "b", "c")));
+        assertEquals(Arrays.asList(103, 104), queries.insertNamesIntegerKeys(Arrays.asList("d", "e")));
+    }
+
+    @Test
+    public void testEmptyCollection() throws SQLException {
+        assertEquals(0, queries.insertPersons(Collections.emptyList()).length);
+        assertTrue(queries.insertNames(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testReturnKeysFromStream() throws SQLException {
+        queries.setBatchSize(2);
+        List<Person> persons = createPersons(5);
+        assertEquals(Arrays.asList(100L, 101L, 102L, 103L, 104L), queries.insertPersonStream(persons.stream()));
+        for (int i = 0; i < persons.size(); i++) {
+            assertEquals(Long.valueOf(100 + i), persons.get(i).getId());
+        }
+        queries.setBatchSize(0);
+        persons = createPersons(2);
+        assertEquals(Arrays.asList(105L, 106L), queries.insertPersonStream(persons.stream()));
+        assertEquals(Long.valueOf(106), persons.get(1).getId());
+        assertTrue(queries.insertPersonStream(Stream.empty()).isEmpty());
+    }
+
+    @Test
+    public void testStreamKeysArrayNotSupported() {
+        try {
+            QueryObjectFactory.createQueryObject(StreamKeyArrayQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Generated keys of streaming parameters must be returned as List", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnsupportedKeyType() {
+        try {
+            QueryObjectFactory.createQueryObject(UnsupportedKeyTypeQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Unsupported generated key type class java.util.Date", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testNoSetter() {
+        try {
+            QueryObjectFactory.createQueryObject(NoSetterQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("No parameter has a setter for generated key field key", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMultiRowInsertNotSupported() {
+        try {
+            QueryObjectFactory.createQueryObject(MultiRowInsertKeyQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Generated keys are not supported for multi-row inserts", e.getMessage());
+        }
+    }
+
+    private List<Person> createPersons(int count) {
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            persons.add(new Person("name" + i));
+        }
+        return persons;
+    }
+
+    private String selectName(long id) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select name from generated_key_person where id = " + id)) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+
+    public static class Person {
+        private Long id;
+        private String name;
+
+        public Person(String name) {
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public interface GeneratedKeyQueries extends BaseQuery {
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        long insertName(String name) throws SQLException;
+
+        @Insert(sql = "insert into generated_key_person (name) values ({%1.name}) {%%.id}")
+        int insertPerson(Person person) throws SQLException;
+
+        @Insert(sql = "insert into generated_key_person (name) values ({%1.name}) {%%.id}")
+        long[] insertPersons(List<Person> persons) throws SQLException;
+
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        List<Long> insertNames(List<String> names) throws SQLException;
+
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        List<Integer> insertNamesIntegerKeys(List<String> names) throws SQLException;
+
+        @Insert(sql = "insert into generated_key_person (name) values ({%1.name}) {%%.id}")
+        List<Long> insertPersonStream(Stream<Person> persons) throws SQLException;
+    }
+
+    public interface StreamKeyArrayQueries extends BaseQuery {
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        long[] insertNames(Iterator<String> names) throws SQLException;
+    }
+
+    public interface UnsupportedKeyTypeQueries extends BaseQuery {
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        List<Date> insertNames(List<String> names) throws SQLException;
+    }
+
+    public interface NoSetterQueries extends BaseQuery {
+        @Insert(sql = "insert into generated_key_person (name) values ({%1.name}) {%%.key}")
+        void insertPersons(List<Person> persons) throws SQLException;
+    }
+
+    public interface MultiRowInsertKeyQueries extends BaseQuery {
+        @MultiRowInsert
+        @Insert(sql = "insert into generated_key_person (name) values ({%1})")
+        long[] insertNames(List<String> names) throws SQLException;
+    }
+}
@@ -0,0 +1,152 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InListBucketsTest {
+
+    private Connection connection;
+    private SelectQueries selectQueries;
+    private UpdateQueries updateQueries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        selectQueries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        updateQueries = QueryObjectFactory.createQueryObject(UpdateQueries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        selectQueries.setConnection(connection);
+        selectQueries.setFetchSize(99);
+        updateQueries.setConnection(connection);
+        ((MockConnectionData) connection).setResultSetData(new ArrayList<>());
+    }
+
+    @Test
+    public void testPowerOfTwo() throws SQLException {
+        selectQueries.selectPowerOfTwo(new int[]{1, 2, 3}, "x");
+        assertEquals(11, log.size());
+        int i = 0;
+        assertEquals("prepareStatement(select value from test where id in ( ?,?,?,? ) and name = ? )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("setInt(2,2)", log.get(i++));
+        assertEquals("setInt(3,3)", log.get(i++));
+        assertEquals("setInt(4,3)", log.get(i++));
+        assertEquals("setString(5,x)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+    }
+
+    @Test
+    public void testPowerOfTwoExact() throws SQLException {
+        selectQueries.selectPowerOfTwo(new int[]{1, 2, 3, 4}, "x");
+        assertEquals("prepareStatement(select value from test where id in ( ?,?,?,? ) and name = ? )", log.get(0));
+        selectQueries.selectPowerOfTwo(new int[]{1}, "x");
+        assertEquals("prepareStatement(select value from test where id in ( ? ) and name = ? )", log.get(11));
+        assertEquals("setInt(1,1)", log.get(13));
+        assertEquals("setString(2,x)", log.get(14));
+    }
+
+    @Test
+    public void testLadder() throws SQLException {
+        selectQueries.selectLadder(new String[]{"a", "b", "c"});
+        assertEquals(11, log.size());
+        int i = 0;
+        assertEquals("prepareStatement(select value from test where name in ( ?,?,?,?,? ) )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("setString(1,a)", log.get(i++));
+        assertEquals("setString(2,b)", log.get(i++));
+        assertEquals("setString(3,c)", log.get(i++));
+        assertEquals("setString(4,c)", log.get(i++));
+        assertEquals("setString(5,c)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+    }
+
+    @Test
+    public void testLadderExceeded() throws SQLException {
+        selectQueries.selectLadder(new String[]{"a", "b", "c", "d", "e", "f"});
+        assertEquals("prepareStatement(select value from test where name in ( ?,?,?,?,?,? ) )", log.get(0));
+        assertEquals("setString(6,f)", log.get(7));
+        assertEquals("executeQuery()", log.get(8));
+    }
+
+    @Test
+    public void testPowerOfTwoEmptyArray() throws SQLException {
+        selectQueries.selectPowerOfTwo(new int[0], "x");
+        // no padding, the statement is the same as without buckets
+        assertEquals("prepareStatement(select value from test where id in ( ? ) and name = ? )", log.get(0));
+        assertEquals("setString(1,x)", log.get(2));
+        assertEquals("executeQuery()", log.get(3));
+    }
+
+    @Test
+    public void testLadderEmptyArray() throws SQLException {
+        selectQueries.selectLadder(new String[0]);
+        assertEquals("prepareStatement(select value from test where name in ( ? ) )", log.get(0));
+        assertEquals("setFetchSize(99)", log.get(1));
+        assertEquals("executeQuery()", log.get(2));
+    }
+
+    @Test
+    public void testClassAnnotation() throws SQLException {
+        updateQueries.update("v", new int[]{1, 2, 3, 4, 5});
+        int i = 0;
+        assertEquals("prepareStatement(update test set value = ? where id in ( ?,?,?,?,?,?,?,? ) )", log.get(i++));
+        assertEquals("setString(1,v)", log.get(i++));
+        assertEquals("setInt(2,1)", log.get(i++));
+        assertEquals("setInt(6,5)", log.get(i + 3));
+        assertEquals("setInt(9,5)", log.get(i + 6));
+        assertEquals("executeUpdate()", log.get(i + 7));
+    }
+
+    @Test
+    public void testMethodAnnotationOverridesClass() throws SQLException {
+        updateQueries.delete(new int[]{1, 2, 3});
+        assertEquals("prepareStatement(delete from test where id in ( ?,?,? ) )", log.get(0));
+    }
+
+    @Test
+    public void testInvalidBuckets() {
+        try {
+            QueryObjectFactory.createQueryObject(InvalidQueries.class);
+            fail("Exception expected");
+        } catch (RuntimeException e) {
+            assertEquals("In-list bucket sizes must be positive and in ascending order", e.getMessage());
+        }
+    }
+
+    public interface SelectQueries extends BaseQuery {
+        @InListBuckets
+        @Query(sql = "select value {%%} from test where id in ({%1}) and name = {%2}")
+        List<String> selectPowerOfTwo(int[] ids, String name) throws SQLException;
+
+        @InListBuckets({2, 5})
+        @Query(sql = "select value {%%} from test where name in ({%1})")
+        List<String> selectLadder(String[] names) throws SQLException;
+    }
+
+    @InListBuckets
+    public interface UpdateQueries extends BaseQuery {
+        @Update(sql = "update test set value = {%1} where id in ({%2})")
+        void update(String value, int[] ids) throws SQLException;
+
+        @InListBuckets({3})
+        @Delete(sql = "delete from test where id in ({%1})")
+        void delete(int[] ids) throws SQLException;
+    }
+
+    public interface InvalidQueries extends BaseQuery {
+        @InListBuckets({5, 2})
+        @Query(sql = "select value {%%} from test where id in ({%1})")
+        List<String> select(int[] ids) throws SQLException;
+    }
+}
@@ -16,7 +16,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(InsertQueries.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int, long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -26,7 +26,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(InsertQueries2.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int[] or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int[], long[], long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -36,7 +36,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(UpdateQueries.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int, long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -46,7 +46,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(UpdateQueries2.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int[] or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int[], long[], long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -56,7 +56,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(DeleteQueries.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int, long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -66,7 +66,7 @@ public class InsertUpdateDeleteReturnTypeTest {
             QueryObjectFactory.createQueryObject(DeleteQueries2.class);
             fail("Should throw exception");
         } catch (RuntimeException e) {
-            assertEquals("Only int[] or void is allowed as return type", e.getCause().getMessage());
+            assertEquals("Only int[], long[], long or void is allowed as return type", e.getCause().getMessage());
         }
     }
 
@@ -0,0 +1,143 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LargeUpdateCountTest {
+
+    private Connection connection;
+    private LargeUpdateQueries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(LargeUpdateQueries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+    }
+
+    @Test
+    public void testUpdate() throws SQLException {
+        assertEquals(1L, queries.update(1));
+        // connections are hashed once a driver without large update counts was found
+        log.removeIf("hashCode()"::equals);
+        int i = 0;
+        assertEquals(4, log.size());
+        assertEquals("prepareStatement(update test set value = ? )", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("executeLargeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testDeleteCollectionWithBatching() throws SQLException {
+        queries.setBatchSize(2);
+        assertArrayEquals(new long[]{1, 2, 1}, queries.delete(Arrays.asList(1, 2, 3)));
+        assertEquals(2, count("executeLargeBatch()"));
+        assertEquals(0, count("executeBatch()"));
+    }
+
+    @Test
+    public void testDeleteCollectionNoBatching() throws SQLException {
+        queries.setBatchSize(0);
+        assertArrayEquals(new long[]{1, 1}, queries.delete(Arrays.asList(1, 2)));
+        assertEquals(2, count("executeLargeUpdate()"));
+    }
+
+    @Test
+    public void testDeleteEmptyCollection() throws SQLException {
+        assertEquals(0, queries.delete(Collections.emptyList()).length);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testDeleteIterator() throws SQLException {
+        queries.setBatchSize(2);
+        assertArrayEquals(new long[]{1, 2, 1}, queries.delete(Arrays.asList(1, 2, 3).iterator()));
+        queries.setBatchSize(0);
+        assertArrayEquals(new long[]{1, 1}, queries.delete(Arrays.asList(1, 2).iterator()));
+    }
+
+    @Test
+    public void testTotal() throws SQLException {
+        queries.setBatchSize(10);
+        assertEquals(1 + 2 + 3, queries.updateAll(Arrays.asList(1, 2, 3)));
+        assertEquals(1, count("executeLargeBatch()"));
+    }
+
+    @Test
+    public void testUpdateFallback() throws SQLException {
+        ((MockConnectionData) connection).setLargeUpdatesSupported(false);
+        assertEquals(1L, queries.update(1));
+        assertEquals(1L, queries.update(2));
+        // the driver is only asked once per connection
+        assertEquals(1, count("executeLargeUpdate()"));
+        assertEquals(2, count("executeUpdate()"));
+    }
+
+    @Test
+    public void testBatchFallback() throws SQLException {
+        ((MockConnectionData) connection).setLargeUpdatesSupported(false);
+        queries.setBatchSize(2);
+        assertArrayEquals(new long[]{1, 2, 1}, queries.delete(Arrays.asList(1, 2, 3)));
+        assertEquals(1, count("executeLargeBatch()"));
+        assertEquals(2, count("executeBatch()"));
+    }
+
+    @Test
+    public void testDatabase() throws SQLException {
+        try (Connection databaseConnection = DriverManager.getConnection("jdbc:hsqldb:mem:largeupdatecount", "sa", "")) {
+            try (Statement statement = databaseConnection.createStatement()) {
+                statement.execute("create table large_update_test (value integer)");
+                statement.execute("insert into large_update_test values (1)");
+                statement.execute("insert into large_update_test values (1)");
+                statement.execute("insert into large_update_test values (2)");
+            }
+            DatabaseQueries databaseQueries = QueryObjectFactory.createQueryObject(DatabaseQueries.class);
+            databaseQueries.setConnection(databaseConnection);
+            assertEquals(3L, databaseQueries.updateAll(3));
+            databaseQueries.setBatchSize(10);
+            assertArrayEquals(new long[]{3, 0}, databaseQueries.delete(Arrays.asList(3, 4)));
+        }
+    }
+
+    private int count(String entry) {
+        return Collections.frequency(log, entry);
+    }
+
+    public interface LargeUpdateQueries extends BaseQuery {
+        @Update(sql = "update test set value = {%1}")
+        long update(int value) throws SQLException;
+
+        @Delete(sql = "delete from test where value = {%1}")
+        long[] delete(List<Integer> values) throws SQLException;
+
+        @Delete(sql = "delete from test where value = {%1}")
+        long[] delete(Iterator<Integer> values) throws SQLException;
+
+        @Update(sql = "update test set value = {%1}")
+        long updateAll(List<Integer> values) throws SQLException;
+    }
+
+    public interface DatabaseQueries extends BaseQuery {
+        @Update(sql = "update large_update_test set value = {%1}")
+        long updateAll(int value) throws SQLException;
+
+        @Delete(sql = "delete from large_update_test where value = {%1}")
+        long[] delete(List<Integer> values) throws SQLException;
+    }
+}
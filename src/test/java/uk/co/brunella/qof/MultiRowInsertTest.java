@@ -0,0 +1,203 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.exception.ValidationException;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MultiRowInsertTest {
+
+    private static final String SQL_1 = "insert into multi_row_test values ( ? ) ";
+    private static final String SQL_2 = "insert into multi_row_test values ( ? ),( ? ) ";
+    private static final String SQL_4 = "insert into multi_row_test values ( ? ),( ? ),( ? ),( ? ) ";
+
+    private Connection connection;
+    private MultiRowInsertQueries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(MultiRowInsertQueries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+    }
+
+    @Test
+    public void testInsertNoBatching() throws SQLException {
+        queries.setBatchSize(0);
+        int[] result = queries.insertInts(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+        int i = 0;
+        assertEquals(16, log.size());
+        assertEquals("prepareStatement(" + SQL_4 + ")", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("setInt(2,2)", log.get(i++));
+        assertEquals("setInt(3,3)", log.get(i++));
+        assertEquals("setInt(4,4)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("prepareStatement(" + SQL_2 + ")", log.get(i++));
+        assertEquals("setInt(1,5)", log.get(i++));
+        assertEquals("setInt(2,6)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("prepareStatement(" + SQL_1 + ")", log.get(i++));
+        assertEquals("setInt(1,7)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        // the mock statement always returns an update count of 1
+        assertArrayEquals(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO,
+                Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, 1}, result);
+    }
+
+    @Test
+    public void testInsertWithBatchSize() throws SQLException {
+        queries.setBatchSize(3);
+        queries.insertIntsNoResult(Arrays.asList(1, 2, 3, 4, 5));
+        int i = 0;
+        assertEquals(12, log.size());
+        assertEquals("prepareStatement(" + SQL_2 + ")", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("setInt(2,2)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        // the statement is reused for the same number of rows
+        assertEquals("setInt(1,3)", log.get(i++));
+        assertEquals("setInt(2,4)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("prepareStatement(" + SQL_1 + ")", log.get(i++));
+        assertEquals("setInt(1,5)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testInsertEmptyCollection() throws SQLException {
+        assertEquals(0, queries.insertInts(Collections.emptyList()).length);
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testInsertTwoCollections() throws SQLException {
+        queries.insertTwo(Arrays.asList(1, 2), Arrays.asList("a", "b"));
+        int i = 0;
+        assertEquals(7, log.size());
+        assertEquals("prepareStatement(insert into multi_row_test values ( ? ,'?', ? ),( ? ,'?', ? ) )", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("setString(2,a)", log.get(i++));
+        assertEquals("setInt(3,2)", log.get(i++));
+        assertEquals("setString(4,b)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testInsertFails() throws SQLException {
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.insertInts(Arrays.asList(1, 2));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("execute failed", e.getMessage());
+        }
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testInsertDatabase() throws SQLException {
+        try (Connection databaseConnection = DriverManager.getConnection("jdbc:hsqldb:mem:multirowinsert", "sa", "")) {
+            try (Statement statement = databaseConnection.createStatement()) {
+                statement.execute("create table multi_row_person (id integer, name varchar(40))");
+            }
+            DatabaseQueries databaseQueries = QueryObjectFactory.createQueryObject(DatabaseQueries.class);
+            databaseQueries.setConnection(databaseConnection);
+            List<TestBean> beans = new ArrayList<>();
+            for (int i = 0; i < 11; i++) {
+                TestBean bean = new TestBean();
+                bean.setId(i);
+                bean.setName("name" + i);
+                beans.add(bean);
+            }
+            int[] result = databaseQueries.insertPersons(beans);
+            assertEquals(11, result.length);
+            for (int count : result) {
+                assertEquals(1, count);
+            }
+            try (Statement statement = databaseConnection.createStatement();
+                 ResultSet rs = statement.executeQuery("select id, name from multi_row_person order by id")) {
+                for (int i = 0; i < 11; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                    assertEquals("name" + i, rs.getString(2));
+                }
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(MultiRowUpdateQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Only insert methods with collection parameters can use multi-row inserts", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testNoValuesClause() {
+        try {
+            QueryObjectFactory.createQueryObject(MultiRowSelectInsertQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ValidationException);
+            assertTrue(e.getCause().getMessage().startsWith("Insert statement has no values clause"));
+        }
+    }
+
+    public interface MultiRowInsertQueries extends BaseQuery {
+        @MultiRowInsert(maxRows = 4)
+        @Insert(sql = "insert into multi_row_test values ({%1})")
+        int[] insertInts(List<Integer> list) throws SQLException;
+
+        @MultiRowInsert(maxRows = 6)
+        @Insert(sql = "insert into multi_row_test values ({%1})")
+        void insertIntsNoResult(List<Integer> list) throws SQLException;
+
+        @MultiRowInsert
+        @Insert(sql = "insert into multi_row_test values ({%1},'?',{%2})")
+        void insertTwo(List<Integer> listInt, List<String> listString) throws SQLException;
+    }
+
+    public interface DatabaseQueries extends BaseQuery {
+        @MultiRowInsert(maxRows = 4)
+        @Insert(sql = "insert into multi_row_person (id, name) values ({%1.id}, {%1.name})")
+        int[] insertPersons(List<TestBean> beans) throws SQLException;
+    }
+
+    public interface MultiRowUpdateQueries extends BaseQuery {
+        @MultiRowInsert
+        @Update(sql = "update multi_row_test set value = {%1}")
+        void update(List<Integer> list) throws SQLException;
+    }
+
+    public interface MultiRowSelectInsertQueries extends BaseQuery {
+        @MultiRowInsert
+        @Insert(sql = "insert into multi_row_test select value from other where value = {%1}")
+        void insert(List<Integer> list) throws SQLException;
+    }
+}
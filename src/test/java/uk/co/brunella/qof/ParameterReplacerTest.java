@@ -43,6 +43,13 @@ public class ParameterReplacerTest {
         assertEquals("select * from test where a = ? and b in (?,?,?) /* Comment * /", ParameterReplacer.replace(sql, 2, 3, ","));
     }
 
+    @Test
+    public void testReplaceParameter() {
+        String sql = "select /* ? */ * from test where a = ? and b in (?)";
+        assertEquals("select /* ? */ * from test where a = ? and b in (UNNEST(?))", ParameterReplacer.replaceParameter(sql, 2, "UNNEST(?)"));
+        assertEquals(sql, ParameterReplacer.replaceParameter(sql, 3, "UNNEST(?)"));
+    }
+
     @Test
     public void testConstructor() {
         ParameterReplacer parameterReplacer = new ParameterReplacer();
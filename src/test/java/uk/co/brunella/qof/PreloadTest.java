@@ -0,0 +1,83 @@
+package uk.co.brunella.qof;
+
+import org.junit.Test;
+import uk.co.brunella.qof.exception.ValidationException;
+import uk.co.brunella.qof.preload.PreloadQueries;
+import uk.co.brunella.qof.preload.sub.AbstractPreloadQueries;
+import uk.co.brunella.qof.util.ClassGenerationCache;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class PreloadTest {
+
+    @Test
+    public void testPreload() {
+        PreloadReport report = QueryObjectFactory.preload(Queries1.class, Queries2.class, Queries3.class);
+        assertEquals(3, report.getNumberOfClasses());
+        assertEquals(Arrays.asList(Queries1.class, Queries2.class, Queries3.class),
+                Arrays.asList(report.getGenerationTimes().keySet().toArray()));
+        for (Long time : report.getGenerationTimes().values()) {
+            assertTrue(time > 0);
+        }
+        assertTrue(report.getTotalTime() > 0);
+        assertTrue(report.toString().startsWith("Preloaded 3 query definitions in "));
+
+        // classes are cached
+        long hits = ClassGenerationCache.getHitCount();
+        assertNotNull(QueryObjectFactory.createQueryObject(Queries1.class));
+        assertTrue(ClassGenerationCache.getHitCount() > hits);
+    }
+
+    @Test
+    public void testPreloadFailsFast() {
+        try {
+            QueryObjectFactory.preload(Queries4.class, InvalidQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Could not preload query definition " + InvalidQueries.class.getName(), e.getMessage());
+            assertTrue(e.getCause() instanceof ValidationException);
+        }
+    }
+
+    @Test
+    public void testPreloadPackage() {
+        PreloadReport report = QueryObjectFactory.preload("uk.co.brunella.qof.preload");
+        assertEquals(new HashSet<>(Arrays.asList(PreloadQueries.class, AbstractPreloadQueries.class)),
+                report.getGenerationTimes().keySet());
+        assertNotNull(QueryObjectFactory.createQueryObject(PreloadQueries.class));
+    }
+
+    @Test
+    public void testPreloadEmptyPackage() {
+        assertEquals(0, QueryObjectFactory.preload("uk.co.brunella.qof.doesnotexist").getNumberOfClasses());
+    }
+
+    public interface Queries1 extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        int select() throws SQLException;
+    }
+
+    public interface Queries2 extends BaseQuery {
+        @Update(sql = "update test set id = {%1}")
+        int update(int id) throws SQLException;
+    }
+
+    public static abstract class Queries3 implements BaseQuery {
+        @Query(sql = "select name {%%} from test where id = {%1}")
+        public abstract String select(int id) throws SQLException;
+    }
+
+    public interface Queries4 extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        int select() throws SQLException;
+    }
+
+    public interface InvalidQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test where id = {%2}")
+        int select(int id) throws SQLException;
+    }
+}
@@ -0,0 +1,174 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveCollectionQueryTest {
+
+    private Connection connection;
+    private Queries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+        queries.setFetchSize(99);
+    }
+
+    private void setIds(int... ids) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int id : ids) {
+            Map<String, Object> data = new HashMap<>();
+            results.add(data);
+            data.put("id", id);
+            data.put("num", (long) id * 1000000000L);
+            data.put("value", id / 2.0);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    @Test
+    public void testIntArray() throws SQLException {
+        setIds(11, 12, 13);
+        assertArrayEquals(new int[]{11, 12, 13}, queries.selectIds());
+
+        int i = 0;
+        assertEquals(12, log.size());
+        assertEquals("prepareStatement(select id from test )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testEmptyIntArray() throws SQLException {
+        setIds();
+        assertArrayEquals(new int[0], queries.selectIds());
+    }
+
+    @Test
+    public void testLongArray() throws SQLException {
+        setIds(1, 2);
+        assertArrayEquals(new long[]{1000000000L, 2000000000L}, queries.selectNums());
+    }
+
+    @Test
+    public void testDoubleArray() throws SQLException {
+        setIds(1, 3);
+        assertArrayEquals(new double[]{0.5, 1.5}, queries.selectValues(), 0.0);
+    }
+
+    @Test
+    public void testIntList() throws SQLException {
+        setIds(11, 12, 13);
+        IntList ids = queries.selectIdList();
+        assertEquals(3, ids.size());
+        assertEquals(11, ids.get(0));
+        assertEquals(13, ids.get(2));
+        assertEquals(36, ids.stream().sum());
+    }
+
+    @Test
+    public void testLongListWithInitialCapacity() throws SQLException {
+        setIds(1, 2, 3);
+        LongList nums = queries.selectNumList();
+        assertEquals(3, nums.size());
+        assertArrayEquals(new long[]{1000000000L, 2000000000L, 3000000000L}, nums.toArray());
+    }
+
+    @Test
+    public void testDoubleListWithParameter() throws SQLException {
+        setIds(1, 2);
+        DoubleList values = queries.selectValueList(5);
+        assertEquals(2, values.size());
+        assertEquals(1.0, values.get(1), 0.0);
+        assertEquals("setInt(1,5)", log.get(2));
+    }
+
+    @Test
+    public void testCollectionClassNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(CollectionClassQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Cannot assign java.util.ArrayList to return type [I", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMultipleColumnsNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(MultipleColumnQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Return type long[] requires a single column result mapping", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCallNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(CallQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Return type [I is not allowed for call statements", e.getCause().getMessage());
+        }
+    }
+
+    public interface Queries extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        int[] selectIds() throws SQLException;
+
+        @Query(sql = "select num {%%} from test")
+        long[] selectNums() throws SQLException;
+
+        @Query(sql = "select value {%%} from test")
+        double[] selectValues() throws SQLException;
+
+        @Query(sql = "select id {%%} from test")
+        IntList selectIdList() throws SQLException;
+
+        @Query(sql = "select num {%%} from test", collectionInitialCapacity = 2)
+        LongList selectNumList() throws SQLException;
+
+        @Query(sql = "select value {%%} from test where id > {%1}")
+        DoubleList selectValueList(int id) throws SQLException;
+    }
+
+    public interface CollectionClassQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test", collectionClass = java.util.ArrayList.class)
+        int[] selectIds() throws SQLException;
+    }
+
+    public interface MultipleColumnQueries extends BaseQuery {
+        @Query(sql = "select id {%%}, num {%%} from test")
+        long[] selectNums() throws SQLException;
+    }
+
+    public interface CallQueries extends BaseQuery {
+        @Call(sql = "{ %% = call test() }")
+        int[] call() throws SQLException;
+    }
+}
@@ -0,0 +1,340 @@
+package uk.co.brunella.qof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.mapping.QueryType;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryListenerTest {
+
+    // generated classes keep the listener they were generated with
+    private static final RecordingListener listener = new RecordingListener();
+
+    private Connection connection;
+
+    @Before
+    public void setUp() {
+        connection = MockConnectionFactory.getConnection();
+        listener.clear();
+        QueryObjectFactory.setQueryListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        QueryObjectFactory.setQueryListener(null);
+    }
+
+    @Test
+    public void testSelectSingle() throws SQLException {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        setResultSetData(55);
+        assertEquals(55, queries.selectValue(1));
+        assertEquals(Arrays.asList(
+                "beforePrepare(selectValue)",
+                "afterExecute(selectValue,ctx1)",
+                "rowsMapped(selectValue,ctx1,1)"), listener.events);
+    }
+
+    @Test
+    public void testSelectSingleNoRow() throws SQLException {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        setResultSetData();
+        assertNull(queries.selectInteger(1));
+        assertEquals(Arrays.asList(
+                "beforePrepare(selectInteger)",
+                "afterExecute(selectInteger,ctx1)",
+                "rowsMapped(selectInteger,ctx1,0)"), listener.events);
+    }
+
+    @Test
+    public void testSelectList() throws SQLException {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        setResultSetData(1, 2, 3);
+        assertEquals(Arrays.asList(1, 2, 3), queries.selectValues(1));
+        assertEquals(Arrays.asList(
+                "beforePrepare(selectValues)",
+                "afterExecute(selectValues,ctx1)",
+                "rowsMapped(selectValues,ctx1,3)"), listener.events);
+    }
+
+    @Test
+    public void testSelectFails() {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.selectValues(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(Arrays.asList(
+                    "beforePrepare(selectValues)",
+                    "failure(selectValues,ctx1,executeQuery failed)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testInsert() throws SQLException {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        queries.insert(1);
+        assertEquals(Arrays.asList(
+                "beforePrepare(insert)",
+                "afterExecute(insert,ctx1)"), listener.events);
+    }
+
+    @Test
+    public void testInsertBatches() throws SQLException {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        queries.setBatchSize(2);
+        queries.insertList(Arrays.asList(1, 2, 3, 4, 5));
+        assertEquals(Arrays.asList(
+                "beforePrepare(insertList)",
+                "batchFlushed(insertList,ctx1,2)",
+                "batchFlushed(insertList,ctx1,2)",
+                "batchFlushed(insertList,ctx1,1)",
+                "afterExecute(insertList,ctx1)"), listener.events);
+    }
+
+    @Test
+    public void testInsertEmptyList() throws SQLException {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        queries.insertList(Collections.<Integer>emptyList());
+        assertTrue(listener.events.isEmpty());
+    }
+
+    @Test
+    public void testInsertFails() {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setPrepareFails(true);
+        try {
+            queries.insert(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(Arrays.asList(
+                    "beforePrepare(insert)",
+                    "failure(insert,ctx1,prepareStatement failed)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testInsertCloseFails() {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setCloseFails(true);
+        try {
+            queries.insert(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("close failed", e.getMessage());
+            // the invocation completed with afterExecute
+            assertEquals(Arrays.asList(
+                    "beforePrepare(insert)",
+                    "afterExecute(insert,ctx1)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testInsertListCloseFails() {
+        InsertQueries queries = QueryObjectFactory.createQueryObject(InsertQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setCloseFails(true);
+        try {
+            queries.insertList(Arrays.asList(1, 2));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(Arrays.asList(
+                    "beforePrepare(insertList)",
+                    "batchFlushed(insertList,ctx1,2)",
+                    "afterExecute(insertList,ctx1)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testCallCloseFails() {
+        CallQueries queries = QueryObjectFactory.createQueryObject(CallQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setCloseFails(true);
+        try {
+            queries.call(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(Arrays.asList(
+                    "beforePrepare(call)",
+                    "afterExecute(call,ctx1)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testSelectCloseFails() {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        setResultSetData(1, 2);
+        ((MockConnectionData) connection).setCloseFails(true);
+        try {
+            queries.selectValues(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            // select methods complete with rowsMapped after the statement is closed
+            assertEquals(Arrays.asList(
+                    "beforePrepare(selectValues)",
+                    "afterExecute(selectValues,ctx1)",
+                    "failure(selectValues,ctx1,close failed)"), listener.events);
+        }
+    }
+
+    @Test
+    public void testCall() throws SQLException {
+        CallQueries queries = QueryObjectFactory.createQueryObject(CallQueries.class);
+        queries.setConnection(connection);
+        queries.call(1);
+        assertEquals(Arrays.asList(
+                "beforePrepare(call)",
+                "afterExecute(call,ctx1)"), listener.events);
+    }
+
+    @Test
+    public void testQueryMethod() throws SQLException {
+        SelectQueries queries = QueryObjectFactory.createQueryObject(SelectQueries.class);
+        queries.setConnection(connection);
+        setResultSetData(55);
+        queries.selectValue(1);
+        QueryMethod method = listener.methods.get(0);
+        assertEquals(SelectQueries.class, method.getQueryDefinitionClass());
+        assertEquals("selectValue", method.getMethodName());
+        assertEquals("(I)I", method.getMethodDescriptor());
+        assertEquals("select value from test where id = ? ", method.getSql());
+        assertEquals(QueryType.QUERY, method.getQueryType());
+        assertEquals(SelectQueries.class.getName() + ".selectValue(int)", method.toString());
+        setResultSetData(55);
+        queries.selectValue(1);
+        assertSame(method, listener.methods.get(1));
+    }
+
+    @Test
+    public void testNoListener() throws Exception {
+        QueryObjectFactory.setQueryListener(null);
+        NoListenerQueries queries = QueryObjectFactory.createQueryObject(NoListenerQueries.class);
+        queries.setConnection(connection);
+        queries.insert(1);
+        assertTrue(listener.events.isEmpty());
+        try {
+            queries.getClass().getField("$queryListener");
+            fail("Should throw exception");
+        } catch (NoSuchFieldException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testListenerIsOnlyUsedForNewClasses() throws SQLException {
+        QueryObjectFactory.setQueryListener(null);
+        LateListenerQueries queries = QueryObjectFactory.createQueryObject(LateListenerQueries.class);
+        QueryObjectFactory.setQueryListener(listener);
+        queries.setConnection(connection);
+        queries.insert(1);
+        assertTrue(listener.events.isEmpty());
+    }
+
+    private void setResultSetData(Object... values) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("value", value);
+            results.add(data);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    private static class RecordingListener implements QueryListener {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<QueryMethod> methods = new ArrayList<>();
+        private int contexts;
+
+        private void clear() {
+            events.clear();
+            methods.clear();
+            contexts = 0;
+        }
+
+        @Override
+        public Object beforePrepare(QueryMethod method) {
+            events.add("beforePrepare(" + method.getMethodName() + ")");
+            methods.add(method);
+            return "ctx" + ++contexts;
+        }
+
+        @Override
+        public void afterExecute(QueryMethod method, Object context) {
+            events.add("afterExecute(" + method.getMethodName() + "," + context + ")");
+        }
+
+        @Override
+        public void rowsMapped(QueryMethod method, Object context, int rowCount) {
+            events.add("rowsMapped(" + method.getMethodName() + "," + context + "," + rowCount + ")");
+        }
+
+        @Override
+        public void batchFlushed(QueryMethod method, Object context, int batchSize) {
+            events.add("batchFlushed(" + method.getMethodName() + "," + context + "," + batchSize + ")");
+        }
+
+        @Override
+        public void failure(QueryMethod method, Object context, Throwable exception) {
+            events.add("failure(" + method.getMethodName() + "," + context + "," + exception.getMessage() + ")");
+        }
+    }
+
+    public interface SelectQueries extends BaseQuery {
+        @Query(sql = "select value {%%} from test where id = {%1}")
+        int selectValue(int id) throws SQLException;
+
+        @Query(sql = "select value {%%} from test where id = {%1}")
+        Integer selectInteger(int id) throws SQLException;
+
+        @Query(sql = "select value {%%} from test where id = {%1}")
+        List<Integer> selectValues(int id) throws SQLException;
+    }
+
+    public interface InsertQueries extends BaseQuery {
+        @Insert(sql = "insert into test values ({%1})")
+        void insert(int value) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1})")
+        void insertList(List<Integer> values) throws SQLException;
+    }
+
+    public interface CallQueries extends BaseQuery {
+        @Call(sql = "{ call test({%1}) }")
+        void call(int value) throws SQLException;
+    }
+
+    public interface NoListenerQueries extends BaseQuery {
+        @Insert(sql = "insert into test values ({%1})")
+        void insert(int value) throws SQLException;
+    }
+
+    public interface LateListenerQueries extends BaseQuery {
+        @Insert(sql = "insert into test values ({%1})")
+        void insert(int value) throws SQLException;
+    }
+}
@@ -0,0 +1,135 @@
+package uk.co.brunella.qof;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.co.brunella.qof.session.SessionPolicy;
+import uk.co.brunella.qof.session.SystemException;
+import uk.co.brunella.qof.session.UseDefaultSessionRunner;
+import uk.co.brunella.qof.session.UseSessionContext;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryObjectPregeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerateAndLoad() throws Exception {
+        File outputDirectory = folder.getRoot();
+        List<String> classNames = QueryObjectPregenerator.generate(outputDirectory, Queries.class, SessionQueries.class);
+        assertTrue(classNames.contains(Queries.class.getName() + "$Impl"));
+        assertTrue(classNames.contains(Queries.class.getName() + "$Impl$InstanceFactory"));
+        assertTrue(classNames.contains(SessionQueries.class.getName() + "$Impl$SubmissionRunner"));
+        assertTrue(classNames.contains(SessionQueries.class.getName() + "$Impl$SubmissionRunner$InstanceFactory"));
+        for (String className : classNames) {
+            assertTrue(className, new File(outputDirectory, className.replace('.', File.separatorChar) + ".class").exists());
+        }
+
+        // load the query objects in a new class loader that contains the pregenerated classes
+        ClassLoader classLoader = createClassLoader(outputDirectory);
+        Class<?> factoryClass = classLoader.loadClass(QueryObjectFactory.class.getName());
+        Class<?> cacheClass = classLoader.loadClass("uk.co.brunella.qof.util.ClassGenerationCache");
+        URL outputLocation = outputDirectory.toURI().toURL();
+
+        Object queries = factoryClass.getMethod("createQueryObject", Class.class)
+                .invoke(null, classLoader.loadClass(Queries.class.getName()));
+        assertEquals(Queries.class.getName() + "$Impl", queries.getClass().getName());
+        assertEquals(outputLocation, queries.getClass().getProtectionDomain().getCodeSource().getLocation());
+
+        Object sessionQueries = factoryClass.getMethod("createQueryObject", Class.class)
+                .invoke(null, classLoader.loadClass(SessionQueries.class.getName()));
+        assertEquals(SessionQueries.class.getName() + "$Impl$SubmissionRunner", sessionQueries.getClass().getName());
+        assertEquals(outputLocation, sessionQueries.getClass().getProtectionDomain().getCodeSource().getLocation());
+
+        // query object, enhanced and instance factory classes were loaded instead of generated
+        assertEquals(5L, cacheClass.getMethod("getPregeneratedCount").invoke(null));
+    }
+
+    @Test
+    public void testDialectMismatch() throws Exception {
+        File outputDirectory = folder.getRoot();
+        QueryObjectPregenerator.generate(outputDirectory, DialectQueries.class);
+
+        // the classes were generated with the default dialect
+        ClassLoader classLoader = createClassLoader(outputDirectory);
+        Class<?> factoryClass = classLoader.loadClass(QueryObjectFactory.class.getName());
+        Class<?> dialectClass = classLoader.loadClass("uk.co.brunella.qof.dialect.SQLDialect");
+        Method setSQLDialect = factoryClass.getDeclaredMethod("setSQLDialect", ClassLoader.class, dialectClass);
+        setSQLDialect.setAccessible(true);
+        setSQLDialect.invoke(null, classLoader,
+                classLoader.loadClass("uk.co.brunella.qof.dialect.OracleDialect").newInstance());
+
+        try {
+            factoryClass.getMethod("createQueryObject", Class.class)
+                    .invoke(null, classLoader.loadClass(DialectQueries.class.getName()));
+            fail("Should throw exception");
+        } catch (InvocationTargetException e) {
+            assertEquals("Pregenerated class " + DialectQueries.class.getName() + "$Impl does not match query definition "
+                    + DialectQueries.class.getName() + ", SQL dialect or customizer", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testAlreadyGenerated() throws Exception {
+        QueryObjectFactory.createQueryObject(GeneratedQueries.class);
+        try {
+            QueryObjectPregenerator.generate(folder.getRoot(), GeneratedQueries.class);
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Query object class for " + GeneratedQueries.class.getName() + " was already generated",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMainWithoutArguments() throws Exception {
+        try {
+            QueryObjectPregenerator.main(new String[]{folder.getRoot().getPath()});
+            fail("Should throw exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Usage: QueryObjectPregenerator"));
+        }
+    }
+
+    private ClassLoader createClassLoader(File outputDirectory) throws Exception {
+        List<URL> urls = new ArrayList<>();
+        urls.add(outputDirectory.toURI().toURL());
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    public interface Queries extends BaseQuery {
+        @Query(sql = "select id {%%} from test where name = {%1}")
+        int select(String name) throws SQLException;
+    }
+
+    @UseSessionContext(name = "PREGENERATED")
+    public interface SessionQueries extends BaseQuery {
+        @Query(sql = "select count(*) num {int%%} from test")
+        @UseDefaultSessionRunner(sessionPolicy = SessionPolicy.CAN_JOIN_EXISTING_SESSION)
+        int count() throws SystemException;
+    }
+
+    public interface DialectQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test where name = {%1}")
+        int select(String name) throws SQLException;
+    }
+
+    public interface GeneratedQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test")
+        int select() throws SQLException;
+    }
+}
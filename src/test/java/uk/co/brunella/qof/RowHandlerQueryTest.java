@@ -0,0 +1,191 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class RowHandlerQueryTest {
+
+    private Connection connection;
+    private Queries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+        queries.setFetchSize(99);
+    }
+
+    private void setIds(int... ids) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int id : ids) {
+            Map<String, Object> data = new HashMap<>();
+            results.add(data);
+            data.put("id", id);
+            data.put("num", id * 2);
+            data.put("name", "name" + id);
+            data.put("date", new java.sql.Date(0));
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    @Test
+    public void testRowHandler() throws SQLException {
+        setIds(11, 12);
+        final List<TestBean> beans = new ArrayList<>();
+        int count = queries.select(11, new RowHandler<TestBean>() {
+            public void handleRow(TestBean row) {
+                beans.add(row);
+            }
+        });
+        assertEquals(2, count);
+        assertEquals(2, beans.size());
+        assertNotSame(beans.get(0), beans.get(1));
+        assertEquals(11, beans.get(0).getId());
+        assertEquals(22, beans.get(0).getNum().intValue());
+        assertEquals("name11", beans.get(0).getName());
+        assertEquals(12, beans.get(1).getId());
+
+        int i = 0;
+        assertEquals(19, log.size());
+        assertEquals("prepareStatement(select id , num , name , date from test where id = ? )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("setInt(1,11)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("getInt(num)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+        assertEquals("getString(name)", log.get(i++));
+        assertEquals("getDate(date)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("getInt(num)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+        assertEquals("getString(name)", log.get(i++));
+        assertEquals("getDate(date)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testRowHandlerNoResult() throws SQLException {
+        setIds();
+        final List<TestBean> beans = new ArrayList<>();
+        assertEquals(0, queries.select(11, new RowHandler<TestBean>() {
+            public void handleRow(TestBean row) {
+                beans.add(row);
+            }
+        }));
+        assertEquals(0, beans.size());
+        assertEquals(1, queries.ungetConnectionCalled);
+    }
+
+    @Test
+    public void testRowHandlerThrowsException() {
+        setIds(11, 12);
+        try {
+            queries.select(11, new RowHandler<TestBean>() {
+                public void handleRow(TestBean row) throws SQLException {
+                    throw new SQLException("abort");
+                }
+            });
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("abort", e.getMessage());
+        }
+        assertEquals(1, queries.ungetConnectionCalled);
+        assertEquals("close()", log.get(log.size() - 2));
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testConsumerAtomic() throws SQLException {
+        setIds(11, 12, 13);
+        final List<Integer> ids = new ArrayList<>();
+        queries.selectIds(new Consumer<Integer>() {
+            public void accept(Integer id) {
+                ids.add(id);
+            }
+        });
+        assertEquals(Arrays.asList(11, 12, 13), ids);
+        assertEquals(1, queries.ungetConnectionCalled);
+    }
+
+    @Test
+    public void testReuseResultObject() throws SQLException {
+        setIds(11, 12, 13);
+        final List<TestBean> beans = new ArrayList<>();
+        final List<Integer> ids = new ArrayList<>();
+        queries.selectReuse(new Consumer<TestBean>() {
+            public void accept(TestBean bean) {
+                beans.add(bean);
+                ids.add(bean.getId());
+            }
+        });
+        assertEquals(Arrays.asList(11, 12, 13), ids);
+        assertSame(beans.get(0), beans.get(1));
+        assertSame(beans.get(0), beans.get(2));
+    }
+
+    @Test
+    public void testReuseResultObjectNotAllowedWithCollection() {
+        try {
+            QueryObjectFactory.createQueryObject(ReuseCollectionQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("reuseResultObject is only allowed for methods with a row handler parameter", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidReturnType() {
+        try {
+            QueryObjectFactory.createQueryObject(ReturnTypeQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Only void or int are allowed as return type for methods with a uk.co.brunella.qof.RowHandler parameter",
+                    e.getCause().getMessage());
+        }
+    }
+
+    public static abstract class Queries implements BaseQuery {
+
+        public int ungetConnectionCalled = 0;
+
+        @Query(sql = "select id {%%.id}, num {%%.num}, name {%%.name}, date {%%.date} from test where id = {%1}")
+        public abstract int select(int id, RowHandler<TestBean> handler) throws SQLException;
+
+        @Query(sql = "select id {%%} from test")
+        public abstract void selectIds(Consumer<Integer> consumer) throws SQLException;
+
+        @Query(sql = "select id {%%.id}, num {%%.num}, name {%%.name}, date {%%.date} from test", reuseResultObject = true)
+        public abstract void selectReuse(Consumer<TestBean> consumer) throws SQLException;
+
+        public void ungetConnection(Connection connection) {
+            ungetConnectionCalled++;
+        }
+    }
+
+    public interface ReuseCollectionQueries extends BaseQuery {
+        @Query(sql = "select id {%%.id}, name {%%.name} from test", reuseResultObject = true)
+        List<TestBean> select() throws SQLException;
+    }
+
+    public interface ReturnTypeQueries extends BaseQuery {
+        @Query(sql = "select id {%%.id}, name {%%.name} from test")
+        String select(RowHandler<TestBean> handler) throws SQLException;
+    }
+}
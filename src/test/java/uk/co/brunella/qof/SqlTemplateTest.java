@@ -0,0 +1,64 @@
+package uk.co.brunella.qof;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SqlTemplateTest {
+
+    @Test
+    public void testExpand() {
+        SqlTemplate template = new SqlTemplate("select * from test where a = ? and b in (?)", new int[]{2}, new String[]{","});
+        assertEquals("select * from test where a = ? and b in (?,?,?)", template.expand(3));
+        assertEquals("select * from test where a = ? and b in (?)", template.expand(1));
+        assertEquals("select * from test where a = ? and b in (?)", template.expand(0));
+    }
+
+    @Test
+    public void testExpandCached() {
+        SqlTemplate template = new SqlTemplate("select * from test where b in (?)", new int[]{1}, new String[]{","});
+        assertSame(template.expand(5), template.expand(5));
+        assertEquals(ParameterReplacer.replace(template.getSql(), 1, 100, ","), template.expand(100));
+    }
+
+    @Test
+    public void testExpandWithSeparator() {
+        SqlTemplate template = new SqlTemplate("select * from test where a = ? and (b like ?)", new int[]{2}, new String[]{" or b like "});
+        assertEquals("select * from test where a = ? and (b like ? or b like ? or b like ?)", template.expand(3));
+    }
+
+    @Test
+    public void testExpandMultiple() {
+        String sql = "select * from test where a in (?) and b = ? and c in (?) and d = ?";
+        SqlTemplate template = new SqlTemplate(sql, new int[]{1, 3}, new String[]{",", ","});
+        String expected = ParameterReplacer.replace(ParameterReplacer.replace(sql, 3, 4, ","), 1, 2, ",");
+        assertEquals(expected, template.expand(new int[]{2, 4}));
+        assertSame(template.expand(new int[]{2, 4}), template.expand(new int[]{2, 4}));
+        assertEquals("select * from test where a in (?,?,?) and b = ? and c in (?) and d = ?", template.expand(new int[]{3, 1}));
+    }
+
+    @Test
+    public void testExpandWithComment() {
+        SqlTemplate template = new SqlTemplate("select /* ? */ * from test where a = ? and b in (?)", new int[]{2}, new String[]{","});
+        assertEquals("select /* ? */ * from test where a = ? and b in (?,?,?)", template.expand(3));
+    }
+
+    @Test
+    public void testExpandWithCommentNotClosed() {
+        SqlTemplate template = new SqlTemplate("select /* Comment * / * from test where a = ? and b in (?)", new int[]{2}, new String[]{","});
+        assertEquals("select /* Comment * / * from test where a = ? and b in (?)", template.expand(3));
+    }
+
+    @Test
+    public void testExpandWithCommentAtEnd() {
+        SqlTemplate template = new SqlTemplate("select * from test where a = ? and b in (?) /* Comment * /", new int[]{2}, new String[]{","});
+        assertEquals("select * from test where a = ? and b in (?,?,?) /* Comment * /", template.expand(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfLengths() {
+        SqlTemplate template = new SqlTemplate("select * from test where a in (?) and b in (?)", new int[]{1, 2}, new String[]{",", ","});
+        template.expand(new int[]{1});
+    }
+}
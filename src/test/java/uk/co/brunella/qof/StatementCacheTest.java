@@ -0,0 +1,209 @@
+package uk.co.brunella.qof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.customizer.StatementCacheCustomizer;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StatementCacheTest {
+
+    private Connection connection;
+    private StatementCache statementCache;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        statementCache = new StatementCache(2);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+    }
+
+    @After
+    public void tearDown() {
+        QueryObjectFactory.setDefaultCustomizer();
+    }
+
+    @Test
+    public void testHitAndMiss() throws SQLException {
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        statementCache.releaseStatement(ps1);
+        PreparedStatement ps2 = statementCache.prepareStatement(connection, "select 1");
+        assertSame(ps1, ps2);
+        assertEquals(1, statementCache.getMisses());
+        assertEquals(1, statementCache.getHits());
+        assertEquals(0, statementCache.size());
+        statementCache.releaseStatement(ps2);
+        assertEquals(1, statementCache.size());
+        assertFalse(ps2.isClosed());
+    }
+
+    @Test
+    public void testGeneratedKeys() throws SQLException {
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "insert into test values (1)");
+        statementCache.releaseStatement(ps1);
+        PreparedStatement ps2 = statementCache.prepareStatementReturningGeneratedKeys(connection, "insert into test values (1)");
+        assertNotSame(ps1, ps2);
+        statementCache.releaseStatement(ps2);
+        assertSame(ps2, statementCache.prepareStatementReturningGeneratedKeys(connection, "insert into test values (1)"));
+        assertEquals(2, statementCache.getMisses());
+        assertEquals(1, statementCache.getHits());
+    }
+
+    @Test
+    public void testDifferentConnections() throws SQLException {
+        Connection otherConnection = MockConnectionFactory.getConnection();
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        statementCache.releaseStatement(ps1);
+        PreparedStatement ps2 = statementCache.prepareStatement(otherConnection, "select 1");
+        assertNotSame(ps1, ps2);
+        assertEquals(2, statementCache.getMisses());
+        assertEquals(0, statementCache.getHits());
+    }
+
+    @Test
+    public void testEviction() throws SQLException {
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        PreparedStatement ps2 = statementCache.prepareStatement(connection, "select 2");
+        PreparedStatement ps3 = statementCache.prepareStatement(connection, "select 3");
+        statementCache.releaseStatement(ps1);
+        statementCache.releaseStatement(ps2);
+        statementCache.releaseStatement(ps3);
+        assertEquals(2, statementCache.size());
+        assertEquals(1, statementCache.getEvictions());
+        assertTrue(ps1.isClosed());
+        assertFalse(ps2.isClosed());
+        assertFalse(ps3.isClosed());
+    }
+
+    @Test
+    public void testDuplicateStatementIsClosed() throws SQLException {
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        PreparedStatement ps2 = statementCache.prepareStatement(connection, "select 1");
+        statementCache.releaseStatement(ps1);
+        statementCache.releaseStatement(ps2);
+        assertEquals(1, statementCache.size());
+        assertFalse(ps1.isClosed());
+        assertTrue(ps2.isClosed());
+    }
+
+    @Test
+    public void testClosedStatementIsNotReused() throws SQLException {
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        statementCache.releaseStatement(ps1);
+        ps1.close();
+        PreparedStatement ps2 = statementCache.prepareStatement(connection, "select 1");
+        assertNotSame(ps1, ps2);
+        assertEquals(2, statementCache.getMisses());
+    }
+
+    @Test
+    public void testCloseStatements() throws SQLException {
+        Connection otherConnection = MockConnectionFactory.getConnection();
+        PreparedStatement ps1 = statementCache.prepareStatement(connection, "select 1");
+        PreparedStatement ps2 = statementCache.prepareStatement(otherConnection, "select 1");
+        statementCache.releaseStatement(ps1);
+        statementCache.releaseStatement(ps2);
+        statementCache.closeStatements(connection);
+        assertEquals(1, statementCache.size());
+        assertTrue(ps1.isClosed());
+        assertFalse(ps2.isClosed());
+        statementCache.clear();
+        assertEquals(0, statementCache.size());
+        assertTrue(ps2.isClosed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new StatementCache(0);
+    }
+
+    @Test
+    public void testQueryObject() throws SQLException {
+        QueryObjectFactory.setCustomizer(new StatementCacheCustomizer(statementCache));
+        CachedQueries queries = QueryObjectFactory.createQueryObject(CachedQueries.class);
+        queries.setConnection(connection);
+        setIds(11);
+        assertEquals(11, queries.select(11).intValue());
+        setIds(12);
+        assertEquals(12, queries.select(12).intValue());
+        assertEquals(1, queries.update(12));
+        assertEquals(1, queries.update(13));
+
+        // the log is cleared by setIds, the second select reuses the cached statement
+        int i = 0;
+        assertEquals(15, log.size());
+        assertEquals("isClosed()", log.get(i++));
+        assertEquals("setFetchSize(2)", log.get(i++));
+        assertEquals("setInt(1,12)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("prepareStatement(update test set num = 1 where id = ? )", log.get(i++));
+        assertEquals("setInt(1,12)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("isClosed()", log.get(i++));
+        assertEquals("setInt(1,13)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+
+        assertEquals(2, statementCache.getMisses());
+        assertEquals(2, statementCache.getHits());
+        assertEquals(2, statementCache.size());
+        statementCache.closeStatements(connection);
+        assertEquals(0, statementCache.size());
+    }
+
+    @Test
+    public void testQueryObjectExecuteFails() throws SQLException {
+        QueryObjectFactory.setCustomizer(new StatementCacheCustomizer(statementCache));
+        FailingQueries queries = QueryObjectFactory.createQueryObject(FailingQueries.class);
+        queries.setConnection(connection);
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.update(1);
+            fail("exception expected");
+        } catch (SQLException e) {
+            assertEquals("execute failed", e.getMessage());
+        }
+        assertEquals(0, statementCache.size());
+        assertEquals("close()", log.get(log.size() - 1));
+        ((MockConnectionData) connection).setExecuteFails(false);
+        queries.update(1);
+        assertEquals(2, statementCache.getMisses());
+        assertEquals(1, statementCache.size());
+    }
+
+    private void setIds(int... ids) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int id : ids) {
+            Map<String, Object> data = new HashMap<>();
+            results.add(data);
+            data.put("id", id);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    public interface CachedQueries extends BaseQuery {
+        @Query(sql = "select id {%%} from test where id = {%1}")
+        Integer select(int id) throws SQLException;
+
+        @Update(sql = "update test set num = 1 where id = {%1}")
+        int update(int id) throws SQLException;
+    }
+
+    public interface FailingQueries extends BaseQuery {
+        @Update(sql = "update test set num = 1 where id = {%1}")
+        int update(int id) throws SQLException;
+    }
+}
@@ -0,0 +1,218 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.exception.ValidationException;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StreamingInsertTest {
+
+    private Connection connection;
+    private StreamingQueries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(StreamingQueries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+    }
+
+    @Test
+    public void testInsertIteratorWithBatching() throws SQLException {
+        queries.setBatchSize(2);
+        int[] result = queries.insertIterator(Arrays.asList(11, 22, 33).iterator());
+        int i = 0;
+        assertEquals(10, log.size());
+        assertEquals("prepareStatement(insert into test values ( ? ) )", log.get(i++));
+        assertEquals("setInt(1,11)", log.get(i++));
+        assertEquals("addBatch()", log.get(i++));
+        assertEquals("setInt(1,22)", log.get(i++));
+        assertEquals("addBatch()", log.get(i++));
+        assertEquals("executeBatch()", log.get(i++));
+        assertEquals("setInt(1,33)", log.get(i++));
+        assertEquals("addBatch()", log.get(i++));
+        assertEquals("executeBatch()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        // the mock statement returns 1, 2, ... as update counts of a batch
+        assertArrayEquals(new int[]{1, 2, 1}, result);
+    }
+
+    @Test
+    public void testInsertIteratorNoBatching() throws SQLException {
+        queries.setBatchSize(0);
+        int[] result = queries.insertIterator(Arrays.asList(11, 22).iterator());
+        int i = 0;
+        assertEquals(6, log.size());
+        assertEquals("prepareStatement(insert into test values ( ? ) )", log.get(i++));
+        assertEquals("setInt(1,11)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("setInt(1,22)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertArrayEquals(new int[]{1, 1}, result);
+    }
+
+    @Test
+    public void testUpdateCountBufferGrows() throws SQLException {
+        queries.setBatchSize(7);
+        int[] result = queries.insertIterator(IntStream.range(0, 100).boxed().iterator());
+        assertEquals(100, result.length);
+        assertEquals(1, result[98]);
+        assertEquals(2, result[99]);
+    }
+
+    @Test
+    public void testInsertStreamTotal() throws SQLException {
+        queries.setBatchSize(0);
+        assertEquals(3, queries.insertStream(Stream.of(11, 22, 33)));
+        queries.setBatchSize(10);
+        assertEquals(1 + 2 + 3, queries.insertStream(Stream.of(11, 22, 33)));
+    }
+
+    @Test
+    public void testInsertIterable() throws SQLException {
+        queries.setBatchSize(2);
+        Iterable<Integer> iterable = Arrays.asList(11, 22, 33);
+        queries.insertIterable(iterable);
+        assertEquals(10, log.size());
+        assertEquals("setInt(1,33)", log.get(6));
+    }
+
+    @Test
+    public void testUpdateCollectionTotal() throws SQLException {
+        queries.setBatchSize(10);
+        assertEquals(1 + 2, queries.updateCollection(Arrays.asList(11, 22)));
+    }
+
+    @Test
+    public void testEmptyInput() throws SQLException {
+        assertEquals(0, queries.insertIterator(Collections.<Integer>emptyList().iterator()).length);
+        assertEquals(0, queries.insertStream(Stream.empty()));
+        assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testInputIsConsumedWhileInserting() throws SQLException {
+        queries.setBatchSize(2);
+        // the third element is requested after the first batch is executed
+        Iterator<Integer> iterator = new Iterator<Integer>() {
+            private int next;
+
+            public boolean hasNext() {
+                return next < 3;
+            }
+
+            public Integer next() {
+                assertEquals(next == 2, log.contains("executeBatch()"));
+                return next++;
+            }
+        };
+        queries.insertIterator(iterator);
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testInsertTwoStreams() throws SQLException {
+        queries.setBatchSize(0);
+        queries.insertTwo(Stream.of(1, 2), Arrays.asList("a", "b"));
+        int i = 0;
+        assertEquals(8, log.size());
+        assertEquals("prepareStatement(insert into test values ( ? , ? ) )", log.get(i++));
+        assertEquals("setInt(1,1)", log.get(i++));
+        assertEquals("setString(2,a)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("setInt(1,2)", log.get(i++));
+        assertEquals("setString(2,b)", log.get(i++));
+        assertEquals("executeUpdate()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+    }
+
+    @Test
+    public void testFirstInputLonger() {
+        queries.setBatchSize(10);
+        try {
+            queries.insertTwo(Stream.of(1, 2), Collections.singletonList("a"));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("Input collections have different size", e.getMessage());
+        }
+        assertFalse(log.contains("executeBatch()"));
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testFirstInputShorter() {
+        queries.setBatchSize(10);
+        try {
+            queries.insertTwo(Stream.of(1), Arrays.asList("a", "b"));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("Input collections have different size", e.getMessage());
+        }
+        assertFalse(log.contains("executeBatch()"));
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testMultiRowInsertNotSupported() {
+        try {
+            QueryObjectFactory.createQueryObject(MultiRowStreamQueries.class);
+            fail("Should throw exception");
+        } catch (ValidationException e) {
+            assertEquals("Multi-row inserts are not supported for streaming parameters", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCallNotSupported() {
+        try {
+            QueryObjectFactory.createQueryObject(CallStreamQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ValidationException);
+            assertEquals("Streaming parameters are not allowed for call statements", e.getCause().getMessage());
+        }
+    }
+
+    public interface StreamingQueries extends BaseQuery {
+        @Insert(sql = "insert into test values ({%1})")
+        int[] insertIterator(Iterator<Integer> iterator) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1})")
+        long insertStream(Stream<Integer> stream) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1})")
+        void insertIterable(Iterable<Integer> iterable) throws SQLException;
+
+        @Update(sql = "update test set value = {%1}")
+        long updateCollection(List<Integer> list) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1}, {%2})")
+        void insertTwo(Stream<Integer> numbers, List<String> names) throws SQLException;
+    }
+
+    public interface MultiRowStreamQueries extends BaseQuery {
+        @MultiRowInsert
+        @Insert(sql = "insert into test values ({%1})")
+        void insert(Stream<Integer> stream) throws SQLException;
+    }
+
+    public interface CallStreamQueries extends BaseQuery {
+        @Call(sql = "{ call proc({%1}) }")
+        void call(Iterator<Integer> iterator) throws SQLException;
+    }
+}
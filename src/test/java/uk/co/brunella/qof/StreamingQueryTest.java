@@ -0,0 +1,200 @@
+package uk.co.brunella.qof;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StreamingQueryTest {
+
+    private Connection connection;
+    private Queries queries;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        log = ((MockConnectionData) connection).getLog();
+        queries.setConnection(connection);
+        queries.setFetchSize(99);
+    }
+
+    private void setIds(int... ids) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int id : ids) {
+            Map<String, Object> data = new HashMap<>();
+            results.add(data);
+            data.put("id", id);
+            data.put("num", id * 2);
+            data.put("name", "name" + id);
+            data.put("date", new java.sql.Date(0));
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    @Test
+    public void testStreamMapsLazily() throws SQLException {
+        setIds(11, 12);
+        Stream<TestBean> stream = queries.selectStream(11);
+
+        int i = 0;
+        assertEquals(4, log.size());
+        assertEquals("prepareStatement(select id , num , name , date from test where id = ? )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("setInt(1,11)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+        assertEquals(0, queries.ungetConnectionCalled);
+
+        List<TestBean> beans = stream.collect(Collectors.toList());
+        assertEquals(2, beans.size());
+        assertEquals(11, beans.get(0).getId());
+        assertEquals(22, beans.get(0).getNum().intValue());
+        assertEquals("name11", beans.get(0).getName());
+        assertEquals(new java.util.Date(0), beans.get(0).getDate());
+        assertEquals(12, beans.get(1).getId());
+
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("getInt(num)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+        assertEquals("getString(name)", log.get(i++));
+        assertEquals("getDate(date)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("getInt(num)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+        assertEquals("getString(name)", log.get(i++));
+        assertEquals("getDate(date)", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals("close()", log.get(i++));
+        assertEquals(i, log.size());
+        assertEquals(1, queries.ungetConnectionCalled);
+
+        // closing the exhausted stream has no further effect
+        stream.close();
+        assertEquals(i, log.size());
+        assertEquals(1, queries.ungetConnectionCalled);
+    }
+
+    @Test
+    public void testStreamClosedEarly() throws SQLException {
+        setIds(11, 12, 13);
+        try (Stream<TestBean> stream = queries.selectStream(11)) {
+            assertEquals(11, stream.findFirst().get().getId());
+            assertEquals(0, queries.ungetConnectionCalled);
+        }
+        assertEquals(1, queries.ungetConnectionCalled);
+        assertEquals("close()", log.get(log.size() - 2));
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testIterator() throws SQLException {
+        setIds(11, 12);
+        Iterator<TestBean> iterator = queries.selectIterator(11);
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertEquals(11, iterator.next().getId());
+        assertEquals(12, iterator.next().getId());
+        assertEquals(0, queries.ungetConnectionCalled);
+        assertFalse(iterator.hasNext());
+        assertEquals(1, queries.ungetConnectionCalled);
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("Should throw exception");
+        } catch (NoSuchElementException ignored) {
+        }
+        assertEquals(1, queries.ungetConnectionCalled);
+    }
+
+    @Test
+    public void testIterableAtomic() throws SQLException {
+        setIds(11, 12, 13);
+        List<Integer> ids = new ArrayList<>();
+        for (Integer id : queries.selectIds()) {
+            ids.add(id);
+        }
+        assertEquals(Arrays.asList(11, 12, 13), ids);
+        assertEquals(1, queries.ungetConnectionCalled);
+
+        int i = 0;
+        assertEquals("prepareStatement(select id from test )", log.get(i++));
+        assertEquals("setFetchSize(99)", log.get(i++));
+        assertEquals("executeQuery()", log.get(i++));
+        assertEquals("next()", log.get(i++));
+        assertEquals("getInt(id)", log.get(i++));
+        assertEquals("wasNull()", log.get(i++));
+    }
+
+    @Test
+    public void testCloseableIteratorClosedEarly() throws SQLException {
+        setIds(11, 12);
+        try (CloseableIterator<TestBean> iterator = queries.selectCloseableIterator(11)) {
+            assertEquals(11, iterator.next().getId());
+        }
+        assertEquals(1, queries.ungetConnectionCalled);
+        assertEquals("close()", log.get(log.size() - 2));
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testExecuteFails() {
+        setIds(11);
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.selectStream(11);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("executeQuery failed", e.getMessage());
+        }
+        assertEquals(1, queries.ungetConnectionCalled);
+        assertEquals("close()", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testCallNotAllowed() {
+        try {
+            QueryObjectFactory.createQueryObject(CallQueries.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Return type java.util.stream.Stream is not allowed for call statements", e.getCause().getMessage());
+        }
+    }
+
+    public static abstract class Queries implements BaseQuery {
+
+        public int ungetConnectionCalled = 0;
+
+        @Query(sql = "select id {%%.id}, num {%%.num}, name {%%.name}, date {%%.date} from test where id = {%1}")
+        public abstract Stream<TestBean> selectStream(int id) throws SQLException;
+
+        @Query(sql = "select id {%%.id}, num {%%.num}, name {%%.name}, date {%%.date} from test where id = {%1}")
+        public abstract Iterator<TestBean> selectIterator(int id) throws SQLException;
+
+        @Query(sql = "select id {%%.id}, num {%%.num}, name {%%.name}, date {%%.date} from test where id = {%1}")
+        public abstract CloseableIterator<TestBean> selectCloseableIterator(int id) throws SQLException;
+
+        @Query(sql = "select id {%%} from test")
+        public abstract Iterable<Integer> selectIds() throws SQLException;
+
+        public void ungetConnection(Connection connection) {
+            ungetConnectionCalled++;
+        }
+    }
+
+    public interface CallQueries extends BaseQuery {
+        @Call(sql = "{ %% = call func ({%1}) }")
+        Stream<Integer> call(int a) throws SQLException;
+    }
+}
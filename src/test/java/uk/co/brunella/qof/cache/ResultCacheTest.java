@@ -0,0 +1,208 @@
+package uk.co.brunella.qof.cache;
+
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    private static ResultCache createCache(long ttlNanos, int maxEntries, long maxWeight) {
+        return ResultCache.create(ResultCacheTest.class, "select", "(I)Ljava/lang/String;", new String[]{"result_cache_test"},
+                ttlNanos, maxEntries, maxWeight);
+    }
+
+    @Test
+    public void testGetAndPut() {
+        ResultCache cache = createCache(0, 10, 0);
+        assertSame(ResultCache.MISS, cache.get(new Object[]{1}));
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        cache.put(new Object[]{2}, null, cache.getVersion());
+        assertEquals("one", cache.get(new Object[]{1}));
+        assertNull(cache.get(new Object[]{2}));
+        assertEquals(2, cache.getSize());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 0.0001);
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getHitRatio(), 0);
+    }
+
+    @Test
+    public void testArrayArguments() {
+        ResultCache cache = createCache(0, 10, 0);
+        int[] ids = {1, 2, 3};
+        cache.put(new Object[]{ids, "a"}, "value", cache.getVersion());
+        // the array is copied
+        ids[0] = 4;
+        assertSame(ResultCache.MISS, cache.get(new Object[]{ids, "a"}));
+        assertEquals("value", cache.get(new Object[]{new int[]{1, 2, 3}, "a"}));
+    }
+
+    @Test
+    public void testPutAfterInvalidation() {
+        ResultCache cache = createCache(0, 10, 0);
+        long version = cache.getVersion();
+        cache.invalidateAll();
+        // a result read before the invalidation is not cached
+        cache.put(new Object[]{1}, "one", version);
+        assertEquals(0, cache.getSize());
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        assertEquals(1, cache.getSize());
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        ResultCache cache = createCache(TimeUnit.MILLISECONDS.toNanos(20), 10, 0);
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        assertEquals("one", cache.get(new Object[]{1}));
+        Thread.sleep(40);
+        assertSame(ResultCache.MISS, cache.get(new Object[]{1}));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testWeight() {
+        ResultCache cache = createCache(0, 10, 0);
+        cache.put(new Object[]{1}, Arrays.asList(1, 2, 3), cache.getVersion());
+        cache.put(new Object[]{2}, new int[5], cache.getVersion());
+        cache.put(new Object[]{3}, Collections.singletonMap("a", 1), cache.getVersion());
+        cache.put(new Object[]{4}, "four", cache.getVersion());
+        assertEquals(4 + 6 + 2 + 1, cache.getWeight());
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        assertEquals(1 + 6 + 2 + 1, cache.getWeight());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws InterruptedException {
+        ResultCache cache = createCache(0, 10, 0);
+        for (int i = 0; i < 10; i++) {
+            cache.put(new Object[]{i}, i, cache.getVersion());
+        }
+        Thread.sleep(5);
+        // access the first entries so that they are evicted last
+        for (int i = 0; i < 5; i++) {
+            cache.get(new Object[]{i});
+        }
+        cache.put(new Object[]{10}, 10, cache.getVersion());
+        assertEquals(9, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, cache.get(new Object[]{i}));
+        }
+        assertEquals(10, cache.get(new Object[]{10}));
+    }
+
+    @Test
+    public void testEvictByWeight() {
+        ResultCache cache = createCache(0, 100, 20);
+        for (int i = 0; i < 5; i++) {
+            cache.put(new Object[]{i}, Arrays.asList(1, 2, 3), cache.getVersion());
+        }
+        assertEquals(20, cache.getWeight());
+        cache.put(new Object[]{5}, Arrays.asList(1, 2, 3), cache.getVersion());
+        assertTrue(cache.getWeight() <= 18);
+        assertEquals(cache.getSize() * 4, cache.getWeight());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ResultCache cache = createCache(0, 100, 0);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        Object[] arguments = {i % 300};
+                        Object value = cache.get(arguments);
+                        if (value == ResultCache.MISS) {
+                            cache.put(arguments, i % 300, cache.getVersion());
+                        } else {
+                            assertEquals(i % 300, value);
+                        }
+                        if (i % 1000 == 0) {
+                            cache.invalidateAll();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertTrue(cache.getSize() <= 100);
+        assertEquals(cache.getSize(), cache.getWeight());
+    }
+
+    @Test
+    public void testInvalidateTables() {
+        ResultCache cache = ResultCache.create(ResultCacheTest.class, "select", "()I", new String[]{"person", "address"},
+                0, 10, 0);
+        cache.put(new Object[0], 1, cache.getVersion());
+        ResultCache.invalidateTables("other");
+        assertEquals(1, cache.getSize());
+        ResultCache.invalidateTables("APP.Address");
+        assertEquals(0, cache.getSize());
+        assertArrayEquals(new String[]{"person", "address"}, cache.getTableNames());
+    }
+
+    @Test
+    public void testTableWrittenAutoCommit() throws SQLException {
+        ResultCache cache = createCache(0, 10, 0);
+        Connection connection = MockConnectionFactory.getConnection();
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        ResultCache.tableWritten(connection, "result_cache_test");
+        assertEquals(0, cache.getSize());
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        ResultCache.transactionCompleted(connection);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testTableWrittenInTransaction() throws SQLException {
+        ResultCache cache = createCache(0, 10, 0);
+        Connection connection = MockConnectionFactory.getConnection();
+        connection.setAutoCommit(false);
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        ResultCache.tableWritten(connection, "result_cache_test");
+        assertEquals(0, cache.getSize());
+        // not cached before the commit
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        assertEquals(0, cache.getSize());
+        ResultCache.transactionCompleted(MockConnectionFactory.getConnection());
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        assertEquals(0, cache.getSize());
+        ResultCache.transactionCompleted(connection);
+        assertEquals(0, cache.getSize());
+        cache.put(new Object[]{1}, "one", cache.getVersion());
+        ResultCache.transactionCompleted(connection);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testGetCaches() {
+        ResultCache cache = createCache(0, 10, 0);
+        assertTrue(ResultCache.getCaches().contains(cache));
+        assertTrue(ResultCache.getCaches(ResultCacheTest.class).contains(cache));
+        assertEquals("ResultCache[" + ResultCacheTest.class.getName() + ".select(int)]", cache.toString());
+    }
+}
@@ -0,0 +1,112 @@
+package uk.co.brunella.qof.codegen;
+
+import org.junit.Test;
+import uk.co.brunella.qof.util.InstanceFactory;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class InstanceFactoryGeneratorTest {
+
+    // a factory class can only be defined once per class loader
+    private static final InstanceFactory<TestClass> factory = new InstanceFactoryGenerator().create(TestClass.class);
+
+    @Test
+    public void testDefaultConstructor() {
+        assertEquals(TestClass.class.getName() + "$InstanceFactory", factory.getClass().getName());
+        TestClass test = factory.newInstance(null);
+        assertEquals("default", test.value);
+        assertNotSame(test, factory.newInstance(new Object[0]));
+    }
+
+    @Test
+    public void testConstructorWithArguments() {
+        assertEquals("abc", factory.newInstance(new Object[]{"abc"}).value);
+        assertEquals("abc5", factory.newInstance(new Object[]{"abc", 5}).value);
+        // resolved constructor is cached
+        assertEquals("def6", factory.newInstance(new Object[]{"def", 6}).value);
+        assertEquals("7", factory.newInstance(new Object[]{7L}).value);
+    }
+
+    @Test
+    public void testNoMatchingConstructor() {
+        try {
+            factory.newInstance(new Object[]{1.5});
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Cannot find matching constructor", e.getMessage());
+        }
+        try {
+            // private constructors are ignored
+            factory.newInstance(new Object[]{'c'});
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Cannot find matching constructor", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConstructorThrowsException() {
+        InstanceFactory<ThrowingClass> factory = new InstanceFactoryGenerator().create(ThrowingClass.class);
+        try {
+            factory.newInstance(new Object[]{"checked"});
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            factory.newInstance(null);
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("unchecked", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAbstractClass() {
+        try {
+            new InstanceFactoryGenerator().create(AbstractClass.class);
+            fail("Should throw exception");
+        } catch (RuntimeException e) {
+            assertEquals("Cannot create instance factory for abstract class " + AbstractClass.class.getName(), e.getMessage());
+        }
+    }
+
+    public static class TestClass {
+        String value;
+
+        public TestClass() {
+            value = "default";
+        }
+
+        public TestClass(String value) {
+            this.value = String.valueOf(value);
+        }
+
+        TestClass(String value, int num) {
+            this.value = value + num;
+        }
+
+        protected TestClass(long num) {
+            this.value = String.valueOf(num);
+        }
+
+        private TestClass(char c) {
+            this.value = String.valueOf(c);
+        }
+    }
+
+    public static class ThrowingClass {
+        public ThrowingClass() {
+            throw new IllegalStateException("unchecked");
+        }
+
+        public ThrowingClass(String message) throws IOException {
+            throw new IOException(message);
+        }
+    }
+
+    public static abstract class AbstractClass {
+    }
+}
@@ -33,4 +33,13 @@ public class HSQLDbDialectTest {
         assertTrue(new HSQLDbDialect().limitOffsetFirst());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testArrayParameters() {
+        assertNull(new HSQLDbDialect().getArrayTypeName(Integer.TYPE));
+        assertEquals("INTEGER", new HSQLDbDialect(true).getArrayTypeName(Integer.TYPE));
+        assertEquals("VARCHAR", new HSQLDbDialect(true).getArrayTypeName(String.class));
+        assertNull(new HSQLDbDialect(true).getArrayTypeName(java.util.Date.class));
+        assertEquals("UNNEST(?)", new HSQLDbDialect(true).getArrayParameterString());
+    }
+
+}
@@ -0,0 +1,100 @@
+package uk.co.brunella.qof.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            assertTrue(value + " >= lower bound", value >= LatencyHistogram.getBucketLowerBound(index));
+            assertTrue(value + " <= upper bound", value <= LatencyHistogram.getBucketUpperBound(index));
+        }
+        for (int i = 1; i < 488; i++) {
+            assertEquals(LatencyHistogram.getBucketUpperBound(i - 1) + 1, LatencyHistogram.getBucketLowerBound(i));
+            assertEquals(i, LatencyHistogram.getBucketIndex(LatencyHistogram.getBucketLowerBound(i)));
+        }
+        assertEquals(487, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRelativeError() {
+        for (int index = 8; index < 487; index++) {
+            long lower = LatencyHistogram.getBucketLowerBound(index);
+            long upper = LatencyHistogram.getBucketUpperBound(index);
+            assertTrue((double) (upper - lower) / lower <= 0.125);
+        }
+    }
+
+    @Test
+    public void testSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050000, snapshot.getTotal());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(0, snapshot.getPercentile(0));
+        assertEquals(100000, snapshot.getPercentile(100));
+        long median = snapshot.getPercentile(50);
+        assertTrue(median >= 50000 && median <= 50000 * 1.125);
+        long p99 = snapshot.getPercentile(99);
+        assertTrue(p99 >= 99000 && p99 <= 100000);
+        // the bucket of 10000ns ends above 10us
+        assertEquals(10, snapshot.getCountAtOrBelow(10, TimeUnit.MICROSECONDS));
+        assertEquals(101, snapshot.getCountAtOrBelow(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99), 0);
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyHistogram().getSnapshot().getPercentile(101);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j + offset);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getSnapshot().getCount());
+        assertEquals(10002, histogram.getSnapshot().getMax());
+    }
+}
@@ -0,0 +1,169 @@
+package uk.co.brunella.qof.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Query;
+import uk.co.brunella.qof.QueryObjectFactory;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryMetricsTest {
+
+    // generated classes keep the listener they were generated with
+    private static final QueryMetrics metrics = new QueryMetrics("test");
+
+    private Connection connection;
+    private Queries queries;
+
+    @Before
+    public void setUp() {
+        QueryObjectFactory.setQueryListener(metrics);
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        queries.setConnection(connection);
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueryObjectFactory.setQueryListener(null);
+        metrics.unregisterMBeans();
+    }
+
+    @Test
+    public void testSelect() throws SQLException {
+        setResultSetData(1, 2, 3);
+        queries.selectValues(1);
+        setResultSetData(4);
+        queries.selectValues(2);
+        QueryMethodSnapshot snapshot = getSnapshot("selectValues");
+        assertEquals(2, snapshot.getCallCount());
+        assertEquals(0, snapshot.getErrorCount());
+        assertEquals(4, snapshot.getRowCount());
+        assertEquals(2, snapshot.getLatency().getCount());
+        assertTrue(snapshot.getLatency().getTotal() > 0);
+    }
+
+    @Test
+    public void testStreamingSelect() throws SQLException {
+        setResultSetData(1, 2, 3);
+        Iterator<Integer> iterator = queries.iterateValues(1);
+        iterator.next();
+        QueryMethodSnapshot snapshot = getSnapshot("iterateValues");
+        assertEquals(1, snapshot.getCallCount());
+        assertEquals(0, snapshot.getRowCount());
+        assertEquals(1, snapshot.getLatency().getCount());
+    }
+
+    @Test
+    public void testBatches() throws SQLException {
+        queries.setBatchSize(2);
+        queries.insertList(Arrays.asList(1, 2, 3));
+        QueryMethodSnapshot snapshot = getSnapshot("insertList");
+        assertEquals(1, snapshot.getCallCount());
+        assertEquals(2, snapshot.getBatchCount());
+        assertEquals(3, snapshot.getBatchedStatementCount());
+        assertEquals(1, snapshot.getLatency().getCount());
+    }
+
+    @Test
+    public void testErrors() {
+        ((MockConnectionData) connection).setExecuteFails(true);
+        try {
+            queries.selectValues(1);
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            QueryMethodSnapshot snapshot = getSnapshot("selectValues");
+            assertEquals(1, snapshot.getCallCount());
+            assertEquals(1, snapshot.getErrorCount());
+            assertEquals(0, snapshot.getLatency().getCount());
+        }
+    }
+
+    @Test
+    public void testSnapshotsOrderedByTotalLatency() throws SQLException {
+        for (int i = 0; i < 20; i++) {
+            queries.insertList(Arrays.asList(1, 2, 3));
+        }
+        setResultSetData(1);
+        queries.selectValues(1);
+        List<QueryMethodSnapshot> snapshots = metrics.getSnapshots();
+        for (int i = 1; i < snapshots.size(); i++) {
+            assertTrue(snapshots.get(i - 1).getLatency().getTotal() >= snapshots.get(i).getLatency().getTotal());
+        }
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        setResultSetData(1, 2);
+        queries.selectValues(1);
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(mBeanServer);
+        ObjectName name = new ObjectName("uk.co.brunella.qof:type=QueryMethodMetrics,registry=\"test\","
+                + "class=" + Queries.class.getName() + ",method=\"selectValues(int)\"");
+        assertTrue(mBeanServer.isRegistered(name));
+        assertEquals(1L, mBeanServer.getAttribute(name, "CallCount"));
+        assertEquals(2L, mBeanServer.getAttribute(name, "RowCount"));
+        assertEquals(Queries.class.getName() + ".selectValues(int)", mBeanServer.getAttribute(name, "Method"));
+
+        // methods invoked after the registration are registered when they are invoked
+        queries.insertList(Arrays.asList(1, 2, 3));
+        ObjectName insertName = metrics.getObjectName(getSnapshot("insertList").getMethod());
+        assertTrue(mBeanServer.isRegistered(insertName));
+        assertEquals(3L, mBeanServer.getAttribute(insertName, "BatchedStatementCount"));
+
+        mBeanServer.invoke(name, "reset", null, null);
+        assertEquals(0L, mBeanServer.getAttribute(name, "CallCount"));
+
+        metrics.unregisterMBeans();
+        assertFalse(mBeanServer.isRegistered(name));
+        assertFalse(mBeanServer.isRegistered(insertName));
+    }
+
+    private QueryMethodSnapshot getSnapshot(String methodName) {
+        for (QueryMethodSnapshot snapshot : metrics.getSnapshots()) {
+            if (snapshot.getMethod().getMethodName().equals(methodName)) {
+                return snapshot;
+            }
+        }
+        throw new AssertionError("No metrics for " + methodName);
+    }
+
+    private void setResultSetData(Object... values) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("value", value);
+            results.add(data);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    public interface Queries extends BaseQuery {
+        @Query(sql = "select value {%%} from test where id = {%1}")
+        List<Integer> selectValues(int id) throws SQLException;
+
+        @Query(sql = "select value {%%} from test where id = {%1}")
+        Iterator<Integer> iterateValues(int id) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1})")
+        void insertList(List<Integer> values) throws SQLException;
+    }
+}
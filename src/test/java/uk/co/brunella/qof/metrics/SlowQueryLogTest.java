@@ -0,0 +1,179 @@
+package uk.co.brunella.qof.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Query;
+import uk.co.brunella.qof.QueryMethod;
+import uk.co.brunella.qof.QueryObjectFactory;
+import uk.co.brunella.qof.mapping.QueryType;
+import uk.co.brunella.qof.testtools.MockConnectionData;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SlowQueryLogTest {
+
+    private static final List<SlowQuery> entries = new ArrayList<>();
+    // generated classes keep the listener they were generated with
+    private static final SlowQueryLog slowQueryLog = new SlowQueryLog(0, TimeUnit.NANOSECONDS, 1000, entries::add);
+
+    private Connection connection;
+    private Queries queries;
+
+    @Before
+    public void setUp() {
+        QueryObjectFactory.setQueryListener(slowQueryLog);
+        queries = QueryObjectFactory.createQueryObject(Queries.class);
+        connection = MockConnectionFactory.getConnection();
+        queries.setConnection(connection);
+        slowQueryLog.setThreshold(0, TimeUnit.NANOSECONDS);
+        slowQueryLog.setEnabled(true);
+        entries.clear();
+    }
+
+    @After
+    public void tearDown() {
+        QueryObjectFactory.setQueryListener(null);
+    }
+
+    @Test
+    public void testSelect() throws SQLException {
+        setResultSetData("A", "B");
+        queries.selectValues(new String[]{"a", "b"}, 5);
+        assertEquals(1, entries.size());
+        SlowQuery entry = entries.get(0);
+        assertEquals("selectValues", entry.getMethod().getMethodName());
+        assertEquals("select value from test where name in ( ?,? ) and x = ? ", entry.getSql());
+        assertEquals(2, entry.getArguments().length);
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) entry.getArguments()[0]);
+        assertEquals(5, entry.getArguments()[1]);
+        assertEquals(2, entry.getRowCount());
+        assertNull(entry.getException());
+        assertEquals(entry.getTotalNanos(), entry.getPrepareNanos() + entry.getExecuteNanos() + entry.getFetchNanos());
+        assertTrue(entry.toString().startsWith("Slow query "));
+        assertTrue(entry.toString().endsWith(Queries.class.getName() + ".selectValues(java.lang.String[], int): "
+                + "select value from test where name in ( ?,? ) and x = ?  [[a, b], 5]"));
+    }
+
+    @Test
+    public void testBatchInsert() throws SQLException {
+        queries.setBatchSize(2);
+        queries.insertValues(Arrays.asList(1, 2, 3));
+        assertEquals(1, entries.size());
+        SlowQuery entry = entries.get(0);
+        assertEquals("insert into test values ( ? ) ", entry.getSql());
+        assertEquals(3, entry.getRowCount());
+        assertEquals(0, entry.getFetchNanos());
+        assertEquals(Arrays.asList(1, 2, 3), entry.getArguments()[0]);
+    }
+
+    @Test
+    public void testFailure() {
+        ((MockConnectionData) connection).setPrepareFails(true);
+        try {
+            queries.insertValues(Arrays.asList(1, 2, 3));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals(1, entries.size());
+            SlowQuery entry = entries.get(0);
+            assertSame(e, entry.getException());
+            assertEquals("insert into test values ( ? ) ", entry.getSql());
+            assertEquals(-1, entry.getRowCount());
+        }
+    }
+
+    @Test
+    public void testCloseFailsAfterExecute() {
+        ((MockConnectionData) connection).setCloseFails(true);
+        try {
+            queries.insertValues(Arrays.asList(1, 2, 3));
+            fail("Should throw exception");
+        } catch (SQLException e) {
+            assertEquals("close failed", e.getMessage());
+            assertEquals(1, entries.size());
+            assertNull(entries.get(0).getException());
+            assertEquals(3, entries.get(0).getRowCount());
+        }
+    }
+
+    @Test
+    public void testFailureAfterCompletion() {
+        List<SlowQuery> limitedEntries = new ArrayList<>();
+        SlowQueryLog limitedLog = new SlowQueryLog(0, TimeUnit.NANOSECONDS, 1, limitedEntries::add);
+        QueryMethod method = new QueryMethod(Queries.class, "insertValues", "(Ljava/util/List;)V",
+                "insert into test values ( ? )", QueryType.INSERT);
+        Object context = limitedLog.beforePrepare(method);
+        assertTrue(limitedLog.isArgumentsRequired(method, context));
+        limitedLog.afterExecute(method, context);
+        // an exception thrown after the invocation completed
+        assertFalse(limitedLog.isArgumentsRequired(method, context));
+        limitedLog.failure(method, context, new SQLException("close failed"));
+        assertEquals(1, limitedEntries.size());
+        assertNull(limitedEntries.get(0).getException());
+        assertEquals(0, limitedLog.getSuppressedCount());
+    }
+
+    @Test
+    public void testBelowThreshold() throws SQLException {
+        slowQueryLog.setThreshold(1, TimeUnit.HOURS);
+        assertEquals(1, slowQueryLog.getThreshold(TimeUnit.HOURS));
+        queries.insertValues(Arrays.asList(1, 2, 3));
+        assertTrue(entries.isEmpty());
+    }
+
+    @Test
+    public void testDisabled() throws SQLException {
+        slowQueryLog.setEnabled(false);
+        queries.insertValues(Arrays.asList(1, 2, 3));
+        assertTrue(entries.isEmpty());
+    }
+
+    @Test
+    public void testRateLimit() {
+        List<SlowQuery> limitedEntries = new ArrayList<>();
+        SlowQueryLog limitedLog = new SlowQueryLog(0, TimeUnit.NANOSECONDS, 3, limitedEntries::add);
+        QueryMethod method = new QueryMethod(Queries.class, "insertValues", "(Ljava/util/List;)V",
+                "insert into test values ( ? )", QueryType.INSERT);
+        for (int i = 0; i < 10; i++) {
+            Object context = limitedLog.beforePrepare(method);
+            limitedLog.prepared(method, context, method.getSql());
+            if (limitedLog.isArgumentsRequired(method, context)) {
+                limitedLog.arguments(method, context, new Object[]{i});
+            }
+            limitedLog.afterExecute(method, context);
+        }
+        assertEquals(3, limitedEntries.size());
+        assertEquals(7, limitedLog.getSuppressedCount());
+        assertEquals(0, limitedEntries.get(0).getArguments()[0]);
+    }
+
+    private void setResultSetData(Object... values) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object value : values) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("value", value);
+            results.add(data);
+        }
+        ((MockConnectionData) connection).setResultSetData(results);
+    }
+
+    public interface Queries extends BaseQuery {
+        @Query(sql = "select value {%%} from test where name in ({%1}) and x = {%2}")
+        List<String> selectValues(String[] names, int x) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1})")
+        void insertValues(List<Integer> values) throws SQLException;
+    }
+}
@@ -674,5 +674,24 @@ public class SqlParserTest {
         assertEquals("field5", def.getFields()[4]);
     }
 
+    @Test
+    public void testTableNames() {
+        assertTableNames("select id {%%} from test where id = {%1}", "test");
+        assertTableNames("select * from app.Person p, \"Address\" as a where p.id = a.id", "person", "address");
+        assertTableNames("select * from a inner join b on a.id = b.id left outer join c using (id)", "a", "b", "c");
+        assertTableNames("select * from a where id in (select id from b where name = 'from c')", "a", "b");
+        assertTableNames("select * from test for update", "test");
+        assertTableNames("insert into test (id, name) values ({%1}, {%2})", "test");
+        assertTableNames("insert into a select * from b", "a", "b");
+        assertTableNames("UPDATE test SET name = {%2} WHERE id = {%1}", "test");
+        assertTableNames("delete from test where id = {%1}", "test");
+        assertTableNames("merge into a using b on a.id = b.id when matched then update set a.name = b.name", "a", "b");
+        assertTableNames("select 1");
+    }
+
+    private void assertTableNames(String sql, String... tableNames) {
+        assertArrayEquals(tableNames, new SqlParser(sql, false).getTableNames());
+    }
+
     //TODO add test with multiple result mappings for one column
 }
@@ -0,0 +1,16 @@
+package uk.co.brunella.qof.preload;
+
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Query;
+
+import java.sql.SQLException;
+
+public interface PreloadQueries extends BaseQuery {
+
+    @Query(sql = "select id {%%} from test where name = {%1}")
+    int select(String name) throws SQLException;
+
+    @Insert(sql = "insert into test values ({%1})")
+    void insert(int id) throws SQLException;
+}
@@ -0,0 +1,16 @@
+package uk.co.brunella.qof.preload.sub;
+
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Delete;
+
+import java.sql.SQLException;
+
+public abstract class AbstractPreloadQueries implements BaseQuery {
+
+    @Delete(sql = "delete from test where id = {%1}")
+    protected abstract void delete(int id) throws SQLException;
+
+    public interface NotAQueryDefinition {
+        void run();
+    }
+}
@@ -0,0 +1,334 @@
+package uk.co.brunella.qof.session;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ParallelBatchRunnerTest {
+
+    private static final String CONTEXT_NAME = "PARALLEL_BATCH_RUNNER_TEST";
+
+    private JDBCDataSource dataSource;
+    private ExecutorService executor;
+    private List<List<Integer>> partitions;
+    private Set<Connection> connections;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new JDBCDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:parallelBatchRunnerTest");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            // concurrent inserts of open transactions must not block each other
+            stmt.execute("set database transaction control mvcc");
+            stmt.execute("drop table parallel_test if exists");
+            stmt.execute("create table parallel_test (id integer)");
+        }
+        SessionContextFactory.setDataSource(CONTEXT_NAME, dataSource);
+        executor = Executors.newFixedThreadPool(4);
+        partitions = Collections.synchronizedList(new ArrayList<>());
+        connections = ConcurrentHashMap.newKeySet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        SessionContextFactory.removeContext(CONTEXT_NAME);
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("drop table parallel_test");
+        }
+    }
+
+    @Test
+    public void testExecute() throws SystemException, SQLException {
+        int[] counts = createRunner(3, ParallelCommitPolicy.PER_PARTITION).execute(executor, createRows(10));
+        assertEquals(10, counts.length);
+        for (int count : counts) {
+            assertEquals(1, count);
+        }
+        assertEquals(createRows(10), selectIds());
+        assertEquals(3, partitions.size());
+        assertEquals(3, connections.size());
+        List<Integer> sizes = new ArrayList<>();
+        for (List<Integer> partition : partitions) {
+            sizes.add(partition.size());
+        }
+        Collections.sort(sizes);
+        assertEquals("[3, 3, 4]", sizes.toString());
+    }
+
+    @Test
+    public void testExecuteAllOrNothing() throws SystemException, SQLException {
+        int[] counts = createRunner(4, ParallelCommitPolicy.ALL_OR_NOTHING).execute(executor, createRows(50));
+        assertEquals(50, counts.length);
+        assertEquals(createRows(50), selectIds());
+        assertEquals(4, connections.size());
+    }
+
+    @Test
+    public void testMorePartitionsThanRows() throws SystemException, SQLException {
+        int[] counts = createRunner(8, ParallelCommitPolicy.PER_PARTITION).execute(executor, createRows(3));
+        assertArrayEquals(new int[]{1, 1, 1}, counts);
+        assertEquals(3, partitions.size());
+        assertEquals(createRows(3), selectIds());
+    }
+
+    @Test
+    public void testEmptyRows() throws SystemException {
+        assertEquals(0, createRunner(3, ParallelCommitPolicy.PER_PARTITION)
+                .execute(executor, Collections.emptyList()).length);
+        assertTrue(partitions.isEmpty());
+    }
+
+    @Test
+    public void testCallingThreadExecutor() throws SystemException, SQLException {
+        // detached sessions can be run one after the other on the same thread
+        int[] counts = createRunner(3, ParallelCommitPolicy.ALL_OR_NOTHING).execute(Runnable::run, createRows(6));
+        assertEquals(6, counts.length);
+        assertEquals(createRows(6), selectIds());
+        assertNoSessionRunning();
+    }
+
+    @Test
+    public void testArguments() throws SystemException {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        ParallelBatchRunner runner = new ParallelBatchRunner((connection, arguments) -> {
+            received.add(arguments[1]);
+            received.add(arguments[2]);
+            return new int[]{((List<?>) arguments[0]).size()};
+        }, CONTEXT_NAME, 2, ParallelCommitPolicy.PER_PARTITION);
+        assertArrayEquals(new int[]{2, 2}, runner.execute(executor, createRows(4), "a", 5));
+        assertEquals(4, received.size());
+        assertEquals(2, Collections.frequency(received, "a"));
+        assertEquals(2, Collections.frequency(received, 5));
+    }
+
+    @Test
+    public void testAllOrNothingFails() throws SQLException {
+        try {
+            createFailingRunner(ParallelCommitPolicy.ALL_OR_NOTHING).execute(executor, createRows(10));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("Partitions [1] of 3 failed, all partitions were rolled back", e.getMessage());
+            assertEquals("insert failed", e.getCause().getMessage());
+        }
+        assertTrue(selectIds().isEmpty());
+    }
+
+    @Test
+    public void testPerPartitionFails() throws SQLException {
+        try {
+            createFailingRunner(ParallelCommitPolicy.PER_PARTITION).execute(executor, createRows(10));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("Partitions [1] of 3 failed, the failed partitions were rolled back", e.getMessage());
+            assertEquals("insert failed", e.getCause().getMessage());
+        }
+        // rows 3 to 5 belong to the failed partition
+        assertEquals("[0, 1, 2, 6, 7, 8, 9]", selectIds().toString());
+    }
+
+    @Test
+    public void testSeveralPartitionsFail() throws SQLException {
+        ParallelBatchRunner runner = new ParallelBatchRunner((connection, arguments) -> {
+            throw new SQLException("failed " + ((List<?>) arguments[0]).get(0));
+        }, CONTEXT_NAME, 2, ParallelCommitPolicy.ALL_OR_NOTHING);
+        try {
+            runner.execute(executor, createRows(4));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("Partitions [0, 1] of 2 failed, all partitions were rolled back", e.getMessage());
+            assertEquals("failed 0", e.getCause().getMessage());
+            assertEquals(1, e.getSuppressed().length);
+            assertEquals("failed 2", e.getSuppressed()[0].getMessage());
+        }
+    }
+
+    @Test
+    public void testRollbackOnly() throws SQLException {
+        ParallelBatchRunner runner = new ParallelBatchRunner((connection, arguments) -> {
+            int[] counts = insert(connection, arguments);
+            if (((List<?>) arguments[0]).contains(0)) {
+                try {
+                    SessionContextFactory.getContext(CONTEXT_NAME).getUserTransaction().setRollbackOnly();
+                } catch (SystemException e) {
+                    throw new SQLException(e);
+                }
+            }
+            return counts;
+        }, CONTEXT_NAME, 2, ParallelCommitPolicy.ALL_OR_NOTHING);
+        try {
+            runner.execute(executor, createRows(4));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("Partitions [0] of 2 failed, all partitions were rolled back", e.getMessage());
+            assertEquals("Transaction was marked for rollback only", e.getCause().getMessage());
+        }
+        assertTrue(selectIds().isEmpty());
+    }
+
+    @Test
+    public void testRejectedByExecutor() throws SQLException {
+        executor.shutdown();
+        try {
+            createRunner(2, ParallelCommitPolicy.PER_PARTITION).execute(executor, createRows(4));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("Partitions [0, 1] of 2 failed, the failed partitions were rolled back", e.getMessage());
+        }
+        assertNoSessionRunning();
+        assertTrue(selectIds().isEmpty());
+    }
+
+    @Test
+    public void testPoolSmallerThanPartitions() throws SystemException, SQLException {
+        LimitedDataSource limitedDataSource = new LimitedDataSource(1);
+        SessionContextFactory.setDataSource(CONTEXT_NAME, limitedDataSource);
+        int[] counts = createRunner(4, ParallelCommitPolicy.PER_PARTITION).execute(executor, createRows(8));
+        assertEquals(8, counts.length);
+        assertEquals(createRows(8), selectIds());
+        assertEquals(4, partitions.size());
+        // the partitions waited for the connection
+        assertEquals(1, limitedDataSource.maxOpenConnections);
+    }
+
+    @Test
+    public void testPoolExhaustedAllOrNothing() throws SQLException {
+        SessionContextFactory.setDataSource(CONTEXT_NAME, new LimitedDataSource(1));
+        try {
+            createRunner(2, ParallelCommitPolicy.ALL_OR_NOTHING).execute(executor, createRows(4));
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertTrue(e.getMessage().endsWith(" of 2 failed, all partitions were rolled back"));
+            assertEquals("Pool exhausted", e.getCause().getMessage());
+        }
+        assertTrue(selectIds().isEmpty());
+    }
+
+    @Test
+    public void testInvalidPartitions() {
+        try {
+            new ParallelBatchRunner((connection, arguments) -> null, CONTEXT_NAME, 0, ParallelCommitPolicy.PER_PARTITION);
+            fail("Should throw exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Number of partitions must be at least 1", e.getMessage());
+        }
+    }
+
+    private class LimitedDataSource extends JDBCDataSource {
+
+        private final Semaphore permits;
+        private final int size;
+        private int maxOpenConnections;
+
+        private LimitedDataSource(int size) {
+            this.permits = new Semaphore(size);
+            this.size = size;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            try {
+                if (!permits.tryAcquire(500, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Pool exhausted");
+                }
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            synchronized (this) {
+                maxOpenConnections = Math.max(maxOpenConnections, size - permits.availablePermits());
+            }
+            Connection connection = dataSource.getConnection();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    private void assertNoSessionRunning() {
+        try {
+            ((ScopedSessionContext) SessionContextFactory.getContext(CONTEXT_NAME)).getSessionScope();
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private ParallelBatchRunner createRunner(int partitionCount, ParallelCommitPolicy commitPolicy) {
+        return new ParallelBatchRunner(this::insert, CONTEXT_NAME, partitionCount, commitPolicy);
+    }
+
+    private ParallelBatchRunner createFailingRunner(ParallelCommitPolicy commitPolicy) {
+        return new ParallelBatchRunner((connection, arguments) -> {
+            int[] counts = insert(connection, arguments);
+            if (((List<?>) arguments[0]).contains(4)) {
+                throw new SQLException("insert failed");
+            }
+            return counts;
+        }, CONTEXT_NAME, 3, commitPolicy);
+    }
+
+    private int[] insert(Connection connection, Object... arguments) throws SQLException {
+        @SuppressWarnings("unchecked")
+        List<Integer> partition = (List<Integer>) arguments[0];
+        partitions.add(partition);
+        connections.add(connection);
+        try (PreparedStatement ps = connection.prepareStatement("insert into parallel_test values (?)")) {
+            for (Integer id : partition) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    private List<Integer> createRows(int count) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(i);
+        }
+        return rows;
+    }
+
+    private List<Integer> selectIds() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("select id from parallel_test order by id")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,268 @@
+package uk.co.brunella.qof.session;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ScopedSessionContextTest {
+
+    private static final String CONTEXT_NAME = ScopedSessionContextTest.class.getName();
+
+    private ScopedSessionContext ctx;
+    private ExecutorService executorService;
+
+    private DataSource createDataSource() {
+        JDBCDataSource ds = new JDBCDataSource();
+        ds.setDatabase("jdbc:hsqldb:mem:scoped");
+        ds.setUser("sa");
+        ds.setPassword("");
+        return ds;
+    }
+
+    @Before
+    public void setUp() {
+        SessionContextFactory.removeContext(CONTEXT_NAME);
+        SessionContextFactory.setDataSource(CONTEXT_NAME, createDataSource());
+        ctx = (ScopedSessionContext) SessionContextFactory.getContext(CONTEXT_NAME);
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+        SessionContextFactory.removeContext(CONTEXT_NAME);
+    }
+
+    @Test
+    public void testGetSessionScope() throws SystemException {
+        ctx.startSession();
+        SessionScope scope = ctx.getSessionScope();
+        assertEquals(CONTEXT_NAME, scope.getContextName());
+        assertTrue(scope.isRunning());
+        assertSame(ctx.getConnection(), scope.getConnection());
+        assertSame(ctx.getUserTransaction(), scope.getUserTransaction());
+        ctx.stopSession();
+        assertFalse(scope.isRunning());
+        try {
+            scope.getConnection();
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session is not running for context " + CONTEXT_NAME, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDetachAndAttach() throws SystemException {
+        ctx.startSession();
+        Connection connection = ctx.getConnection();
+        SessionScope scope = ctx.detachSession();
+        try {
+            ctx.getConnection();
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session is not running in thread for context " + CONTEXT_NAME, e.getMessage());
+        }
+        assertTrue(scope.isRunning());
+        ctx.attachSession(scope);
+        assertSame(connection, ctx.getConnection());
+        ctx.stopSession();
+        assertFalse(scope.isRunning());
+    }
+
+    @Test
+    public void testHandOverToOtherThread() throws Exception {
+        ctx.startSession();
+        final Connection connection = ctx.getConnection();
+        final SessionScope scope = ctx.detachSession();
+        Future<Boolean> result = executorService.submit(() -> {
+            ctx.attachSession(scope);
+            boolean sameConnection = ctx.getConnection() == connection;
+            ctx.stopSession();
+            return sameConnection;
+        });
+        assertTrue(result.get());
+        assertFalse(scope.isRunning());
+        assertTrue(connection.isClosed());
+        // the worker thread does not hold on to the stopped session
+        assertNull(executorService.submit(() -> ((SessionContextFactory.BaseSessionContext) ctx).sessionThreadLocal.get()).get());
+    }
+
+    @Test
+    public void testStopDetachedSessionFromOtherThread() throws Exception {
+        ctx.startSession();
+        final SessionScope scope = ctx.detachSession();
+        executorService.submit(() -> {
+            ctx.stopSession(scope);
+            return null;
+        }).get();
+        assertFalse(scope.isRunning());
+        ctx.startSession();
+        ctx.stopSession();
+    }
+
+    @Test
+    public void testStopAttachedSessionFromOtherThread() throws Exception {
+        ctx.startSession();
+        final SessionScope scope = ctx.getSessionScope();
+        try {
+            executorService.submit(() -> {
+                ctx.stopSession(scope);
+                return null;
+            }).get();
+            fail("Should throw exception");
+        } catch (ExecutionException e) {
+            assertEquals("Session is attached to another thread for context " + CONTEXT_NAME, e.getCause().getMessage());
+        }
+        assertTrue(scope.isRunning());
+        ctx.stopSession();
+    }
+
+    @Test
+    public void testAttachTwice() throws Exception {
+        ctx.startSession();
+        final SessionScope scope = ctx.getSessionScope();
+        try {
+            executorService.submit(() -> {
+                ctx.attachSession(scope);
+                return null;
+            }).get();
+            fail("Should throw exception");
+        } catch (ExecutionException e) {
+            assertEquals("Session is attached to another thread for context " + CONTEXT_NAME, e.getCause().getMessage());
+        }
+        try {
+            ctx.attachSession(scope);
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session already running in thread for context " + CONTEXT_NAME, e.getMessage());
+        }
+        ctx.stopSession();
+    }
+
+    @Test
+    public void testAttachStoppedSession() throws SystemException {
+        ctx.startSession();
+        SessionScope scope = ctx.detachSession();
+        ctx.stopSession(scope);
+        try {
+            ctx.attachSession(scope);
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session is not running for context " + CONTEXT_NAME, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAttachSessionOfOtherContext() throws SystemException {
+        SessionContextFactory.setDataSource(CONTEXT_NAME + ".other", createDataSource());
+        ScopedSessionContext otherCtx = (ScopedSessionContext) SessionContextFactory.getContext(CONTEXT_NAME + ".other");
+        otherCtx.startSession();
+        SessionScope scope = otherCtx.detachSession();
+        try {
+            ctx.attachSession(scope);
+            fail("Should throw exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Session does not belong to context " + CONTEXT_NAME, e.getMessage());
+        }
+        otherCtx.stopSession(scope);
+        SessionContextFactory.removeContext(CONTEXT_NAME + ".other");
+    }
+
+    @Test
+    public void testJoinedSessionIsStoppedByOwner() throws SystemException {
+        ctx.startSession();
+        ctx.startSession(SessionPolicy.MUST_JOIN_EXISTING_SESSION);
+        SessionScope scope = ctx.getSessionScope();
+        ctx.stopSession(scope);
+        assertTrue(scope.isRunning());
+        ctx.stopSession();
+        assertFalse(scope.isRunning());
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        final AtomicReference<Thread> startThread = new AtomicReference<>();
+        final Thread callingThread = Thread.currentThread();
+        String result = new BaseSessionRunner<String>(CONTEXT_NAME) {
+            protected String run(Connection connection, Object... arguments) throws SQLException {
+                startThread.set(Thread.currentThread());
+                assertSame(connection, SessionContextFactory.getContext(CONTEXT_NAME).getConnection());
+                return "result" + arguments[0];
+            }
+        }.executeAsync(executorService, 1).get();
+        assertEquals("result1", result);
+        assertNotSame(callingThread, startThread.get());
+        assertNull(executorService.submit(() -> ((SessionContextFactory.BaseSessionContext) ctx).sessionThreadLocal.get()).get());
+    }
+
+    @Test
+    public void testExecuteAsyncFails() throws InterruptedException {
+        try {
+            new BaseSessionRunner<String>(CONTEXT_NAME) {
+                protected String run(Connection connection, Object... arguments) throws SQLException {
+                    throw new SQLException("failed");
+                }
+            }.executeAsync(executorService).get();
+            fail("Should throw exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SystemException);
+            assertEquals("failed", e.getCause().getCause().getMessage());
+        } catch (SystemException e) {
+            fail("Should not throw exception");
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncRejected() {
+        Executor executor = command -> {
+            throw new IllegalStateException("rejected");
+        };
+        try {
+            new BaseSessionRunner<String>(CONTEXT_NAME) {
+                protected String run(Connection connection, Object... arguments) {
+                    return null;
+                }
+            }.executeAsync(executor);
+            fail("Should throw exception");
+        } catch (SystemException e) {
+            assertEquals("rejected", e.getCause().getMessage());
+        }
+        try {
+            ctx.getConnection();
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session is not running in thread for context " + CONTEXT_NAME, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncWithRunningSession() throws SystemException {
+        ctx.startSession();
+        try {
+            new BaseSessionRunner<String>(CONTEXT_NAME, SessionPolicy.CAN_JOIN_EXISTING_SESSION) {
+                protected String run(Connection connection, Object... arguments) {
+                    return null;
+                }
+            }.executeAsync(executorService);
+            fail("Should throw exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Session already running in thread for context " + CONTEXT_NAME
+                    + " and session policy requires to start new session", e.getMessage());
+        } finally {
+            ctx.stopSession();
+        }
+    }
+}
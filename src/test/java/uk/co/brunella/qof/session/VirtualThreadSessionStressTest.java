@@ -0,0 +1,144 @@
+package uk.co.brunella.qof.session;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.brunella.qof.testtools.MockConnectionFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs sessions in tens of thousands of concurrent virtual threads.
+ * <p>
+ * Requires JDK 21 and is only run in the <code>stress-tests</code> profile:
+ * <pre>
+ * mvn test -Pstress-tests
+ * </pre>
+ */
+public class VirtualThreadSessionStressTest {
+
+    private static final String CONTEXT_NAME = VirtualThreadSessionStressTest.class.getName();
+    private static final int NUMBER_OF_THREADS = 20000;
+    private static final int NUMBER_OF_ROUNDS = 5;
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() throws Exception {
+        Method method;
+        try {
+            method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            Assume.assumeTrue("Virtual threads are not supported", false);
+            return;
+        }
+        executorService = (ExecutorService) method.invoke(null);
+        SessionContextFactory.removeContext(CONTEXT_NAME);
+        SessionContextFactory.setDataSource(CONTEXT_NAME, createDataSource());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        SessionContextFactory.removeContext(CONTEXT_NAME);
+    }
+
+    private DataSource createDataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        return MockConnectionFactory.getConnection();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    public void testSessionsInVirtualThreads() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final BaseSessionRunner<Integer> runner = new BaseSessionRunner<Integer>(CONTEXT_NAME) {
+            protected Integer run(Connection connection, Object... arguments) {
+                assertSame(connection, SessionContextFactory.getContext(CONTEXT_NAME).getConnection());
+                try {
+                    // park the virtual thread so that all sessions are open at the same time
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return runs.incrementAndGet();
+            }
+        };
+
+        long[] usedMemory = new long[NUMBER_OF_ROUNDS];
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+            List<Future<?>> futures = new ArrayList<>(NUMBER_OF_THREADS);
+            for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+                if (i % 2 == 0) {
+                    futures.add(executorService.submit(() -> runner.execute()));
+                } else {
+                    // start the session in one virtual thread and finish it in another
+                    futures.add(executorService.submit(() -> runner.executeAsync(executorService).get()));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            usedMemory[round] = getUsedMemory();
+        }
+
+        assertEquals(NUMBER_OF_THREADS * NUMBER_OF_ROUNDS, runs.get());
+        // memory must not grow with the number of threads that used a session
+        long growth = usedMemory[NUMBER_OF_ROUNDS - 1] - usedMemory[1];
+        assertTrue("Memory grew by " + growth + " bytes", growth < 8 * 1024 * 1024);
+    }
+
+    @Test
+    public void testHandOverBetweenVirtualThreads() throws Exception {
+        final ScopedSessionContext ctx = (ScopedSessionContext) SessionContextFactory.getContext(CONTEXT_NAME);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(NUMBER_OF_THREADS);
+        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+            CompletableFuture<SessionScope> started = CompletableFuture.supplyAsync(() -> {
+                try {
+                    ctx.startSession();
+                } catch (SystemException e) {
+                    throw new RuntimeException(e);
+                }
+                return ctx.detachSession();
+            }, executorService);
+            futures.add(started.thenAcceptAsync(scope -> {
+                ctx.attachSession(scope);
+                try {
+                    ctx.stopSession();
+                } catch (SystemException e) {
+                    throw new RuntimeException(e);
+                }
+            }, executorService));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+    }
+
+    private static long getUsedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -33,4 +33,8 @@ public interface MockConnectionData {
 
     void setExecuteFails(boolean fails);
 
+    void setCloseFails(boolean fails);
+
+    void setLargeUpdatesSupported(boolean supported);
+
 }
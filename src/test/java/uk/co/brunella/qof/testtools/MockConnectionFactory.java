@@ -41,7 +41,10 @@ public class MockConnectionFactory {
         private int resultSetDataIndex = -1;
         private boolean prepareFails = false;
         private boolean executeFails = false;
+        private boolean closeFails = false;
+        private boolean largeUpdatesSupported = true;
         private boolean isOpen = true;
+        private boolean autoCommit = true;
 
         private void setProxy(LoggingDelegationProxy proxy) {
             this.proxy = proxy;
@@ -55,6 +58,14 @@ public class MockConnectionFactory {
             executeFails = fails;
         }
 
+        public void setCloseFails(boolean fails) {
+            closeFails = fails;
+        }
+
+        public void setLargeUpdatesSupported(boolean supported) {
+            largeUpdatesSupported = supported;
+        }
+
         public void setResultSetData(List<Map<String, Object>> resultSetData) {
             this.resultSetData = resultSetData;
             this.resultSetDataIndex = -1;
@@ -88,10 +99,25 @@ public class MockConnectionFactory {
             return (PreparedStatement) proxy;
         }
 
+        @SuppressWarnings("unused")
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+            return prepareStatement(sql);
+        }
+
         public void close() {
             isOpen = false;
         }
 
+        @SuppressWarnings("unused")
+        public boolean getAutoCommit() {
+            return autoCommit;
+        }
+
+        @SuppressWarnings("unused")
+        public void setAutoCommit(boolean autoCommit) {
+            this.autoCommit = autoCommit;
+        }
+
         @SuppressWarnings("unused")
         public boolean isClosed() {
             return !isOpen;
@@ -129,6 +155,7 @@ public class MockConnectionFactory {
             private LoggingDelegationProxy proxy;
             private boolean wasNull;
             private int batches = 0;
+            private boolean closed;
 
             private void setProxy(LoggingDelegationProxy proxy) {
                 this.proxy = proxy;
@@ -315,6 +342,40 @@ public class MockConnectionFactory {
                 return result;
             }
 
+            @SuppressWarnings("unused")
+            public long executeLargeUpdate() throws SQLException {
+                if (!largeUpdatesSupported) {
+                    throw new SQLFeatureNotSupportedException("executeLargeUpdate not supported");
+                }
+                return executeUpdate();
+            }
+
+            @SuppressWarnings("unused")
+            public long[] executeLargeBatch() throws SQLException {
+                if (!largeUpdatesSupported) {
+                    throw new UnsupportedOperationException("executeLargeBatch not implemented");
+                }
+                int[] counts = executeBatch();
+                long[] result = new long[counts.length];
+                for (int i = 0; i < counts.length; i++) {
+                    result[i] = counts[i];
+                }
+                return result;
+            }
+
+            @SuppressWarnings("unused")
+            public void close() throws SQLException {
+                closed = true;
+                if (closeFails) {
+                    throw new SQLException("close failed");
+                }
+            }
+
+            @SuppressWarnings("unused")
+            public boolean isClosed() {
+                return closed;
+            }
+
         }
 
         private class MockResultSet {
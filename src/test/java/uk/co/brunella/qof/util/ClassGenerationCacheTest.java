@@ -2,6 +2,15 @@ package uk.co.brunella.qof.util;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.*;
 
 public class ClassGenerationCacheTest {
@@ -45,6 +54,78 @@ public class ClassGenerationCacheTest {
         assertFalse(t.isAlive());
     }
 
+    @Test
+    public void testSingleFlightGeneration() throws Exception {
+        final int numberOfThreads = 8;
+        final AtomicInteger generations = new AtomicInteger();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<Class<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < numberOfThreads; i++) {
+                futures.add(executorService.submit(new Callable<Class<?>>() {
+                    public Class<?> call() throws Exception {
+                        startLatch.await();
+                        Class<?> clazz = ClassGenerationCache.getCachedClass(C4.class, C1.class);
+                        if (clazz == null) {
+                            generations.incrementAndGet();
+                            Thread.sleep(50);
+                            clazz = C4.class;
+                            ClassGenerationCache.putCachedClass(clazz, C4.class, C1.class);
+                        }
+                        return clazz;
+                    }
+                }));
+            }
+            startLatch.countDown();
+            for (Future<Class<?>> future : futures) {
+                assertEquals(C4.class, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(1, generations.get());
+    }
+
+    @Test
+    public void testOtherKeyIsNotBlocked() {
+        assertNull(ClassGenerationCache.getCachedClass(C5.class));
+        // generation for C5 is pending but C5 with another key component is independent
+        assertNull(ClassGenerationCache.getCachedClass(C5.class, C1.class));
+        ClassGenerationCache.putCachedClass(C5.class, C5.class, C1.class);
+        assertEquals(C5.class, ClassGenerationCache.getCachedClass(C5.class, C1.class));
+        ClassGenerationCache.putCachedClass(C5.class, C5.class);
+    }
+
+    @Test
+    public void testFailedGeneration() {
+        assertNull(ClassGenerationCache.getCachedClass(C6.class));
+        ClassGenerationCache.putCachedClass(null, C6.class);
+        // the key is marked for generation again
+        assertNull(ClassGenerationCache.getCachedClass(C6.class));
+        ClassGenerationCache.putCachedClass(C6.class, C6.class);
+        assertEquals(C6.class, ClassGenerationCache.getCachedClass(C6.class));
+    }
+
+    @Test
+    public void testStatistics() throws InterruptedException {
+        long hits = ClassGenerationCache.getHitCount();
+        long misses = ClassGenerationCache.getMissCount();
+        long generationTime = ClassGenerationCache.getGenerationTime();
+        assertNull(ClassGenerationCache.getCachedClass(C7.class));
+        Thread.sleep(5);
+        ClassGenerationCache.putCachedClass(C7.class, C7.class);
+        assertEquals(C7.class, ClassGenerationCache.getCachedClass(C7.class));
+        assertEquals(C7.class, ClassGenerationCache.getCachedClass(C7.class));
+        assertTrue(ClassGenerationCache.getHitCount() >= hits + 2);
+        assertTrue(ClassGenerationCache.getMissCount() >= misses + 1);
+        assertTrue(ClassGenerationCache.getGenerationTime() >= generationTime + 5000000L);
+
+        ClassGenerationCache.resetStatistics();
+        assertEquals(C7.class, ClassGenerationCache.getCachedClass(C7.class));
+        assertTrue(ClassGenerationCache.getHitCount() >= 1);
+    }
+
     private static class C1 {
     }
 
@@ -53,4 +134,16 @@ public class ClassGenerationCacheTest {
 
     private static class C3 {
     }
+
+    private static class C4 {
+    }
+
+    private static class C5 {
+    }
+
+    private static class C6 {
+    }
+
+    private static class C7 {
+    }
 }
@@ -0,0 +1,154 @@
+package uk.co.brunella.qof.util;
+
+import uk.co.brunella.qof.BaseQuery;
+import uk.co.brunella.qof.Delete;
+import uk.co.brunella.qof.Insert;
+import uk.co.brunella.qof.Query;
+import uk.co.brunella.qof.QueryObjectFactory;
+import uk.co.brunella.qof.Update;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup benchmark comparing <code>MethodHandles.Lookup.defineClass</code> with the
+ * reflective <code>ClassLoader.defineClass</code> path and measuring caller lookups.
+ * <p>
+ * Every round loads the library in a new class loader and creates the query objects,
+ * so the times include class loading and initialization of the library:
+ * <pre>
+ * java -cp target/classes:target/test-classes:... [--add-opens java.base/java.lang=ALL-UNNAMED] \
+ *     uk.co.brunella.qof.util.DefineClassBenchmark [rounds]
+ * </pre>
+ * The <code>ClassLoader.defineClass</code> path is skipped on Java 16 and later
+ * without <code>--add-opens</code>, the lookup path on Java 8.
+ */
+public class DefineClassBenchmark {
+
+    private static final Class<?>[] QUERY_DEFINITIONS = {Queries1.class, Queries2.class, Queries3.class, Queries4.class};
+    private static final int CALLER_LOOKUPS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        System.out.println("Java " + System.getProperty("java.version"));
+        for (boolean useLookup : new boolean[]{false, true}) {
+            run(useLookup, rounds);
+        }
+        benchmarkCallerLookup();
+    }
+
+    private static void run(boolean useLookup, int rounds) throws Exception {
+        String name = useLookup ? "Lookup.defineClass" : "ClassLoader.defineClass";
+        long[] times = new long[rounds];
+        for (int round = 0; round < rounds; round++) {
+            ClassLoader classLoader = createClassLoader();
+            Class<?> helperClass = classLoader.loadClass(DefineClassHelper.class.getName());
+            if (!isAvailable(helperClass, useLookup)) {
+                System.out.println(name + ": not available");
+                return;
+            }
+            Method setUseLookup = helperClass.getDeclaredMethod("setUseLookup", boolean.class);
+            setUseLookup.setAccessible(true);
+            setUseLookup.invoke(null, useLookup);
+
+            Method createQueryObject = classLoader.loadClass(QueryObjectFactory.class.getName())
+                    .getMethod("createQueryObject", Class.class);
+            long start = System.nanoTime();
+            for (Class<?> queryDefinition : QUERY_DEFINITIONS) {
+                createQueryObject.invoke(null, classLoader.loadClass(queryDefinition.getName()));
+            }
+            times[round] = System.nanoTime() - start;
+        }
+        // the first rounds warm up the JIT
+        System.out.printf("%-25s first round %6d us, median %6d us for %d query definitions%n", name,
+                TimeUnit.NANOSECONDS.toMicros(times[0]), TimeUnit.NANOSECONDS.toMicros(median(times)),
+                QUERY_DEFINITIONS.length);
+    }
+
+    private static boolean isAvailable(Class<?> helperClass, boolean useLookup) throws Exception {
+        Method method = helperClass.getDeclaredMethod(useLookup ? "isLookupAvailable" : "isClassLoaderDefineClassAvailable");
+        method.setAccessible(true);
+        return (Boolean) method.invoke(null);
+    }
+
+    private static void benchmarkCallerLookup() {
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLER_LOOKUPS; i++) {
+                if (CallStackIntrospector.getCaller() != DefineClassBenchmark.class) {
+                    throw new IllegalStateException();
+                }
+            }
+            long time = System.nanoTime() - start;
+            System.out.printf("%-25s %6d ns per call%n", "CallStackIntrospector", time / CALLER_LOOKUPS);
+        }
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static ClassLoader createClassLoader() throws Exception {
+        List<URL> urls = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    public interface Queries1 extends BaseQuery {
+        @Query(sql = "select id {%%} from test where name = {%1}")
+        int select(String name) throws SQLException;
+
+        @Insert(sql = "insert into test values ({%1}, {%2})")
+        void insert(int id, String name) throws SQLException;
+    }
+
+    public interface Queries2 extends BaseQuery {
+        @Query(sql = "select id {%%.id}, name {%%.name} from test")
+        List<Bean> select() throws SQLException;
+
+        @Update(sql = "update test set name = {%1.name} where id = {%1.id}")
+        void update(Bean bean) throws SQLException;
+    }
+
+    public interface Queries3 extends BaseQuery {
+        @Delete(sql = "delete from test where id = {%1}")
+        int delete(int id) throws SQLException;
+    }
+
+    public interface Queries4 extends BaseQuery {
+        @Query(sql = "select name {%%} from test where id > {%1}")
+        List<String> select(int id) throws SQLException;
+    }
+
+    public static class Bean {
+        private int id;
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package uk.co.brunella.qof.util;
+
+import net.sf.cglib.core.ClassEmitter;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.DebuggingClassWriter;
+import net.sf.cglib.core.Signature;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import uk.co.brunella.qof.codegen.QueryObjectGenerator;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DefineClassHelperTest {
+
+    private final boolean useLookup = DefineClassHelper.setUseLookup(true);
+
+    @After
+    public void tearDown() {
+        DefineClassHelper.setUseLookup(useLookup);
+    }
+
+    static byte[] createClass(String className) {
+        DebuggingClassWriter cw = new DebuggingClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        ClassEmitter ce = new ClassEmitter(cw);
+        ce.begin_class(Constants.V1_2, Constants.ACC_PUBLIC, className, Type.getType(Object.class), null, "<generated>");
+        CodeEmitter co = ce.begin_method(Constants.ACC_PUBLIC, new Signature("<init>", "()V"), null);
+        co.load_this();
+        co.super_invoke_constructor();
+        co.return_value();
+        co.end_method();
+        ce.end_class();
+        return cw.toByteArray();
+    }
+
+    @Test
+    public void testDefineClassWithLookup() throws Exception {
+        Assume.assumeTrue(DefineClassHelper.isLookupAvailable());
+        String className = getClass().getName() + "$Lookup";
+        Class<?> clazz = DefineClassHelper.defineClass(className, createClass(className), getClass());
+        assertEquals(className, clazz.getName());
+        assertSame(getClass().getClassLoader(), clazz.getClassLoader());
+        // classes defined by a lookup get the protection domain of the lookup class
+        assertEquals(getClass().getProtectionDomain(), clazz.getProtectionDomain());
+        assertNotNull(clazz.getDeclaredConstructor().newInstance());
+    }
+
+    @Test
+    public void testDefineClassWithClassLoader() throws Exception {
+        Assume.assumeTrue(DefineClassHelper.isClassLoaderDefineClassAvailable());
+        DefineClassHelper.setUseLookup(false);
+        String className = getClass().getName() + "$ClassLoader";
+        Class<?> clazz = DefineClassHelper.defineClass(className, createClass(className), getClass());
+        assertSame(getClass().getClassLoader(), clazz.getClassLoader());
+        assertEquals(QueryObjectGenerator.class.getProtectionDomain(), clazz.getProtectionDomain());
+    }
+
+    @Test
+    public void testDefineClassInOtherPackage() throws Exception {
+        Assume.assumeTrue(DefineClassHelper.isClassLoaderDefineClassAvailable());
+        String className = "uk.co.brunella.qof.generated.DefineClassHelperTest$OtherPackage";
+        Class<?> clazz = DefineClassHelper.defineClass(className, createClass(className), getClass());
+        assertSame(getClass().getClassLoader(), clazz.getClassLoader());
+        assertEquals(QueryObjectGenerator.class.getProtectionDomain(), clazz.getProtectionDomain());
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        String className = getClass().getName() + "$Recorded";
+        byte[] byteCode = createClass(className);
+        assertFalse(DefineClassHelper.isRecording());
+        DefineClassHelper.startRecording();
+        assertTrue(DefineClassHelper.isRecording());
+        DefineClassHelper.defineClass(className, byteCode, getClass());
+        Map<String, byte[]> recorded = DefineClassHelper.stopRecording();
+        assertFalse(DefineClassHelper.isRecording());
+        assertSame(byteCode, recorded.get(className));
+        assertEquals(1, recorded.size());
+    }
+}
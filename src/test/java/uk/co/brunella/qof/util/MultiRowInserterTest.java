@@ -0,0 +1,54 @@
+package uk.co.brunella.qof.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MultiRowInserterTest {
+
+    @Test
+    public void testCreateSqls() {
+        String[] sqls = MultiRowInserter.createSqls("insert into test (a, b) values (?, f(?, 'x)')) ", 5);
+        assertEquals(3, sqls.length);
+        assertEquals("insert into test (a, b) values (?, f(?, 'x)')) ", sqls[0]);
+        assertEquals("insert into test (a, b) values (?, f(?, 'x)')),(?, f(?, 'x)')) ", sqls[1]);
+        assertEquals("insert into test (a, b) values (?, f(?, 'x)')),(?, f(?, 'x)')),(?, f(?, 'x)')),(?, f(?, 'x)')) ",
+                sqls[2]);
+    }
+
+    @Test
+    public void testCreateSqlsOneRow() {
+        String[] sqls = MultiRowInserter.createSqls("INSERT INTO test VALUES(?)", 1);
+        assertEquals(1, sqls.length);
+        assertEquals("INSERT INTO test VALUES(?)", sqls[0]);
+    }
+
+    @Test
+    public void testCreateSqlsKeywordInName() {
+        String[] sqls = MultiRowInserter.createSqls("insert into my_values (values_col) values (?)", 2);
+        assertEquals("insert into my_values (values_col) values (?),(?)", sqls[1]);
+    }
+
+    @Test
+    public void testCreateSqlsInvalid() {
+        assertCreateSqlsFails("insert into test select * from other where id = ?", "Insert statement has no values clause");
+        assertCreateSqlsFails("insert into test values (?", "Values clause is not closed");
+        assertCreateSqlsFails("insert into test values (?) on duplicate key update a = ?", "Parameters must be in the values clause");
+        assertCreateSqlsFails("insert into test values (?), (1)", "Insert statement has more than one values clause");
+    }
+
+    @Test
+    public void testCountParameters() {
+        assertEquals(0, MultiRowInserter.countParameters("insert into test values ('?', \"?\")"));
+        assertEquals(2, MultiRowInserter.countParameters("insert into test values (?, '?', ?)"));
+    }
+
+    private void assertCreateSqlsFails(String sql, String message) {
+        try {
+            MultiRowInserter.createSqls(sql, 4);
+            fail("Should throw exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+}
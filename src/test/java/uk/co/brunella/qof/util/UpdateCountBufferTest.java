@@ -0,0 +1,63 @@
+package uk.co.brunella.qof.util;
+
+import org.junit.Test;
+
+import java.sql.Statement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class UpdateCountBufferTest {
+
+    @Test
+    public void testEmpty() {
+        UpdateCountBuffer buffer = new UpdateCountBuffer();
+        assertEquals(0, buffer.size());
+        assertArrayEquals(new int[0], buffer.toArray());
+    }
+
+    @Test
+    public void testAdd() {
+        UpdateCountBuffer buffer = new UpdateCountBuffer();
+        buffer.add(1);
+        buffer.add(new int[]{2, 3});
+        buffer.add(new int[0]);
+        buffer.add(4);
+        assertEquals(4, buffer.size());
+        assertArrayEquals(new int[]{1, 2, 3, 4}, buffer.toArray());
+    }
+
+    @Test
+    public void testGrow() {
+        UpdateCountBuffer buffer = new UpdateCountBuffer();
+        int[] expected = new int[1000];
+        for (int i = 0; i < 500; i++) {
+            buffer.add(i);
+            expected[i] = i;
+        }
+        int[] batch = new int[500];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = 500 + i;
+            expected[500 + i] = 500 + i;
+        }
+        buffer.add(batch);
+        assertArrayEquals(expected, buffer.toArray());
+    }
+
+    @Test
+    public void testAddLarge() {
+        UpdateCountBuffer buffer = new UpdateCountBuffer();
+        buffer.add(1L);
+        buffer.add(new long[]{3_000_000_000L, 2});
+        assertEquals(3, buffer.size());
+        assertArrayEquals(new long[]{1, 3_000_000_000L, 2}, buffer.toLongArray());
+        assertEquals(3_000_000_003L, UpdateCountBuffer.sum(buffer.toLongArray()));
+    }
+
+    @Test
+    public void testSum() {
+        assertEquals(0, UpdateCountBuffer.sum(new int[0]));
+        assertEquals(6, UpdateCountBuffer.sum(new int[]{1, 2, 3}));
+        assertEquals(3, UpdateCountBuffer.sum(new int[]{1, Statement.SUCCESS_NO_INFO, 2, 0}));
+    }
+}